@@ -0,0 +1,74 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soot.MethodSource;
+import soot.SootMethod;
+
+/**
+ * Building Jimple bodies from bytecode, including the jb pack, for all concrete methods of a few library classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AsmMethodSourceBenchmark {
+  private SootMethod[] methods;
+  private MethodSource[] sources;
+
+  @Setup
+  public void setup() {
+    BenchmarkScene.init(BenchmarkScene.LIBRARY_CLASSES);
+    List<SootMethod> ms = BenchmarkScene.concreteMethods(BenchmarkScene.LIBRARY_CLASSES);
+    methods = ms.toArray(new SootMethod[ms.size()]);
+    sources = new MethodSource[methods.length];
+    for (int i = 0; i < methods.length; i++) {
+      // The method source builds a new body on every call, so it can be kept and reused
+      sources[i] = methods[i].getSource();
+    }
+  }
+
+  @Benchmark
+  public void buildBodies(Blackhole bh) {
+    for (int i = 0; i < methods.length; i++) {
+      bh.consume(sources[i].getBody(methods[i], "jb"));
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import soot.ArrayType;
+import soot.Body;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.UnitPatchingChain;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+
+/**
+ * Sets up a fresh Soot instance for a benchmark and generates method bodies of a given size.
+ */
+public class BenchmarkScene {
+  /** Library classes that are loaded with bodies for benchmarks that need real code. */
+  public static final String[] LIBRARY_CLASSES = { "java.util.ArrayList", "java.util.HashMap", "java.util.TreeMap",
+      "java.util.LinkedList", "java.util.Collections", "java.util.concurrent.ConcurrentHashMap", "java.lang.String",
+      "java.lang.StringBuilder", "java.io.BufferedReader" };
+
+  private BenchmarkScene() {
+  }
+
+  /** Resets Soot and loads the given classes with bodies, along with the classes Soot always needs. */
+  public static void init(String... bodyClasses) {
+    init(false, bodyClasses);
+  }
+
+  /**
+   * Resets Soot in whole-program mode, so that the classes reached by a call graph are loaded with bodies as well, and
+   * loads the given classes with bodies.
+   */
+  public static void initWholeProgram(String... bodyClasses) {
+    init(true, bodyClasses);
+  }
+
+  private static void init(boolean wholeProgram, String... bodyClasses) {
+    G.reset();
+    Options.v().set_whole_program(wholeProgram);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    for (String c : bodyClasses) {
+      Scene.v().addBasicClass(c, SootClass.BODIES);
+    }
+    Scene.v().loadNecessaryClasses();
+  }
+
+  /** Returns the concrete methods of the given classes, which must have been loaded with bodies. */
+  public static List<SootMethod> concreteMethods(String... classes) {
+    List<SootMethod> ret = new ArrayList<SootMethod>();
+    for (String c : classes) {
+      for (SootMethod m : Scene.v().getSootClass(c).getMethods()) {
+        if (m.isConcrete()) {
+          ret.add(m);
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Generates a static method int run(int) with the given number of blocks. Every block defines a fresh local and
+   * redefines a shared accumulator, branches forward, divides (which may throw) and stores into an array. Every eighth
+   * block closes a loop, and runs of four blocks are covered by a trap, so the body has both back edges and exceptional
+   * edges.
+   */
+  public static Body generateBody(int blocks) {
+    Jimple j = Jimple.v();
+    SootClass c = getSyntheticClass();
+    SootMethod m = new SootMethod("run" + blocks + "_" + c.getMethodCount(),
+        Collections.<Type>singletonList(IntType.v()), IntType.v(), Modifier.PUBLIC | Modifier.STATIC);
+    c.addMethod(m);
+    JimpleBody b = j.newBody(m);
+    m.setActiveBody(b);
+    UnitPatchingChain units = b.getUnits();
+
+    Local p = j.newLocal("p", IntType.v());
+    Local acc = j.newLocal("acc", IntType.v());
+    Local arr = j.newLocal("arr", ArrayType.v(IntType.v(), 1));
+    Local ex = j.newLocal("ex", RefType.v("java.lang.Throwable"));
+    b.getLocals().add(p);
+    b.getLocals().add(acc);
+    b.getLocals().add(arr);
+    b.getLocals().add(ex);
+
+    units.add(j.newIdentityStmt(p, j.newParameterRef(IntType.v(), 0)));
+    units.add(j.newAssignStmt(acc, p));
+    units.add(j.newAssignStmt(arr, j.newNewArrayExpr(IntType.v(), IntConstant.v(16))));
+
+    // Block headers first, so that branches can point forward
+    Unit[] headers = new Unit[blocks + 2];
+    for (int i = 0; i < headers.length; i++) {
+      headers[i] = j.newNopStmt();
+    }
+    Unit ret = j.newReturnStmt(acc);
+    Unit handler = j.newIdentityStmt(ex, j.newCaughtExceptionRef());
+    SootClass arithmetic = Scene.v().getSootClass("java.lang.ArithmeticException");
+
+    for (int i = 0; i < blocks; i++) {
+      units.add(headers[i]);
+      Local a = j.newLocal("a" + i, IntType.v());
+      b.getLocals().add(a);
+      units.add(j.newAssignStmt(a, j.newAddExpr(p, IntConstant.v(i))));
+      units.add(j.newIfStmt(j.newGtExpr(a, acc), headers[i + 2]));
+      units.add(j.newAssignStmt(acc, j.newDivExpr(acc, a)));
+      units.add(j.newAssignStmt(j.newArrayRef(arr, IntConstant.v(i % 16)), acc));
+      if (i % 8 == 7) {
+        units.add(j.newIfStmt(j.newLtExpr(acc, IntConstant.v(0)), headers[i - 4]));
+      }
+    }
+    units.add(headers[blocks]);
+    units.add(headers[blocks + 1]);
+    units.add(ret);
+    units.add(handler);
+    units.add(j.newReturnStmt(IntConstant.v(0)));
+
+    for (int i = 0; i + 4 <= blocks; i += 4) {
+      b.getTraps().add(j.newTrap(arithmetic, headers[i], headers[i + 4], handler));
+    }
+    return b;
+  }
+
+  private static SootClass getSyntheticClass() {
+    String name = "soot.benchmark.Synthetic";
+    if (Scene.v().containsClass(name)) {
+      return Scene.v().getSootClass(name);
+    }
+    SootClass c = new SootClass(name, Modifier.PUBLIC);
+    c.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
+    Scene.v().addClass(c);
+    c.setApplicationClass();
+    return c;
+  }
+}
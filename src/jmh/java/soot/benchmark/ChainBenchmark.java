@@ -0,0 +1,138 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.util.Chain;
+import soot.util.ConcurrentChain;
+import soot.util.HashChain;
+import soot.util.IndexedChain;
+
+/**
+ * The operations a body transformation performs on its unit chain, on {@link HashChain}, the unsynchronized
+ * {@link IndexedChain} and the read-write locked {@link ConcurrentChain}. {@link #containsShared()} reads one chain from
+ * several threads, as the phases do with the class chains of the Scene.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChainBenchmark {
+  @Param({ "hash", "indexed", "concurrent" })
+  public String impl;
+
+  @Param({ "1000", "20000" })
+  public int size;
+
+  private Object[] elements;
+  private Chain<Object> chain;
+
+  @Setup
+  public void setup() {
+    elements = new Object[size];
+    for (int i = 0; i < size; i++) {
+      elements[i] = new Object();
+    }
+    chain = fill();
+  }
+
+  private Chain<Object> newChain() {
+    if ("hash".equals(impl)) {
+      return new HashChain<Object>();
+    } else if ("indexed".equals(impl)) {
+      return new IndexedChain<Object>();
+    } else if ("concurrent".equals(impl)) {
+      return new ConcurrentChain<Object>();
+    }
+    throw new IllegalArgumentException("Unknown chain implementation: " + impl);
+  }
+
+  private Chain<Object> fill() {
+    Chain<Object> ret = newChain();
+    for (Object o : elements) {
+      ret.add(o);
+    }
+    return ret;
+  }
+
+  @Benchmark
+  public Chain<Object> add() {
+    return fill();
+  }
+
+  @Benchmark
+  public int iterate() {
+    int ret = 0;
+    for (Iterator<Object> it = chain.iterator(); it.hasNext();) {
+      if (it.next() != null) {
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  @Benchmark
+  public int getSuccOf() {
+    int ret = 0;
+    Object last = chain.getLast();
+    for (Object o = chain.getFirst(); o != last; o = chain.getSuccOf(o)) {
+      ret++;
+    }
+    return ret;
+  }
+
+  /** Inserts a new element before every fourth element and removes it again. */
+  @Benchmark
+  public Chain<Object> insertAndRemove() {
+    for (int i = 0; i < size; i += 4) {
+      Object o = new Object();
+      chain.insertBefore(o, elements[i]);
+      chain.remove(o);
+    }
+    return chain;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean containsShared() {
+    return chain.contains(elements[ThreadLocalRandom.current().nextInt(size)]);
+  }
+}
@@ -0,0 +1,103 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soot.FastHierarchy;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+
+/**
+ * Building a {@link FastHierarchy} for a part of the class library and querying it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FastHierarchyBenchmark {
+  private static final int QUERIES = 10000;
+
+  private FastHierarchy hierarchy;
+  private RefType[] children;
+  private RefType[] parents;
+  private SootClass[] classes;
+
+  @Setup
+  public void setup() {
+    BenchmarkScene.init(BenchmarkScene.LIBRARY_CLASSES);
+    List<SootClass> resolved = new ArrayList<SootClass>();
+    for (SootClass c : Scene.v().getClasses()) {
+      if (!c.isPhantom() && c.resolvingLevel() >= SootClass.HIERARCHY) {
+        resolved.add(c);
+      }
+    }
+    hierarchy = Scene.v().getOrMakeFastHierarchy();
+    Random rnd = new Random(42);
+    children = new RefType[QUERIES];
+    parents = new RefType[QUERIES];
+    classes = new SootClass[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      children[i] = resolved.get(rnd.nextInt(resolved.size())).getType();
+      parents[i] = resolved.get(rnd.nextInt(resolved.size())).getType();
+      classes[i] = resolved.get(rnd.nextInt(resolved.size()));
+    }
+  }
+
+  @Benchmark
+  public FastHierarchy build() {
+    return new FastHierarchy();
+  }
+
+  @Benchmark
+  public void canStoreType(Blackhole bh) {
+    for (int i = 0; i < QUERIES; i++) {
+      bh.consume(hierarchy.canStoreType(children[i], parents[i]));
+    }
+  }
+
+  @Benchmark
+  public void getSubclassesOf(Blackhole bh) {
+    for (int i = 0; i < QUERIES; i++) {
+      bh.consume(hierarchy.getSubclassesOf(classes[i]));
+    }
+  }
+}
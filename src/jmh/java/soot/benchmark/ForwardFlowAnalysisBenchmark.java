@@ -0,0 +1,107 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.Local;
+import soot.Unit;
+import soot.ValueBox;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.ArraySparseSet;
+import soot.toolkits.scalar.FlowSet;
+import soot.toolkits.scalar.ForwardFlowAnalysis;
+
+/**
+ * Runs a small forward analysis on generated bodies, to measure the fixed point iteration of {@link ForwardFlowAnalysis}
+ * itself rather than an expensive transfer function.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ForwardFlowAnalysisBenchmark {
+  @Param({ "16", "256", "2048" })
+  public int blocks;
+
+  private UnitGraph graph;
+
+  @Setup
+  public void setup() {
+    BenchmarkScene.init();
+    graph = new ExceptionalUnitGraph(BenchmarkScene.generateBody(blocks));
+  }
+
+  @Benchmark
+  public DefinedLocals definedLocals() {
+    return new DefinedLocals(graph);
+  }
+
+  /** Computes the locals that may have been assigned before each unit. */
+  public static class DefinedLocals extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+    public DefinedLocals(UnitGraph graph) {
+      super(graph);
+      doAnalysis();
+    }
+
+    @Override
+    protected void flowThrough(FlowSet<Local> in, Unit d, FlowSet<Local> out) {
+      in.copy(out);
+      for (ValueBox box : d.getDefBoxes()) {
+        if (box.getValue() instanceof Local) {
+          out.add((Local) box.getValue());
+        }
+      }
+    }
+
+    @Override
+    protected FlowSet<Local> newInitialFlow() {
+      return new ArraySparseSet<Local>();
+    }
+
+    @Override
+    protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+      in1.union(in2, out);
+    }
+
+    @Override
+    protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+      source.copy(dest);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.callgraph.CallGraphBuilder;
+import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+
+/**
+ * The queries an IFDS solver makes on an interprocedural control-flow graph, on a {@link JimpleBasedInterproceduralCFG}
+ * and on its frozen copy, over the call graph of a part of the class library. The caches of the original graph are
+ * filled during warmup, so both modes measure lookups only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InterproceduralCFGBenchmark {
+  @Param({ "cached", "frozen" })
+  public String mode;
+
+  private BiDiInterproceduralCFG<Unit, SootMethod> icfg;
+  private Unit[] units;
+
+  @Setup
+  public void setup() {
+    BenchmarkScene.initWholeProgram(BenchmarkScene.LIBRARY_CLASSES);
+    Scene.v().setEntryPoints(BenchmarkScene.concreteMethods(BenchmarkScene.LIBRARY_CLASSES));
+    new CallGraphBuilder(DumbPointerAnalysis.v()).build();
+    JimpleBasedInterproceduralCFG cached = new JimpleBasedInterproceduralCFG();
+    icfg = mode.equals("frozen") ? cached.freeze() : cached;
+
+    List<Unit> reachable = new ArrayList<Unit>();
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      SootMethod m = it.next().method();
+      if (m.hasActiveBody()) {
+        reachable.addAll(m.getActiveBody().getUnits());
+      }
+    }
+    units = reachable.toArray(new Unit[reachable.size()]);
+  }
+
+  @Benchmark
+  public void walk(Blackhole bh) {
+    for (Unit u : units) {
+      bh.consume(icfg.getMethodOf(u));
+      bh.consume(icfg.isExitStmt(u));
+      bh.consume(icfg.isStartPoint(u));
+      if (icfg.isCallStmt(u)) {
+        for (SootMethod callee : icfg.getCalleesOfCallAt(u)) {
+          bh.consume(icfg.getStartPointsOf(callee));
+        }
+        bh.consume(icfg.getReturnSitesOfCallAt(u));
+      } else {
+        for (Unit succ : icfg.getSuccsOf(u)) {
+          bh.consume(succ);
+        }
+      }
+    }
+  }
+}
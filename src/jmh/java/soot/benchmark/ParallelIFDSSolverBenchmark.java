@@ -0,0 +1,121 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.DefaultSeeds;
+import heros.InterproceduralCFG;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.CallGraphBuilder;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.ide.ParallelJimpleIFDSSolver;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Solves reaching definitions with the {@link ParallelJimpleIFDSSolver} over the call graph of a part of the class
+ * library, from one up to 32 threads, starting at every method of the library classes. The frozen graph is shared by
+ * all runs, so the scores show how the solver itself scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParallelIFDSSolverBenchmark {
+  @Param({ "1", "2", "4", "8", "16", "32" })
+  public int threads;
+
+  private InterproceduralCFG<Unit, SootMethod> icfg;
+  private List<Unit> seeds;
+
+  @Setup
+  public void setup() {
+    BenchmarkScene.initWholeProgram(BenchmarkScene.LIBRARY_CLASSES);
+    Scene.v().setEntryPoints(BenchmarkScene.concreteMethods(BenchmarkScene.LIBRARY_CLASSES));
+    new CallGraphBuilder(DumbPointerAnalysis.v()).build();
+
+    // The problem passes arguments to parameters by position, which only holds on explicit calls
+    CallGraph cg = Scene.v().getCallGraph();
+    List<Edge> implicit = new ArrayList<Edge>();
+    for (Edge e : cg) {
+      if (!e.kind().isExplicit() && !e.kind().isClinit()) {
+        implicit.add(e);
+      }
+    }
+    for (Edge e : implicit) {
+      cg.removeEdge(e);
+    }
+    icfg = new JimpleBasedInterproceduralCFG().freeze();
+
+    seeds = new ArrayList<Unit>();
+    for (SootMethod m : Scene.v().getEntryPoints()) {
+      seeds.addAll(icfg.getStartPointsOf(m));
+    }
+  }
+
+  @Benchmark
+  public long solve() {
+    IFDSReachingDefinitions problem = new IFDSReachingDefinitions(icfg) {
+      @Override
+      public int numThreads() {
+        return threads;
+      }
+
+      @Override
+      public Map<Unit, Set<Pair<Value, Set<DefinitionStmt>>>> initialSeeds() {
+        return DefaultSeeds.make(seeds, zeroValue());
+      }
+    };
+    ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> solver
+        = new ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>>(problem);
+    solver.solve();
+    return solver.getPropagationCount();
+  }
+}
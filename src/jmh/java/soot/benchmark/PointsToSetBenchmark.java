@@ -0,0 +1,123 @@
+package soot.benchmark;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.RefType;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.P2SetFactory;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.SparkOptions;
+
+/**
+ * {@link PointsToSetInternal#addAll} for the different set implementations of Spark. Each invocation unions a number of
+ * source sets into a fresh set, once into a set of type Object and once into a set whose type filters out part of the
+ * objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PointsToSetBenchmark {
+  private static final int ALLOC_NODES = 50000;
+  private static final int SOURCES = 64;
+  private static final String[] TYPES = { "java.lang.String", "java.util.ArrayList", "java.util.LinkedList",
+      "java.util.HashMap", "java.lang.Object" };
+
+  @Param({ "hash", "bit", "hybrid", "array", "heintze", "sharedlist", "double", "roaring" })
+  public String setImpl;
+
+  /** Number of objects in each source set. */
+  @Param({ "8", "512" })
+  public int sourceSize;
+
+  private PAG pag;
+  private P2SetFactory factory;
+  private PointsToSetInternal[] sources;
+  private RefType objectType;
+  private RefType listType;
+
+  @Setup
+  public void setup() {
+    BenchmarkScene.init(TYPES);
+    Map<String, String> opts = new HashMap<String, String>();
+    opts.put("enabled", "true");
+    opts.put("set-impl", setImpl);
+    pag = new PAG(new SparkOptions(opts));
+    factory = pag.getSetFactory();
+    objectType = RefType.v("java.lang.Object");
+    listType = RefType.v("java.util.AbstractList");
+
+    AllocNode[] nodes = new AllocNode[ALLOC_NODES];
+    for (int i = 0; i < ALLOC_NODES; i++) {
+      nodes[i] = pag.makeAllocNode(Integer.valueOf(i), RefType.v(TYPES[i % TYPES.length]), null);
+    }
+    pag.getTypeManager().makeTypeMask();
+
+    Random rnd = new Random(42);
+    sources = new PointsToSetInternal[SOURCES];
+    for (int i = 0; i < SOURCES; i++) {
+      sources[i] = factory.newSet(objectType, pag);
+      for (int j = 0; j < sourceSize; j++) {
+        sources[i].add(nodes[rnd.nextInt(ALLOC_NODES)]);
+      }
+    }
+  }
+
+  @Benchmark
+  public PointsToSetInternal addAll() {
+    PointsToSetInternal target = factory.newSet(objectType, pag);
+    for (PointsToSetInternal s : sources) {
+      target.addAll(s, null);
+    }
+    return target;
+  }
+
+  @Benchmark
+  public PointsToSetInternal addAllFiltered() {
+    PointsToSetInternal target = factory.newSet(listType, pag);
+    for (PointsToSetInternal s : sources) {
+      target.addAll(s, null);
+    }
+    return target;
+  }
+}
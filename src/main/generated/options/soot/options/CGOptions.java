@@ -183,6 +183,21 @@ public class CGOptions {
         return soot.PhaseOptions.getBoolean(options, "resolve-all-abstract-invokes");
     }
 
+    /**
+     * Compact Call Graph --
+     * Store the finished call graph in compact form.
+     *
+     * Setting this option to true causes Soot to replace the call 
+     * graph, once it has been built, by a copy that stores its edges 
+     * in int arrays indexed by method and unit numbers. This takes 
+     * much less memory. Later phases that add or remove edges, such as 
+     * the inliners, still work, but the edges they change are stored 
+     * the usual way.
+     */
+    public boolean compact() {
+        return soot.PhaseOptions.getBoolean(options, "compact");
+    }
+
     /**
      * JDK version --
      * JDK version for native methods.
@@ -229,6 +244,32 @@ public class CGOptions {
         return soot.PhaseOptions.getString(options, "guards");
     }
 
+    /**
+     * Save Call Graph --
+     * Writes the call graph and points-to sets to the given file.
+     *
+     * Write the call graph, once it has been built, to the given file 
+     * in a binary format, together with the points-to sets if Spark 
+     * computed them. The file can be read back with the load-file 
+     * option by a later run on the same classes with the same options.
+     */
+    public String save_file() {
+        return soot.PhaseOptions.getString(options, "save-file");
+    }
+
+    /**
+     * Load Call Graph --
+     * Reads the call graph and points-to sets from the given file.
+     *
+     * Read the call graph, and the points-to sets if present, from a 
+     * file written with the save-file option instead of building them. 
+     * The sub-phases of cg are not run. Soot stops with an error if 
+     * the file does not match the classes that were loaded.
+     */
+    public String load_file() {
+        return soot.PhaseOptions.getString(options, "load-file");
+    }
+
     public static final int library_disabled = 1;
     public static final int library_any_subtype = 2;
     public static final int library_signature_resolution = 3;
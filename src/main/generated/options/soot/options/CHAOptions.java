@@ -69,4 +69,20 @@ public class CHAOptions {
         return soot.PhaseOptions.getBoolean(options, "apponly");
     }
 
+    /**
+     * Parallel --
+     * Scan methods and resolve calls on several threads.
+     *
+     * Setting this option to true causes Soot to retrieve and scan the 
+     * bodies of newly reachable methods and to resolve virtual calls 
+     * on a pool of threads, whose size is given by the -num-threads 
+     * option. Edges are still added to the call graph on one thread in 
+     * a fixed order, so the resulting call graph does not depend on 
+     * the number of threads. With the coffi front end, which is not 
+     * thread-safe, the call graph is always built on one thread.
+     */
+    public boolean parallel() {
+        return soot.PhaseOptions.getBoolean(options, "parallel");
+    }
+
 }
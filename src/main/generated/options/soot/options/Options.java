@@ -435,6 +435,50 @@ public class Options extends OptionsBase {
                     || option.equals("no-bodies-for-excluded")
             )
                 no_bodies_for_excluded = true;
+            else if (false
+                    || option.equals("parallel-resolver")
+            )
+                parallel_resolver = true;
+            else if (false
+                || option.equals("num-threads")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if(num_threads == -1)
+                    num_threads = Integer.valueOf(value);
+                else {
+                    G.v().out.println("Duplicate values " + num_threads + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
+            else if (false
+                    || option.equals("parallel-methods")
+            )
+                parallel_methods = true;
+            else if (false
+                    || option.equals("indexed-chains")
+            )
+                indexed_chains = true;
+            else if (false
+                    || option.equals("body-cache-dir")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if (body_cache_dir.isEmpty())
+                    body_cache_dir = value;
+                else {
+                    G.v().out.println("Duplicate values " + body_cache_dir + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
             else if (false
                     || option.equals("j2me")
             )
@@ -1284,6 +1328,22 @@ public class Options extends OptionsBase {
                     || option.equals("subtract-gc")
             )
                 subtract_gc = true;
+            else if (false
+                    || option.equals("phase-profile")
+            ) {
+                if (!hasMoreOptions()) {
+                    G.v().out.println("No value given for option -" + option);
+                    return false;
+                }
+
+                String value = nextOption();
+                if (phase_profile.isEmpty())
+                    phase_profile = value;
+                else {
+                    G.v().out.println("Duplicate values " + phase_profile + " and " + value + " for option -" + option);
+                    return false;
+                }
+            }
             else if (false
                     || option.equals("no-writeout-body-releasing")
             )
@@ -1460,6 +1520,26 @@ public class Options extends OptionsBase {
     private boolean no_bodies_for_excluded = false;
     public void set_no_bodies_for_excluded(boolean setting) { no_bodies_for_excluded = setting; }
 
+    public boolean parallel_resolver() { return parallel_resolver; }
+    private boolean parallel_resolver = false;
+    public void set_parallel_resolver(boolean setting) { parallel_resolver = setting; }
+
+    public int num_threads() { return num_threads; }
+    public void set_num_threads(int setting) { num_threads = setting; }
+    private int num_threads = -1;
+
+    public boolean parallel_methods() { return parallel_methods; }
+    private boolean parallel_methods = false;
+    public void set_parallel_methods(boolean setting) { parallel_methods = setting; }
+
+    public boolean indexed_chains() { return indexed_chains; }
+    private boolean indexed_chains = false;
+    public void set_indexed_chains(boolean setting) { indexed_chains = setting; }
+
+    public String body_cache_dir() { return body_cache_dir; }
+    public void set_body_cache_dir(String setting) { body_cache_dir = setting; }
+    private String body_cache_dir = "";
+
     public boolean j2me() { return j2me; }
     private boolean j2me = false;
     public void set_j2me(boolean setting) { j2me = setting; }
@@ -1649,6 +1729,10 @@ public class Options extends OptionsBase {
     private boolean subtract_gc = false;
     public void set_subtract_gc(boolean setting) { subtract_gc = setting; }
 
+    public String phase_profile() { return phase_profile; }
+    public void set_phase_profile(String setting) { phase_profile = setting; }
+    private String phase_profile = "";
+
     public boolean no_writeout_body_releasing() { return no_writeout_body_releasing; }
     private boolean no_writeout_body_releasing = false;
     public void set_no_writeout_body_releasing(boolean setting) { no_writeout_body_releasing = setting; }
@@ -1697,6 +1781,10 @@ public class Options extends OptionsBase {
                 + padOpt("-allow-phantom-refs", "Allow unresolved classes; may cause errors")
                 + padOpt("-allow-phantom-elms", "Allow phantom methods and fields in non-phantom classes")
                 + padOpt("-no-bodies-for-excluded", "Do not load bodies for excluded classes")
+                + padOpt("-parallel-resolver", "Read and decode class files concurrently")
+                + padOpt("-parallel-methods", "Run body packs on methods of one class concurrently")
+                + padOpt("-indexed-chains", "Store the units, locals and traps of bodies in unsynchronized chains")
+                + padOpt("-body-cache-dir ARG", "Cache Jimple bodies of class files in ARG")
                 + padOpt("-j2me", "Use J2ME mode; changes assignment of types")
                 + padOpt("-main-class ARG", "Sets the main class for whole-program analysis.")
                 + padOpt("-polyglot", "Use Java 1.4 Polyglot frontend instead of JastAdd")
@@ -1793,6 +1881,7 @@ public class Options extends OptionsBase {
                 + "\nMiscellaneous Options:\n"
                 + padOpt("-time", "Report time required for transformations")
                 + padOpt("-subtract-gc", "Subtract gc from time")
+                + padOpt("-phase-profile ARG", "Write time, CPU time, allocation and heap use per phase to ARG")
                 + padOpt("-no-writeout-body-releasing", "Disables the release of method bodies after writeout. This flag is used internally.");
     }
 
@@ -1833,6 +1922,8 @@ public class Options extends OptionsBase {
                 + padOpt("wspp", "Whole Shimple Pre-processing Pack")
                 + padOpt("cg", "Call graph constructor")
                     + padVal("cg.cha", "Builds call graph using Class Hierarchy Analysis")
+                    + padVal("cg.rta", "Builds call graph using Rapid Type Analysis")
+                    + padVal("cg.vta", "Builds call graph using Variable Type Analysis")
                     + padVal("cg.spark", "Spark points-to analysis framework")
                     + padVal("cg.paddle", "Paddle points-to analysis framework")
                 + padOpt("wstp", "Whole-shimple transformation pack")
@@ -2149,7 +2240,10 @@ public class Options extends OptionsBase {
                     + padOpt("reflection-log", "Uses a reflection log to resolve reflective calls.")
                     + padOpt("guards (ignore)", "Describes how to guard the program from unsound assumptions.")
                     + padOpt("types-for-invoke (false)", "Uses reaching types inferred by the pointer analysis to resolve reflective calls.")
-                    + padOpt("resolve-all-abstract-invokes (false)", "Causes methods invoked on abstract classes to be resolved even if there are no non-abstract children of the classes in the Scene.");
+                    + padOpt("resolve-all-abstract-invokes (false)", "Causes methods invoked on abstract classes to be resolved even if there are no non-abstract children of the classes in the Scene.")
+                    + padOpt("compact (false)", "Store the finished call graph in compact form")
+                    + padOpt("save-file", "Writes the call graph and points-to sets to the given file.")
+                    + padOpt("load-file", "Reads the call graph and points-to sets from the given file.");
 
         if (phaseName.equals("cg.cha"))
             return "Phase " + phaseName + ":\n"
@@ -2157,7 +2251,22 @@ public class Options extends OptionsBase {
                     + "\n\nRecognized options (with default values):\n"
                     + padOpt("enabled (true)", "")
                     + padOpt("verbose (false)", "Print statistics about the resulting call graph")
-                    + padOpt("apponly (false)", "Consider only application classes");
+                    + padOpt("apponly (false)", "Consider only application classes")
+                    + padOpt("parallel (false)", "Scan methods and resolve calls on several threads");
+
+        if (phaseName.equals("cg.rta"))
+            return "Phase " + phaseName + ":\n"
+                    + "\nThis phase uses Rapid Type Analysis to generate a call graph. \nVirtual calls are only resolved to methods of classes that are \ninstantiated in reachable methods, which makes the call graph \nconsiderably smaller than the one of Class Hierarchy Analysis at \na similar cost."
+                    + "\n\nRecognized options (with default values):\n"
+                    + padOpt("enabled (false)", "")
+                    + padOpt("verbose (false)", "Print statistics about the resulting call graph");
+
+        if (phaseName.equals("cg.vta"))
+            return "Phase " + phaseName + ":\n"
+                    + "\nThis phase uses Variable Type Analysis to generate a call graph. \nIt first builds a call graph with Rapid Type Analysis, then \npropagates the instantiated types along assignments, fields, \narrays, parameters and return values, and resolves each virtual \ncall only for the types that reach its receiver. It is more \nprecise than Rapid Type Analysis and much cheaper than Spark."
+                    + "\n\nRecognized options (with default values):\n"
+                    + padOpt("enabled (false)", "")
+                    + padOpt("verbose (false)", "Print statistics about the resulting call graph");
 
         if (phaseName.equals("cg.spark"))
             return "Phase " + phaseName + ":\n"
@@ -2189,6 +2298,7 @@ public class Options extends OptionsBase {
                         + padVal("merge", "Unfinished field reference merging algorithms")
                         + padVal("alias", "Alias-edge based algorithm")
                         + padVal("none", "Disable propagation")
+                        + padVal("parallel", "Worklist-based algorithm using several threads")
                     + padOpt("set-impl", "Select points-to set implementation")
                         + padVal("hash", "Use Java HashSet")
                         + padVal("bit", "Bit vector")
@@ -2197,6 +2307,7 @@ public class Options extends OptionsBase {
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
                         + padVal("double (default)", "Double set representation for incremental propagation")
+                        + padVal("roaring", "Compressed bitmap representation")
                     + padOpt("double-set-old", "Select implementation of points-to set for old part of double set")
                         + padVal("hash", "Use Java HashSet")
                         + padVal("bit", "Bit vector")
@@ -2204,6 +2315,7 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("roaring", "Compressed bitmap representation")
                     + padOpt("double-set-new", "Select implementation of points-to set for new part of double set")
                         + padVal("hash", "Use Java HashSet")
                         + padVal("bit", "Bit vector")
@@ -2211,6 +2323,7 @@ public class Options extends OptionsBase {
                         + padVal("array", "Sorted array representation")
                         + padVal("heintze", "Heintze's shared bit-vector and overflow list representation")
                         + padVal("sharedlist", "Shared list representation")
+                        + padVal("roaring", "Compressed bitmap representation")
                     + padOpt("dump-html (false)", "Dump pointer assignment graph to HTML for debugging")
                     + padOpt("dump-pag (false)", "Dump pointer assignment graph for other solvers")
                     + padOpt("dump-solution (false)", "Dump final solution for comparison with other solvers")
@@ -3064,14 +3177,30 @@ public class Options extends OptionsBase {
                     "reflection-log",
                     "guards",
                     "types-for-invoke",
-                    "resolve-all-abstract-invokes"
+                    "resolve-all-abstract-invokes",
+                    "compact",
+                    "save-file",
+                    "load-file"
             );
 
         if (phaseName.equals("cg.cha"))
             return String.join(" ", 
                     "enabled",
                     "verbose",
-                    "apponly"
+                    "apponly",
+                    "parallel"
+            );
+
+        if (phaseName.equals("cg.rta"))
+            return String.join(" ", 
+                    "enabled",
+                    "verbose"
+            );
+
+        if (phaseName.equals("cg.vta"))
+            return String.join(" ", 
+                    "enabled",
+                    "verbose"
             );
 
         if (phaseName.equals("cg.spark"))
@@ -3776,13 +3905,25 @@ public class Options extends OptionsBase {
                     + "trim-clinit:true "
                     + "guards:ignore "
                     + "types-for-invoke:false "
-                    + "resolve-all-abstract-invokes:false ";
+                    + "resolve-all-abstract-invokes:false "
+                    + "compact:false ";
 
         if (phaseName.equals("cg.cha"))
             return ""
                     + "enabled:true "
                     + "verbose:false "
-                    + "apponly:false ";
+                    + "apponly:false "
+                    + "parallel:false ";
+
+        if (phaseName.equals("cg.rta"))
+            return ""
+                    + "enabled:false "
+                    + "verbose:false ";
+
+        if (phaseName.equals("cg.vta"))
+            return ""
+                    + "enabled:false "
+                    + "verbose:false ";
 
         if (phaseName.equals("cg.spark"))
             return ""
@@ -4278,6 +4419,8 @@ public class Options extends OptionsBase {
                 || phaseName.equals("wspp")
                 || phaseName.equals("cg")
                 || phaseName.equals("cg.cha")
+                || phaseName.equals("cg.rta")
+                || phaseName.equals("cg.vta")
                 || phaseName.equals("cg.spark")
                 || phaseName.equals("cg.paddle")
                 || phaseName.equals("wstp")
@@ -4429,6 +4572,10 @@ public class Options extends OptionsBase {
             G.v().out.println("Warning: Options exist for non-existent phase cg");
         if (!PackManager.v().hasPhase("cg.cha"))
             G.v().out.println("Warning: Options exist for non-existent phase cg.cha");
+        if (!PackManager.v().hasPhase("cg.rta"))
+            G.v().out.println("Warning: Options exist for non-existent phase cg.rta");
+        if (!PackManager.v().hasPhase("cg.vta"))
+            G.v().out.println("Warning: Options exist for non-existent phase cg.vta");
         if (!PackManager.v().hasPhase("cg.spark"))
             G.v().out.println("Warning: Options exist for non-existent phase cg.spark");
         if (!PackManager.v().hasPhase("cg.paddle"))
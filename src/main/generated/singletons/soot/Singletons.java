@@ -118,6 +118,34 @@ public class Singletons {
     	instance_soot_jimple_toolkits_callgraph_CHATransformer = null;
     }
 
+    private soot.jimple.toolkits.callgraph.RTATransformer instance_soot_jimple_toolkits_callgraph_RTATransformer;
+    public soot.jimple.toolkits.callgraph.RTATransformer soot_jimple_toolkits_callgraph_RTATransformer() {
+        if (instance_soot_jimple_toolkits_callgraph_RTATransformer == null) {
+	       	synchronized (this) {
+		        if (instance_soot_jimple_toolkits_callgraph_RTATransformer == null)
+	        		instance_soot_jimple_toolkits_callgraph_RTATransformer = new soot.jimple.toolkits.callgraph.RTATransformer(g);
+	       	}
+       	}
+        return instance_soot_jimple_toolkits_callgraph_RTATransformer;
+    }
+    protected void release_soot_jimple_toolkits_callgraph_RTATransformer() {
+    	instance_soot_jimple_toolkits_callgraph_RTATransformer = null;
+    }
+
+    private soot.jimple.toolkits.callgraph.VTATransformer instance_soot_jimple_toolkits_callgraph_VTATransformer;
+    public soot.jimple.toolkits.callgraph.VTATransformer soot_jimple_toolkits_callgraph_VTATransformer() {
+        if (instance_soot_jimple_toolkits_callgraph_VTATransformer == null) {
+	       	synchronized (this) {
+		        if (instance_soot_jimple_toolkits_callgraph_VTATransformer == null)
+	        		instance_soot_jimple_toolkits_callgraph_VTATransformer = new soot.jimple.toolkits.callgraph.VTATransformer(g);
+	       	}
+       	}
+        return instance_soot_jimple_toolkits_callgraph_VTATransformer;
+    }
+    protected void release_soot_jimple_toolkits_callgraph_VTATransformer() {
+    	instance_soot_jimple_toolkits_callgraph_VTATransformer = null;
+    }
+
     private soot.toolkits.graph.SlowPseudoTopologicalOrderer instance_soot_toolkits_graph_SlowPseudoTopologicalOrderer;
     public soot.toolkits.graph.SlowPseudoTopologicalOrderer soot_toolkits_graph_SlowPseudoTopologicalOrderer() {
         if (instance_soot_toolkits_graph_SlowPseudoTopologicalOrderer == null) {
@@ -1420,6 +1448,20 @@ public class Singletons {
     	instance_soot_Timers = null;
     }
 
+    private soot.PhaseProfiler instance_soot_PhaseProfiler;
+    public soot.PhaseProfiler soot_PhaseProfiler() {
+        if (instance_soot_PhaseProfiler == null) {
+	       	synchronized (this) {
+		        if (instance_soot_PhaseProfiler == null)
+	        		instance_soot_PhaseProfiler = new soot.PhaseProfiler(g);
+	       	}
+       	}
+        return instance_soot_PhaseProfiler;
+    }
+    protected void release_soot_PhaseProfiler() {
+    	instance_soot_PhaseProfiler = null;
+    }
+
     private soot.dava.toolkits.base.AST.TryContentsFinder instance_soot_dava_toolkits_base_AST_TryContentsFinder;
     public soot.dava.toolkits.base.AST.TryContentsFinder soot_dava_toolkits_base_AST_TryContentsFinder() {
         if (instance_soot_dava_toolkits_base_AST_TryContentsFinder == null) {
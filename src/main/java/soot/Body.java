@@ -46,6 +46,7 @@ import soot.tagkit.Tag;
 import soot.util.Chain;
 import soot.util.EscapedWriter;
 import soot.util.HashChain;
+import soot.util.IndexedChain;
 import soot.validation.BodyValidator;
 import soot.validation.CheckEscapingValidator;
 import soot.validation.CheckInitValidator;
@@ -75,13 +76,13 @@ public abstract class Body extends AbstractHost implements Serializable {
   protected transient SootMethod method = null;
 
   /** The chain of locals for this Body. */
-  protected Chain<Local> localChain = new HashChain<Local>();
+  protected Chain<Local> localChain = newChain();
 
   /** The chain of traps for this Body. */
-  protected Chain<Trap> trapChain = new HashChain<Trap>();
+  protected Chain<Trap> trapChain = newChain();
 
   /** The chain of units for this Body. */
-  protected UnitPatchingChain unitChain = new UnitPatchingChain(new HashChain<Unit>());
+  protected UnitPatchingChain unitChain = new UnitPatchingChain(Body.<Unit>newChain());
 
   private static BodyValidator[] validators;
 
@@ -89,6 +90,11 @@ public abstract class Body extends AbstractHost implements Serializable {
   @Override
   abstract public Object clone();
 
+  /** Creates an empty chain of the kind chosen by the <tt>-indexed-chains</tt> option. */
+  private static <E> Chain<E> newChain() {
+    return Options.v().indexed_chains() ? new IndexedChain<E>() : new HashChain<E>();
+  }
+
   /**
    * Returns an array containing some validators in order to validate the JimpleBody
    *
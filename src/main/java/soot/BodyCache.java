@@ -0,0 +1,280 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.jimple.JimpleBody;
+import soot.jimple.parser.JimpleAST;
+import soot.options.Options;
+
+/**
+ * On-disk store of Jimple bodies that survives across runs. A body is stored as a small Jimple file that contains only the
+ * method, under a key derived from a digest of the class file it was translated from, a digest of the class files of the
+ * classes it depends on, the method's subsignature, the options of the jb pack and the global options that affect body
+ * construction. A body is therefore only reused if it would have been built from the same bytecode, against the same
+ * hierarchy, in the same way.
+ *
+ * @see CachingClassProvider
+ */
+public class BodyCache {
+  private static final Logger logger = LoggerFactory.getLogger(BodyCache.class);
+
+  /** Bump whenever the layout of cache entries changes. */
+  private static final String FORMAT_VERSION = "1";
+
+  private final File dir;
+  private volatile String optionsDigest = null;
+  /** Digests of class files by class name, or "" for classes that are not on the class path. */
+  private final ConcurrentMap<String, String> classDigests = new ConcurrentHashMap<String, String>();
+  private volatile boolean reportedWriteFailure = false;
+
+  public BodyCache(File dir) {
+    this.dir = dir;
+  }
+
+  /** Returns true if bodies may be cached under the current options. */
+  public boolean isEnabled() {
+    // The cached Jimple does not carry line number and bytecode offset tags
+    return !Options.v().keep_line_number() && !Options.v().keep_offset();
+  }
+
+  /** Returns the hex encoded SHA-256 digest of the given stream. The stream is closed. */
+  public static String digest(InputStream in) throws IOException {
+    MessageDigest md = newDigest();
+    try (InputStream is = new BufferedInputStream(in)) {
+      byte[] buf = new byte[8192];
+      for (int len; (len = is.read(buf)) != -1;) {
+        md.update(buf, 0, len);
+      }
+    }
+    return toHex(md.digest());
+  }
+
+  /**
+   * Returns the cache key of the given method of a class whose class file has the given digest, and whose dependencies
+   * have the given digest as returned by {@link #dependencyDigest(Collection)}.
+   */
+  public String keyFor(String classDigest, String dependencyDigest, SootMethod m) {
+    MessageDigest md = newDigest();
+    md.update(FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+    md.update(classDigest.getBytes(StandardCharsets.UTF_8));
+    md.update(dependencyDigest.getBytes(StandardCharsets.UTF_8));
+    md.update(getOptionsDigest().getBytes(StandardCharsets.UTF_8));
+    md.update(m.getSubSignature().getBytes(StandardCharsets.UTF_8));
+    return toHex(md.digest());
+  }
+
+  /**
+   * Returns a digest of the class files of the given classes and of their superclasses and interfaces, as far as the Scene
+   * knows them. Jimple bodies depend on these through the types the type assigner picks, so a body built against one
+   * version of them is not reused with another. A class that is not on the class path counts as such.
+   */
+  public String dependencyDigest(Collection<String> classNames) {
+    Set<String> closure = new TreeSet<String>();
+    Deque<String> worklist = new ArrayDeque<String>(classNames);
+    Scene scene = Scene.v();
+    while (!worklist.isEmpty()) {
+      String name = worklist.pop();
+      if (!closure.add(name)) {
+        continue;
+      }
+      SootClass sc = scene.getSootClassUnsafe(name, false);
+      if (sc == null || sc.resolvingLevel() < SootClass.HIERARCHY) {
+        continue;
+      }
+      if (sc.hasSuperclass()) {
+        worklist.push(sc.getSuperclass().getName());
+      }
+      for (SootClass i : sc.getInterfaces()) {
+        worklist.push(i.getName());
+      }
+    }
+    MessageDigest md = newDigest();
+    for (String name : closure) {
+      md.update(name.getBytes(StandardCharsets.UTF_8));
+      md.update((byte) ':');
+      md.update(classDigest(name).getBytes(StandardCharsets.UTF_8));
+      md.update((byte) '\n');
+    }
+    return toHex(md.digest());
+  }
+
+  private String classDigest(String className) {
+    String ret = classDigests.get(className);
+    if (ret == null) {
+      ret = "";
+      FoundFile file = SourceLocator.v().lookupInClassPath(className.replace('.', '/') + ".class");
+      if (file != null) {
+        try {
+          ret = digest(file.inputStream());
+        } catch (IOException e) {
+          ret = "";
+        } finally {
+          file.close();
+        }
+      }
+      classDigests.putIfAbsent(className, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Loads the body stored under the given key for m, or returns null if there is none or it cannot be read.
+   */
+  public Body load(SootMethod m, String key) {
+    File f = fileFor(key);
+    if (!f.isFile()) {
+      return null;
+    }
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(f.toPath()))) {
+      JimpleBody body = (JimpleBody) new JimpleAST(in).getBody(m);
+      if (body != null && Options.v().verbose()) {
+        logger.debug("[" + m.getName() + "] Retrieved body from cache " + f);
+      }
+      return body;
+    } catch (Exception e) {
+      logger.debug("Ignoring unreadable body cache entry " + f + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /** Stores the given body under the given key. Failures are logged and otherwise ignored. */
+  public void store(String key, Body b) {
+    File f = fileFor(key);
+    try {
+      File parent = f.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+        throw new IOException("Could not create directory " + parent);
+      }
+      // Write to a temporary file first so that concurrent runs never see a partial entry
+      File tmp = File.createTempFile(key, ".tmp", parent);
+      try (PrintWriter out
+          = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))) {
+        out.println("class " + Scene.v().quotedNameOf(b.getMethod().getDeclaringClass().getName()));
+        out.println("{");
+        Printer.v().printTo(b, out);
+        out.println("}");
+      }
+      Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      if (!reportedWriteFailure) {
+        reportedWriteFailure = true;
+        logger.warn("Could not write to body cache " + dir + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private File fileFor(String key) {
+    return new File(new File(dir, key.substring(0, 2)), key.substring(2) + ".jimple");
+  }
+
+  private String getOptionsDigest() {
+    String result = optionsDigest;
+    if (result == null) {
+      optionsDigest = result = optionsDigest();
+    }
+    return result;
+  }
+
+  /**
+   * Returns a digest of the options of the jb pack and of the global options that affect body construction, so that
+   * bodies built from the same bytecode under equal digests are the same.
+   */
+  public static String optionsDigest() {
+    Map<String, String> opts = new TreeMap<String, String>();
+    Pack jb = PackManager.v().getPack("jb");
+    putPhaseOptions(opts, jb.getPhaseName());
+    for (Transform t : jb) {
+      putPhaseOptions(opts, t.getPhaseName());
+    }
+    putGlobalOptions(opts);
+    MessageDigest md = newDigest();
+    md.update(opts.toString().getBytes(StandardCharsets.UTF_8));
+    return toHex(md.digest());
+  }
+
+  /**
+   * Adds the global options that change the output of the bytecode front-end or of the jb transformers. The throw analysis
+   * options, for instance, decide which exceptional edges jb.uce and jb.lns see.
+   */
+  private static void putGlobalOptions(Map<String, String> opts) {
+    Options o = Options.v();
+    opts.put("coffi", String.valueOf(o.coffi()));
+    opts.put("throw-analysis", String.valueOf(o.throw_analysis()));
+    opts.put("check-init-throw-analysis", String.valueOf(o.check_init_throw_analysis()));
+    opts.put("omit-excepting-unit-edges", String.valueOf(o.omit_excepting_unit_edges()));
+    opts.put("wrong-staticness", String.valueOf(o.wrong_staticness()));
+    opts.put("field-type-mismatches", String.valueOf(o.field_type_mismatches()));
+    opts.put("allow-phantom-refs", String.valueOf(o.allow_phantom_refs()));
+    opts.put("allow-phantom-elms", String.valueOf(o.allow_phantom_elms()));
+    opts.put("permissive-resolving", String.valueOf(o.permissive_resolving()));
+    opts.put("ignore-resolution-errors", String.valueOf(o.ignore_resolution_errors()));
+    opts.put("keep-line-number", String.valueOf(o.keep_line_number()));
+    opts.put("keep-offset", String.valueOf(o.keep_offset()));
+  }
+
+  private static void putPhaseOptions(Map<String, String> opts, String phaseName) {
+    for (Map.Entry<String, String> e : PhaseOptions.v().getPhaseOptions(phaseName).entrySet()) {
+      opts.put(phaseName + ':' + e.getKey(), e.getValue());
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+}
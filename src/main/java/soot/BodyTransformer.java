@@ -48,7 +48,16 @@ public abstract class BodyTransformer extends Transformer {
       return;
     }
 
-    internalTransform(b, phaseName, options);
+    if (phaseName.isEmpty()) {
+      internalTransform(b, phaseName, options);
+      return;
+    }
+    PhaseProfiler.Measurement m = PhaseProfiler.v().startBody(phaseName);
+    try {
+      internalTransform(b, phaseName, options);
+    } finally {
+      m.end();
+    }
   }
 
   public final void transform(Body b, String phaseName) {
@@ -0,0 +1,70 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * A method source that first looks for the body in a {@link BodyCache} and only falls back to the wrapped method source if
+ * the cache has no entry. Bodies built by the wrapped source are added to the cache.
+ */
+public class CachedMethodSource implements MethodSource {
+  private final MethodSource source;
+  private final BodyCache cache;
+  private final CachingClassProvider.ClassFileDigest classDigest;
+  private final CachingClassProvider.DependencyDigest dependencyDigest;
+
+  CachedMethodSource(MethodSource source, BodyCache cache, CachingClassProvider.ClassFileDigest classDigest,
+      CachingClassProvider.DependencyDigest dependencyDigest) {
+    this.source = source;
+    this.cache = cache;
+    this.classDigest = classDigest;
+    this.dependencyDigest = dependencyDigest;
+  }
+
+  @Override
+  public Body getBody(SootMethod m, String phaseName) {
+    String digest = cache.isEnabled() ? classDigest.get() : null;
+    if (digest == null) {
+      return source.getBody(m, phaseName);
+    }
+
+    String key = cache.keyFor(digest, dependencyDigest.get(), m);
+    Body b = cache.load(m, key);
+    if (b == null) {
+      b = source.getBody(m, phaseName);
+      if (b != null) {
+        cache.store(key, b);
+      }
+    }
+    return b;
+  }
+
+  @Override
+  public int getSizeEstimate() {
+    return source.getSizeEstimate();
+  }
+
+  /** Returns the method source that builds bodies which are not in the cache. */
+  public MethodSource getSource() {
+    return source;
+  }
+}
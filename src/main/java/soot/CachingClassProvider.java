@@ -0,0 +1,152 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import soot.javaToJimple.IInitialResolver.Dependencies;
+
+/**
+ * A class provider for class files that serves method bodies from a {@link BodyCache}. It delegates finding and resolving
+ * classes to another provider and wraps the method sources of the resolved classes into {@link CachedMethodSource}s.
+ */
+public class CachingClassProvider implements ClassProvider {
+  protected final ClassProvider provider;
+  protected final BodyCache cache;
+
+  public CachingClassProvider(ClassProvider provider, BodyCache cache) {
+    this.provider = provider;
+    this.cache = cache;
+  }
+
+  @Override
+  public ClassSource find(String className) {
+    ClassSource source = provider.find(className);
+    return source == null ? null : new CachingClassSource(className, source);
+  }
+
+  protected class CachingClassSource extends ClassSource {
+    private final ClassSource source;
+
+    CachingClassSource(String className, ClassSource source) {
+      super(className);
+      this.source = source;
+    }
+
+    @Override
+    public Dependencies resolve(SootClass sc) {
+      Dependencies deps = source.resolve(sc);
+      ClassFileDigest digest = new ClassFileDigest(className.replace('.', '/') + ".class");
+      DependencyDigest dependencyDigest = new DependencyDigest(cache, className, deps);
+      for (SootMethod m : sc.getMethods()) {
+        MethodSource ms = m.getSource();
+        if (ms != null) {
+          m.setSource(new CachedMethodSource(ms, cache, digest, dependencyDigest));
+        }
+      }
+      return deps;
+    }
+
+    @Override
+    public void prepare() {
+      source.prepare();
+    }
+
+    @Override
+    public void close() {
+      source.close();
+    }
+  }
+
+  /**
+   * Digest of a class file, computed when the first body of the class is requested so that classes whose bodies are never
+   * needed do not pay for reading their class file twice.
+   */
+  static class ClassFileDigest {
+    private final String fileName;
+    private String digest;
+
+    ClassFileDigest(String fileName) {
+      this.fileName = fileName;
+    }
+
+    /** Returns the digest of the class file, or null if the class file cannot be read anymore. */
+    synchronized String get() {
+      if (digest == null) {
+        FoundFile file = SourceLocator.v().lookupInClassPath(fileName);
+        if (file == null) {
+          return null;
+        }
+        try {
+          digest = BodyCache.digest(file.inputStream());
+        } catch (IOException e) {
+          return null;
+        } finally {
+          file.close();
+        }
+      }
+      return digest;
+    }
+  }
+
+  /**
+   * Digest of the class files of the classes a class depends on, computed when the first body of the class is requested,
+   * once the Scene knows their hierarchy.
+   */
+  static class DependencyDigest {
+    private final BodyCache cache;
+    private Set<String> classNames;
+    private String digest;
+
+    DependencyDigest(BodyCache cache, String className, Dependencies deps) {
+      this.cache = cache;
+      this.classNames = new HashSet<String>();
+      classNames.add(className);
+      if (deps != null) {
+        addClassNames(deps.typesToHierarchy);
+        addClassNames(deps.typesToSignature);
+      }
+    }
+
+    private void addClassNames(Set<Type> types) {
+      for (Type t : types) {
+        if (t instanceof ArrayType) {
+          t = ((ArrayType) t).baseType;
+        }
+        if (t instanceof RefType) {
+          classNames.add(((RefType) t).getClassName());
+        }
+      }
+    }
+
+    synchronized String get() {
+      if (digest == null) {
+        digest = cache.dependencyDigest(classNames);
+        classNames = null;
+      }
+      return digest;
+    }
+  }
+}
@@ -40,6 +40,15 @@ public abstract class ClassSource {
    */
   public abstract Dependencies resolve(SootClass sc);
 
+  /**
+   * Reads and decodes the class ahead of {@link #resolve(SootClass)}, without touching the Scene. The parallel resolver calls
+   * this on worker threads for the classes waiting on its worklist and then resolves them one at a time, in the order of
+   * the sequential resolver, so that classes, methods and their numbers end up the same. The default implementation does
+   * nothing, which leaves all the work to {@link #resolve(SootClass)}.
+   */
+  public void prepare() {
+  }
+
   protected String className;
 
   public void close() {
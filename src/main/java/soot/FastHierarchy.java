@@ -23,6 +23,7 @@ package soot;
  */
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -81,6 +82,31 @@ public class FastHierarchy {
    */
   protected Map<SootClass, Interval> classToInterval = new HashMap<SootClass, Interval>();
 
+  /**
+   * For each class and interface, indexed by its number, a bit set of the numbers in {@link #interfaceNumbers} of all
+   * interfaces it can be stored in, including itself if it is an interface. Classes with the same interfaces share one
+   * array, and trailing zero words are trimmed. An entry is null if the class is not part of this hierarchy.
+   */
+  protected long[][] interfaceRows = new long[0][];
+
+  /**
+   * For each interface, indexed by its class number, the position of its bit in {@link #interfaceRows}, or -1.
+   */
+  protected int[] interfaceNumbers = new int[0];
+
+  protected int interfaceCount = 0;
+
+  /** Distinct rows of {@link #interfaceRows}, so that classes with the same interfaces share one array. */
+  private final Map<Row, long[]> rowPool = new HashMap<Row, long[]>();
+
+  /**
+   * Number of free positions left at the end of each class interval, into which classes added by
+   * {@link #addClass(SootClass)} are numbered without renumbering the whole hierarchy.
+   */
+  protected static final int INTERVAL_GAP = 2;
+
+  private static final long[] EMPTY_ROW = new long[0];
+
   protected Scene sc;
 
   protected final RefType rtObject;
@@ -90,6 +116,8 @@ public class FastHierarchy {
   protected class Interval {
     int lower;
     int upper;
+    /** The next position in this interval that no subclass uses, if it is less than upper. */
+    int free;
 
     public Interval() {
     }
@@ -97,6 +125,7 @@ public class FastHierarchy {
     public Interval(int lower, int upper) {
       this.lower = lower;
       this.upper = upper;
+      this.free = upper;
     }
 
     public boolean isSubrange(Interval potentialSubrange) {
@@ -127,6 +156,8 @@ public class FastHierarchy {
         start = dfsVisit(start, sc);
       }
     }
+    r.free = start;
+    start += INTERVAL_GAP;
     r.upper = start++;
     if (c.isInterface()) {
       throw new RuntimeException("Attempt to dfs visit interface " + c);
@@ -149,6 +180,14 @@ public class FastHierarchy {
     buildInverseMaps();
 
     /* Now do a dfs traversal to get the Interval numbers. */
+    buildIntervals();
+
+    /* Finally compute the interfaces of every class. */
+    buildInterfaceRows();
+  }
+
+  private void buildIntervals() {
+    classToInterval.clear();
     int r = dfsVisit(0, sc.getSootClass("java.lang.Object"));
     /*
      * also have to traverse for all phantom classes because they also can be roots of the type hierarchy
@@ -161,6 +200,209 @@ public class FastHierarchy {
     }
   }
 
+  /**
+   * Numbers all interfaces and computes {@link #interfaceRows}, so that whether a class can be stored in an interface
+   * is answered by testing a single bit.
+   */
+  protected void buildInterfaceRows() {
+    int maxNumber = 0;
+    for (SootClass cl : sc.getClasses().getElementsUnsorted()) {
+      maxNumber = Math.max(maxNumber, cl.getNumber());
+    }
+    interfaceRows = new long[maxNumber + 1][];
+    interfaceNumbers = new int[maxNumber + 1];
+    Arrays.fill(interfaceNumbers, -1);
+    interfaceCount = 0;
+    rowPool.clear();
+    for (SootClass cl : sc.getClasses().getElementsUnsorted()) {
+      if (cl.resolvingLevel() >= SootClass.HIERARCHY && cl.isInterface()) {
+        numberInterface(cl);
+      }
+    }
+    for (SootClass cl : sc.getClasses().getElementsUnsorted()) {
+      if (cl.resolvingLevel() >= SootClass.HIERARCHY) {
+        computeInterfaceRow(cl);
+      }
+    }
+  }
+
+  private void ensureCapacity(int number) {
+    if (number >= interfaceNumbers.length) {
+      int size = Math.max(number + 1, interfaceNumbers.length * 2);
+      int old = interfaceNumbers.length;
+      interfaceNumbers = Arrays.copyOf(interfaceNumbers, size);
+      Arrays.fill(interfaceNumbers, old, size, -1);
+      interfaceRows = Arrays.copyOf(interfaceRows, size);
+    }
+  }
+
+  private int numberInterface(SootClass c) {
+    int n = c.getNumber();
+    if (n == 0) {
+      // not in the scene
+      return -1;
+    }
+    ensureCapacity(n);
+    if (interfaceNumbers[n] < 0) {
+      interfaceNumbers[n] = interfaceCount++;
+    }
+    return interfaceNumbers[n];
+  }
+
+  private long[] computeInterfaceRow(SootClass c) {
+    int n = c.getNumber();
+    if (n == 0 || c.resolvingLevel() < SootClass.HIERARCHY) {
+      // not in the scene, or its supertypes are not known; queries about it fall back to walking the hierarchy
+      return EMPTY_ROW;
+    }
+    ensureCapacity(n);
+    long[] row = interfaceRows[n];
+    if (row != null) {
+      return row;
+    }
+    // guards against cycles in broken hierarchies
+    interfaceRows[n] = EMPTY_ROW;
+
+    long[] bits = EMPTY_ROW;
+    if (c.isInterface()) {
+      bits = setBit(bits, numberInterface(c));
+    } else {
+      SootClass superClass = c.getSuperclassUnsafe();
+      if (superClass != null) {
+        bits = or(bits, computeInterfaceRow(superClass));
+      }
+    }
+    for (SootClass i : c.getInterfaces()) {
+      bits = setBit(or(bits, computeInterfaceRow(i)), numberInterface(i));
+    }
+    row = internRow(bits);
+    interfaceRows[n] = row;
+    return row;
+  }
+
+  private static long[] setBit(long[] bits, int bit) {
+    if (bit < 0) {
+      return bits;
+    }
+    int word = bit >>> 6;
+    long[] ret = Arrays.copyOf(bits, Math.max(bits.length, word + 1));
+    ret[word] |= 1L << bit;
+    return ret;
+  }
+
+  private static long[] or(long[] a, long[] b) {
+    if (b.length == 0) {
+      return a;
+    }
+    long[] ret = Arrays.copyOf(a, Math.max(a.length, b.length));
+    for (int i = 0; i < b.length; i++) {
+      ret[i] |= b[i];
+    }
+    return ret;
+  }
+
+  private long[] internRow(long[] bits) {
+    int length = bits.length;
+    while (length > 0 && bits[length - 1] == 0) {
+      length--;
+    }
+    if (length == 0) {
+      return EMPTY_ROW;
+    }
+    Row key = new Row(length == bits.length ? bits : Arrays.copyOf(bits, length));
+    long[] ret = rowPool.get(key);
+    if (ret == null) {
+      rowPool.put(key, key.bits);
+      ret = key.bits;
+    }
+    return ret;
+  }
+
+  /** A row of {@link #interfaceRows} compared by content. */
+  private static final class Row {
+    final long[] bits;
+    final int hash;
+
+    Row(long[] bits) {
+      this.bits = bits;
+      this.hash = Arrays.hashCode(bits);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Row && Arrays.equals(bits, ((Row) o).bits);
+    }
+  }
+
+  /**
+   * Adds a class or interface that was added to the scene after this hierarchy was built. Its superclass and interfaces
+   * must already be set and be part of this hierarchy. A class with no known subclasses is numbered into a free
+   * position of the interval of its superclass if there is one, and all intervals are only recomputed otherwise. The
+   * caches of implementers and subinterfaces are cleared.
+   *
+   * This method must not be called concurrently with queries on this hierarchy.
+   *
+   * @see Scene#addClassToHierarchy(SootClass)
+   */
+  public synchronized void addClass(SootClass c) {
+    c.checkLevel(SootClass.HIERARCHY);
+    SootClass superClass = c.isInterface() ? null : c.getSuperclassUnsafe();
+    if (superClass != null) {
+      classToSubclasses.put(superClass, c);
+    }
+    for (final SootClass supercl : c.getInterfaces()) {
+      if (c.isInterface()) {
+        interfaceToSubinterfaces.put(supercl, c);
+      } else {
+        interfaceToImplementers.put(supercl, c);
+      }
+    }
+    interfaceToAllSubinterfaces.clear();
+    interfaceToAllImplementers.clear();
+
+    if (!c.isInterface()) {
+      Interval parent = superClass == null ? null : classToInterval.get(superClass);
+      if (parent != null && parent.free < parent.upper && classToSubclasses.get(c).isEmpty()) {
+        classToInterval.put(c, new Interval(parent.free, parent.free));
+        parent.free++;
+      } else {
+        buildIntervals();
+      }
+    }
+
+    int n = c.getNumber();
+    ensureCapacity(n);
+    if (interfaceRows[n] == null) {
+      computeInterfaceRow(c);
+    } else {
+      // classes that were seen before, e.g. as interfaces of others, may have a stale row
+      buildInterfaceRows();
+    }
+  }
+
+  /**
+   * Returns whether the given class or interface can be stored in the given interface, or null if the rows of this
+   * hierarchy do not know one of them.
+   */
+  private Boolean implementsInterface(SootClass child, SootClass parent) {
+    int c = child.getNumber();
+    int p = parent.getNumber();
+    long[][] rows = interfaceRows;
+    int[] numbers = interfaceNumbers;
+    if (c == 0 || p == 0 || c >= rows.length || p >= numbers.length || rows[c] == null || numbers[p] < 0) {
+      return null;
+    }
+    long[] row = rows[c];
+    int bit = numbers[p];
+    int word = bit >>> 6;
+    return word < row.length && (row[word] & (1L << bit)) != 0;
+  }
+
   protected void buildInverseMaps() {
     for (SootClass cl : sc.getClasses().getElementsUnsorted()) {
       if (cl.resolvingLevel() < SootClass.HIERARCHY) {
@@ -348,12 +590,15 @@ public class FastHierarchy {
     Interval childInterval = classToInterval.get(child);
     if (parentInterval != null && childInterval != null) {
       return parentInterval.isSubrange(childInterval);
+    } else if (childInterval == null && parentInterval != null) { // child is interface, parent is not
+      return parent == rtObject.getSootClass();
+    }
+    // parent is interface
+    Boolean implementsInterface = implementsInterface(child, parent);
+    if (implementsInterface != null) {
+      return implementsInterface;
     } else if (childInterval == null) { // child is interface
-      if (parentInterval != null) { // parent is not interface
-        return parent == rtObject.getSootClass();
-      } else {
-        return getAllSubinterfaces(parent).contains(child);
-      }
+      return getAllSubinterfaces(parent).contains(child);
     } else {
       final Set<SootClass> impl = getAllImplementersOfInterface(parent);
       if (impl.size() > 1000) {
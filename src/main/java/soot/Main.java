@@ -27,6 +27,7 @@ import static java.net.URLEncoder.encode;
 import com.google.common.base.Joiner;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -276,6 +277,10 @@ public class Main {
       // Print out time stats.
       if (Options.v().time()) {
         Timers.v().printProfilingInformation();
+        PhaseProfiler.v().printProfilingInformation();
+      }
+      if (!Options.v().phase_profile().isEmpty()) {
+        PhaseProfiler.v().writeReport(new File(Options.v().phase_profile()));
       }
 
     } catch (CompilationDeathException e) {
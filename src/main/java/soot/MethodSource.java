@@ -26,4 +26,12 @@ package soot;
 public interface MethodSource {
   /** Returns a filled-out body for the given SootMethod. */
   public Body getBody(SootMethod m, String phaseName);
+
+  /**
+   * Returns an estimate of the size of the bodies this source produces, such as the number of bytecode instructions, or
+   * -1 if the size is unknown. The estimate is used to schedule the most expensive methods first.
+   */
+  default int getSizeEstimate() {
+    return -1;
+  }
 }
@@ -595,7 +595,10 @@ public class ModuleScene extends Scene // extends original Scene
     // Remove/add all classes from packageInclusionMask as per -i option
     Chain<SootClass> processedClasses = new HashChain<>();
     while (true) {
-      Chain<SootClass> unprocessedClasses = new HashChain<>(getClasses());
+      Chain<SootClass> unprocessedClasses = new HashChain<>();
+      for (Iterator<SootClass> clIt = getClasses().snapshotIterator(); clIt.hasNext();) {
+        unprocessedClasses.add(clIt.next());
+      }
       unprocessedClasses.removeAll(processedClasses);
       if (unprocessedClasses.isEmpty()) {
         break;
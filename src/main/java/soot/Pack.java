@@ -114,7 +114,12 @@ public abstract class Pack implements HasPhaseOptions, Iterable<Transform> {
     if (!PhaseOptions.getBoolean(options, "enabled")) {
       return;
     }
-    internalApply();
+    PhaseProfiler.Measurement m = PhaseProfiler.v().start(getPhaseName());
+    try {
+      internalApply();
+    } finally {
+      m.end();
+    }
   }
 
   public final void apply(Body b) {
@@ -122,7 +127,12 @@ public abstract class Pack implements HasPhaseOptions, Iterable<Transform> {
     if (!PhaseOptions.getBoolean(options, "enabled")) {
       return;
     }
-    internalApply(b);
+    PhaseProfiler.Measurement m = PhaseProfiler.v().startBody(getPhaseName());
+    try {
+      internalApply(b);
+    } finally {
+      m.end();
+    }
   }
 
   public String getDeclaredOptions() {
@@ -40,6 +40,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.zip.GZIPOutputStream;
@@ -95,7 +96,9 @@ import soot.jimple.toolkits.base.Aggregator;
 import soot.jimple.toolkits.base.RenameDuplicatedClasses;
 import soot.jimple.toolkits.callgraph.CHATransformer;
 import soot.jimple.toolkits.callgraph.CallGraphPack;
+import soot.jimple.toolkits.callgraph.RTATransformer;
 import soot.jimple.toolkits.callgraph.UnreachableMethodTransformer;
+import soot.jimple.toolkits.callgraph.VTATransformer;
 import soot.jimple.toolkits.invoke.StaticInliner;
 import soot.jimple.toolkits.invoke.StaticMethodBinder;
 import soot.jimple.toolkits.pointer.CastCheckEliminatorDumper;
@@ -126,6 +129,7 @@ import soot.shimple.toolkits.scalar.SConstantPropagatorAndFolder;
 import soot.sootify.TemplatePrinter;
 import soot.tagkit.InnerClassTagAggregator;
 import soot.tagkit.LineNumberTagAggregator;
+import soot.tagkit.Tag;
 import soot.toDex.DexPrinter;
 import soot.toolkits.exceptions.DuplicateCatchAllTrapRemover;
 import soot.toolkits.exceptions.TrapTightener;
@@ -224,6 +228,8 @@ public class PackManager {
     addPack(p = new CallGraphPack("cg"));
     {
       p.add(new Transform("cg.cha", CHATransformer.v()));
+      p.add(new Transform("cg.rta", RTATransformer.v()));
+      p.add(new Transform("cg.vta", VTATransformer.v()));
       p.add(new Transform("cg.spark", SparkTransformer.v()));
       p.add(new Transform("cg.paddle", PaddleHook.v()));
     }
@@ -494,7 +500,12 @@ public class PackManager {
     if (Options.v().whole_program() || Options.v().whole_shimple()) {
       runWholeProgramPacks();
     }
-    retrieveAllBodies();
+    PhaseProfiler.Measurement m = PhaseProfiler.v().start("retrieve-bodies");
+    try {
+      retrieveAllBodies();
+    } finally {
+      m.end();
+    }
 
     // Create tags from all values we only have in code assignments now
     for (SootClass sc : Scene.v().getApplicationClasses()) {
@@ -521,7 +532,12 @@ public class PackManager {
         logger.debug("Running in interactive mode.");
       }
     }
-    runBodyPacks();
+    m = PhaseProfiler.v().start("body-packs");
+    try {
+      runBodyPacks();
+    } finally {
+      m.end();
+    }
     handleInnerClasses();
   }
 
@@ -555,6 +571,15 @@ public class PackManager {
   }
 
   public void writeOutput() {
+    PhaseProfiler.Measurement m = PhaseProfiler.v().start("output");
+    try {
+      writeOutputInternal();
+    } finally {
+      m.end();
+    }
+  }
+
+  private void writeOutputInternal() {
     setupJAR();
     if (Options.v().verbose()) {
       PhaseDumper.v().dumpBefore("output");
@@ -651,13 +676,30 @@ public class PackManager {
   }
 
   private void runBodyPacks(final Iterator<SootClass> classes) {
-    int threadNum = Runtime.getRuntime().availableProcessors();
+    int threadNum = Scene.v().getNumThreads();
     CountingThreadPoolExecutor executor
         = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
+    // The idle threads take the next task from the shared queue, so handing out the most expensive work first keeps a
+    // few large classes or methods from running on their own at the end.
+    List<CostedTask> tasks = new ArrayList<CostedTask>();
+    boolean perMethod = Options.v().parallel_methods() && Options.v().output_format() != Options.output_format_dava
+        && !classLevelPhaseEnabled();
     while (classes.hasNext()) {
       final SootClass c = classes.next();
-      executor.execute(() -> runBodyPacks(c));
+      if (perMethod) {
+        addMethodTasks(c, tasks);
+      } else {
+        long cost = 0;
+        for (SootMethod m : c.getMethods()) {
+          cost += bodyPackCost(m);
+        }
+        tasks.add(new CostedTask(cost, () -> runBodyPacks(c)));
+      }
+    }
+    Collections.sort(tasks);
+    for (CostedTask task : tasks) {
+      executor.execute(task.task);
     }
 
     // Wait till all packs have been executed
@@ -665,12 +707,17 @@ public class PackManager {
       executor.awaitCompletion();
       executor.shutdown();
     } catch (InterruptedException e) {
-      // Something went horribly wrong
-      throw new RuntimeException("Could not wait for pack threads to " + "finish: " + e.getMessage(), e);
+      // A failing task interrupts the waiting thread; that failure is reported below
+      if (executor.getException() == null) {
+        // Something went horribly wrong
+        throw new RuntimeException("Could not wait for pack threads to " + "finish: " + e.getMessage(), e);
+      }
     }
 
     // If something went wrong, we tell the world
     if (executor.getException() != null) {
+      // The executor may interrupt the waiting thread more than once for a failing task
+      Thread.interrupted();
       if (executor.getException() instanceof RuntimeException) {
         throw (RuntimeException) executor.getException();
       } else {
@@ -689,7 +736,7 @@ public class PackManager {
     // concurrently. Otherwise, we need to synchronize for not destroying
     // the shared output stream.
     int threadNum = Options.v().output_format() == Options.output_format_class && jarFile == null
-        ? Runtime.getRuntime().availableProcessors()
+        ? Scene.v().getNumThreads()
         : 1;
     CountingThreadPoolExecutor executor
         = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
@@ -892,63 +939,191 @@ public class PackManager {
     }
   }
 
-  @SuppressWarnings("fallthrough")
-  private void runBodyPacks(SootClass c) {
-    final int format = Options.v().output_format();
-    if (format == Options.output_format_dava) {
-      logger.debug("Decompiling {}...", c.getName());
+  /** A task for the body pack threads, ordered so that the most expensive tasks come first. */
+  private static final class CostedTask implements Comparable<CostedTask> {
+    final long cost;
+    final Runnable task;
 
-      // January 13th, 2006 SootMethodAddedByDava is set to false for
-      // SuperFirstStmtHandler
-      G.v().SootMethodAddedByDava = false;
-    } else {
-      logger.debug("Transforming {}...", c.getName());
+    CostedTask(long cost, Runnable task) {
+      this.cost = cost;
+      this.task = task;
     }
 
-    boolean produceBaf = false, produceGrimp = false, produceDava = false, produceJimple = true, produceShimple = false;
+    @Override
+    public int compareTo(CostedTask o) {
+      return Long.compare(o.cost, cost);
+    }
+  }
 
-    switch (format) {
-      case Options.output_format_none:
-      case Options.output_format_xml:
-      case Options.output_format_jimple:
-      case Options.output_format_jimp:
-      case Options.output_format_template:
-      case Options.output_format_dex:
-      case Options.output_format_force_dex:
-        break;
-      case Options.output_format_shimp:
-      case Options.output_format_shimple:
+  /**
+   * Estimates the work of running the body packs on the given method from the size of its body, or of the bytecode it
+   * is built from if it has not been loaded yet.
+   */
+  private static long bodyPackCost(SootMethod m) {
+    if (!m.isConcrete()) {
+      return 0;
+    }
+    if (m.hasActiveBody()) {
+      return 1 + m.getActiveBody().getUnits().size();
+    }
+    MethodSource source = m.getSource();
+    return 1 + (source == null ? 0 : Math.max(source.getSizeEstimate(), 0));
+  }
+
+  /**
+   * Body pack phases whose transformers change the class of the body they work on, so that the methods of one class
+   * cannot run concurrently while they are enabled.
+   */
+  private static final String[] CLASS_LEVEL_PHASES = { "jap.npcolorer", "jap.parity" };
+
+  /** Returns whether a phase that changes the classes is enabled, logging a warning if -parallel-methods is given. */
+  private static boolean classLevelPhaseEnabled() {
+    for (String phase : CLASS_LEVEL_PHASES) {
+      if (PhaseOptions.getBoolean(PhaseOptions.v().getPhaseOptions(phase), "enabled")) {
+        logger.warn("Phase " + phase + " changes the classes it works on; running the methods of a class one after "
+            + "another despite -parallel-methods");
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds one task per concrete method of the given class. Each method collects its tags on its own; the method that
+   * finishes last adds them up in method order, as running the class on one thread would have, and finishes the class.
+   *
+   * <p>
+   * The methods of the class run concurrently, so the transformers of the body packs must not change the class itself:
+   * its fields, methods, modifiers or tags. The method that finishes last checks this and fails if the class changed.
+   * Only phantom methods may be added, as happens when a method reference is resolved with phantom refs enabled.
+   * </p>
+   */
+  private void addMethodTasks(final SootClass c, List<CostedTask> tasks) {
+    logger.debug("Transforming {}...", c.getName());
+    final BodyPackOutput output = new BodyPackOutput();
+    final ClassShape shape = new ClassShape(c);
+    List<SootMethod> methods = new ArrayList<SootMethod>();
+    for (SootMethod m : c.getMethods()) {
+      if (m.isConcrete()) {
+        methods.add(m);
+      }
+    }
+    if (methods.isEmpty()) {
+      tasks.add(new CostedTask(0, () -> finishBodyPacks(c, output)));
+      return;
+    }
+    final BodyPackOutput[] methodOutputs = new BodyPackOutput[methods.size()];
+    final AtomicInteger remaining = new AtomicInteger(methods.size());
+    for (int i = 0; i < methodOutputs.length; i++) {
+      final SootMethod m = methods.get(i);
+      final BodyPackOutput methodOutput = methodOutputs[i] = new BodyPackOutput();
+      tasks.add(new CostedTask(bodyPackCost(m), () -> {
+        runBodyPacks(m, methodOutput);
+        if (remaining.decrementAndGet() == 0) {
+          shape.check();
+          for (BodyPackOutput o : methodOutputs) {
+            output.tc.addAll(o.tc);
+          }
+          finishBodyPacks(c, output);
+        }
+      }));
+    }
+  }
+
+  /** The members, modifiers and tags of a class, to check that the body packs left the class alone. */
+  private static final class ClassShape {
+    final SootClass c;
+    final List<SootMethod> methods;
+    final List<SootField> fields;
+    final List<Tag> tags;
+    final int modifiers;
+
+    ClassShape(SootClass c) {
+      this.c = c;
+      this.methods = new ArrayList<SootMethod>(c.getMethods());
+      this.fields = new ArrayList<SootField>(c.getFields());
+      this.tags = new ArrayList<Tag>(c.getTags());
+      this.modifiers = c.getModifiers();
+    }
+
+    void check() {
+      boolean same = fields.equals(new ArrayList<SootField>(c.getFields())) && tags.equals(c.getTags())
+          && modifiers == c.getModifiers() && c.getMethods().containsAll(methods);
+      if (same) {
+        for (SootMethod m : c.getMethods()) {
+          if (!m.isPhantom() && !methods.contains(m)) {
+            same = false;
+            break;
+          }
+        }
+      }
+      if (!same) {
+        throw new RuntimeException("Class " + c.getName() + " was changed while its methods were transformed in "
+            + "parallel; the body packs cannot be run with -parallel-methods");
+      }
+    }
+  }
+
+  /** The kinds of bodies the body packs produce for the output format, and the tags collected for one class. */
+  private static final class BodyPackOutput {
+    boolean produceBaf = false, produceGrimp = false, produceDava = false, produceJimple = true, produceShimple = false;
+    final boolean wholeShimple = Options.v().whole_shimple();
+    final soot.xml.TagCollector tc = new soot.xml.TagCollector();
+
+    @SuppressWarnings("fallthrough")
+    BodyPackOutput() {
+      switch (Options.v().output_format()) {
+        case Options.output_format_none:
+        case Options.output_format_xml:
+        case Options.output_format_jimple:
+        case Options.output_format_jimp:
+        case Options.output_format_template:
+        case Options.output_format_dex:
+        case Options.output_format_force_dex:
+          break;
+        case Options.output_format_shimp:
+        case Options.output_format_shimple:
+          produceShimple = true;
+          // FLIP produceJimple
+          produceJimple = false;
+          break;
+        case Options.output_format_dava:
+          produceDava = true;
+          // FALL THROUGH
+        case Options.output_format_grimp:
+        case Options.output_format_grimple:
+          produceGrimp = true;
+          break;
+        case Options.output_format_baf:
+        case Options.output_format_b:
+          produceBaf = true;
+          break;
+        case Options.output_format_jasmin:
+        case Options.output_format_class:
+        case Options.output_format_asm:
+          produceGrimp = Options.v().via_grimp();
+          produceBaf = !produceGrimp;
+          break;
+        default:
+          throw new RuntimeException();
+      }
+      if (Options.v().via_shimple()) {
         produceShimple = true;
-        // FLIP produceJimple
-        produceJimple = false;
-        break;
-      case Options.output_format_dava:
-        produceDava = true;
-        // FALL THROUGH
-      case Options.output_format_grimp:
-      case Options.output_format_grimple:
-        produceGrimp = true;
-        break;
-      case Options.output_format_baf:
-      case Options.output_format_b:
-        produceBaf = true;
-        break;
-      case Options.output_format_jasmin:
-      case Options.output_format_class:
-      case Options.output_format_asm:
-        produceGrimp = Options.v().via_grimp();
-        produceBaf = !produceGrimp;
-        break;
-      default:
-        throw new RuntimeException();
+      }
     }
+  }
 
-    soot.xml.TagCollector tc = new soot.xml.TagCollector();
+  private void runBodyPacks(SootClass c) {
+    if (Options.v().output_format() == Options.output_format_dava) {
+      logger.debug("Decompiling {}...", c.getName());
 
-    boolean wholeShimple = Options.v().whole_shimple();
-    if (Options.v().via_shimple()) {
-      produceShimple = true;
+      // January 13th, 2006 SootMethodAddedByDava is set to false for
+      // SuperFirstStmtHandler
+      G.v().SootMethodAddedByDava = false;
+    } else {
+      logger.debug("Transforming {}...", c.getName());
     }
+    BodyPackOutput output = new BodyPackOutput();
 
     // here we create a copy of the methods so that transformers are able
     // to add method bodies during the following iteration;
@@ -957,79 +1132,87 @@ public class PackManager {
     // method is created as a phantom method when phantom-refs are enabled
     ArrayList<SootMethod> methodsCopy = new ArrayList<SootMethod>(c.getMethods());
     for (SootMethod m : methodsCopy) {
-      if (DEBUG) {
-        if (m.getExceptions().size() != 0) {
-          System.out.println("PackManager printing out jimple body exceptions for method " + m.toString() + " "
-              + m.getExceptions().toString());
-        }
-      }
+      runBodyPacks(m, output);
+    }
+    finishBodyPacks(c, output);
+  }
 
-      if (!m.isConcrete()) {
-        continue;
+  private void runBodyPacks(SootMethod m, BodyPackOutput output) {
+    if (DEBUG) {
+      if (m.getExceptions().size() != 0) {
+        System.out.println("PackManager printing out jimple body exceptions for method " + m.toString() + " "
+            + m.getExceptions().toString());
       }
+    }
 
-      if (produceShimple || wholeShimple) {
-        ShimpleBody sBody = null;
+    if (!m.isConcrete()) {
+      return;
+    }
 
-        // whole shimple or not?
-        {
-          Body body = m.retrieveActiveBody();
+    if (output.produceShimple || output.wholeShimple) {
+      ShimpleBody sBody = null;
 
-          if (body instanceof ShimpleBody) {
-            sBody = (ShimpleBody) body;
-            if (!sBody.isSSA()) {
-              sBody.rebuild();
-            }
-          } else {
-            sBody = Shimple.v().newBody(body);
+      // whole shimple or not?
+      {
+        Body body = m.retrieveActiveBody();
+
+        if (body instanceof ShimpleBody) {
+          sBody = (ShimpleBody) body;
+          if (!sBody.isSSA()) {
+            sBody.rebuild();
           }
+        } else {
+          sBody = Shimple.v().newBody(body);
         }
+      }
 
-        m.setActiveBody(sBody);
-        PackManager.v().getPack("stp").apply(sBody);
-        PackManager.v().getPack("sop").apply(sBody);
+      m.setActiveBody(sBody);
+      PackManager.v().getPack("stp").apply(sBody);
+      PackManager.v().getPack("sop").apply(sBody);
 
-        if (produceJimple || (wholeShimple && !produceShimple)) {
-          m.setActiveBody(sBody.toJimpleBody());
-        }
+      if (output.produceJimple || (output.wholeShimple && !output.produceShimple)) {
+        m.setActiveBody(sBody.toJimpleBody());
       }
+    }
 
-      if (produceJimple) {
-        Body body = m.retrieveActiveBody();
-        // Change
-        CopyPropagator.v().transform(body);
-        ConditionalBranchFolder.v().transform(body);
-        UnreachableCodeEliminator.v().transform(body);
-        DeadAssignmentEliminator.v().transform(body);
-        UnusedLocalEliminator.v().transform(body);
-        PackManager.v().getPack("jtp").apply(body);
-        if (Options.v().validate()) {
-          body.validate();
-        }
-        PackManager.v().getPack("jop").apply(body);
-        PackManager.v().getPack("jap").apply(body);
-        if (Options.v().xml_attributes() && Options.v().output_format() != Options.output_format_jimple) {
-          // System.out.println("collecting body tags");
-          tc.collectBodyTags(body);
-        }
+    if (output.produceJimple) {
+      Body body = m.retrieveActiveBody();
+      // Change
+      CopyPropagator.v().transform(body);
+      ConditionalBranchFolder.v().transform(body);
+      UnreachableCodeEliminator.v().transform(body);
+      DeadAssignmentEliminator.v().transform(body);
+      UnusedLocalEliminator.v().transform(body);
+      PackManager.v().getPack("jtp").apply(body);
+      if (Options.v().validate()) {
+        body.validate();
+      }
+      PackManager.v().getPack("jop").apply(body);
+      PackManager.v().getPack("jap").apply(body);
+      if (Options.v().xml_attributes() && Options.v().output_format() != Options.output_format_jimple) {
+        // System.out.println("collecting body tags");
+        output.tc.collectBodyTags(body);
       }
+    }
 
-      // PackManager.v().getPack("cfg").apply(m.retrieveActiveBody());
+    // PackManager.v().getPack("cfg").apply(m.retrieveActiveBody());
 
-      if (produceGrimp) {
-        m.setActiveBody(Grimp.v().newBody(m.getActiveBody(), "gb"));
-        PackManager.v().getPack("gop").apply(m.getActiveBody());
-      } else if (produceBaf) {
-        m.setActiveBody(convertJimpleBodyToBaf(m));
-      }
+    if (output.produceGrimp) {
+      m.setActiveBody(Grimp.v().newBody(m.getActiveBody(), "gb"));
+      PackManager.v().getPack("gop").apply(m.getActiveBody());
+    } else if (output.produceBaf) {
+      m.setActiveBody(convertJimpleBodyToBaf(m));
     }
+  }
 
+  /** Runs what remains to be done for the given class once the body packs have run on all of its methods. */
+  private void finishBodyPacks(SootClass c, BodyPackOutput output) {
     if (Options.v().xml_attributes() && Options.v().output_format() != Options.output_format_jimple) {
-      processXMLForClass(c, tc);
+      processXMLForClass(c, output.tc);
       // System.out.println("processed xml for class");
     }
 
-    if (produceDava) {
+    if (output.produceDava) {
       for (SootMethod m : c.getMethods()) {
         if (!m.isConcrete()) {
           continue;
@@ -1258,7 +1441,7 @@ public class PackManager {
 
   private void retrieveAllBodies() {
     // The old coffi front-end is not thread-safe
-    int threadNum = Options.v().coffi() ? 1 : Runtime.getRuntime().availableProcessors();
+    int threadNum = Options.v().coffi() ? 1 : Scene.v().getNumThreads();
     CountingThreadPoolExecutor executor
         = new CountingThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
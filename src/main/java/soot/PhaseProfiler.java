@@ -0,0 +1,369 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.options.Options;
+
+/**
+ * Collects wall-clock time, CPU time, allocated bytes, processed bodies and heap use per phase. Packs and transformers
+ * report into it whenever <tt>-time</tt> or <tt>-phase-profile</tt> is given; otherwise {@link #start(String)} returns a
+ * measurement that does nothing.
+ *
+ * <p>
+ * CPU time and allocation are taken from the thread that runs a phase, so work a phase hands to other threads is counted
+ * where those threads report it. Since body packs run on several threads at once, the wall-clock time of a body phase is
+ * the sum over all threads and may exceed the elapsed time. The JVM's per-thread CPU time and allocation counters are
+ * only switched on once the first phase is measured.
+ * </p>
+ *
+ * <p>
+ * The heap figure is the highest heap use sampled when a run of the phase started or ended. It is a sample, not the true
+ * peak, and includes what other threads allocated meanwhile. The peak usage the JVM keeps for its memory pools is left
+ * alone, so that other tools reading it are not disturbed, and sampling takes no lock, so body phases running on several
+ * threads do not wait for each other.
+ * </p>
+ */
+public class PhaseProfiler {
+  private static final Logger logger = LoggerFactory.getLogger(PhaseProfiler.class);
+
+  public PhaseProfiler(Singletons.Global g) {
+  }
+
+  public static PhaseProfiler v() {
+    return G.v().soot_PhaseProfiler();
+  }
+
+  /** A running measurement of a phase. */
+  public static class Measurement {
+    private final Stats stats;
+    private final int bodies;
+    private final long wallStart;
+    private final long cpuStart;
+    private final long allocStart;
+    private final long heapStart;
+
+    Measurement(Stats stats, int bodies) {
+      this.stats = stats;
+      this.bodies = bodies;
+      this.wallStart = System.nanoTime();
+      this.cpuStart = ThreadCounters.cpuTime();
+      this.allocStart = ThreadCounters.allocatedBytes();
+      this.heapStart = usedHeap();
+    }
+
+    private Measurement() {
+      this.stats = null;
+      this.bodies = 0;
+      this.wallStart = this.cpuStart = this.allocStart = this.heapStart = 0;
+    }
+
+    /** Stops this measurement and adds it to the figures of its phase. */
+    public void end() {
+      if (stats == null) {
+        return;
+      }
+      long wall = System.nanoTime() - wallStart;
+      long cpu = cpuStart < 0 ? 0 : ThreadCounters.cpuTime() - cpuStart;
+      long alloc = allocStart < 0 ? 0 : ThreadCounters.allocatedBytes() - allocStart;
+      stats.record(bodies, wall, cpu, alloc, Math.max(heapStart, usedHeap()));
+    }
+  }
+
+  /** The figures collected for one phase. */
+  public static class Stats {
+    private final String phaseName;
+    private final long order;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder bodies = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+
+    Stats(String phaseName, long order) {
+      this.phaseName = phaseName;
+      this.order = order;
+    }
+
+    void record(int bodies, long wall, long cpu, long alloc, long heap) {
+      this.invocations.increment();
+      this.bodies.add(bodies);
+      this.wallNanos.add(wall);
+      this.cpuNanos.add(cpu);
+      this.allocatedBytes.add(alloc);
+      this.peakHeapBytes.accumulateAndGet(heap, Math::max);
+    }
+
+    public String getPhaseName() {
+      return phaseName;
+    }
+
+    public long getInvocations() {
+      return invocations.sum();
+    }
+
+    public long getBodies() {
+      return bodies.sum();
+    }
+
+    public long getWallNanos() {
+      return wallNanos.sum();
+    }
+
+    /** Returns the CPU time, or 0 if the JVM cannot measure it. */
+    public long getCpuNanos() {
+      return cpuNanos.sum();
+    }
+
+    /** Returns the allocated bytes, or 0 if the JVM cannot measure them. */
+    public long getAllocatedBytes() {
+      return allocatedBytes.sum();
+    }
+
+    public long getPeakHeapBytes() {
+      return peakHeapBytes.get();
+    }
+  }
+
+  private static final Measurement NONE = new Measurement();
+
+  /**
+   * Reads the CPU time and allocated bytes of the current thread. The JVM measures these for all threads once they are
+   * switched on, so this class is only initialized, and switches them on, when the first phase is measured.
+   */
+  private static final class ThreadCounters {
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported;
+    private static final boolean allocationSupported;
+
+    static {
+      boolean cpu = false;
+      try {
+        cpu = threadBean.isCurrentThreadCpuTimeSupported();
+        if (cpu && !threadBean.isThreadCpuTimeEnabled()) {
+          threadBean.setThreadCpuTimeEnabled(true);
+        }
+      } catch (UnsupportedOperationException | SecurityException e) {
+        cpu = false;
+      }
+      cpuTimeSupported = cpu;
+
+      boolean alloc = false;
+      try {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+          com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) threadBean;
+          alloc = b.isThreadAllocatedMemorySupported();
+          if (alloc && !b.isThreadAllocatedMemoryEnabled()) {
+            b.setThreadAllocatedMemoryEnabled(true);
+          }
+        }
+      } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+        alloc = false;
+      }
+      allocationSupported = alloc;
+    }
+
+    static long cpuTime() {
+      return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    static long allocatedBytes() {
+      if (!allocationSupported) {
+        return -1;
+      }
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+
+  /** Returns the heap use right now. */
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+  private final AtomicLong nextOrder = new AtomicLong();
+
+  /** Returns true if phases are being measured. */
+  public boolean isEnabled() {
+    Options opts = Options.v();
+    return opts.time() || !opts.phase_profile().isEmpty();
+  }
+
+  /**
+   * Starts measuring the given phase on the current thread. The caller must end the returned measurement on the same
+   * thread, normally in a finally block.
+   */
+  public Measurement start(String phaseName) {
+    return start(phaseName, 0);
+  }
+
+  /** Like {@link #start(String)}, but counts one processed body for the phase. */
+  public Measurement startBody(String phaseName) {
+    return start(phaseName, 1);
+  }
+
+  private Measurement start(String phaseName, int bodies) {
+    if (!isEnabled()) {
+      return NONE;
+    }
+    Stats s = stats.get(phaseName);
+    if (s == null) {
+      Stats newStats = new Stats(phaseName, nextOrder.getAndIncrement());
+      s = stats.putIfAbsent(phaseName, newStats);
+      if (s == null) {
+        s = newStats;
+      }
+    }
+    return new Measurement(s, bodies);
+  }
+
+  /** Returns the figures for the given phase, or null if it has not been measured. */
+  public Stats getStats(String phaseName) {
+    return stats.get(phaseName);
+  }
+
+  /** Returns the figures of all measured phases, in the order in which they first started. */
+  public List<Stats> getAllStats() {
+    List<Stats> ret = new ArrayList<Stats>(stats.values());
+    Collections.sort(ret, new Comparator<Stats>() {
+      @Override
+      public int compare(Stats a, Stats b) {
+        return Long.compare(a.order, b.order);
+      }
+    });
+    return ret;
+  }
+
+  /** Discards all figures collected so far. */
+  public void reset() {
+    stats.clear();
+  }
+
+  /** Writes the figures to the given file, as CSV if its name ends in <tt>.csv</tt> and as JSON otherwise. */
+  public void writeReport(File file) {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.exists()) {
+      dir.mkdirs();
+    }
+    try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      if (file.getName().toLowerCase().endsWith(".csv")) {
+        writeCsv(w);
+      } else {
+        writeJson(w);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write phase profile to " + file, e);
+    }
+  }
+
+  /** Writes the figures as a JSON object with one entry per phase. */
+  public void writeJson(Writer w) {
+    PrintWriter out = new PrintWriter(w);
+    out.println("{");
+    out.println("  \"cpuTimeSupported\": " + ThreadCounters.cpuTimeSupported + ",");
+    out.println("  \"allocationSupported\": " + ThreadCounters.allocationSupported + ",");
+    out.println("  \"phases\": [");
+    List<Stats> all = getAllStats();
+    for (int i = 0; i < all.size(); i++) {
+      Stats s = all.get(i);
+      out.print("    {\"phase\": \"" + escapeJson(s.getPhaseName()) + "\", \"invocations\": " + s.getInvocations()
+          + ", \"bodies\": " + s.getBodies() + ", \"wallNanos\": " + s.getWallNanos() + ", \"cpuNanos\": "
+          + s.getCpuNanos() + ", \"allocatedBytes\": " + s.getAllocatedBytes() + ", \"peakHeapBytes\": "
+          + s.getPeakHeapBytes() + "}");
+      out.println(i + 1 < all.size() ? "," : "");
+    }
+    out.println("  ]");
+    out.println("}");
+    out.flush();
+  }
+
+  /** Writes the figures as CSV with a header line and one line per phase. */
+  public void writeCsv(Writer w) {
+    PrintWriter out = new PrintWriter(w);
+    out.println("phase,invocations,bodies,wallNanos,cpuNanos,allocatedBytes,peakHeapBytes");
+    for (Stats s : getAllStats()) {
+      out.println(escapeCsv(s.getPhaseName()) + "," + s.getInvocations() + "," + s.getBodies() + "," + s.getWallNanos()
+          + "," + s.getCpuNanos() + "," + s.getAllocatedBytes() + "," + s.getPeakHeapBytes());
+    }
+    out.flush();
+  }
+
+  /** Prints a table of the figures to the log. */
+  public void printProfilingInformation() {
+    List<Stats> all = getAllStats();
+    if (all.isEmpty()) {
+      return;
+    }
+    logger.debug(String.format("%-30s %8s %8s %10s %10s %12s %10s", "phase", "calls", "bodies", "wall(s)", "cpu(s)",
+        "alloc(MB)", "heap(MB)"));
+    for (Stats s : all) {
+      logger.debug(String.format("%-30s %8d %8d %10.2f %10.2f %12.1f %10.1f", s.getPhaseName(), s.getInvocations(),
+          s.getBodies(), s.getWallNanos() / 1e9, s.getCpuNanos() / 1e9, s.getAllocatedBytes() / (1024.0 * 1024.0),
+          s.getPeakHeapBytes() / (1024.0 * 1024.0)));
+    }
+  }
+
+  private static String escapeJson(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String escapeCsv(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+      return s;
+    }
+    return '"' + s.replace("\"", "\"\"") + '"';
+  }
+}
@@ -74,6 +74,7 @@ import soot.toolkits.exceptions.ThrowAnalysis;
 import soot.toolkits.exceptions.UnitThrowAnalysis;
 import soot.util.ArrayNumberer;
 import soot.util.Chain;
+import soot.util.ConcurrentChain;
 import soot.util.HashChain;
 import soot.util.IterableNumberer;
 import soot.util.MapNumberer;
@@ -145,10 +146,10 @@ public class Scene // extends AbstractHost
     return G.v().soot_Scene();
   }
 
-  Chain<SootClass> classes = new HashChain<SootClass>();
-  Chain<SootClass> applicationClasses = new HashChain<SootClass>();
-  Chain<SootClass> libraryClasses = new HashChain<SootClass>();
-  Chain<SootClass> phantomClasses = new HashChain<SootClass>();
+  Chain<SootClass> classes = new ConcurrentChain<SootClass>();
+  Chain<SootClass> applicationClasses = new ConcurrentChain<SootClass>();
+  Chain<SootClass> libraryClasses = new ConcurrentChain<SootClass>();
+  Chain<SootClass> phantomClasses = new ConcurrentChain<SootClass>();
 
   protected final Map<String, RefType> nameToClass = new ConcurrentHashMap<>();
 
@@ -163,7 +164,7 @@ public class Scene // extends AbstractHost
   protected IterableNumberer<Local> localNumberer = new ArrayNumberer<Local>();
 
   protected Hierarchy activeHierarchy;
-  protected FastHierarchy activeFastHierarchy;
+  protected volatile FastHierarchy activeFastHierarchy;
   protected CallGraph activeCallGraph;
   protected ReachableMethods reachableMethods;
   protected PointsToAnalysis activePointsToAnalysis;
@@ -1183,7 +1184,8 @@ public class Scene // extends AbstractHost
   }
 
   /**
-   * Returns an backed chain of the classes in this manager.
+   * Returns an backed chain of the classes in this manager. Classes may be added to it by other threads, for instance by
+   * the parallel resolver, so iterate over {@link Chain#snapshotIterator()} unless no class can be loaded meanwhile.
    */
 
   public Chain<SootClass> getClasses() {
@@ -1313,11 +1315,19 @@ public class Scene // extends AbstractHost
   /**
    * Makes a new fast hierarchy is none is active, and returns the active fast hierarchy.
    */
-  public synchronized FastHierarchy getOrMakeFastHierarchy() {
-    if (!hasFastHierarchy()) {
-      setFastHierarchy(new FastHierarchy());
+  public FastHierarchy getOrMakeFastHierarchy() {
+    // Callers such as the ThrowableSet memo ask for the hierarchy on every lookup, so they do not take the lock once it
+    // exists
+    FastHierarchy hierarchy = activeFastHierarchy;
+    if (hierarchy != null) {
+      return hierarchy;
+    }
+    synchronized (this) {
+      if (!hasFastHierarchy()) {
+        setFastHierarchy(new FastHierarchy());
+      }
+      return getFastHierarchy();
     }
-    return getFastHierarchy();
   }
 
   /**
@@ -1348,6 +1358,23 @@ public class Scene // extends AbstractHost
     activeFastHierarchy = null;
   }
 
+  /**
+   * Adds the given class to the Scene like {@link #addClass(SootClass)}, but updates the active fast hierarchy instead
+   * of discarding it. The superclass and interfaces of the class must already be set.
+   *
+   * @param c
+   *          The class to add
+   * @see FastHierarchy#addClass(SootClass)
+   */
+  public synchronized void addClassToHierarchy(SootClass c) {
+    FastHierarchy hierarchy = activeFastHierarchy;
+    addClass(c);
+    if (hierarchy != null) {
+      hierarchy.addClass(c);
+      activeFastHierarchy = hierarchy;
+    }
+  }
+
   /****************************************************************************/
   /**
    * Retrieves the active hierarchy
@@ -1465,6 +1492,15 @@ public class Scene // extends AbstractHost
     return getPhantomRefs();
   }
 
+  /**
+   * Returns the number of worker threads for the parts of Soot that run in parallel: the value of the num-threads option,
+   * or one thread per available processor if it is not set.
+   */
+  public int getNumThreads() {
+    int numThreads = Options.v().num_threads();
+    return numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+  }
+
   public Numberer<Kind> kindNumberer() {
     return kindNumberer;
   }
@@ -1864,7 +1900,10 @@ public class Scene // extends AbstractHost
     // Remove/add all classes from packageInclusionMask as per -i option
     Chain<SootClass> processedClasses = new HashChain<SootClass>();
     while (true) {
-      Chain<SootClass> unprocessedClasses = new HashChain<SootClass>(getClasses());
+      Chain<SootClass> unprocessedClasses = new HashChain<SootClass>();
+      for (Iterator<SootClass> clIt = getClasses().snapshotIterator(); clIt.hasNext();) {
+        unprocessedClasses.add(clIt.next());
+      }
       unprocessedClasses.removeAll(processedClasses);
       if (unprocessedClasses.isEmpty()) {
         break;
@@ -1951,7 +1990,7 @@ public class Scene // extends AbstractHost
    */
   public List<SootClass> getClasses(int desiredLevel) {
     List<SootClass> ret = new ArrayList<SootClass>();
-    for (Iterator<SootClass> clIt = getClasses().iterator(); clIt.hasNext();) {
+    for (Iterator<SootClass> clIt = getClasses().snapshotIterator(); clIt.hasNext();) {
       final SootClass cl = clIt.next();
       if (cl.resolvingLevel() >= desiredLevel) {
         ret.add(cl);
@@ -1996,7 +2035,7 @@ public class Scene // extends AbstractHost
 
       // try to infer a main class from the usual classpath if none is
       // given
-      for (Iterator<SootClass> classIter = getApplicationClasses().iterator(); classIter.hasNext();) {
+      for (Iterator<SootClass> classIter = getApplicationClasses().snapshotIterator(); classIter.hasNext();) {
         SootClass c = classIter.next();
         if (c.declaresMethod("main", Collections.<Type>singletonList(ArrayType.v(RefType.v("java.lang.String"), 1)),
             VoidType.v())) {
@@ -33,7 +33,16 @@ public abstract class SceneTransformer extends Transformer {
       return;
     }
 
-    internalTransform(phaseName, options);
+    if (phaseName.isEmpty()) {
+      internalTransform(phaseName, options);
+      return;
+    }
+    PhaseProfiler.Measurement m = PhaseProfiler.v().start(phaseName);
+    try {
+      internalTransform(phaseName, options);
+    } finally {
+      m.end();
+    }
   }
 
   public final void transform(String phaseName) {
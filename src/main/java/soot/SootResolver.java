@@ -28,8 +28,17 @@ import java.io.InputStream;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +66,26 @@ public class SootResolver {
   @SuppressWarnings("unchecked")
   private final Deque<SootClass>[] worklist = new Deque[4];
 
+  /**
+   * Worker threads that prepare the class sources of the classes on the worklist while the parallel resolver is running, or
+   * null.
+   */
+  private ExecutorService preparer = null;
+
+  /** Number of class sources per worker thread that may be prepared ahead of the resolver. */
+  private static final int READ_AHEAD_PER_THREAD = 4;
+
+  /**
+   * Class sources of classes on the worklist, located and being prepared by {@link #preparer}. At most
+   * {@link #readAhead} of them are held at a time, since a prepared class source keeps the decoded class in memory.
+   */
+  private Map<SootClass, PreparedSource> preparedSources = null;
+
+  /** Classes on the worklist that are prepared once fewer than {@link #readAhead} class sources are held. */
+  private Set<SootClass> toPrepare = null;
+
+  private int readAhead;
+
   private Program program = null;
 
   public SootResolver(Singletons.Global g) {
@@ -153,37 +182,163 @@ public class SootResolver {
 
   /** Resolve all classes on toResolveWorklist. */
   protected void processResolveWorklist() {
-    for (int i = SootClass.BODIES; i >= SootClass.HIERARCHY; i--) {
-      while (!worklist[i].isEmpty()) {
-        SootClass sc = worklist[i].pop();
-        if (resolveEverything()) { // Whole program mode
-          boolean onlySignatures = sc.isPhantom() || (Options.v().no_bodies_for_excluded() && Scene.v().isExcluded(sc)
-              && !Scene.v().getBasicClasses().contains(sc.getName()));
-          if (onlySignatures) {
-            bringToSignatures(sc);
-            sc.setPhantomClass();
-            for (SootMethod m : sc.getMethods()) {
-              m.setPhantom(true);
-            }
-            for (SootField f : sc.getFields()) {
-              f.setPhantom(true);
-            }
-          } else {
-            bringToBodies(sc);
-          }
-        } else { // No transitive
-          switch (i) {
-            case SootClass.BODIES:
-              bringToBodies(sc);
-              break;
-            case SootClass.SIGNATURES:
-              bringToSignatures(sc);
-              break;
-            case SootClass.HIERARCHY:
-              bringToHierarchy(sc);
-              break;
-          }
+    // Only the outermost call starts and stops the preparer, resolving a class may resolve others recursively
+    boolean startPreparer = preparer == null && resolveInParallel();
+    if (startPreparer) {
+      preparer = Executors.newFixedThreadPool(Scene.v().getNumThreads());
+      preparedSources = new HashMap<SootClass, PreparedSource>();
+      toPrepare = new LinkedHashSet<SootClass>();
+      readAhead = Scene.v().getNumThreads() * READ_AHEAD_PER_THREAD;
+      for (int i = SootClass.BODIES; i >= SootClass.HIERARCHY; i--) {
+        for (SootClass sc : worklist[i]) {
+          prepare(sc);
+        }
+      }
+    }
+    try {
+      for (int i = SootClass.BODIES; i >= SootClass.HIERARCHY; i--) {
+        while (!worklist[i].isEmpty()) {
+          resolveFromWorklist(worklist[i].pop(), i);
+        }
+      }
+    } finally {
+      if (startPreparer) {
+        stopPreparer();
+      }
+    }
+  }
+
+  /**
+   * Returns true if the class sources of the classes on the worklist are to be read and decoded by a pool of worker
+   * threads. The classes themselves are still resolved one at a time and in the same order as without them, so the Scene
+   * does not depend on thread scheduling.
+   */
+  protected boolean resolveInParallel() {
+    // The old coffi front-end is not thread-safe, and module mode locates classes through its own source locator
+    return Options.v().parallel_resolver() && !Options.v().coffi() && !ModuleUtil.module_mode();
+  }
+
+  /** A class source and the task preparing it. */
+  private static class PreparedSource {
+    final ClassSource source;
+    final Future<?> task;
+
+    PreparedSource(ClassSource source, Future<?> task) {
+      this.source = source;
+      this.task = task;
+    }
+  }
+
+  /**
+   * Starts preparing the class source of the given class on the worker threads, or queues the class if
+   * {@link #readAhead} class sources are already held.
+   */
+  private void prepare(SootClass sc) {
+    if (sc.resolvingLevel() > SootClass.DANGLING || preparedSources.containsKey(sc)) {
+      return;
+    }
+    if (preparedSources.size() >= readAhead) {
+      toPrepare.add(sc);
+      return;
+    }
+    final ClassSource is;
+    try {
+      is = SourceLocator.v().getClassSource(sc.getName());
+    } catch (RuntimeException e) {
+      // Resolving the class looks it up again and reports the error if the class is ever resolved
+      return;
+    }
+    if (is != null) {
+      preparedSources.put(sc, new PreparedSource(is, preparer.submit(is::prepare)));
+    }
+  }
+
+  /** Starts preparing queued classes until {@link #readAhead} class sources are held. */
+  private void prepareQueued() {
+    for (Iterator<SootClass> it = toPrepare.iterator(); it.hasNext() && preparedSources.size() < readAhead;) {
+      SootClass sc = it.next();
+      it.remove();
+      prepare(sc);
+    }
+  }
+
+  /** Returns the prepared class source of the given class, or null if it has not been located. */
+  private ClassSource takePreparedSource(SootClass sc) {
+    if (preparedSources == null) {
+      return null;
+    }
+    toPrepare.remove(sc);
+    PreparedSource prepared = preparedSources.remove(sc);
+    prepareQueued();
+    if (prepared == null) {
+      return null;
+    }
+    try {
+      prepared.task.get();
+      return prepared.source;
+    } catch (InterruptedException e) {
+      prepared.source.close();
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Could not wait for resolver threads to finish: " + e.getMessage(), e);
+    } catch (ExecutionException e) {
+      prepared.source.close();
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Stops the worker threads and closes the class sources they prepared for classes that were not resolved, such as
+   * classes left on the worklist when resolving failed.
+   */
+  private void stopPreparer() {
+    preparer.shutdownNow();
+    try {
+      // A source must not be closed while it is being read
+      preparer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (PreparedSource prepared : preparedSources.values()) {
+      prepared.source.close();
+    }
+    preparer = null;
+    preparedSources = null;
+    toPrepare = null;
+  }
+
+  private void resolveFromWorklist(SootClass sc, int level) {
+    if (resolveEverything()) { // Whole program mode
+      boolean onlySignatures = sc.isPhantom() || (Options.v().no_bodies_for_excluded() && Scene.v().isExcluded(sc)
+          && !Scene.v().getBasicClasses().contains(sc.getName()));
+      if (onlySignatures) {
+        bringToSignatures(sc);
+        sc.setPhantomClass();
+        for (SootMethod m : sc.getMethods()) {
+          m.setPhantom(true);
+        }
+        for (SootField f : sc.getFields()) {
+          f.setPhantom(true);
         }
+      } else {
+        bringToBodies(sc);
+      }
+    } else { // No transitive
+      switch (level) {
+        case SootClass.BODIES:
+          bringToBodies(sc);
+          break;
+        case SootClass.SIGNATURES:
+          bringToSignatures(sc);
+          break;
+        case SootClass.HIERARCHY:
+          bringToHierarchy(sc);
+          break;
       }
     }
   }
@@ -204,6 +359,9 @@ public class SootResolver {
       return;
     }
     worklist[desiredLevel].add(sc);
+    if (preparer != null) {
+      prepare(sc);
+    }
   }
 
   /**
@@ -229,7 +387,10 @@ public class SootResolver {
       is = ModulePathSourceLocator.v().getClassSource(className,
           com.google.common.base.Optional.fromNullable(sc.moduleName));
     } else {
-      is = SourceLocator.v().getClassSource(className);
+      is = takePreparedSource(sc);
+      if (is == null) {
+        is = SourceLocator.v().getClassSource(className);
+      }
     }
     try {
       boolean modelAsPhantomRef = is == null;
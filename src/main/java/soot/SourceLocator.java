@@ -240,6 +240,10 @@ public class SourceLocator {
   protected void setupClassProviders() {
     classProviders = new LinkedList<ClassProvider>();
     ClassProvider classFileClassProvider = Options.v().coffi() ? new CoffiClassProvider() : new AsmClassProvider();
+    if (!Options.v().body_cache_dir().isEmpty()) {
+      classFileClassProvider
+          = new CachingClassProvider(classFileClassProvider, new BodyCache(new File(Options.v().body_cache_dir())));
+    }
     if (this.java9Mode) {
       classProviders.add(new AsmJava9ClassProvider());
     }
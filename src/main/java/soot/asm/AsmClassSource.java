@@ -26,6 +26,9 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
 
 import soot.ClassSource;
 import soot.FoundFile;
@@ -41,6 +44,9 @@ public class AsmClassSource extends ClassSource {
 
   protected FoundFile foundFile;
 
+  /** The decoded class file if {@link #prepare()} was called, to be replayed into the class by {@link #resolve(SootClass)}. */
+  private ClassNode classNode;
+
   /**
    * Constructs a new ASM class source.
    * 
@@ -57,17 +63,40 @@ public class AsmClassSource extends ClassSource {
     this.foundFile = foundFile;
   }
 
+  @Override
+  public void prepare() {
+    if (classNode != null || foundFile == null) {
+      return;
+    }
+    ClassNode node = new ClassNode(Opcodes.ASM7);
+    read(node);
+    classNode = node;
+  }
+
   @Override
   public Dependencies resolve(SootClass sc) {
-    InputStream d = null;
     try {
-      d = foundFile.inputStream();
-      ClassReader clsr = new ClassReader(d);
       SootClassBuilder scb = new SootClassBuilder(sc);
-      clsr.accept(scb, ClassReader.SKIP_FRAMES);
+      if (classNode != null) {
+        classNode.accept(scb);
+        classNode = null;
+      } else {
+        read(scb);
+      }
       Dependencies deps = new Dependencies();
       deps.typesToSignature.addAll(scb.deps);
       return deps;
+    } finally {
+      close();
+    }
+  }
+
+  private void read(ClassVisitor visitor) {
+    InputStream d = null;
+    try {
+      d = foundFile.inputStream();
+      ClassReader clsr = new ClassReader(d);
+      clsr.accept(visitor, ClassReader.SKIP_FRAMES);
     } catch (IOException e) {
       throw new RuntimeException("Error: Failed to create class reader from class source.", e);
     } finally {
@@ -2036,6 +2036,11 @@ final class AsmMethodSource implements MethodSource {
     return null;
   }
 
+  @Override
+  public int getSizeEstimate() {
+    return instructions.size();
+  }
+
   @Override
   public Body getBody(SootMethod m, String phaseName) {
     if (!m.isConcrete()) {
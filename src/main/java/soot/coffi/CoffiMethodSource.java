@@ -48,6 +48,17 @@ public class CoffiMethodSource implements MethodSource {
     this.coffiMethod = coffiMethod;
   }
 
+  @Override
+  public int getSizeEstimate() {
+    // the coffi structures are freed once the body has been built
+    method_info method = coffiMethod;
+    if (method == null || method.attributes == null) {
+      return -1;
+    }
+    Code_attribute code = method.locate_code_attribute();
+    return code == null ? -1 : (int) code.code_length;
+  }
+
   public Body getBody(SootMethod m, String phaseName) {
     JimpleBody jb = Jimple.v().newBody(m);
 
@@ -97,6 +97,34 @@ public final class TypeManager {
     if (type == null) {
       return null;
     }
+    updateTypeMasks();
+    BitVector ret = (BitVector) typeMask.get(type);
+    if (ret == null && fh != null) {
+      // If we have a phantom class and have no type mask, we assume that
+      // it is not cast-compatible to anything
+      SootClass curClass = ((RefType) type).getSootClass();
+      if (curClass.isPhantom()) {
+        return new BitVector();
+      } else {
+        // Scan through the hierarchy. We might have a phantom class higher up
+        while (curClass.hasSuperclass()) {
+          curClass = curClass.getSuperclass();
+          if (type instanceof RefType && curClass.isPhantom()) {
+            return new BitVector();
+          }
+        }
+
+        throw new RuntimeException("Type mask not found for type " + type);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Adds the allocation nodes created since the type masks were last updated to the masks. Masks are only read afterwards,
+   * until the next allocation node is created, so that {@link #get(Type)} may then be called from several threads.
+   */
+  final public void updateTypeMasks() {
     while (allocNodeListener.hasNext()) {
       AllocNode n = allocNodeListener.next();
       for (final Type t : Scene.v().getTypeNumberer()) {
@@ -124,26 +152,6 @@ public final class TypeManager {
         }
       }
     }
-    BitVector ret = (BitVector) typeMask.get(type);
-    if (ret == null && fh != null) {
-      // If we have a phantom class and have no type mask, we assume that
-      // it is not cast-compatible to anything
-      SootClass curClass = ((RefType) type).getSootClass();
-      if (curClass.isPhantom()) {
-        return new BitVector();
-      } else {
-        // Scan through the hierarchy. We might have a phantom class higher up
-        while (curClass.hasSuperclass()) {
-          curClass = curClass.getSuperclass();
-          if (type instanceof RefType && curClass.isPhantom()) {
-            return new BitVector();
-          }
-        }
-
-        throw new RuntimeException("Type mask not found for type " + type);
-      }
-    }
-    return ret;
   }
 
   final public void clearTypeMask() {
@@ -0,0 +1,449 @@
+package soot.jimple.spark.pag;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Maps the source nodes of one kind of PAG edge to the array of their targets. Instead of a hash map entry and a hash set
+ * per source node, the sources are kept in an open-addressing table hashed by node number, with the targets of the source
+ * in the same slot of parallel arrays. A source node with edges costs a few array slots plus its target array, and the
+ * table only grows with the number of sources, not with the highest node number. Source lists with many targets get a
+ * small open-addressing index for fast duplicate checks.
+ *
+ * <p>
+ * The values returned by {@link #get(Object)} are exactly sized arrays of targets that are not modified afterwards; adding
+ * or removing an edge copies the array of the source node. All keys must be numbered, and their numbers must not change
+ * while they are in the map.
+ * </p>
+ *
+ * @param <K>
+ *          type of the source nodes
+ */
+public class EdgeMap<K extends Node> extends AbstractMap<K, Object> {
+  private static final Node[] EMPTY_NODE_ARRAY = new Node[0];
+
+  /** Marks a slot whose key was removed, so that lookups probe past it. */
+  private static final Object REMOVED = new Object();
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Target lists longer than this get an index. */
+  private static final int INDEX_THRESHOLD = 16;
+
+  private Object[] keys;
+  private Node[][] targets;
+  private int[] sizes;
+  private int[][] indexes;
+  private int numKeys;
+  private int numRemoved;
+
+  public EdgeMap() {
+    clear();
+  }
+
+  /** Adds an edge from key to value, returning false if it was already there. */
+  public boolean addTarget(K key, Node value) {
+    int k = slotOf(key);
+    Node[] ts;
+    int size;
+    if (k < 0) {
+      k = addKey(key);
+      targets[k] = ts = new Node[2];
+      size = 0;
+    } else {
+      if (indexOf(k, value) >= 0) {
+        return false;
+      }
+      ts = targets[k];
+      size = sizes[k];
+      if (size == ts.length) {
+        targets[k] = ts = Arrays.copyOf(ts, Math.max(4, size * 2));
+      }
+    }
+    ts[size] = value;
+    sizes[k] = size + 1;
+    if (indexes != null && indexes[k] != null) {
+      int[] index = indexes[k];
+      if ((size + 1) * 2 > index.length) {
+        indexes[k] = buildIndex(ts, size + 1);
+      } else {
+        insertIntoIndex(index, value, size);
+      }
+    } else if (size + 1 > INDEX_THRESHOLD) {
+      if (indexes == null) {
+        indexes = new int[keys.length][];
+      }
+      indexes[k] = buildIndex(ts, size + 1);
+    }
+    return true;
+  }
+
+  /** Removes the edge from key to value, returning false if it was not there. */
+  public boolean removeTarget(K key, Node value) {
+    int k = slotOf(key);
+    if (k < 0) {
+      return false;
+    }
+    int pos = indexOf(k, value);
+    if (pos < 0) {
+      return false;
+    }
+    int size = sizes[k];
+    if (size == 1) {
+      removeKey(k);
+      return true;
+    }
+    // Copy, so that arrays handed out by get() stay unchanged
+    Node[] ts = targets[k];
+    Node[] newTs = new Node[size - 1];
+    System.arraycopy(ts, 0, newTs, 0, pos);
+    System.arraycopy(ts, pos + 1, newTs, pos, size - pos - 1);
+    targets[k] = newTs;
+    sizes[k] = size - 1;
+    if (indexes != null && indexes[k] != null) {
+      indexes[k] = size - 1 > INDEX_THRESHOLD ? buildIndex(newTs, size - 1) : null;
+    }
+    return true;
+  }
+
+  /** Returns the targets of key as an exactly sized array, or null if key has none. */
+  @Override
+  public Node[] get(Object key) {
+    int k = slotOf(key);
+    return k < 0 ? null : targetsAt(k);
+  }
+
+  /**
+   * Replaces the targets of key. The value may be an array or a collection of nodes; the map does not keep a reference to
+   * a collection.
+   */
+  @Override
+  public Object put(K key, Object value) {
+    Node[] ts;
+    if (value == null) {
+      ts = EMPTY_NODE_ARRAY;
+    } else if (value instanceof Node[]) {
+      ts = (Node[]) value;
+    } else {
+      ts = ((Collection<?>) value).toArray(EMPTY_NODE_ARRAY);
+    }
+    int k = slotOf(key);
+    Node[] old = k < 0 ? null : targetsAt(k);
+    if (ts.length == 0) {
+      if (k >= 0) {
+        removeKey(k);
+      }
+      return old;
+    }
+    if (k < 0) {
+      k = addKey(key);
+    }
+    targets[k] = ts;
+    sizes[k] = ts.length;
+    if (indexes != null) {
+      indexes[k] = null;
+    }
+    if (ts.length > INDEX_THRESHOLD) {
+      if (indexes == null) {
+        indexes = new int[keys.length][];
+      }
+      indexes[k] = buildIndex(ts, ts.length);
+    }
+    return old;
+  }
+
+  @Override
+  public Node[] remove(Object key) {
+    int k = slotOf(key);
+    if (k < 0) {
+      return null;
+    }
+    Node[] old = targetsAt(k);
+    removeKey(k);
+    return old;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return slotOf(key) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return numKeys;
+  }
+
+  @Override
+  public final void clear() {
+    allocate(INITIAL_CAPACITY);
+    numKeys = 0;
+    numRemoved = 0;
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return new AbstractSet<K>() {
+      @Override
+      public Iterator<K> iterator() {
+        return new SlotIterator<K>() {
+          @SuppressWarnings("unchecked")
+          @Override
+          protected K make(int slot) {
+            return (K) keys[slot];
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return containsKey(o);
+      }
+
+      @Override
+      public int size() {
+        return numKeys;
+      }
+    };
+  }
+
+  @Override
+  public Set<Entry<K, Object>> entrySet() {
+    return new AbstractSet<Entry<K, Object>>() {
+      @Override
+      public Iterator<Entry<K, Object>> iterator() {
+        return new SlotIterator<Entry<K, Object>>() {
+          @SuppressWarnings("unchecked")
+          @Override
+          protected Entry<K, Object> make(int slot) {
+            return new SimpleImmutableEntry<K, Object>((K) keys[slot], targetsAt(slot));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return numKeys;
+      }
+    };
+  }
+
+  /** Iterates over the occupied slots. */
+  private abstract class SlotIterator<T> implements Iterator<T> {
+    private int next = advance(0);
+    private int last = -1;
+
+    private int advance(int from) {
+      int i = from;
+      while (i < keys.length && !isKey(keys[i])) {
+        i++;
+      }
+      return i;
+    }
+
+    protected abstract T make(int slot);
+
+    @Override
+    public boolean hasNext() {
+      return next < keys.length;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = advance(next + 1);
+      return make(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0 || !isKey(keys[last])) {
+        throw new IllegalStateException();
+      }
+      // Leaves a REMOVED marker, so no other key moves
+      removeKey(last);
+    }
+  }
+
+  private static boolean isKey(Object k) {
+    return k != null && k != REMOVED;
+  }
+
+  /** Returns the slot of key, or -1 if it is not in the map. */
+  private int slotOf(Object key) {
+    if (!(key instanceof Node)) {
+      return -1;
+    }
+    int mask = keys.length - 1;
+    for (int i = hash((Node) key) & mask;; i = (i + 1) & mask) {
+      Object k = keys[i];
+      if (k == key) {
+        return i;
+      }
+      if (k == null) {
+        return -1;
+      }
+    }
+  }
+
+  /** Returns the targets in slot k as an exactly sized array. */
+  private Node[] targetsAt(int k) {
+    Node[] ts = targets[k];
+    int size = sizes[k];
+    if (ts.length != size) {
+      targets[k] = ts = Arrays.copyOf(ts, size);
+    }
+    return ts;
+  }
+
+  /** Puts key, which must not be in the map yet, into a free slot and returns that slot. */
+  private int addKey(Node key) {
+    if (key.getNumber() <= 0) {
+      throw new RuntimeException("Node " + key + " is not numbered");
+    }
+    // Keep at least a third of the slots empty, so that probing stays short
+    if ((numKeys + numRemoved + 1) * 3 > keys.length * 2) {
+      rehash();
+    }
+    int mask = keys.length - 1;
+    int i = hash(key) & mask;
+    while (isKey(keys[i])) {
+      i = (i + 1) & mask;
+    }
+    if (keys[i] == REMOVED) {
+      numRemoved--;
+    }
+    keys[i] = key;
+    numKeys++;
+    return i;
+  }
+
+  private void removeKey(int k) {
+    keys[k] = REMOVED;
+    targets[k] = null;
+    sizes[k] = 0;
+    if (indexes != null) {
+      indexes[k] = null;
+    }
+    numKeys--;
+    numRemoved++;
+  }
+
+  private void allocate(int capacity) {
+    keys = new Object[capacity];
+    targets = new Node[capacity][];
+    sizes = new int[capacity];
+    indexes = null;
+  }
+
+  /** Moves all keys into a new table that is at most half full, dropping the REMOVED markers. */
+  private void rehash() {
+    int capacity = INITIAL_CAPACITY;
+    while ((numKeys + 1) * 2 > capacity) {
+      capacity <<= 1;
+    }
+    Object[] oldKeys = keys;
+    Node[][] oldTargets = targets;
+    int[] oldSizes = sizes;
+    int[][] oldIndexes = indexes;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      Object k = oldKeys[j];
+      if (!isKey(k)) {
+        continue;
+      }
+      int i = hash((Node) k) & mask;
+      while (keys[i] != null) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = k;
+      targets[i] = oldTargets[j];
+      sizes[i] = oldSizes[j];
+      if (oldIndexes != null && oldIndexes[j] != null) {
+        if (indexes == null) {
+          indexes = new int[capacity][];
+        }
+        indexes[i] = oldIndexes[j];
+      }
+    }
+    numRemoved = 0;
+  }
+
+  /** Returns the position of value in the targets of slot k, or -1. */
+  private int indexOf(int k, Node value) {
+    Node[] ts = targets[k];
+    int size = sizes[k];
+    int[] index = indexes == null ? null : indexes[k];
+    if (index == null) {
+      for (int i = 0; i < size; i++) {
+        if (ts[i] == value) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = index.length - 1;
+    for (int i = hash(value) & mask;; i = (i + 1) & mask) {
+      int pos = index[i] - 1;
+      if (pos < 0) {
+        return -1;
+      }
+      if (ts[pos] == value) {
+        return pos;
+      }
+    }
+  }
+
+  private static int[] buildIndex(Node[] ts, int size) {
+    int capacity = Integer.highestOneBit(size * 4 - 1);
+    int[] index = new int[capacity];
+    for (int i = 0; i < size; i++) {
+      insertIntoIndex(index, ts[i], i);
+    }
+    return index;
+  }
+
+  private static void insertIntoIndex(int[] index, Node value, int pos) {
+    int mask = index.length - 1;
+    int i = hash(value) & mask;
+    while (index[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    index[i] = pos + 1;
+  }
+
+  private static int hash(Node n) {
+    int h = n.getNumber() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
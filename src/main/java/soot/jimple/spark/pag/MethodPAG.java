@@ -22,8 +22,11 @@ package soot.jimple.spark.pag;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import soot.ArrayType;
@@ -111,6 +114,36 @@ public final class MethodPAG {
     }
   }
 
+  /**
+   * Removes the edges that {@link #addToPAG(Context)} added to the main PAG for the null context, and forgets this MethodPAG,
+   * so that {@link #v(PAG, SootMethod)} afterwards builds a new one from the current active body of the method. Returns the
+   * removed edges as consecutive source and target nodes.
+   */
+  public List<Node> removeFromPAG() {
+    if (addedContexts != null) {
+      throw new RuntimeException("Cannot remove method " + method + " that was added in a context");
+    }
+    List<Node> ret = new ArrayList<Node>();
+    if (hasBeenAdded) {
+      for (QueueReader<Node> reader : Arrays.asList(internalReader, inReader, outReader)) {
+        reader = reader.clone();
+        while (reader.hasNext()) {
+          Node src = reader.next();
+          Node dst = reader.next();
+          if (pag.removeEdge(src, dst)) {
+            ret.add(src);
+            ret.add(dst);
+          }
+        }
+      }
+      hasBeenAdded = false;
+    }
+    if (G.v().MethodPAG_methodToPag.get(method) == this) {
+      G.v().MethodPAG_methodToPag.remove(method);
+    }
+    return ret;
+  }
+
   public void addInternalEdge(Node src, Node dst) {
     if (src == null) {
       return;
@@ -26,6 +26,7 @@ import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -72,6 +73,7 @@ import soot.jimple.spark.sets.HybridPointsToSet;
 import soot.jimple.spark.sets.P2SetFactory;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.spark.sets.RoaringPointsToSet;
 import soot.jimple.spark.sets.SharedHybridSet;
 import soot.jimple.spark.sets.SharedListSet;
 import soot.jimple.spark.sets.SortedArraySet;
@@ -132,6 +134,9 @@ public class PAG implements PointsToAnalysis {
       case SparkOptions.set_impl_bit:
         setFactory = BitPointsToSet.getFactory();
         break;
+      case SparkOptions.set_impl_roaring:
+        setFactory = RoaringPointsToSet.getFactory();
+        break;
       case SparkOptions.set_impl_double:
         P2SetFactory oldF;
         P2SetFactory newF;
@@ -154,6 +159,9 @@ public class PAG implements PointsToAnalysis {
           case SparkOptions.double_set_old_bit:
             oldF = BitPointsToSet.getFactory();
             break;
+          case SparkOptions.double_set_old_roaring:
+            oldF = RoaringPointsToSet.getFactory();
+            break;
           default:
             throw new RuntimeException();
         }
@@ -176,6 +184,9 @@ public class PAG implements PointsToAnalysis {
           case SparkOptions.double_set_new_bit:
             newF = BitPointsToSet.getFactory();
             break;
+          case SparkOptions.double_set_new_roaring:
+            newF = RoaringPointsToSet.getFactory();
+            break;
           default:
             throw new RuntimeException();
         }
@@ -313,6 +324,30 @@ public class PAG implements PointsToAnalysis {
     return addToMap(assignInstance, from, to) | addToMap(assignInstanceInv, to, from);
   }
 
+  public boolean doRemoveSimpleEdge(VarNode from, VarNode to) {
+    return removeFromMap(simple, from, to) | removeFromMap(simpleInv, to, from);
+  }
+
+  public boolean doRemoveStoreEdge(VarNode from, FieldRefNode to) {
+    return removeFromMap(store, from, to) | removeFromMap(storeInv, to, from);
+  }
+
+  public boolean doRemoveLoadEdge(FieldRefNode from, VarNode to) {
+    return removeFromMap(load, from, to) | removeFromMap(loadInv, to, from);
+  }
+
+  public boolean doRemoveAllocEdge(AllocNode from, VarNode to) {
+    return removeFromMap(alloc, from, to) | removeFromMap(allocInv, to, from);
+  }
+
+  public boolean doRemoveNewInstanceEdge(VarNode from, NewInstanceNode to) {
+    return removeFromMap(newInstance, from, to) | removeFromMap(newInstanceInv, to, from);
+  }
+
+  public boolean doRemoveAssignInstanceEdge(NewInstanceNode from, VarNode to) {
+    return removeFromMap(assignInstance, from, to) | removeFromMap(assignInstanceInv, to, from);
+  }
+
   /** Node uses this to notify PAG that n2 has been merged into n1. */
   void mergedWith(Node n1, Node n2) {
     if (n1.equals(n2)) {
@@ -417,6 +452,9 @@ public class PAG implements PointsToAnalysis {
         if (rep != reti || rep == key) {
           Set<Node> s;
           if (ret.length <= 75) {
+            // Compact into a copy, since callers may still hold the arrays returned before
+            Node[] newArray = new Node[ret.length];
+            System.arraycopy(ret, 0, newArray, 0, i);
             int j = i;
             outer: for (; i < ret.length; i++) {
               reti = ret[i];
@@ -425,15 +463,13 @@ public class PAG implements PointsToAnalysis {
                 continue;
               }
               for (int k = 0; k < j; k++) {
-                if (rep == ret[k]) {
+                if (rep == newArray[k]) {
                   continue outer;
                 }
               }
-              ret[j++] = rep;
+              newArray[j++] = rep;
             }
-            Node[] newArray = new Node[j];
-            System.arraycopy(ret, 0, newArray, 0, j);
-            m.put(key, ret = newArray);
+            m.put(key, ret = Arrays.copyOf(newArray, j));
           } else {
             s = new HashSet<Node>(ret.length * 2);
             for (int j = 0; j < i; j++) {
@@ -482,6 +518,10 @@ public class PAG implements PointsToAnalysis {
     return lookup(assignInstance, key);
   }
 
+  public Node[] assignInstanceInvLookup(VarNode key) {
+    return lookup(assignInstanceInv, key);
+  }
+
   public Node[] storeInvLookup(FieldRefNode key) {
     return lookup(storeInv, key);
   }
@@ -972,6 +1012,31 @@ public class PAG implements PointsToAnalysis {
     }
   }
 
+  /**
+   * Removes an edge from the graph, returning false if it was not there. Points-to sets that were already propagated along the
+   * edge are left as they are; see {@link soot.jimple.spark.solver.PropIncremental} for recomputing them. Removing edges
+   * from a graph in which nodes have been merged is not supported.
+   */
+  public boolean removeEdge(Node from, Node to) {
+    if (from instanceof VarNode) {
+      if (to instanceof VarNode) {
+        return doRemoveSimpleEdge((VarNode) from, (VarNode) to);
+      } else if (to instanceof FieldRefNode) {
+        return doRemoveStoreEdge((VarNode) from, (FieldRefNode) to);
+      } else if (to instanceof NewInstanceNode) {
+        return doRemoveNewInstanceEdge((VarNode) from, (NewInstanceNode) to);
+      } else {
+        throw new RuntimeException("Invalid node type");
+      }
+    } else if (from instanceof FieldRefNode) {
+      return doRemoveLoadEdge((FieldRefNode) from, (VarNode) to);
+    } else if (from instanceof NewInstanceNode) {
+      return doRemoveAssignInstanceEdge((NewInstanceNode) from, (VarNode) to);
+    } else {
+      return doRemoveAllocEdge((AllocNode) from, (VarNode) to);
+    }
+  }
+
   protected ChunkedQueue<Node> edgeQueue = new ChunkedQueue<Node>();
 
   public QueueReader<Node> edgeReader() {
@@ -1427,17 +1492,17 @@ public class PAG implements PointsToAnalysis {
   protected CGOptions cgOpts;
   protected ClientAccessibilityOracle accessibilityOracle = Scene.v().getClientAccessibilityOracle();
 
-  protected Map<VarNode, Object> simple = new HashMap<VarNode, Object>();
-  protected Map<FieldRefNode, Object> load = new HashMap<FieldRefNode, Object>();
-  protected Map<VarNode, Object> store = new HashMap<VarNode, Object>();
-  protected Map<AllocNode, Object> alloc = new HashMap<AllocNode, Object>();
+  protected EdgeMap<VarNode> simple = new EdgeMap<VarNode>();
+  protected EdgeMap<FieldRefNode> load = new EdgeMap<FieldRefNode>();
+  protected EdgeMap<VarNode> store = new EdgeMap<VarNode>();
+  protected EdgeMap<AllocNode> alloc = new EdgeMap<AllocNode>();
   protected Map<VarNode, Object> newInstance = new HashMap<VarNode, Object>();
   protected Map<NewInstanceNode, Object> assignInstance = new HashMap<NewInstanceNode, Object>();
 
-  protected Map<VarNode, Object> simpleInv = new HashMap<VarNode, Object>();
-  protected Map<VarNode, Object> loadInv = new HashMap<VarNode, Object>();
-  protected Map<FieldRefNode, Object> storeInv = new HashMap<FieldRefNode, Object>();
-  protected Map<VarNode, Object> allocInv = new HashMap<VarNode, Object>();
+  protected EdgeMap<VarNode> simpleInv = new EdgeMap<VarNode>();
+  protected EdgeMap<VarNode> loadInv = new EdgeMap<VarNode>();
+  protected EdgeMap<FieldRefNode> storeInv = new EdgeMap<FieldRefNode>();
+  protected EdgeMap<VarNode> allocInv = new EdgeMap<VarNode>();
   protected Map<NewInstanceNode, Object> newInstanceInv = new HashMap<NewInstanceNode, Object>();
   protected Map<VarNode, Object> assignInstanceInv = new HashMap<VarNode, Object>();
 
@@ -1458,6 +1523,37 @@ public class PAG implements PointsToAnalysis {
     return ((Set<Node>) valueList).add(value);
   }
 
+  protected <K extends Node> boolean addToMap(EdgeMap<K> m, K key, Node value) {
+    return m.addTarget(key, value);
+  }
+
+  protected <K extends Node> boolean removeFromMap(EdgeMap<K> m, K key, Node value) {
+    return m.removeTarget(key, value);
+  }
+
+  protected <K extends Node> boolean removeFromMap(Map<K, Object> m, K key, Node value) {
+    Object valueList = m.get(key);
+    if (valueList == null) {
+      return false;
+    }
+    Set<Node> vl;
+    if (valueList instanceof Set) {
+      vl = (Set<Node>) valueList;
+    } else {
+      Node[] ar = (Node[]) valueList;
+      vl = new HashSet<Node>(ar.length + 4);
+      for (Node element : ar) {
+        vl.add(element);
+      }
+      m.put(key, vl);
+    }
+    boolean ret = vl.remove(value);
+    if (vl.isEmpty()) {
+      m.remove(key);
+    }
+    return ret;
+  }
+
   private boolean runGeomPTA = false;
   protected MultiMap<Pair<Node, Node>, Edge> assign2edges = new HashMultiMap<>();
   private final Map<Object, LocalVarNode> valToLocalVarNode = new HashMap<>(1000);
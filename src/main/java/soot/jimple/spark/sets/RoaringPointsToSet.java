@@ -0,0 +1,121 @@
+package soot.jimple.spark.sets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import soot.PointsToSet;
+import soot.Type;
+import soot.jimple.spark.internal.TypeManager;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.util.BitVector;
+import soot.util.RoaringBitVector;
+
+/**
+ * Implementation of points-to set using a compressed {@link RoaringBitVector}. Unlike {@link HybridPointsToSet}, which
+ * switches to a bit vector as long as the highest allocation site number once it holds more than 16 elements, the size of
+ * this set grows with the number of elements it holds, so sets of a few hundred objects spread over the whole program stay
+ * small.
+ */
+public final class RoaringPointsToSet extends PointsToSetInternal {
+  public RoaringPointsToSet(Type type, PAG pag) {
+    super(type);
+    this.pag = pag;
+  }
+
+  /** Returns true if this set contains no run-time objects. */
+  public final boolean isEmpty() {
+    return bits.isEmpty();
+  }
+
+  private boolean nativeAddAll(RoaringPointsToSet other, RoaringPointsToSet exclude) {
+    BitVector mask = null;
+    TypeManager typeManager = pag.getTypeManager();
+    if (!typeManager.castNeverFails(other.getType(), this.getType())) {
+      mask = typeManager.get(this.getType());
+    }
+    RoaringBitVector ebits = (exclude == null ? null : exclude.bits);
+    return bits.orAndAndNot(other.bits, mask, ebits);
+  }
+
+  /**
+   * Adds contents of other into this set, returns true if this set changed.
+   */
+  public final boolean addAll(PointsToSetInternal other, PointsToSetInternal exclude) {
+    if (other != null && !(other instanceof RoaringPointsToSet)) {
+      return super.addAll(other, exclude);
+    }
+    if (exclude != null && !(exclude instanceof RoaringPointsToSet)) {
+      return super.addAll(other, exclude);
+    }
+    if (other == null) {
+      return false;
+    }
+    return nativeAddAll((RoaringPointsToSet) other, (RoaringPointsToSet) exclude);
+  }
+
+  /** Calls v's visit method on all nodes in this set. */
+  public final boolean forall(P2SetVisitor v) {
+    for (RoaringBitVector.SetBitIterator it = bits.iterator(); it.hasNext();) {
+      v.visit(pag.getAllocNodeNumberer().get(it.next()));
+    }
+    return v.getReturnValue();
+  }
+
+  /** Adds n to this set, returns true if n was not already in this set. */
+  public final boolean add(Node n) {
+    if (pag.getTypeManager().castNeverFails(n.getType(), type)) {
+      return bits.set(n.getNumber());
+    }
+    return false;
+  }
+
+  /** Returns true iff the set contains n. */
+  public final boolean contains(Node n) {
+    return bits.get(n.getNumber());
+  }
+
+  public int size() {
+    return bits.cardinality();
+  }
+
+  public boolean hasNonEmptyIntersection(PointsToSet other) {
+    if (other instanceof RoaringPointsToSet) {
+      return bits.intersects(((RoaringPointsToSet) other).bits);
+    }
+    return super.hasNonEmptyIntersection(other);
+  }
+
+  public static P2SetFactory getFactory() {
+    return new P2SetFactory() {
+      public final PointsToSetInternal newSet(Type type, PAG pag) {
+        return new RoaringPointsToSet(type, pag);
+      }
+    };
+  }
+
+  /* End of public methods. */
+  /* End of package methods. */
+
+  private final RoaringBitVector bits = new RoaringBitVector();
+  private final PAG pag;
+}
@@ -0,0 +1,398 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.G;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.jimple.InvokeExpr;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.MethodPAG;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.SparkOptions;
+import soot.util.queue.QueueReader;
+
+/**
+ * Updates the points-to sets of an already propagated pointer assignment graph after methods have been added, removed or
+ * changed, re-propagating only the part of the graph that the change can affect. A typical use is to call
+ * {@link #changeMethod(SootMethod)} for every method whose active body was replaced, followed by a single call to
+ * {@link #propagate()}.
+ *
+ * <p>
+ * Added edges are handled as during normal propagation: the points-to set of the source is pushed along the new edge and
+ * the worklist does the rest. Since points-to sets only grow, the result for additions is exact.
+ * </p>
+ *
+ * <p>
+ * Removed edges are handled by deleting and re-deriving. Starting from the targets of the removed edges, all nodes whose
+ * points-to sets may have been derived through one of them are collected by following simple, load and store edges
+ * forward. This over-approximates the nodes that may lose objects. Their points-to sets are then cleared, seeded again
+ * from their predecessors outside of the affected region, and propagated as usual. The result is the same as propagating
+ * the changed graph from scratch, except for the following, which can only make it less precise, never unsound:
+ * <ul>
+ * <li>Call edges are never removed from the call graph. With the on-the-fly call graph, an edge stays even if the
+ * receiver no longer points to an object that causes it, and so do the parameter and return edges added for it.</li>
+ * <li>Nodes that receive objects through reflective instantiation keep their points-to sets.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Removing edges requires that no nodes were merged, so the graph must not have been simplified (simplify-sccs,
+ * simplify-offline, vta, simple-edges-bidirectional) and must be context-insensitive.
+ * </p>
+ */
+public class PropIncremental extends PropWorklist {
+  private static final Logger logger = LoggerFactory.getLogger(PropIncremental.class);
+
+  /** Removed edges that have not been handled yet, as consecutive source and target nodes. */
+  protected final List<Node> removedEdges = new ArrayList<Node>();
+  protected QueueReader<Node> addedEdges;
+
+  public PropIncremental(PAG pag) {
+    super(pag);
+    SparkOptions opts = pag.getOpts();
+    if (opts.simple_edges_bidirectional() || opts.vta() || opts.geom_pta()
+        || (!opts.on_fly_cg() && (opts.simplify_sccs() || opts.simplify_offline()))) {
+      throw new RuntimeException("Incremental propagation is not supported for PAGs with merged nodes");
+    }
+    this.addedEdges = pag.edgeReader();
+  }
+
+  /**
+   * Removes the edges of method m from the PAG. The points-to sets are updated by the next call to {@link #propagate()}.
+   */
+  public void removeMethod(SootMethod m) {
+    MethodPAG mpag = G.v().MethodPAG_methodToPag.get(m);
+    if (mpag == null) {
+      return;
+    }
+    List<Node> removed = mpag.removeFromPAG();
+    removedEdges.addAll(removed);
+
+    // Parameter and return edges to other methods are not part of the MethodPAG. The nodes of
+    // the parameters and the return value of m stay, as they are shared with the callers of m.
+    Set<VarNode> locals = new HashSet<VarNode>();
+    for (Node n : removed) {
+      if (n instanceof FieldRefNode) {
+        n = ((FieldRefNode) n).getBase();
+      }
+      if (n instanceof LocalVarNode) {
+        LocalVarNode lvn = (LocalVarNode) n;
+        if (lvn.getMethod() == m && lvn.getVariable() instanceof Local) {
+          locals.add(lvn);
+        }
+      }
+    }
+    for (VarNode v : locals) {
+      removeEdgesOf(v);
+    }
+
+    for (Iterator<Map.Entry<InvokeExpr, SootMethod>> it = pag.callToMethod.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<InvokeExpr, SootMethod> e = it.next();
+      if (e.getValue() == m) {
+        pag.callAssigns.remove(e.getKey());
+        pag.virtualCallsToReceivers.remove(e.getKey());
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Adds the edges of method m, built from its current active body, to the PAG, together with the edges for the calls from
+   * and to m. With the on-the-fly call graph, the call sites of m are found as usual; otherwise, they are taken from the
+   * call graph in the Scene, which must already contain the edges of the current body. The points-to sets are updated by
+   * the next call to {@link #propagate()}.
+   */
+  public void addMethod(SootMethod m) {
+    MethodPAG mpag = MethodPAG.v(pag, m);
+    mpag.build();
+    mpag.addToPAG(null);
+
+    OnFlyCallGraph ofcg = pag.getOnFlyCallGraph();
+    if (ofcg != null) {
+      ofcg.ofcgb().reprocessMethod(m);
+      ofcg.build();
+    } else {
+      CallGraph cg = Scene.v().getCallGraph();
+      for (Iterator<Edge> it = cg.edgesOutOf(m); it.hasNext();) {
+        addCallEdge(it.next());
+      }
+      for (Iterator<Edge> it = cg.edgesInto(m); it.hasNext();) {
+        addCallEdge(it.next());
+      }
+    }
+  }
+
+  /** Replaces the edges of method m by those of its current active body. */
+  public void changeMethod(SootMethod m) {
+    removeMethod(m);
+    addMethod(m);
+  }
+
+  /** Updates the points-to sets for the methods that were added or removed since the last propagation. */
+  @Override
+  public void propagate() {
+    ofcg = pag.getOnFlyCallGraph();
+    if (!removedEdges.isEmpty()) {
+      rederive();
+    }
+    while (addedEdges.hasNext()) {
+      Node src = addedEdges.next();
+      Node tgt = addedEdges.next();
+      if (src instanceof FieldRefNode) {
+        handleAddedLoad((FieldRefNode) src, (VarNode) tgt);
+      } else if (!(tgt instanceof FieldRefNode)) {
+        // Stores are handled by the pass over all store edges in processWorklist()
+        handleAddedEdge(src, tgt, null);
+      }
+    }
+    processWorklist();
+    // Edges added during propagation have already been handled
+    addedEdges = pag.edgeReader();
+  }
+
+  /* End of public methods. */
+  /* End of package methods. */
+
+  protected void addCallEdge(Edge e) {
+    if (e.getTgt().method().getDeclaringClass().isConcrete()) {
+      if (e.tgt().isConcrete() || e.tgt().isNative()) {
+        MethodPAG mpag = MethodPAG.v(pag, e.tgt());
+        mpag.build();
+        mpag.addToPAG(null);
+      }
+      pag.addCallTarget(e);
+    }
+  }
+
+  protected void removeEdgesOf(VarNode v) {
+    for (Node n : pag.simpleLookup(v)) {
+      removeEdge(v, n);
+    }
+    for (Node n : pag.simpleInvLookup(v)) {
+      removeEdge(n, v);
+    }
+    for (Node n : pag.storeLookup(v)) {
+      removeEdge(v, n);
+    }
+    for (Node n : pag.loadInvLookup(v)) {
+      removeEdge(n, v);
+    }
+    for (Node n : pag.allocInvLookup(v)) {
+      removeEdge(n, v);
+    }
+    for (Node n : pag.newInstanceLookup(v)) {
+      removeEdge(v, n);
+    }
+    for (Node n : pag.assignInstanceInvLookup(v)) {
+      removeEdge(n, v);
+    }
+    for (FieldRefNode fr : v.getAllFieldRefs()) {
+      for (Node n : pag.storeInvLookup(fr)) {
+        removeEdge(n, fr);
+      }
+      for (Node n : pag.loadLookup(fr)) {
+        removeEdge(fr, n);
+      }
+    }
+  }
+
+  protected void removeEdge(Node src, Node tgt) {
+    if (pag.removeEdge(src, tgt)) {
+      removedEdges.add(src);
+      removedEdges.add(tgt);
+    }
+  }
+
+  /**
+   * Clears the points-to sets of all nodes that may depend on a removed edge, and seeds them again from the nodes that do
+   * not.
+   */
+  protected void rederive() {
+    final Set<Node> affected = findAffected();
+    removedEdges.clear();
+    if (pag.getOpts().verbose()) {
+      logger.debug("Recomputing points-to sets of " + affected.size() + " nodes");
+    }
+    for (Node n : affected) {
+      n.discardP2Set();
+    }
+    // AllocDotFields are seeded again by the pass over all store edges in processWorklist()
+    for (Node n : affected) {
+      if (!(n instanceof VarNode)) {
+        continue;
+      }
+      final VarNode v = (VarNode) n;
+      final PointsToSetInternal p2set = v.makeP2Set();
+      for (Node alloc : pag.allocInvLookup(v)) {
+        p2set.add(alloc);
+      }
+      for (Node src : pag.simpleInvLookup(v)) {
+        if (!affected.contains(src)) {
+          p2set.addAll(src.getP2Set(), null);
+        }
+      }
+      for (Node element : pag.loadInvLookup(v)) {
+        final FieldRefNode fr = (FieldRefNode) element;
+        if (affected.contains(fr.getBase())) {
+          continue;
+        }
+        fr.getBase().getP2Set().forall(new P2SetVisitor() {
+          public final void visit(Node o) {
+            AllocDotField nDotF = ((AllocNode) o).dot(fr.getField());
+            if (nDotF != null && !affected.contains(nDotF)) {
+              p2set.addAll(nDotF.getP2Set(), null);
+            }
+          }
+        });
+      }
+      varNodeWorkList.add(v);
+    }
+  }
+
+  /**
+   * Returns the nodes whose points-to sets may have been derived through one of the removed edges, based on the points-to
+   * sets before the removal.
+   */
+  protected Set<Node> findAffected() {
+    final Set<Node> affected = new HashSet<Node>();
+    final Deque<Node> worklist = new ArrayDeque<Node>();
+    for (int i = 0; i < removedEdges.size(); i += 2) {
+      Node tgt = removedEdges.get(i + 1);
+      if (tgt instanceof VarNode) {
+        addAffected((VarNode) tgt, affected, worklist);
+      } else if (tgt instanceof FieldRefNode) {
+        FieldRefNode fr = (FieldRefNode) tgt;
+        addAffected(fr.getBase().getP2Set(), fr.getField(), affected, worklist);
+      }
+    }
+
+    Map<SparkField, List<FieldRefNode>> loadsByField = null;
+    while (!worklist.isEmpty()) {
+      Node n = worklist.removeFirst();
+      if (n instanceof VarNode) {
+        VarNode v = (VarNode) n;
+        for (Node tgt : pag.simpleLookup(v)) {
+          addAffected((VarNode) tgt, affected, worklist);
+        }
+        for (Node tgt : pag.storeLookup(v)) {
+          FieldRefNode fr = (FieldRefNode) tgt;
+          addAffected(fr.getBase().getP2Set(), fr.getField(), affected, worklist);
+        }
+        // If v loses objects, so do the fields read and written through v
+        for (FieldRefNode fr : v.getAllFieldRefs()) {
+          for (Node tgt : pag.loadLookup(fr)) {
+            addAffected((VarNode) tgt, affected, worklist);
+          }
+          if (pag.storeInvLookup(fr).length > 0) {
+            addAffected(v.getP2Set(), fr.getField(), affected, worklist);
+          }
+        }
+      } else {
+        AllocDotField nDotF = (AllocDotField) n;
+        if (loadsByField == null) {
+          loadsByField = new HashMap<SparkField, List<FieldRefNode>>();
+          for (FieldRefNode fr : pag.loadSources()) {
+            List<FieldRefNode> l = loadsByField.get(fr.getField());
+            if (l == null) {
+              loadsByField.put(fr.getField(), l = new ArrayList<FieldRefNode>());
+            }
+            l.add(fr);
+          }
+        }
+        List<FieldRefNode> loads = loadsByField.get(nDotF.getField());
+        if (loads == null) {
+          continue;
+        }
+        for (FieldRefNode fr : loads) {
+          if (fr.getBase().getP2Set().contains(nDotF.getBase())) {
+            for (Node tgt : pag.loadLookup(fr)) {
+              addAffected((VarNode) tgt, affected, worklist);
+            }
+          }
+        }
+      }
+    }
+    return affected;
+  }
+
+  private void addAffected(VarNode v, Set<Node> affected, Deque<Node> worklist) {
+    // The points-to sets of nodes fed by reflective instantiation are not recomputed
+    if (pag.assignInstanceInvLookup(v).length > 0) {
+      return;
+    }
+    if (affected.add(v)) {
+      worklist.add(v);
+    }
+  }
+
+  private void addAffected(PointsToSetInternal bases, final SparkField field, final Set<Node> affected,
+      final Deque<Node> worklist) {
+    bases.forall(new P2SetVisitor() {
+      public final void visit(Node n) {
+        AllocDotField nDotF = ((AllocNode) n).dot(field);
+        if (nDotF != null && affected.add(nDotF)) {
+          worklist.add(nDotF);
+        }
+      }
+    });
+  }
+
+  /** Propagates the objects stored in the fields read by a load edge that was added after propagation. */
+  protected void handleAddedLoad(final FieldRefNode src, final VarNode tgt) {
+    final PointsToSetInternal p2set = tgt.makeP2Set();
+    src.getBase().getP2Set().forall(new P2SetVisitor() {
+      public final void visit(Node n) {
+        AllocDotField nDotF = ((AllocNode) n).dot(src.getField());
+        if (nDotF != null) {
+          p2set.addAll(nDotF.getP2Set(), null);
+        }
+      }
+    });
+    varNodeWorkList.add(tgt);
+  }
+}
@@ -0,0 +1,378 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.solver.CountingThreadPoolExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Scene;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.DoublePointsToSet;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.SparkOptions;
+import soot.util.queue.QueueReader;
+
+/**
+ * Propagates points-to sets along the pointer assignment graph like {@link PropWorklist}, but uses several threads.
+ *
+ * <p>
+ * The nodes on the worklist are handled in rounds. At the start of a round, the new part of the points-to set of each node
+ * on the worklist is taken out and flushed. Everything that touches shared structures, such as creating field nodes or
+ * updating the on-the-fly call graph, then runs on the calling thread and only records which sets have to be added to
+ * which node. The unions themselves run in parallel, grouped by the node they write to, so that every points-to set is
+ * written by at most one thread while the sets it reads are not written at all. Since the result of propagation is the
+ * least fixed point of the same constraints, it does not depend on the order in which nodes are handled and is the same
+ * as that of {@link PropWorklist}.
+ * </p>
+ *
+ * <p>
+ * The shared points-to set implementations (heintze and sharedlist) are not thread-safe; with them, or with a single
+ * thread, propagation is done like in {@link PropWorklist}.
+ * </p>
+ */
+public class PropParallel extends PropWorklist {
+  private static final Logger logger = LoggerFactory.getLogger(PropParallel.class);
+
+  /** Nodes written by a single step below which that step runs on the calling thread. */
+  static final int MIN_PARALLEL_TARGETS = 256;
+
+  private static volatile int minParallelTargets = MIN_PARALLEL_TARGETS;
+
+  protected final int numThreads;
+  protected CountingThreadPoolExecutor executor;
+
+  public PropParallel(PAG pag) {
+    super(pag);
+    int threadNum = Scene.v().getNumThreads();
+    this.numThreads = hasThreadSafeSets(pag.getOpts()) ? threadNum : 1;
+  }
+
+  /** Actually does the propagation. */
+  @Override
+  public void propagate() {
+    if (numThreads <= 1) {
+      super.propagate();
+      return;
+    }
+    executor = new CountingThreadPoolExecutor(numThreads, numThreads, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>());
+    try {
+      super.propagate();
+    } finally {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /* End of public methods. */
+
+  /**
+   * Sets the number of nodes written by a single step below which that step runs on the calling thread, so that tests
+   * can run the parallel steps on small programs.
+   */
+  static void setMinParallelTargets(int minTargets) {
+    minParallelTargets = minTargets;
+  }
+
+  /* End of package methods. */
+
+  protected static boolean hasThreadSafeSets(SparkOptions opts) {
+    switch (opts.set_impl()) {
+      case SparkOptions.set_impl_heintze:
+      case SparkOptions.set_impl_sharedlist:
+        return false;
+      case SparkOptions.set_impl_double:
+        return opts.double_set_old() != SparkOptions.double_set_old_heintze
+            && opts.double_set_old() != SparkOptions.double_set_old_sharedlist
+            && opts.double_set_new() != SparkOptions.double_set_new_heintze
+            && opts.double_set_new() != SparkOptions.double_set_new_sharedlist;
+      default:
+        return true;
+    }
+  }
+
+  @Override
+  protected void processWorklist() {
+    if (executor == null) {
+      super.processWorklist();
+      return;
+    }
+    boolean verbose = pag.getOpts().verbose();
+    do {
+      if (verbose) {
+        logger.debug("Worklist has " + varNodeWorkList.size() + " nodes.");
+      }
+      while (!varNodeWorkList.isEmpty()) {
+        processRound();
+      }
+      if (verbose) {
+        logger.debug("Now handling field references");
+      }
+      propagateStores();
+      propagateLoads();
+    } while (!varNodeWorkList.isEmpty());
+  }
+
+  /** Handles all nodes currently on the worklist. */
+  protected void processRound() {
+    final List<VarNode> srcs = new ArrayList<VarNode>(varNodeWorkList);
+    varNodeWorkList.clear();
+
+    QueueReader<Node> addedEdges = null;
+    if (ofcg != null) {
+      addedEdges = pag.edgeReader();
+      for (VarNode src : srcs) {
+        if (!src.getP2Set().getNewSet().isEmpty()) {
+          ofcg.updatedNode(src);
+        }
+      }
+    }
+
+    // Take out the new part of each points-to set. Nodes that receive objects during this round
+    // are put back on the worklist.
+    final List<VarNode> changedSrcs = new ArrayList<VarNode>(srcs.size());
+    final List<PointsToSetInternal> deltas = new ArrayList<PointsToSetInternal>(srcs.size());
+    for (VarNode src : srcs) {
+      if (src.getReplacement() != src) {
+        throw new RuntimeException("Got bad node " + src + " with rep " + src.getReplacement());
+      }
+      PointsToSetInternal p2set = src.getP2Set();
+      PointsToSetInternal newP2Set = p2set.getNewSet();
+      if (newP2Set.isEmpty()) {
+        continue;
+      }
+      if (!(p2set instanceof DoublePointsToSet)) {
+        // Only a DoublePointsToSet leaves its new set untouched after flushing
+        PointsToSetInternal copy = pag.getSetFactory().newSet(src.getType(), pag);
+        copy.addAll(newP2Set, null);
+        newP2Set = copy;
+      }
+      p2set.flushNew();
+      changedSrcs.add(src);
+      deltas.add(newP2Set);
+    }
+
+    if (ofcg != null) {
+      ofcg.build();
+      while (addedEdges.hasNext()) {
+        Node addedSrc = addedEdges.next();
+        Node addedTgt = addedEdges.next();
+        handleAddedEdge(addedSrc, addedTgt, null);
+      }
+    }
+
+    // Simple edges
+    Map<Node, List<PointsToSetInternal>> targets = new HashMap<Node, List<PointsToSetInternal>>();
+    for (int i = 0; i < changedSrcs.size(); i++) {
+      for (Node element : pag.simpleLookup(changedSrcs.get(i))) {
+        addTarget(targets, element, deltas.get(i));
+      }
+    }
+    addToWorklist(addAllInParallel(targets));
+
+    // Stores, both through the new objects of a stored variable and into the new objects of a base
+    final Map<Node, List<PointsToSetInternal>> fieldTargets = new HashMap<Node, List<PointsToSetInternal>>();
+    for (int i = 0; i < changedSrcs.size(); i++) {
+      final PointsToSetInternal newP2Set = deltas.get(i);
+      for (Node element : pag.storeLookup(changedSrcs.get(i))) {
+        final FieldRefNode fr = (FieldRefNode) element;
+        final SparkField f = fr.getField();
+        fr.getBase().getP2Set().forall(new P2SetVisitor() {
+          public final void visit(Node n) {
+            addTarget(fieldTargets, pag.makeAllocDotField((AllocNode) n, f), newP2Set);
+          }
+        });
+      }
+      for (final FieldRefNode fr : changedSrcs.get(i).getAllFieldRefs()) {
+        final SparkField field = fr.getField();
+        final Node[] storeSources = pag.storeInvLookup(fr);
+        if (storeSources.length > 0) {
+          newP2Set.forall(new P2SetVisitor() {
+            public final void visit(Node n) {
+              Node nDotF = pag.makeAllocDotField((AllocNode) n, field).getReplacement();
+              for (Node element : storeSources) {
+                addTarget(fieldTargets, nDotF, element.getP2Set());
+              }
+            }
+          });
+        }
+      }
+    }
+    addAllInParallel(fieldTargets);
+
+    // Loads through the new objects of a base
+    final Map<Node, List<PointsToSetInternal>> loadTargets = new HashMap<Node, List<PointsToSetInternal>>();
+    for (int i = 0; i < changedSrcs.size(); i++) {
+      for (final FieldRefNode fr : changedSrcs.get(i).getAllFieldRefs()) {
+        final SparkField field = fr.getField();
+        final Node[] targetNodes = pag.loadLookup(fr);
+        if (targetNodes.length > 0) {
+          deltas.get(i).forall(new P2SetVisitor() {
+            public final void visit(Node n) {
+              AllocDotField nDotF = pag.makeAllocDotField((AllocNode) n, field);
+              for (Node element : targetNodes) {
+                addTarget(loadTargets, element, nDotF.getReplacement().getP2Set());
+              }
+            }
+          });
+        }
+      }
+    }
+    addToWorklist(addAllInParallel(loadTargets));
+  }
+
+  /** Propagates the points-to sets of all stored variables into the fields they are stored to. */
+  protected void propagateStores() {
+    final Map<Node, List<PointsToSetInternal>> targets = new HashMap<Node, List<PointsToSetInternal>>();
+    for (final VarNode src : pag.storeSources()) {
+      for (Node element : pag.storeLookup(src)) {
+        final FieldRefNode target = (FieldRefNode) element;
+        target.getBase().makeP2Set().forall(new P2SetVisitor() {
+          public final void visit(Node n) {
+            AllocDotField nDotF = pag.makeAllocDotField((AllocNode) n, target.getField());
+            if (ofcg != null) {
+              ofcg.updatedFieldRef(nDotF, src.getP2Set());
+            }
+            addTarget(targets, nDotF, src.getP2Set());
+          }
+        });
+      }
+    }
+    addAllInParallel(targets);
+  }
+
+  /** Propagates the new objects in fields to the variables they are loaded into. */
+  protected void propagateLoads() {
+    HashSet<Object[]> edgesToPropagate = new HashSet<Object[]>();
+    for (FieldRefNode object : pag.loadSources()) {
+      handleFieldRefNode(object, edgesToPropagate);
+    }
+    Map<Node, List<PointsToSetInternal>> targets = new HashMap<Node, List<PointsToSetInternal>>();
+    Set<PointsToSetInternal> nodesToFlush = Collections.newSetFromMap(new IdentityHashMap<PointsToSetInternal, Boolean>());
+    for (Object[] pair : edgesToPropagate) {
+      PointsToSetInternal nDotF = (PointsToSetInternal) pair[0];
+      addTarget(targets, (VarNode) pair[1], nDotF.getNewSet());
+      nodesToFlush.add(nDotF);
+    }
+    addToWorklist(addAllInParallel(targets));
+    for (PointsToSetInternal nDotF : nodesToFlush) {
+      nDotF.flushNew();
+    }
+  }
+
+  private static void addTarget(Map<Node, List<PointsToSetInternal>> targets, Node target, PointsToSetInternal set) {
+    List<PointsToSetInternal> sets = targets.get(target);
+    if (sets == null) {
+      targets.put(target, sets = new ArrayList<PointsToSetInternal>(2));
+    }
+    sets.add(set);
+  }
+
+  private void addToWorklist(List<Node> nodes) {
+    for (Node n : nodes) {
+      varNodeWorkList.add((VarNode) n);
+    }
+  }
+
+  /**
+   * Adds the given sets to the points-to sets of their target nodes, and returns the nodes whose points-to sets changed.
+   * None of the given sets may belong to one of the targets.
+   */
+  protected List<Node> addAllInParallel(Map<Node, List<PointsToSetInternal>> targets) {
+    // Alloc nodes are only created on this thread, so the type masks can be read concurrently from here on
+    pag.getTypeManager().updateTypeMasks();
+
+    final List<Map.Entry<Node, List<PointsToSetInternal>>> entries
+        = new ArrayList<Map.Entry<Node, List<PointsToSetInternal>>>(targets.entrySet());
+    if (entries.size() < minParallelTargets) {
+      List<Node> changed = new ArrayList<Node>();
+      addAll(entries, changed);
+      return changed;
+    }
+
+    int numChunks = numThreads * 4;
+    int chunkSize = (entries.size() + numChunks - 1) / numChunks;
+    final List<List<Node>> changedPerChunk = new ArrayList<List<Node>>();
+    for (int start = 0; start < entries.size(); start += chunkSize) {
+      final List<Map.Entry<Node, List<PointsToSetInternal>>> chunk
+          = entries.subList(start, Math.min(start + chunkSize, entries.size()));
+      final List<Node> changed = new ArrayList<Node>();
+      changedPerChunk.add(changed);
+      executor.execute(() -> addAll(chunk, changed));
+    }
+
+    try {
+      executor.awaitCompletion();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Could not wait for propagation threads to finish: " + e.getMessage(), e);
+    }
+    Throwable exception = executor.getException();
+    if (exception != null) {
+      if (exception instanceof RuntimeException) {
+        throw (RuntimeException) exception;
+      } else {
+        throw new RuntimeException(exception);
+      }
+    }
+
+    List<Node> ret = new ArrayList<Node>();
+    for (List<Node> changed : changedPerChunk) {
+      ret.addAll(changed);
+    }
+    return ret;
+  }
+
+  private static void addAll(List<Map.Entry<Node, List<PointsToSetInternal>>> entries, List<Node> changed) {
+    for (Map.Entry<Node, List<PointsToSetInternal>> e : entries) {
+      Node target = e.getKey();
+      PointsToSetInternal p2set = target.makeP2Set();
+      boolean ret = false;
+      for (PointsToSetInternal set : e.getValue()) {
+        ret = p2set.addAll(set, null) | ret;
+      }
+      if (ret) {
+        changed.add(target);
+      }
+    }
+  }
+}
@@ -69,7 +69,16 @@ public class PropWorklist extends Propagator {
     for (AllocNode object : pag.allocSources()) {
       handleAllocNode(object);
     }
+    processWorklist();
+  }
+
+  /* End of public methods. */
+  /* End of package methods. */
 
+  /**
+   * Propagates points-to sets from the nodes on the worklist and through the field references until nothing changes.
+   */
+  protected void processWorklist() {
     boolean verbose = pag.getOpts().verbose();
     do {
       if (verbose) {
@@ -119,9 +128,6 @@ public class PropWorklist extends Propagator {
     } while (!varNodeWorkList.isEmpty());
   }
 
-  /* End of public methods. */
-  /* End of package methods. */
-
   /**
    * Propagates new points-to information of node src to all its successors.
    */
@@ -162,67 +168,8 @@ public class PropWorklist extends Propagator {
         Node addedSrc = (Node) addedEdges.next();
         Node addedTgt = (Node) addedEdges.next();
         ret = true;
-        if (addedSrc instanceof VarNode) {
-          VarNode edgeSrc = (VarNode) addedSrc.getReplacement();
-          if (addedTgt instanceof VarNode) {
-            VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
-
-            if (edgeTgt.makeP2Set().addAll(edgeSrc.getP2Set(), null)) {
-              varNodeWorkList.add(edgeTgt);
-              if (edgeTgt == src) {
-                flush = false;
-              }
-            }
-          } else if (addedTgt instanceof NewInstanceNode) {
-            NewInstanceNode edgeTgt = (NewInstanceNode) addedTgt.getReplacement();
-            if (edgeTgt.makeP2Set().addAll(edgeSrc.getP2Set(), null)) {
-              for (Node element : pag.assignInstanceLookup(edgeTgt)) {
-                varNodeWorkList.add((VarNode) element);
-                if (element == src) {
-                  flush = false;
-                }
-              }
-            }
-          }
-        } else if (addedSrc instanceof AllocNode) {
-          VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
-          if (edgeTgt.makeP2Set().add(addedSrc)) {
-            varNodeWorkList.add(edgeTgt);
-            if (edgeTgt == src) {
-              flush = false;
-            }
-          }
-        } else if (addedSrc instanceof NewInstanceNode && addedTgt instanceof VarNode) {
-          final NewInstanceNode edgeSrc = (NewInstanceNode) addedSrc.getReplacement();
-          final VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
-          addedSrc.getP2Set().forall(new P2SetVisitor() {
-
-            @Override
-            public void visit(Node n) {
-              if (n instanceof ClassConstantNode) {
-                ClassConstantNode ccn = (ClassConstantNode) n;
-                Type ccnType = ccn.getClassConstant().toSootType();
-
-                // If the referenced class has not been loaded,
-                // we do this now
-                SootClass targetClass = ((RefType) ccnType).getSootClass();
-                if (targetClass.resolvingLevel() == SootClass.DANGLING) {
-                  Scene.v().forceResolve(targetClass.getName(), SootClass.SIGNATURES);
-                }
-
-                // We can only create alloc nodes for types that
-                // we know
-                edgeTgt.makeP2Set().add(pag.makeAllocNode(edgeSrc.getValue(), ccnType, ccn.getMethod()));
-                varNodeWorkList.add(edgeTgt);
-              }
-            }
-
-          });
-          if (edgeTgt.makeP2Set().add(addedSrc)) {
-            if (edgeTgt == src) {
-              flush = false;
-            }
-          }
+        if (handleAddedEdge(addedSrc, addedTgt, src)) {
+          flush = false;
         }
       }
     }
@@ -305,6 +252,77 @@ public class PropWorklist extends Propagator {
     return ret;
   }
 
+  /**
+   * Propagates the points-to set of addedSrc along an edge to addedTgt that was added to the PAG after addedSrc was
+   * propagated. Returns true if the points-to set of src changed as a result.
+   */
+  protected boolean handleAddedEdge(Node addedSrc, Node addedTgt, final VarNode src) {
+    boolean changedSrc = false;
+    if (addedSrc instanceof VarNode) {
+      VarNode edgeSrc = (VarNode) addedSrc.getReplacement();
+      if (addedTgt instanceof VarNode) {
+        VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+
+        if (edgeTgt.makeP2Set().addAll(edgeSrc.getP2Set(), null)) {
+          varNodeWorkList.add(edgeTgt);
+          if (edgeTgt == src) {
+            changedSrc = true;
+          }
+        }
+      } else if (addedTgt instanceof NewInstanceNode) {
+        NewInstanceNode edgeTgt = (NewInstanceNode) addedTgt.getReplacement();
+        if (edgeTgt.makeP2Set().addAll(edgeSrc.getP2Set(), null)) {
+          for (Node element : pag.assignInstanceLookup(edgeTgt)) {
+            varNodeWorkList.add((VarNode) element);
+            if (element == src) {
+              changedSrc = true;
+            }
+          }
+        }
+      }
+    } else if (addedSrc instanceof AllocNode) {
+      VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+      if (edgeTgt.makeP2Set().add(addedSrc)) {
+        varNodeWorkList.add(edgeTgt);
+        if (edgeTgt == src) {
+          changedSrc = true;
+        }
+      }
+    } else if (addedSrc instanceof NewInstanceNode && addedTgt instanceof VarNode) {
+      final NewInstanceNode edgeSrc = (NewInstanceNode) addedSrc.getReplacement();
+      final VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+      addedSrc.getP2Set().forall(new P2SetVisitor() {
+
+        @Override
+        public void visit(Node n) {
+          if (n instanceof ClassConstantNode) {
+            ClassConstantNode ccn = (ClassConstantNode) n;
+            Type ccnType = ccn.getClassConstant().toSootType();
+
+            // If the referenced class has not been loaded,
+            // we do this now
+            SootClass targetClass = ((RefType) ccnType).getSootClass();
+            if (targetClass.resolvingLevel() == SootClass.DANGLING) {
+              Scene.v().forceResolve(targetClass.getName(), SootClass.SIGNATURES);
+            }
+
+            // We can only create alloc nodes for types that
+            // we know
+            edgeTgt.makeP2Set().add(pag.makeAllocNode(edgeSrc.getValue(), ccnType, ccn.getMethod()));
+            varNodeWorkList.add(edgeTgt);
+          }
+        }
+
+      });
+      if (edgeTgt.makeP2Set().add(addedSrc)) {
+        if (edgeTgt == src) {
+          changedSrc = true;
+        }
+      }
+    }
+    return changedSrc;
+  }
+
   /**
    * Propagates new points-to information of node src to all its successors.
    */
@@ -48,6 +48,9 @@ public class CHATransformer extends SceneTransformer {
   protected void internalTransform(String phaseName, Map<String, String> opts) {
     CHAOptions options = new CHAOptions(opts);
     CallGraphBuilder cg = options.apponly() ? new CallGraphBuilder() : new CallGraphBuilder(DumbPointerAnalysis.v());
+    if (options.parallel()) {
+      cg.setNumThreads(Scene.v().getNumThreads());
+    }
     cg.build();
     if (options.verbose()) {
       logger.debug("" + "Number of reachable methods: " + Scene.v().getReachableMethods().size());
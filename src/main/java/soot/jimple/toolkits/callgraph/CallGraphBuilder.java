@@ -22,10 +22,14 @@ package soot.jimple.toolkits.callgraph;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +49,7 @@ import soot.jimple.spark.pag.ArrayElement;
 import soot.jimple.spark.pag.Node;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.Options;
 import soot.util.queue.QueueReader;
 
 /**
@@ -58,6 +63,7 @@ public class CallGraphBuilder {
   private final ReachableMethods reachables;
   private final OnFlyCallGraphBuilder ofcgb;
   private final CallGraph cg;
+  private int numThreads = 1;
 
   public CallGraph getCallGraph() {
     return cg;
@@ -67,6 +73,10 @@ public class CallGraphBuilder {
     return reachables;
   }
 
+  protected OnFlyCallGraphBuilder getOnFlyCallGraphBuilder() {
+    return ofcgb;
+  }
+
   public static ContextManager makeContextManager(CallGraph cg) {
     return new ContextInsensitiveContextManager(cg);
   }
@@ -105,7 +115,23 @@ public class CallGraphBuilder {
     ofcgb = new OnFlyCallGraphBuilder(cm, reachables, true);
   }
 
+  /**
+   * Sets the number of threads used to scan newly reachable methods and to resolve virtual calls. With more than one
+   * thread, reachable methods are processed in rounds: all methods found reachable in one round are scanned, and then
+   * their calls are resolved, on a pool of threads, while edges are added on the calling thread in a fixed order. The
+   * resulting call graph is the same for any number of threads. Bodies are retrieved on the pool threads, so with the
+   * coffi front end, which is not thread-safe, the call graph is always built on one thread.
+   */
+  public void setNumThreads(int numThreads) {
+    this.numThreads = numThreads;
+  }
+
   public void build() {
+    // The old coffi front-end is not thread-safe
+    if (numThreads > 1 && !Options.v().coffi()) {
+      buildInParallel();
+      return;
+    }
     QueueReader<MethodOrMethodContext> worklist = reachables.listener();
     while (true) {
       ofcgb.processReachables();
@@ -120,6 +146,49 @@ public class CallGraphBuilder {
     }
   }
 
+  private void buildInParallel() {
+    CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(numThreads, numThreads, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>());
+    ofcgb.enableDispatchCache();
+    try {
+      QueueReader<MethodOrMethodContext> worklist = reachables.listener();
+      while (true) {
+        ofcgb.processReachables(executor);
+        reachables.update();
+        List<MethodOrMethodContext> batch = new ArrayList<MethodOrMethodContext>();
+        while (worklist.hasNext()) {
+          batch.add(worklist.next());
+        }
+        if (batch.isEmpty()) {
+          break;
+        }
+
+        // Resolve the virtual calls of the whole round up front, so that process() finds their targets in the cache
+        for (MethodOrMethodContext momc : batch) {
+          List<Local> receivers = ofcgb.methodToReceivers().get(momc.method());
+          if (receivers == null) {
+            continue;
+          }
+          for (final Local receiver : receivers) {
+            for (final Type type : pa.reachingObjects(receiver).possibleTypes()) {
+              executor.execute(() -> ofcgb.precomputeDispatch(receiver, type));
+            }
+          }
+        }
+        OnFlyCallGraphBuilder.awaitCompletion(executor);
+
+        for (MethodOrMethodContext momc : batch) {
+          if (!process(momc)) {
+            return;
+          }
+        }
+      }
+    } finally {
+      executor.shutdown();
+      ofcgb.disableDispatchCache();
+    }
+  }
+
   /**
    * Processes one item.
    * 
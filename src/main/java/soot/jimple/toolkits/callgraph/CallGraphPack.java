@@ -22,6 +22,7 @@ package soot.jimple.toolkits.callgraph;
  * #L%
  */
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -55,7 +56,11 @@ public class CallGraphPack extends RadioScenePack {
         Scene.v().setEntryPoints(entryPoints);
       }
     }
-    super.internalApply();
+    if (options.load_file() != null && !options.load_file().isEmpty()) {
+      CallGraphSerializer.read(new File(options.load_file()));
+    } else {
+      super.internalApply();
+    }
     ClinitElimTransformer trimmer = new ClinitElimTransformer();
 
     if (options.trim_clinit()) {
@@ -67,5 +72,13 @@ public class CallGraphPack extends RadioScenePack {
         }
       }
     }
+
+    if (options.save_file() != null && !options.save_file().isEmpty()) {
+      CallGraphSerializer.write(new File(options.save_file()));
+    }
+
+    if (options.compact()) {
+      Scene.v().setCallGraph(new CompactCallGraph(Scene.v().getCallGraph()));
+    }
   }
 }
@@ -0,0 +1,790 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import soot.AnySubType;
+import soot.Body;
+import soot.BodyCache;
+import soot.FoundFile;
+import soot.Kind;
+import soot.Local;
+import soot.NullType;
+import soot.PointsToAnalysis;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.SourceLocator;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.ClassConstant;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.ArrayElement;
+import soot.jimple.spark.pag.ClassConstantNode;
+import soot.jimple.spark.pag.ContextVarNode;
+import soot.jimple.spark.pag.GlobalVarNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.StringConstantNode;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.toolkits.pointer.StoredPointsToAnalysis;
+import soot.util.queue.QueueReader;
+
+/**
+ * Writes a call graph, and the points-to sets of Spark if it computed them, to a binary file, and reads them back into
+ * the Scene. Methods and fields are identified by their signatures, statements and locals by their position in the body
+ * of their method, so a file can only be read back by a Soot run that loads the same classes with the same options. A
+ * hash of what each body was built from is stored and checked when reading, and a file that no longer fits the Scene is
+ * rejected with a RuntimeException. For a class loaded from a file on the class path, that is a digest of the file and of
+ * the options that affect body construction, so bodies must be read back as they were built, before the body packs
+ * change them; other changes are only noticed if they change the number of statements or locals. Bodies of classes that
+ * do not come from such a file, like the ones a program creates, are hashed from their statements and locals.
+ *
+ * <p>
+ * All numbers are big-endian. A file starts with a fixed-size header: magic number, {@link #VERSION}, flags, and the
+ * offset (a long) and number of entries (an int) of each section. The sections are the edges (source method, unit
+ * index, target method, kind) and, if the points-to flag is set, the abstract objects (type, constant, method and unit
+ * index of the allocation site) and the points-to sets of locals, of static fields and of the fields of abstract
+ * objects. A points-to set is a count followed
+ * by the numbers of its objects. They are followed by the table of methods (signature, number of units and locals, body
+ * hash) and the table of strings, which are filled while the other sections are written. Files are written as a stream,
+ * with the header filled in at the end, and read through memory mappings of at most {@link #MAP_CHUNK_SIZE} bytes each,
+ * so they are not limited to 2GB.
+ * </p>
+ *
+ * <p>
+ * Only the context-insensitive projection of the call graph is kept. The points-to sets are read back as a
+ * {@link StoredPointsToAnalysis}, which answers the queries of {@link PointsToAnalysis} but does not offer the pointer
+ * assignment graph of Spark.
+ * </p>
+ */
+public class CallGraphSerializer {
+  private static final int MAGIC = 0x53434731;
+  public static final int VERSION = 3;
+  private static final int FLAG_POINTS_TO = 1;
+
+  private static final int SECTION_EDGES = 0;
+  private static final int SECTION_ALLOCS = 1;
+  private static final int SECTION_LOCALS = 2;
+  private static final int SECTION_GLOBALS = 3;
+  private static final int SECTION_FIELDS = 4;
+  private static final int SECTION_METHODS = 5;
+  private static final int SECTION_STRINGS = 6;
+  private static final int SECTION_COUNT = 7;
+  private static final int HEADER_SIZE = 3 * 4 + SECTION_COUNT * (8 + 4);
+
+  /** Largest part of a file that is mapped at once. */
+  static final int MAP_CHUNK_SIZE = 1 << 30;
+
+  private static final int NO_CONSTANT = 0;
+  private static final int STRING_CONSTANT = 1;
+  private static final int CLASS_CONSTANT = 2;
+
+  private CallGraphSerializer() {
+  }
+
+  /** Writes the call graph and points-to analysis of the Scene to the given file. */
+  public static void write(File file) {
+    write(file, Scene.v().getCallGraph(), Scene.v().getPointsToAnalysis());
+  }
+
+  /**
+   * Writes the given call graph to the given file, together with the points-to sets of pa if it is a Spark {@link PAG}.
+   */
+  public static void write(File file, CallGraph cg, PointsToAnalysis pa) {
+    new Writer().write(file, cg, pa instanceof PAG ? (PAG) pa : null);
+  }
+
+  /**
+   * Reads a call graph and, if the file contains them, points-to sets from the given file, and installs them in the
+   * Scene.
+   */
+  public static void read(File file) {
+    read(file, MAP_CHUNK_SIZE);
+  }
+
+  /** Like {@link #read(File)}, but maps at most mapChunkSize bytes of the file at once. */
+  static void read(File file, int mapChunkSize) {
+    new Reader(file, mapChunkSize).read();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Hashes what the bodies of methods are built from, so that a file is not applied to a body that may differ from the
+   * one it was written for. The digest of the file of a class is computed once per class.
+   */
+  private static class BodyHasher {
+    private static final String[] SOURCE_EXTENSIONS = { ".class", ".jimple", ".java" };
+
+    private final Map<SootClass, String> classDigests = new HashMap<SootClass, String>();
+    private String optionsDigest;
+
+    long hash(SootMethod m) {
+      String classDigest = classDigest(m.getDeclaringClass());
+      MessageDigest md = newDigest();
+      if (classDigest.isEmpty()) {
+        Body b = m.retrieveActiveBody();
+        for (Local l : b.getLocals()) {
+          md.update((l.getName() + ':' + l.getType() + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        for (Unit u : b.getUnits()) {
+          md.update((u.toString() + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+      } else {
+        if (optionsDigest == null) {
+          optionsDigest = BodyCache.optionsDigest();
+        }
+        md.update(optionsDigest.getBytes(StandardCharsets.UTF_8));
+        md.update(classDigest.getBytes(StandardCharsets.UTF_8));
+        md.update(m.getSubSignature().getBytes(StandardCharsets.UTF_8));
+      }
+      return ByteBuffer.wrap(md.digest()).getLong();
+    }
+
+    /** Returns a digest of the files on the class path the given class may come from, or "" if there are none. */
+    private String classDigest(SootClass c) {
+      String ret = classDigests.get(c);
+      if (ret == null) {
+        StringBuilder sb = new StringBuilder();
+        // The class path is only set up once a class has been loaded from it
+        if (SourceLocator.v().classPath() != null) {
+          String path = c.getName().replace('.', '/');
+          for (String extension : SOURCE_EXTENSIONS) {
+            FoundFile file = SourceLocator.v().lookupInClassPath(path + extension);
+            if (file == null) {
+              continue;
+            }
+            try {
+              sb.append(extension).append(':').append(BodyCache.digest(file.inputStream())).append('\n');
+            } catch (IOException e) {
+              throw new RuntimeException("Could not read " + file.getFilePath(), e);
+            } finally {
+              file.close();
+            }
+          }
+        }
+        ret = sb.toString();
+        classDigests.put(c, ret);
+      }
+      return ret;
+    }
+  }
+
+  private static Map<String, Kind> kindsByName() {
+    Map<String, Kind> ret = new HashMap<String, Kind>();
+    for (Field f : Kind.class.getFields()) {
+      if (Modifier.isStatic(f.getModifiers()) && f.getType() == Kind.class) {
+        try {
+          Kind k = (Kind) f.get(null);
+          ret.put(k.name(), k);
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+    return ret;
+  }
+
+  /** Counts the bytes written through it, as a long. */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count = 0;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+
+  private static class Writer {
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    private final Map<SootMethod, Integer> methods = new LinkedHashMap<SootMethod, Integer>();
+    private final Map<SootMethod, Map<Unit, Integer>> unitIndices = new HashMap<SootMethod, Map<Unit, Integer>>();
+    private final Map<SootMethod, Map<Local, Integer>> localIndices = new HashMap<SootMethod, Map<Local, Integer>>();
+    private final Map<SootMethod, Map<Value, Unit>> allocSites = new HashMap<SootMethod, Map<Value, Unit>>();
+    private final BodyHasher hasher = new BodyHasher();
+    private final long[] offsets = new long[SECTION_COUNT];
+    private final int[] counts = new int[SECTION_COUNT];
+
+    void write(File file, CallGraph cg, PAG pag) {
+      File dir = file.getAbsoluteFile().getParentFile();
+      if (dir != null && !dir.exists()) {
+        dir.mkdirs();
+      }
+      try (FileOutputStream fos = new FileOutputStream(file)) {
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(fos));
+        DataOutputStream out = new DataOutputStream(counter);
+        // The header is filled in once the offsets and sizes of the sections are known
+        out.write(new byte[HEADER_SIZE]);
+
+        offsets[SECTION_EDGES] = counter.getCount();
+        counts[SECTION_EDGES] = writeEdges(out, cg);
+        if (pag != null) {
+          writePointsTo(out, counter, pag);
+        }
+        // The tables come last, since the other sections add to them
+        offsets[SECTION_METHODS] = counter.getCount();
+        counts[SECTION_METHODS] = writeMethods(out);
+        offsets[SECTION_STRINGS] = counter.getCount();
+        counts[SECTION_STRINGS] = writeStrings(out);
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(pag != null ? FLAG_POINTS_TO : 0);
+        for (int i = 0; i < SECTION_COUNT; i++) {
+          header.putLong(offsets[i]);
+          header.putInt(counts[i]);
+        }
+        header.flip();
+        FileChannel ch = fos.getChannel();
+        for (long pos = 0; header.hasRemaining();) {
+          pos += ch.write(header, pos);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Could not write call graph to " + file, e);
+      }
+    }
+
+    private int writeEdges(DataOutputStream out, CallGraph cg) throws IOException {
+      int written = 0;
+      Map<Edge, Boolean> seen = new HashMap<Edge, Boolean>();
+      for (Edge e : cg) {
+        seen.put(e, Boolean.FALSE);
+      }
+      // In the order the edges were added, skipping removed ones, so that the file does not depend on hash codes
+      for (QueueReader<Edge> reader = cg.listener(); reader.hasNext();) {
+        Edge e = reader.next();
+        if (seen.put(e, Boolean.TRUE) != Boolean.FALSE) {
+          continue;
+        }
+        SootMethod src = e.src();
+        out.writeInt(src == null ? -1 : method(src));
+        out.writeInt(e.srcUnit() == null ? -1 : unitIndex(src, e.srcUnit()));
+        out.writeInt(method(e.tgt()));
+        out.writeInt(string(e.kind().name()));
+        written++;
+      }
+      if (written != cg.size()) {
+        throw new RuntimeException("Call graph has " + cg.size() + " edges but " + written + " were found");
+      }
+      return written;
+    }
+
+    private void writePointsTo(DataOutputStream out, CountingOutputStream counter, PAG pag) throws IOException {
+      Map<AllocNode, Integer> allocs = new HashMap<AllocNode, Integer>();
+      offsets[SECTION_ALLOCS] = counter.getCount();
+      for (AllocNode an : pag.getAllocNodeNumberer()) {
+        allocs.put(an, allocs.size());
+        out.writeInt(string(an.getType().toString()));
+        if (an instanceof StringConstantNode) {
+          out.writeInt(STRING_CONSTANT);
+          out.writeInt(string(((StringConstantNode) an).getString()));
+        } else if (an instanceof ClassConstantNode) {
+          out.writeInt(CLASS_CONSTANT);
+          out.writeInt(string(((ClassConstantNode) an).getClassConstant().getValue()));
+        } else {
+          out.writeInt(NO_CONSTANT);
+          out.writeInt(-1);
+        }
+        SootMethod m = an.getMethod();
+        Unit site = m == null ? null : allocSite(m, an.getNewExpr());
+        if (site == null) {
+          out.writeInt(-1);
+          out.writeInt(-1);
+        } else {
+          out.writeInt(method(m));
+          out.writeInt(unitIndex(m, site));
+        }
+      }
+      counts[SECTION_ALLOCS] = allocs.size();
+
+      offsets[SECTION_LOCALS] = counter.getCount();
+      for (VarNode vn : pag.getVarNodeNumberer()) {
+        Object var = vn.getVariable();
+        if (vn instanceof LocalVarNode && !(vn instanceof ContextVarNode) && var instanceof Local) {
+          SootMethod m = ((LocalVarNode) vn).getMethod();
+          if (m == null || !m.hasActiveBody()) {
+            continue;
+          }
+          Integer index = localIndex(m, (Local) var);
+          if (index == null) {
+            continue;
+          }
+          out.writeInt(method(m));
+          out.writeInt(index);
+          writeSet(out, vn, allocs);
+          counts[SECTION_LOCALS]++;
+        }
+      }
+
+      offsets[SECTION_GLOBALS] = counter.getCount();
+      for (VarNode vn : pag.getVarNodeNumberer()) {
+        if (vn instanceof GlobalVarNode && vn.getVariable() instanceof SootField) {
+          out.writeInt(string(((SootField) vn.getVariable()).getSignature()));
+          writeSet(out, vn, allocs);
+          counts[SECTION_GLOBALS]++;
+        }
+      }
+
+      offsets[SECTION_FIELDS] = counter.getCount();
+      for (AllocDotField adf : pag.getAllocDotFieldNodeNumberer()) {
+        String key;
+        if (adf.getField() instanceof SootField) {
+          key = ((SootField) adf.getField()).getSignature();
+        } else if (adf.getField() instanceof ArrayElement) {
+          key = StoredPointsToAnalysis.ARRAY_ELEMENTS.toString();
+        } else {
+          continue;
+        }
+        out.writeInt(allocs.get(adf.getBase()));
+        out.writeInt(string(key));
+        writeSet(out, adf, allocs);
+        counts[SECTION_FIELDS]++;
+      }
+    }
+
+    private int writeMethods(DataOutputStream out) throws IOException {
+      for (SootMethod m : methods.keySet()) {
+        out.writeInt(string(m.getSignature()));
+        if (unitIndices.containsKey(m) || localIndices.containsKey(m)) {
+          Body b = m.getActiveBody();
+          out.writeInt(b.getUnits().size());
+          out.writeInt(b.getLocalCount());
+          out.writeLong(hasher.hash(m));
+        } else {
+          out.writeInt(-1);
+          out.writeInt(-1);
+          out.writeLong(0);
+        }
+      }
+      return methods.size();
+    }
+
+    private int writeStrings(DataOutputStream out) throws IOException {
+      for (String s : strings.keySet()) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+      }
+      return strings.size();
+    }
+
+    private void writeSet(DataOutputStream out, Node n, final Map<AllocNode, Integer> allocs) throws IOException {
+      final BitSet set = new BitSet();
+      n.getP2Set().forall(new P2SetVisitor() {
+        @Override
+        public void visit(Node n) {
+          Integer i = allocs.get(n);
+          if (i != null) {
+            set.set(i);
+          }
+        }
+      });
+      out.writeInt(set.cardinality());
+      for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+        out.writeInt(i);
+      }
+    }
+
+    private int string(String s) {
+      Integer i = strings.get(s);
+      if (i == null) {
+        i = strings.size();
+        strings.put(s, i);
+      }
+      return i;
+    }
+
+    private int method(SootMethod m) {
+      Integer i = methods.get(m);
+      if (i == null) {
+        i = methods.size();
+        methods.put(m, i);
+      }
+      return i;
+    }
+
+    private int unitIndex(SootMethod m, Unit u) {
+      Map<Unit, Integer> indices = unitIndices.get(m);
+      if (indices == null) {
+        indices = new HashMap<Unit, Integer>();
+        if (m != null && m.hasActiveBody()) {
+          for (Unit v : m.getActiveBody().getUnits()) {
+            indices.put(v, indices.size());
+          }
+        }
+        unitIndices.put(m, indices);
+      }
+      Integer i = indices.get(u);
+      if (i == null) {
+        throw new RuntimeException("Call site " + u + " is not in the body of " + m);
+      }
+      return i;
+    }
+
+    /** Returns the statement of the body of m that allocates the object of the given expression, or null. */
+    private Unit allocSite(SootMethod m, Object newExpr) {
+      if (!(newExpr instanceof Value) || !m.hasActiveBody()) {
+        return null;
+      }
+      Map<Value, Unit> sites = allocSites.get(m);
+      if (sites == null) {
+        sites = new IdentityHashMap<Value, Unit>();
+        for (Unit u : m.getActiveBody().getUnits()) {
+          for (ValueBox vb : u.getUseBoxes()) {
+            sites.put(vb.getValue(), u);
+          }
+        }
+        allocSites.put(m, sites);
+      }
+      return sites.get(newExpr);
+    }
+
+    private Integer localIndex(SootMethod m, Local l) {
+      Map<Local, Integer> indices = localIndices.get(m);
+      if (indices == null) {
+        indices = new HashMap<Local, Integer>();
+        for (Local v : m.getActiveBody().getLocals()) {
+          indices.put(v, indices.size());
+        }
+        localIndices.put(m, indices);
+      }
+      return indices.get(l);
+    }
+  }
+
+  /**
+   * Reads big-endian numbers from a file through read-only memory mappings of a bounded size, so that files larger than
+   * 2GB can be read. A new part of the file is mapped whenever a read crosses the end of the current mapping.
+   */
+  private static class MappedInput implements Closeable {
+    private final FileChannel ch;
+    private final long size;
+    private final int chunkSize;
+    private ByteBuffer buf;
+    private long bufStart;
+
+    MappedInput(File file, int chunkSize) throws IOException {
+      this.ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      this.size = ch.size();
+      this.chunkSize = chunkSize;
+      map(0, 0);
+    }
+
+    long size() {
+      return size;
+    }
+
+    void seek(long pos) throws IOException {
+      if (pos < bufStart || pos > bufStart + buf.limit()) {
+        map(pos, 0);
+      } else {
+        buf.position((int) (pos - bufStart));
+      }
+    }
+
+    int getInt() throws IOException {
+      ensure(4);
+      return buf.getInt();
+    }
+
+    long getLong() throws IOException {
+      ensure(8);
+      return buf.getLong();
+    }
+
+    void get(byte[] b) throws IOException {
+      ensure(b.length);
+      buf.get(b);
+    }
+
+    private void ensure(int n) throws IOException {
+      if (buf.remaining() < n) {
+        map(bufStart + buf.position(), n);
+        if (buf.remaining() < n) {
+          throw new EOFException();
+        }
+      }
+    }
+
+    /** Maps the part of the file from pos on, at least minLength bytes of it if the file is long enough. */
+    private void map(long pos, int minLength) throws IOException {
+      long len = Math.max(0, Math.min(Math.max(chunkSize, minLength), size - pos));
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+      bufStart = pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+      ch.close();
+    }
+  }
+
+  private static class Reader {
+    private final File file;
+    private final int mapChunkSize;
+    private MappedInput in;
+    private final long[] offsets = new long[SECTION_COUNT];
+    private final int[] counts = new int[SECTION_COUNT];
+    private String[] strings;
+    private SootMethod[] methods;
+    private Unit[][] units;
+    private Local[][] locals;
+    private final BodyHasher hasher = new BodyHasher();
+
+    Reader(File file, int mapChunkSize) {
+      this.file = file;
+      this.mapChunkSize = mapChunkSize;
+    }
+
+    void read() {
+      CallGraph cg;
+      PointsToAnalysis pa;
+      try (MappedInput input = new MappedInput(file, mapChunkSize)) {
+        in = input;
+        if (in.size() < HEADER_SIZE || in.getInt() != MAGIC) {
+          throw new RuntimeException(file + " is not a call graph file");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+          throw new RuntimeException(file + " has version " + version + ", expected " + VERSION);
+        }
+        int flags = in.getInt();
+        for (int i = 0; i < SECTION_COUNT; i++) {
+          offsets[i] = in.getLong();
+          counts[i] = in.getInt();
+        }
+
+        readStrings();
+        readMethods();
+        cg = readEdges();
+        pa = (flags & FLAG_POINTS_TO) != 0 ? readPointsTo() : null;
+      } catch (IOException e) {
+        throw new RuntimeException("Could not read call graph from " + file, e);
+      } finally {
+        in = null;
+      }
+      Scene.v().setCallGraph(cg);
+      if (pa != null) {
+        Scene.v().setPointsToAnalysis(pa);
+      }
+    }
+
+    private void readStrings() throws IOException {
+      in.seek(offsets[SECTION_STRINGS]);
+      strings = new String[counts[SECTION_STRINGS]];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] b = new byte[in.getInt()];
+        in.get(b);
+        strings[i] = new String(b, StandardCharsets.UTF_8);
+      }
+    }
+
+    private void readMethods() throws IOException {
+      in.seek(offsets[SECTION_METHODS]);
+      int count = counts[SECTION_METHODS];
+      methods = new SootMethod[count];
+      units = new Unit[count][];
+      locals = new Local[count][];
+      for (int i = 0; i < count; i++) {
+        String sig = strings[in.getInt()];
+        int unitCount = in.getInt();
+        int localCount = in.getInt();
+        long hash = in.getLong();
+        SootMethod m = Scene.v().grabMethod(sig);
+        if (m == null) {
+          throw stale("method " + sig + " does not exist");
+        }
+        methods[i] = m;
+        if (unitCount >= 0) {
+          if (!m.isConcrete() || hasher.hash(m) != hash) {
+            throw stale("the body of " + sig + " has changed");
+          }
+          Body b = m.retrieveActiveBody();
+          if (b.getUnits().size() != unitCount || b.getLocalCount() != localCount) {
+            throw stale("the body of " + sig + " has changed");
+          }
+          units[i] = b.getUnits().toArray(new Unit[unitCount]);
+          locals[i] = b.getLocals().toArray(new Local[localCount]);
+        }
+      }
+    }
+
+    private CallGraph readEdges() throws IOException {
+      Map<String, Kind> kinds = kindsByName();
+      CallGraph cg = new CallGraph();
+      in.seek(offsets[SECTION_EDGES]);
+      int count = counts[SECTION_EDGES];
+      for (int i = 0; i < count; i++) {
+        int src = in.getInt();
+        int unit = in.getInt();
+        SootMethod tgt = methods[in.getInt()];
+        String kindName = strings[in.getInt()];
+        Kind kind = kinds.get(kindName);
+        if (kind == null) {
+          throw stale("edge kind " + kindName + " does not exist");
+        }
+        cg.addEdge(new Edge(src < 0 ? null : methods[src], unit < 0 ? null : units[src][unit], tgt, kind));
+      }
+      return cg;
+    }
+
+    private PointsToAnalysis readPointsTo() throws IOException {
+      StoredPointsToAnalysis pa = new StoredPointsToAnalysis();
+      in.seek(offsets[SECTION_ALLOCS]);
+      int allocCount = counts[SECTION_ALLOCS];
+      for (int i = 0; i < allocCount; i++) {
+        Type type = type(strings[in.getInt()]);
+        int constantKind = in.getInt();
+        int constant = in.getInt();
+        int m = in.getInt();
+        int unit = in.getInt();
+        Object value = null;
+        if (constantKind == STRING_CONSTANT) {
+          value = strings[constant];
+        } else if (constantKind == CLASS_CONSTANT) {
+          value = ClassConstant.v(strings[constant]);
+        }
+        if (m < 0) {
+          pa.addAlloc(type, value);
+        } else {
+          pa.addAlloc(type, value, methods[m], units[m][unit]);
+        }
+      }
+
+      in.seek(offsets[SECTION_LOCALS]);
+      int localCount = counts[SECTION_LOCALS];
+      for (int i = 0; i < localCount; i++) {
+        int m = in.getInt();
+        int local = in.getInt();
+        pa.setLocal(locals[m][local], readSet());
+      }
+      in.seek(offsets[SECTION_GLOBALS]);
+      int globalCount = counts[SECTION_GLOBALS];
+      for (int i = 0; i < globalCount; i++) {
+        String sig = strings[in.getInt()];
+        SootField f = Scene.v().grabField(sig);
+        if (f == null) {
+          throw stale("field " + sig + " does not exist");
+        }
+        pa.setGlobal(f, readSet());
+      }
+      in.seek(offsets[SECTION_FIELDS]);
+      int fieldCount = counts[SECTION_FIELDS];
+      for (int i = 0; i < fieldCount; i++) {
+        int base = in.getInt();
+        String key = strings[in.getInt()];
+        Object field;
+        if (key.equals(StoredPointsToAnalysis.ARRAY_ELEMENTS)) {
+          field = StoredPointsToAnalysis.ARRAY_ELEMENTS;
+        } else {
+          field = Scene.v().grabField(key);
+          if (field == null) {
+            throw stale("field " + key + " does not exist");
+          }
+        }
+        pa.setField(base, field, readSet());
+      }
+      return pa;
+    }
+
+    private BitSet readSet() throws IOException {
+      int size = in.getInt();
+      BitSet ret = new BitSet();
+      for (int i = 0; i < size; i++) {
+        ret.set(in.getInt());
+      }
+      return ret;
+    }
+
+    private Type type(String s) {
+      if (s.startsWith("Any_subtype_of_")) {
+        return AnySubType.v(RefType.v(s.substring("Any_subtype_of_".length())));
+      }
+      if (s.equals(NullType.v().toString())) {
+        return NullType.v();
+      }
+      Type t = Scene.v().getTypeUnsafe(s, false);
+      if (t == null) {
+        throw stale("type " + s + " does not exist");
+      }
+      return t;
+    }
+
+    private RuntimeException stale(String reason) {
+      return new RuntimeException("Call graph file " + file + " does not match the Scene: " + reason);
+    }
+  }
+}
@@ -0,0 +1,469 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import soot.Kind;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.util.IdentityIndex;
+import soot.util.IterableNumberer;
+import soot.util.queue.QueueReader;
+
+/**
+ * A call graph that stores its edges in int arrays instead of {@link Edge} objects linked into lists. Edges are sorted by
+ * source method and source unit; the edges out of a method are found through an offset array indexed by the method's
+ * number in the Scene's method numberer, the edges out of a unit through an array indexed by a number the graph gives to
+ * each of its source units, and the edges into a method through a second offset array over a list of edge indices. This
+ * takes a fraction of the memory of a {@link CallGraph} and suits clients that mostly query a finished call graph, such as
+ * an interprocedural control-flow graph.
+ *
+ * <p>
+ * {@link Edge} objects are created as they are returned, so the same edge may be returned as different but equal objects.
+ * Only context-insensitive call graphs can be compacted. The graph can still be changed afterwards: removed edges are
+ * marked in a bit set and added edges are kept in an ordinary {@link CallGraph}, so optimizations that rewrite call sites
+ * keep working, at the price of the memory the changed edges take.
+ * </p>
+ */
+public class CompactCallGraph extends CallGraph {
+  /** Source unit number of each edge, or 0 if it has none. */
+  private final int[] edgeUnit;
+  /** Target method number of each edge. */
+  private final int[] edgeTgt;
+  /** Index into kinds of the kind of each edge. */
+  private final byte[] edgeKind;
+  private final Kind[] kinds;
+
+  /** The edges out of method number m are those from srcOffsets[m] to srcOffsets[m + 1]. */
+  private final int[] srcOffsets;
+  /** Source unit number u is units[u]; units[0] is null. */
+  private final Unit[] units;
+  private final IdentityIndex<Unit> unitIndex;
+  /** Index of the first edge out of unit number u, or -1. */
+  private final int[] unitFirstEdge;
+  /** The edges into method number m are tgtEdges[tgtOffsets[m]] to tgtEdges[tgtOffsets[m + 1] - 1]. */
+  private final int[] tgtOffsets;
+  private final int[] tgtEdges;
+
+  private final IterableNumberer<SootMethod> methodNumberer;
+
+  /** The compacted edges that have been removed since. */
+  private final BitSet removed = new BitSet();
+  private int removedCount = 0;
+  /** The edges added after compaction. */
+  private final CallGraph added = new CallGraph();
+
+  /** Copies the edges of the given call graph, which must not contain edges between method contexts. */
+  public CompactCallGraph(CallGraph cg) {
+    methodNumberer = Scene.v().getMethodNumberer();
+
+    // The listener still returns removed edges, so only keep those the call graph contains, in the order they were added
+    Set<Edge> present = new HashSet<Edge>(cg.size() * 2);
+    for (Edge e : cg) {
+      present.add(e);
+    }
+    List<Edge> sorted = new ArrayList<Edge>(cg.size());
+    List<Unit> unitList = new ArrayList<Unit>();
+    unitList.add(null);
+    Set<Unit> seenUnits = new HashSet<Unit>();
+    for (QueueReader<Edge> reader = cg.listener(); reader.hasNext();) {
+      Edge e = reader.next();
+      if (!present.remove(e)) {
+        continue;
+      }
+      if ((e.getSrc() != null && e.getSrc() != e.src()) || e.getTgt() != e.tgt()) {
+        throw new RuntimeException("Cannot compact a context-sensitive call graph: " + e);
+      }
+      if (e.src() != null) {
+        methodNumberer.add(e.src());
+      }
+      methodNumberer.add(e.tgt());
+      if (e.srcUnit() != null && seenUnits.add(e.srcUnit())) {
+        unitList.add(e.srcUnit());
+      }
+      sorted.add(e);
+    }
+    units = unitList.toArray(new Unit[unitList.size()]);
+    unitIndex = new IdentityIndex<Unit>(units);
+    // Stable, so edges out of the same unit keep the order in which they were added
+    sorted.sort((a, b) -> {
+      int c = Long.compare(methodNumberer.get(a.src()), methodNumberer.get(b.src()));
+      return c != 0 ? c : Integer.compare(unitNumber(a.srcUnit()), unitNumber(b.srcUnit()));
+    });
+
+    int n = sorted.size();
+    int numMethods = methodNumberer.size() + 1;
+    edgeUnit = new int[n];
+    edgeTgt = new int[n];
+    edgeKind = new byte[n];
+    srcOffsets = new int[numMethods + 1];
+    unitFirstEdge = new int[units.length];
+    Arrays.fill(unitFirstEdge, -1);
+    tgtOffsets = new int[numMethods + 1];
+    tgtEdges = new int[n];
+
+    List<Kind> kindList = new ArrayList<Kind>();
+    for (int i = 0; i < n; i++) {
+      Edge e = sorted.get(i);
+      int src = (int) methodNumberer.get(e.src());
+      int unit = unitNumber(e.srcUnit());
+      int tgt = (int) methodNumberer.get(e.tgt());
+      edgeUnit[i] = unit;
+      edgeTgt[i] = tgt;
+      int kind = kindList.indexOf(e.kind());
+      if (kind < 0) {
+        kind = kindList.size();
+        kindList.add(e.kind());
+      }
+      edgeKind[i] = (byte) kind;
+      srcOffsets[src + 1]++;
+      tgtOffsets[tgt + 1]++;
+      if (unit != 0 && unitFirstEdge[unit] < 0) {
+        unitFirstEdge[unit] = i;
+      }
+    }
+    kinds = kindList.toArray(new Kind[kindList.size()]);
+
+    for (int m = 0; m < numMethods; m++) {
+      srcOffsets[m + 1] += srcOffsets[m];
+      tgtOffsets[m + 1] += tgtOffsets[m];
+    }
+    int[] fill = Arrays.copyOf(tgtOffsets, numMethods);
+    for (int i = 0; i < n; i++) {
+      tgtEdges[fill[edgeTgt[i]]++] = i;
+    }
+  }
+
+  private Edge edge(int i) {
+    return new Edge(edgeSrc(i), units[edgeUnit[i]], methodNumberer.get(edgeTgt[i]), kinds[edgeKind[i]]);
+  }
+
+  /** Returns the source method of edge i, the last method whose edges start at or before i. */
+  private SootMethod edgeSrc(int i) {
+    int lo = 0;
+    int hi = srcOffsets.length - 2;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (srcOffsets[mid] <= i) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return methodNumberer.get(lo);
+  }
+
+  private int methodNumber(MethodOrMethodContext m) {
+    if (m == null) {
+      return 0;
+    }
+    if (m != m.method()) {
+      return -1;
+    }
+    int num = m.method().getNumber();
+    return num > 0 && num < srcOffsets.length - 1 ? num : -1;
+  }
+
+  /** Returns the number of the given source unit, 0 for null, or -1 if no compacted edge starts at it. */
+  private int unitNumber(Unit u) {
+    return u == null ? 0 : unitIndex.indexOf(u);
+  }
+
+  /** Returns the start of the compacted edges out of u, or -1 if there are none. */
+  private int unitStart(Unit u) {
+    int num = unitNumber(u);
+    return num <= 0 ? -1 : unitFirstEdge[num];
+  }
+
+  private int unitEnd(int start) {
+    int end = start;
+    while (end < edgeUnit.length && edgeUnit[end] == edgeUnit[start]) {
+      end++;
+    }
+    return end;
+  }
+
+  /** Returns the index of the compacted edge equal to e that has not been removed, or -1. */
+  private int indexOf(Edge e) {
+    int src = methodNumber(e.getSrc());
+    int unit = unitNumber(e.srcUnit());
+    int tgt = methodNumber(e.getTgt());
+    if (src < 0 || unit < 0 || tgt <= 0) {
+      return -1;
+    }
+    int start = unit == 0 ? srcOffsets[src] : unitFirstEdge[unit];
+    int end = unit == 0 ? srcOffsets[src + 1] : unitEnd(start);
+    for (int i = start; i < end; i++) {
+      if (edgeUnit[i] == unit && edgeTgt[i] == tgt && kinds[edgeKind[i]] == e.kind() && !removed.get(i)
+          && (unit == 0 || edgeSrc(i) == e.getSrc())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Iterates over the compacted edges with the given indices that have not been removed, from start to end, either directly
+   * or through tgtEdges, and then over the given added edges.
+   */
+  private class EdgeIterator implements Iterator<Edge> {
+    private final int[] indices;
+    private int position;
+    private final int end;
+    private final Iterator<Edge> rest;
+
+    EdgeIterator(int[] indices, int start, int end, Iterator<Edge> rest) {
+      this.indices = indices;
+      this.position = start;
+      this.end = end;
+      this.rest = rest;
+    }
+
+    private int index(int position) {
+      return indices == null ? position : indices[position];
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (position < end && removed.get(index(position))) {
+        position++;
+      }
+      return position < end || rest.hasNext();
+    }
+
+    @Override
+    public Edge next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (position < end) {
+        return edge(index(position++));
+      }
+      return rest.next();
+    }
+  }
+
+  @Override
+  public Iterator<Edge> edgesOutOf(Unit u) {
+    if (u == null) {
+      throw new RuntimeException();
+    }
+    int start = unitStart(u);
+    int end = start < 0 ? start : unitEnd(start);
+    return new EdgeIterator(null, start, end, added.edgesOutOf(u));
+  }
+
+  @Override
+  public Iterator<Edge> edgesOutOf(MethodOrMethodContext m) {
+    if (m == null) {
+      throw new RuntimeException();
+    }
+    int num = methodNumber(m);
+    if (num < 0) {
+      return added.edgesOutOf(m);
+    }
+    return new EdgeIterator(null, srcOffsets[num], srcOffsets[num + 1], added.edgesOutOf(m));
+  }
+
+  @Override
+  public Iterator<Edge> edgesInto(MethodOrMethodContext m) {
+    if (m == null) {
+      throw new RuntimeException();
+    }
+    int num = methodNumber(m);
+    if (num <= 0) {
+      return added.edgesInto(m);
+    }
+    return new EdgeIterator(tgtEdges, tgtOffsets[num], tgtOffsets[num + 1], added.edgesInto(m));
+  }
+
+  @Override
+  public boolean isEntryMethod(SootMethod method) {
+    return !edgesInto(method).hasNext();
+  }
+
+  @Override
+  public Edge findEdge(Unit u, SootMethod callee) {
+    for (Iterator<Edge> it = edgesOutOf(u); it.hasNext();) {
+      Edge e = it.next();
+      if (e.tgt() == callee) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Iterator<MethodOrMethodContext> sourceMethods() {
+    Set<MethodOrMethodContext> ret = new LinkedHashSet<MethodOrMethodContext>();
+    for (int m = 0; m < srcOffsets.length - 1; m++) {
+      int next = removed.nextClearBit(srcOffsets[m]);
+      if (next < srcOffsets[m + 1]) {
+        ret.add(methodNumberer.get(m));
+      }
+    }
+    for (Iterator<MethodOrMethodContext> it = added.sourceMethods(); it.hasNext();) {
+      MethodOrMethodContext m = it.next();
+      if (added.edgesOutOf(m).hasNext()) {
+        ret.add(m);
+      }
+    }
+    return ret.iterator();
+  }
+
+  /**
+   * Returns a QueueReader over all edges, which also receives the edges that are added later on. Compacted edges are
+   * created as the reader reaches them, and those removed by then are skipped.
+   */
+  @Override
+  public QueueReader<Edge> listener() {
+    return new Listener(0, added.listener());
+  }
+
+  @Override
+  public QueueReader<Edge> newListener() {
+    return added.newListener();
+  }
+
+  /** Reads the compacted edges from a position on, followed by a reader of the added edges. */
+  private class Listener extends QueueReader<Edge> {
+    private int position;
+    private final QueueReader<Edge> rest;
+    private boolean lastFromRest = false;
+
+    Listener(int position, QueueReader<Edge> rest) {
+      super(null, 0);
+      this.position = position;
+      this.rest = rest;
+    }
+
+    @Override
+    public boolean hasNext() {
+      position = removed.nextClearBit(position);
+      return position < edgeTgt.length || rest.hasNext();
+    }
+
+    @Override
+    public Edge next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastFromRest = position >= edgeTgt.length;
+      return lastFromRest ? rest.next() : edge(position++);
+    }
+
+    @Override
+    public void remove(Edge o) {
+      rest.remove(o);
+    }
+
+    @Override
+    public void remove() {
+      if (!lastFromRest) {
+        throw new UnsupportedOperationException("Compacted edges are removed through the call graph");
+      }
+      rest.remove();
+    }
+
+    @Override
+    public QueueReader<Edge> clone() {
+      return new Listener(position, rest.clone());
+    }
+  }
+
+  @Override
+  public int size() {
+    return edgeTgt.length - removedCount + added.size();
+  }
+
+  @Override
+  public Iterator<Edge> iterator() {
+    return new EdgeIterator(null, 0, edgeTgt.length, added.iterator());
+  }
+
+  @Override
+  public boolean addEdge(Edge e) {
+    if (indexOf(e) >= 0) {
+      return false;
+    }
+    return added.addEdge(e);
+  }
+
+  @Override
+  public boolean removeEdge(Edge e) {
+    int i = indexOf(e);
+    if (i >= 0) {
+      removed.set(i);
+      removedCount++;
+      return true;
+    }
+    // The added graph unlinks the instance it is given, so pass it the one it holds
+    for (Iterator<Edge> it = added.edgesInto(e.getTgt()); it.hasNext();) {
+      Edge stored = it.next();
+      if (stored.equals(e)) {
+        return added.removeEdge(stored);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean removeAllEdgesOutOf(Unit u) {
+    boolean hasRemoved = false;
+    for (Edge e : edgesOutOfList(u)) {
+      hasRemoved |= removeEdge(e);
+    }
+    return hasRemoved;
+  }
+
+  @Override
+  public boolean swapEdgesOutOf(Stmt out, Stmt in) {
+    boolean hasSwapped = false;
+    for (Edge e : edgesOutOfList(out)) {
+      removeEdge(e);
+      addEdge(new Edge(e.getSrc(), in, e.getTgt()));
+      hasSwapped = true;
+    }
+    return hasSwapped;
+  }
+
+  private List<Edge> edgesOutOfList(Unit u) {
+    List<Edge> ret = new ArrayList<Edge>();
+    for (Iterator<Edge> it = edgesOutOf(u); it.hasNext();) {
+      ret.add(it.next());
+    }
+    return ret;
+  }
+}
@@ -22,6 +22,8 @@ package soot.jimple.toolkits.callgraph;
  * #L%
  */
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -35,6 +37,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -212,6 +216,7 @@ public class OnFlyCallGraphBuilder {
   private ConstantArrayAnalysis arrayCache = null;
   private SootMethod analysisKey = null;
   protected VirtualCalls virtualCalls = VirtualCalls.v();
+  private ConcurrentMap<DispatchKey, List<SootMethod>> dispatchCache = null;
 
   public OnFlyCallGraphBuilder(ContextManager cm, ReachableMethods rm) {
     this.cm = cm;
@@ -276,6 +281,193 @@ public class OnFlyCallGraphBuilder {
     }
   }
 
+  /**
+   * Like {@link #processReachables()}, but retrieves and scans the bodies of newly reachable methods on the given
+   * executor. The results are registered on the calling thread in the order in which the methods became reachable, so
+   * the call graph is the same as with {@link #processReachables()}.
+   */
+  public void processReachables(CountingThreadPoolExecutor executor) {
+    while (true) {
+      List<MethodOrMethodContext> batch = new ArrayList<MethodOrMethodContext>();
+      while (true) {
+        if (!worklist.hasNext()) {
+          rm.update();
+          if (!worklist.hasNext()) {
+            break;
+          }
+        }
+        batch.add(worklist.next());
+      }
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      final MethodScan[] scans = new MethodScan[batch.size()];
+      for (int i = 0; i < scans.length; i++) {
+        final SootMethod m = batch.get(i).method();
+        if (appOnly && !m.getDeclaringClass().isApplicationClass()) {
+          continue;
+        }
+        if (analyzedMethods.add(m) && m.isConcrete()) {
+          final int index = i;
+          executor.execute(() -> scans[index] = scanMethod(m));
+        }
+      }
+      awaitCompletion(executor);
+
+      for (int i = 0; i < scans.length; i++) {
+        MethodOrMethodContext momc = batch.get(i);
+        SootMethod m = momc.method();
+        if (appOnly && !m.getDeclaringClass().isApplicationClass()) {
+          continue;
+        }
+        if (scans[i] != null) {
+          scans[i].register();
+        }
+        processNewMethodContext(momc);
+      }
+    }
+  }
+
+  static void awaitCompletion(CountingThreadPoolExecutor executor) {
+    try {
+      executor.awaitCompletion();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Could not wait for call graph threads to finish: " + e.getMessage(), e);
+    }
+    Throwable exception = executor.getException();
+    if (exception != null) {
+      if (exception instanceof RuntimeException) {
+        throw (RuntimeException) exception;
+      } else {
+        throw new RuntimeException(exception);
+      }
+    }
+  }
+
+  /**
+   * Scans the current active body of an already analyzed method m again for call sites, for instance after the body has
+   * been replaced. Edges and receivers found for the previous body are kept.
+   */
+  public void reprocessMethod(SootMethod m) {
+    if (analyzedMethods.contains(m)) {
+      processNewMethod(m);
+    }
+  }
+
+  /**
+   * Makes this builder remember the targets of the virtual calls it resolves, and lets
+   * {@link #precomputeDispatch(Local, Type)} resolve them ahead of time on other threads until
+   * {@link #disableDispatchCache()} is called.
+   */
+  public void enableDispatchCache() {
+    if (dispatchCache == null) {
+      dispatchCache = new ConcurrentHashMap<DispatchKey, List<SootMethod>>();
+      virtualCalls.setConcurrent(true);
+    }
+  }
+
+  /** Stops remembering the targets of virtual calls and resolves them on one thread only again. */
+  public void disableDispatchCache() {
+    if (dispatchCache != null) {
+      dispatchCache = null;
+      virtualCalls.setConcurrent(false);
+    }
+  }
+
+  /**
+   * Resolves the virtual calls on receiver for the given receiver type, so that a later {@link #addType} finds the
+   * targets in the dispatch cache. This only reads the state of this builder and may be called on several threads at
+   * once, as long as no other method of this builder runs at the same time.
+   */
+  public void precomputeDispatch(Local receiver, Type type) {
+    List<VirtualCallSite> sites = receiverToSites.get(receiver);
+    if (sites == null || dispatchCache == null) {
+      return;
+    }
+    FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+    for (VirtualCallSite site : sites) {
+      if (skipSite(site, fh, type) || isSpecial(site)) {
+        continue;
+      }
+      dispatch(type, receiver.getType(), site);
+    }
+  }
+
+  /** Returns the targets of site for the given receiver type from the dispatch cache, resolving them if needed. */
+  private List<SootMethod> dispatch(Type type, Type declaredType, VirtualCallSite site) {
+    DispatchKey key = new DispatchKey(type, declaredType, site.subSig());
+    List<SootMethod> targets = dispatchCache.get(key);
+    if (targets == null) {
+      ChunkedQueue<SootMethod> queue = new ChunkedQueue<SootMethod>();
+      QueueReader<SootMethod> reader = queue.reader();
+      resolveVirtual(type, declaredType, site.subSig(), site.container(), queue, reader);
+      targets = new ArrayList<SootMethod>();
+      while (reader.hasNext()) {
+        targets.add(reader.next());
+      }
+      List<SootMethod> old = dispatchCache.putIfAbsent(key, targets);
+      if (old != null) {
+        targets = old;
+      }
+    }
+    return targets;
+  }
+
+  private boolean isSpecial(VirtualCallSite site) {
+    return site.iie() instanceof SpecialInvokeExpr && site.kind != Kind.THREAD && site.kind != Kind.EXECUTOR
+        && site.kind != Kind.ASYNCTASK;
+  }
+
+  private void resolveVirtual(Type type, Type declaredType, NumberedString subSig, SootMethod container,
+      ChunkedQueue<SootMethod> queue, QueueReader<SootMethod> reader) {
+    virtualCalls.resolve(type, declaredType, subSig, container, queue, appOnly);
+    if (!reader.hasNext() && options.resolve_all_abstract_invokes()) {
+      /*
+       * In the situation where we find nothing to resolve an invoke to in the first call, this might be because the
+       * type for the invoking object is a abstract class and the method is declared in a parent class. In this
+       * situation, when the abstract class has no classes that extend it in the scene, resolve would not find any
+       * targets for the invoke, even if the parent contained a possible target.
+       * 
+       * This may have been by design since without a concrete class, we have no idea if the method in the parent class
+       * is overridden. However, the same could be said for any non private method in the abstract class (and these all
+       * resolve fine inside the abstract class even though there are no sub classes of the abstract class). This makes
+       * this situation a corner case.
+       * 
+       * Where as, it used to not resolve any targets in this situation, I want to at least resolve the method in the
+       * parent class if there is one (as this is technically a possibility and the only information we have).
+       */
+      virtualCalls.resolveSuperType(type, declaredType, subSig, queue, appOnly);
+    }
+  }
+
+  /** Key of the dispatch cache: the receiver type, the declared type of the receiver and the subsignature. */
+  private static final class DispatchKey {
+    private final Type type;
+    private final Type declaredType;
+    private final NumberedString subSig;
+
+    DispatchKey(Type type, Type declaredType, NumberedString subSig) {
+      this.type = type;
+      this.declaredType = declaredType;
+      this.subSig = subSig;
+    }
+
+    @Override
+    public int hashCode() {
+      return (type.hashCode() * 31 + declaredType.hashCode()) * 31 + subSig.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof DispatchKey)) {
+        return false;
+      }
+      DispatchKey other = (DispatchKey) obj;
+      return subSig == other.subSig && type.equals(other.type) && declaredType.equals(other.declaredType);
+    }
+  }
+
   public boolean wantTypes(Local receiver) {
     return receiverToSites.get(receiver) != null || baseToInvokeSite.get(receiver) != null;
   }
@@ -568,8 +760,7 @@ public class OnFlyCallGraphBuilder {
           continue;
         }
 
-        if (site.iie() instanceof SpecialInvokeExpr && site.kind != Kind.THREAD && site.kind != Kind.EXECUTOR
-            && site.kind != Kind.ASYNCTASK) {
+        if (isSpecial(site)) {
           SootMethod target
               = virtualCalls.resolveSpecial((SpecialInvokeExpr) site.iie(), site.subSig(), site.container(), appOnly);
           // if the call target resides in a phantom class then
@@ -578,25 +769,12 @@ public class OnFlyCallGraphBuilder {
           if (target != null) {
             targetsQueue.add(target);
           }
-        } else {
-          virtualCalls.resolve(type, receiver.getType(), site.subSig(), site.container(), targetsQueue, appOnly);
-          if (!targets.hasNext() && options.resolve_all_abstract_invokes()) {
-            /*
-             * In the situation where we find nothing to resolve an invoke to in the first call, this might be because the
-             * type for the invoking object is a abstract class and the method is declared in a parent class. In this
-             * situation, when the abstract class has no classes that extend it in the scene, resolve would not find any
-             * targets for the invoke, even if the parent contained a possible target.
-             * 
-             * This may have been by design since without a concrete class, we have no idea if the method in the parent class
-             * is overridden. However, the same could be said for any non private method in the abstract class (and these all
-             * resolve fine inside the abstract class even though there are no sub classes of the abstract class). This makes
-             * this situation a corner case.
-             * 
-             * Where as, it used to not resolve any targets in this situation, I want to at least resolve the method in the
-             * parent class if there is one (as this is technically a possibility and the only information we have).
-             */
-            virtualCalls.resolveSuperType(type, receiver.getType(), site.subSig(), targetsQueue, appOnly);
+        } else if (dispatchCache != null) {
+          for (SootMethod target : dispatch(type, receiver.getType(), site)) {
+            targetsQueue.add(target);
           }
+        } else {
+          resolveVirtual(type, receiver.getType(), site.subSig(), site.container(), targetsQueue, targets);
         }
         while (targets.hasNext()) {
           SootMethod target = targets.next();
@@ -761,80 +939,111 @@ public class OnFlyCallGraphBuilder {
     if (!m.isConcrete()) {
       return;
     }
+    scanMethod(m).register();
+  }
+
+  /**
+   * What scanning the body of a method found, as a list of actions that register it with this builder. Scanning only
+   * reads the state of the builder, so several methods can be scanned at once; the actions are then run on one thread,
+   * in the order in which the scan found them.
+   */
+  private static final class MethodScan {
+    private final List<Runnable> actions = new ArrayList<Runnable>();
+
+    void add(Runnable action) {
+      actions.add(action);
+    }
+
+    void register() {
+      for (Runnable action : actions) {
+        action.run();
+      }
+    }
+  }
+
+  private MethodScan scanMethod(SootMethod m) {
+    MethodScan scan = new MethodScan();
     Body b = m.retrieveActiveBody();
-    getImplicitTargets(m);
-    findReceivers(m, b);
+    getImplicitTargets(m, scan);
+    findReceivers(m, b, scan);
+    return scan;
   }
 
-  private void findReceivers(SootMethod m, Body b) {
+  private void findReceivers(final SootMethod m, Body b, MethodScan scan) {
     for (final Unit u : b.getUnits()) {
       final Stmt s = (Stmt) u;
       if (s.containsInvokeExpr()) {
         InvokeExpr ie = s.getInvokeExpr();
 
         if (ie instanceof InstanceInvokeExpr) {
-          InstanceInvokeExpr iie = (InstanceInvokeExpr) ie;
-          Local receiver = (Local) iie.getBase();
-          NumberedString subSig = iie.getMethodRef().getSubSignature();
-          addVirtualCallSite(s, m, receiver, iie, subSig, Edge.ieToKind(iie));
+          final InstanceInvokeExpr iie = (InstanceInvokeExpr) ie;
+          final Local receiver = (Local) iie.getBase();
+          final NumberedString subSig = iie.getMethodRef().getSubSignature();
+          final Kind kind = Edge.ieToKind(iie);
+          scan.add(() -> addVirtualCallSite(s, m, receiver, iie, subSig, kind));
           if (subSig == sigStart) {
-            addVirtualCallSite(s, m, receiver, iie, sigRun, Kind.THREAD);
+            scan.add(() -> addVirtualCallSite(s, m, receiver, iie, sigRun, Kind.THREAD));
           } else if (subSig == sigExecutorExecute || subSig == sigHandlerPost || subSig == sigHandlerPostAtFrontOfQueue
               || subSig == sigHandlerPostAtTime || subSig == sigHandlerPostAtTimeWithToken || subSig == sigHandlerPostDelayed
               || subSig == sigRunOnUiThread) {
             if (iie.getArgCount() > 0) {
-              Value runnable = iie.getArg(0);
+              final Value runnable = iie.getArg(0);
               if (runnable instanceof Local) {
-                addVirtualCallSite(s, m, (Local) runnable, iie, sigRun, Kind.EXECUTOR);
+                scan.add(() -> addVirtualCallSite(s, m, (Local) runnable, iie, sigRun, Kind.EXECUTOR));
               }
             }
           } else if (subSig == sigHandlerSendEmptyMessage || subSig == sigHandlerSendEmptyMessageAtTime
               || subSig == sigHandlerSendEmptyMessageDelayed || subSig == sigHandlerSendMessage
               || subSig == sigHandlerSendMessageAtFrontOfQueue || subSig == sigHandlerSendMessageAtTime
               || subSig == sigHandlerSendMessageDelayed) {
-            addVirtualCallSite(s, m, receiver, iie, sigHandlerHandleMessage, Kind.HANDLER);
+            scan.add(() -> addVirtualCallSite(s, m, receiver, iie, sigHandlerHandleMessage, Kind.HANDLER));
           } else if (subSig == sigExecute) {
-            addVirtualCallSite(s, m, receiver, iie, sigDoInBackground, Kind.ASYNCTASK);
+            scan.add(() -> addVirtualCallSite(s, m, receiver, iie, sigDoInBackground, Kind.ASYNCTASK));
           }
         } else if (ie instanceof DynamicInvokeExpr) {
           if (options.verbose()) {
             logger.debug("" + "WARNING: InvokeDynamic to " + ie + " not resolved during call-graph construction.");
           }
         } else {
-          SootMethod tgt = ie.getMethod();
-          if (tgt != null) {
-            addEdge(m, s, tgt);
-            String signature = tgt.getSignature();
-            if (signature
-                .equals("<java.security.AccessController: java.lang.Object doPrivileged(java.security.PrivilegedAction)>")
-                || signature.equals("<java.security.AccessController: java.lang.Object doPrivileged"
-                    + "(java.security.PrivilegedExceptionAction)>")
-                || signature.equals("<java.security.AccessController: java.lang.Object doPrivileged"
-                    + "(java.security.PrivilegedAction,java.security.AccessControlContext)>")
-                || signature.equals("<java.security.AccessController: java.lang.Object doPrivileged"
-                    + "(java.security.PrivilegedExceptionAction,java.security.AccessControlContext)>")) {
-
-              Local receiver = (Local) ie.getArg(0);
-              addVirtualCallSite(s, m, receiver, null, sigObjRun, Kind.PRIVILEGED);
-            }
-          } else {
-            if (!Options.v().ignore_resolution_errors()) {
-              throw new InternalError(
-                  "Unresolved target " + ie.getMethod() + ". Resolution error should have occured earlier.");
-            }
-          }
+          // Resolving the method may change the scene, so it is done when registering
+          scan.add(() -> addStaticInvoke(m, s, ie));
         }
       }
     }
   }
 
-  private void getImplicitTargets(SootMethod source) {
+  private void addStaticInvoke(SootMethod m, Stmt s, InvokeExpr ie) {
+    SootMethod tgt = ie.getMethod();
+    if (tgt != null) {
+      addEdge(m, s, tgt);
+      String signature = tgt.getSignature();
+      if (signature
+          .equals("<java.security.AccessController: java.lang.Object doPrivileged(java.security.PrivilegedAction)>")
+          || signature.equals("<java.security.AccessController: java.lang.Object doPrivileged"
+              + "(java.security.PrivilegedExceptionAction)>")
+          || signature.equals("<java.security.AccessController: java.lang.Object doPrivileged"
+              + "(java.security.PrivilegedAction,java.security.AccessControlContext)>")
+          || signature.equals("<java.security.AccessController: java.lang.Object doPrivileged"
+              + "(java.security.PrivilegedExceptionAction,java.security.AccessControlContext)>")) {
+
+        Local receiver = (Local) ie.getArg(0);
+        addVirtualCallSite(s, m, receiver, null, sigObjRun, Kind.PRIVILEGED);
+      }
+    } else {
+      if (!Options.v().ignore_resolution_errors()) {
+        throw new InternalError(
+            "Unresolved target " + ie.getMethod() + ". Resolution error should have occured earlier.");
+      }
+    }
+  }
+
+  private void getImplicitTargets(final SootMethod source, MethodScan scan) {
     final SootClass scl = source.getDeclaringClass();
     if (!source.isConcrete()) {
       return;
     }
     if (source.getSubSignature().indexOf("<init>") >= 0) {
-      handleInit(source, scl);
+      scan.add(() -> handleInit(source, scl));
     }
     Body b = source.retrieveActiveBody();
     for (Unit u : b.getUnits()) {
@@ -846,27 +1055,27 @@ public class OnFlyCallGraphBuilder {
           case "java.lang.reflect.Method":
             if (methodRef.getSubSignature().getString()
                 .equals("java.lang.Object invoke(java.lang.Object,java.lang.Object[])")) {
-              reflectionModel.methodInvoke(source, s);
+              scan.add(() -> reflectionModel.methodInvoke(source, s));
             }
             break;
           case "java.lang.Class":
             if (methodRef.getSubSignature().getString().equals("java.lang.Object newInstance()")) {
-              reflectionModel.classNewInstance(source, s);
+              scan.add(() -> reflectionModel.classNewInstance(source, s));
             }
             break;
           case "java.lang.reflect.Constructor":
             if (methodRef.getSubSignature().getString().equals("java.lang.Object newInstance(java.lang.Object[])")) {
-              reflectionModel.contructorNewInstance(source, s);
+              scan.add(() -> reflectionModel.contructorNewInstance(source, s));
             }
             break;
         }
         if (methodRef.getSubSignature() == sigForName) {
-          reflectionModel.classForName(source, s);
+          scan.add(() -> reflectionModel.classForName(source, s));
         }
         if (ie instanceof StaticInvokeExpr) {
           SootClass cl = ie.getMethodRef().declaringClass();
           for (SootMethod clinit : EntryPoints.v().clinitsOf(cl)) {
-            addEdge(source, s, clinit, Kind.CLINIT);
+            scan.add(() -> addEdge(source, s, clinit, Kind.CLINIT));
           }
         }
       }
@@ -875,7 +1084,7 @@ public class OnFlyCallGraphBuilder {
         if (fr instanceof StaticFieldRef) {
           SootClass cl = fr.getFieldRef().declaringClass();
           for (SootMethod clinit : EntryPoints.v().clinitsOf(cl)) {
-            addEdge(source, s, clinit, Kind.CLINIT);
+            scan.add(() -> addEdge(source, s, clinit, Kind.CLINIT));
           }
         }
       }
@@ -885,7 +1094,7 @@ public class OnFlyCallGraphBuilder {
           NewExpr r = (NewExpr) rhs;
           SootClass cl = r.getBaseType().getSootClass();
           for (SootMethod clinit : EntryPoints.v().clinitsOf(cl)) {
-            addEdge(source, s, clinit, Kind.CLINIT);
+            scan.add(() -> addEdge(source, s, clinit, Kind.CLINIT));
           }
         } else if (rhs instanceof NewArrayExpr || rhs instanceof NewMultiArrayExpr) {
           Type t = rhs.getType();
@@ -895,7 +1104,7 @@ public class OnFlyCallGraphBuilder {
           if (t instanceof RefType) {
             SootClass cl = ((RefType) t).getSootClass();
             for (SootMethod clinit : EntryPoints.v().clinitsOf(cl)) {
-              addEdge(source, s, clinit, Kind.CLINIT);
+              scan.add(() -> addEdge(source, s, clinit, Kind.CLINIT));
             }
           }
         }
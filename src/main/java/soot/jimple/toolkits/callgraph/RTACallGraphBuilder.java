@@ -0,0 +1,206 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.ArrayType;
+import soot.FastHierarchy;
+import soot.Kind;
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.RefType;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.ClassConstant;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.StringConstant;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+import soot.util.queue.QueueReader;
+
+/**
+ * Builds a call graph using Rapid Type Analysis. A virtual call may only reach the methods of classes that are
+ * instantiated somewhere in a reachable method, so the set of instantiated types grows together with the set of
+ * reachable methods: when a new type is found, the call sites seen so far whose receiver may hold it are resolved again
+ * for that type.
+ *
+ * <p>
+ * A type counts as instantiated if a reachable method allocates it with a new expression, if it is the type of a string
+ * or class constant in a reachable method, or if the call graph has a reflective instantiation edge (such as
+ * {@link Kind#NEWINSTANCE}) to one of its constructors. The VM supplies the receiver and the arguments of the entry
+ * points, so their types count as instantiated as well. Reaching a constructor is not enough by itself: every
+ * constructor calls the one of its superclass, which would mark abstract classes and java.lang.Object as instantiated.
+ * Objects created only by native code are not seen, as with any RTA.
+ * </p>
+ */
+public class RTACallGraphBuilder extends CallGraphBuilder {
+  private final RefType objectType = RefType.v("java.lang.Object");
+  private final Set<Type> instantiatedTypes = new LinkedHashSet<Type>();
+
+  /** Receivers seen so far, grouped by their declared type. */
+  private final Map<Type, List<Local>> declaredTypeToReceivers = new LinkedHashMap<Type, List<Local>>();
+
+  /** For each declared type of a receiver, the instantiated types that may be stored in it. */
+  private final Map<Type, List<Type>> declaredTypeToTypes = new LinkedHashMap<Type, List<Type>>();
+
+  private final Set<MethodOrMethodContext> entryPoints;
+  private final QueueReader<Edge> edges;
+
+  public RTACallGraphBuilder() {
+    super(DumbPointerAnalysis.v());
+    entryPoints = new HashSet<MethodOrMethodContext>(Scene.v().getEntryPoints());
+    edges = getCallGraph().listener();
+  }
+
+  /** Returns the types found to be instantiated, in the order in which they were found. */
+  public Set<Type> getInstantiatedTypes() {
+    return Collections.unmodifiableSet(instantiatedTypes);
+  }
+
+  @Override
+  protected void processReceivers(MethodOrMethodContext momc) {
+    SootMethod m = momc.method();
+    List<Type> types = findInstantiatedTypes(m);
+    if (entryPoints.contains(m)) {
+      addEntryPointTypes(m, types);
+    }
+    while (edges.hasNext()) {
+      Edge e = edges.next();
+      if (isInstantiation(e.kind()) && e.tgt().isConstructor()) {
+        types.add(e.tgt().getDeclaringClass().getType());
+      }
+    }
+    for (Type t : types) {
+      if (instantiatedTypes.add(t)) {
+        addInstantiatedType(t);
+      }
+    }
+    List<Local> receivers = getOnFlyCallGraphBuilder().methodToReceivers().get(m);
+    if (receivers != null) {
+      for (Local receiver : receivers) {
+        addReceiver(receiver);
+      }
+    }
+  }
+
+  /** Resolves the receivers seen so far that may hold the new type t. */
+  private void addInstantiatedType(Type t) {
+    FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+    for (Map.Entry<Type, List<Local>> e : declaredTypeToReceivers.entrySet()) {
+      if (fh.canStoreType(t, e.getKey())) {
+        declaredTypeToTypes.get(e.getKey()).add(t);
+        for (Local receiver : e.getValue()) {
+          getOnFlyCallGraphBuilder().addType(receiver, null, t, null);
+        }
+      }
+    }
+  }
+
+  /** Resolves a new receiver for all instantiated types that it may hold. */
+  private void addReceiver(Local receiver) {
+    Type declaredType = receiver.getType();
+    if (declaredType instanceof ArrayType) {
+      // Calls on arrays dispatch to the methods of java.lang.Object, as in VirtualCalls
+      declaredType = objectType;
+    }
+    List<Local> receivers = declaredTypeToReceivers.get(declaredType);
+    if (receivers == null) {
+      receivers = new ArrayList<Local>();
+      declaredTypeToReceivers.put(declaredType, receivers);
+      FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+      List<Type> types = new ArrayList<Type>();
+      for (Type t : instantiatedTypes) {
+        if (fh.canStoreType(t, declaredType)) {
+          types.add(t);
+        }
+      }
+      declaredTypeToTypes.put(declaredType, types);
+    }
+    receivers.add(receiver);
+    for (Type t : declaredTypeToTypes.get(declaredType)) {
+      getOnFlyCallGraphBuilder().addType(receiver, null, t, null);
+    }
+  }
+
+  private static boolean isInstantiation(Kind k) {
+    return k == Kind.NEWINSTANCE || k == Kind.REFL_CLASS_NEWINSTANCE || k == Kind.REFL_CONSTR_NEWINSTANCE;
+  }
+
+  /** Adds the types of the objects that the VM passes to the entry point m. */
+  private static void addEntryPointTypes(SootMethod m, List<Type> types) {
+    if (!m.isStatic() && m.getDeclaringClass().isConcrete()) {
+      types.add(m.getDeclaringClass().getType());
+    }
+    for (Type t : m.getParameterTypes()) {
+      if (t instanceof ArrayType) {
+        types.add(t);
+        Type elem = ((ArrayType) t).getElementType();
+        if (elem instanceof RefType && ((RefType) elem).getSootClass().isConcrete()) {
+          types.add(elem);
+        }
+      } else if (t instanceof RefType && ((RefType) t).getSootClass().isConcrete()) {
+        types.add(t);
+      }
+    }
+  }
+
+  private List<Type> findInstantiatedTypes(SootMethod m) {
+    List<Type> ret = new ArrayList<Type>();
+    if (!m.hasActiveBody()) {
+      return ret;
+    }
+    for (Unit u : m.getActiveBody().getUnits()) {
+      if (u instanceof AssignStmt) {
+        Value rhs = ((AssignStmt) u).getRightOp();
+        if (rhs instanceof NewExpr) {
+          ret.add(((NewExpr) rhs).getBaseType());
+        } else if (rhs instanceof NewArrayExpr || rhs instanceof NewMultiArrayExpr) {
+          ret.add(rhs.getType());
+        }
+      }
+      for (ValueBox box : u.getUseBoxes()) {
+        Value v = box.getValue();
+        if (v instanceof StringConstant) {
+          ret.add(RefType.v("java.lang.String"));
+        } else if (v instanceof ClassConstant) {
+          ret.add(RefType.v("java.lang.Class"));
+        }
+      }
+    }
+    return ret;
+  }
+}
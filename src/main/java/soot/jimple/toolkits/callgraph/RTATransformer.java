@@ -0,0 +1,56 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.G;
+import soot.Scene;
+import soot.SceneTransformer;
+import soot.Singletons;
+import soot.options.RTAOptions;
+
+/** Builds a call graph using Rapid Type Analysis. */
+public class RTATransformer extends SceneTransformer {
+  private static final Logger logger = LoggerFactory.getLogger(RTATransformer.class);
+
+  public RTATransformer(Singletons.Global g) {
+  }
+
+  public static RTATransformer v() {
+    return G.v().soot_jimple_toolkits_callgraph_RTATransformer();
+  }
+
+  protected void internalTransform(String phaseName, Map<String, String> opts) {
+    RTAOptions options = new RTAOptions(opts);
+    RTACallGraphBuilder cg = new RTACallGraphBuilder();
+    cg.build();
+    if (options.verbose()) {
+      logger.debug("" + "Number of instantiated types: " + cg.getInstantiatedTypes().size());
+      logger.debug("" + "Number of reachable methods: " + Scene.v().getReachableMethods().size());
+    }
+  }
+}
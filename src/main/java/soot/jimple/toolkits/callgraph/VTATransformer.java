@@ -0,0 +1,74 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SceneTransformer;
+import soot.Singletons;
+import soot.SootMethod;
+import soot.options.VTAOptions;
+
+/**
+ * Builds a call graph using Variable Type Analysis. A call graph is first built with Rapid Type Analysis; the types
+ * that reach each variable along that call graph then decide the targets of virtual calls in the final call graph.
+ */
+public class VTATransformer extends SceneTransformer {
+  private static final Logger logger = LoggerFactory.getLogger(VTATransformer.class);
+
+  public VTATransformer(Singletons.Global g) {
+  }
+
+  public static VTATransformer v() {
+    return G.v().soot_jimple_toolkits_callgraph_VTATransformer();
+  }
+
+  protected void internalTransform(String phaseName, Map<String, String> opts) {
+    VTAOptions options = new VTAOptions(opts);
+    RTACallGraphBuilder rta = new RTACallGraphBuilder();
+    rta.build();
+    List<SootMethod> methods = new ArrayList<SootMethod>();
+    for (Iterator<MethodOrMethodContext> it = rta.reachables().listener(); it.hasNext();) {
+      methods.add(it.next().method());
+    }
+    if (options.verbose()) {
+      logger.debug("" + "Number of methods reachable by RTA: " + methods.size());
+    }
+
+    VariableTypeAnalysis vta = new VariableTypeAnalysis(rta.getCallGraph(), methods, rta.getInstantiatedTypes());
+    CallGraphBuilder cg = new CallGraphBuilder(vta);
+    cg.build();
+    if (options.verbose()) {
+      logger.debug("" + "Number of reachable methods: " + Scene.v().getReachableMethods().size());
+    }
+  }
+}
@@ -0,0 +1,462 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.ArrayType;
+import soot.Context;
+import soot.FastHierarchy;
+import soot.Kind;
+import soot.Local;
+import soot.PointsToAnalysis;
+import soot.PointsToSet;
+import soot.RefLikeType;
+import soot.RefType;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.FieldRef;
+import soot.jimple.IdentityStmt;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.NullConstant;
+import soot.jimple.ParameterRef;
+import soot.jimple.ReturnStmt;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.jimple.ThisRef;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+
+/**
+ * Variable Type Analysis. Types flow from allocations along assignments, field accesses, array accesses, parameters and
+ * return values, as given by an existing call graph, and each variable ends up with the set of types that may reach it.
+ * All instance fields with the same signature share one node, as do all array elements, and every node keeps only the
+ * types that its declared type admits, so casts filter the types that pass through them.
+ *
+ * <p>
+ * Types can only come from the given set of instantiated types, normally the one found by {@link RTACallGraphBuilder}.
+ * Where a value comes from outside the analyzed code, such as the parameters of entry points, caught exceptions, the
+ * results of native methods and of reflective calls, and fields that no analyzed code writes, it is assumed to hold any
+ * instantiated type that its declared type admits.
+ * </p>
+ *
+ * <p>
+ * Only the types are tracked, so {@link PointsToSet#hasNonEmptyIntersection(PointsToSet)} on the returned sets compares
+ * types rather than objects.
+ * </p>
+ */
+public class VariableTypeAnalysis implements PointsToAnalysis {
+  private static final Object ARRAY_ELEMENTS = new Object();
+
+  private static class Node {
+    final BitSet mask;
+    final BitSet types = new BitSet();
+    final List<Node> successors = new ArrayList<Node>();
+    boolean hasSources = false;
+    boolean inWorklist = false;
+
+    Node(BitSet mask) {
+      this.mask = mask;
+    }
+  }
+
+  private final CallGraph cg;
+  private final FastHierarchy fh;
+  private final List<Type> types;
+  private final Map<Type, Integer> typeToIndex = new HashMap<Type, Integer>();
+  private final BitSet allTypes;
+  private final Map<Type, BitSet> masks = new HashMap<Type, BitSet>();
+  private final Map<Object, Node> nodes = new HashMap<Object, Node>();
+  private final Set<SootMethod> entryPoints;
+
+  /**
+   * Runs the analysis over the given methods.
+   *
+   * @param cg
+   *          the call graph that connects call sites to their targets
+   * @param methods
+   *          the methods to analyze, normally those reachable in cg
+   * @param instantiatedTypes
+   *          the types that may be allocated
+   */
+  public VariableTypeAnalysis(CallGraph cg, Collection<SootMethod> methods, Collection<Type> instantiatedTypes) {
+    this.cg = cg;
+    this.fh = Scene.v().getOrMakeFastHierarchy();
+    this.entryPoints = new HashSet<SootMethod>(Scene.v().getEntryPoints());
+    this.types = new ArrayList<Type>(new LinkedHashSet<Type>(instantiatedTypes));
+    this.allTypes = new BitSet(types.size());
+    this.allTypes.set(0, types.size());
+    for (int i = 0; i < types.size(); i++) {
+      typeToIndex.put(types.get(i), i);
+    }
+
+    for (SootMethod m : methods) {
+      if (m.hasActiveBody()) {
+        addMethod(m);
+      }
+    }
+    for (Map.Entry<Object, Node> e : nodes.entrySet()) {
+      if (e.getKey() instanceof SootField && !e.getValue().hasSources) {
+        addUnknown(e.getValue(), ((SootField) e.getKey()).getType());
+      }
+    }
+    propagate();
+  }
+
+  private void addMethod(SootMethod m) {
+    // Entry points may also be called from outside, even if the analyzed code calls them as well
+    boolean calledFromOutside = true;
+    if (!entryPoints.contains(m)) {
+      for (Iterator<Edge> it = cg.edgesInto(m); it.hasNext();) {
+        calledFromOutside = !it.next().isExplicit();
+        if (calledFromOutside) {
+          break;
+        }
+      }
+    }
+
+    for (Unit u : m.getActiveBody().getUnits()) {
+      Stmt s = (Stmt) u;
+      if (s instanceof IdentityStmt) {
+        IdentityStmt is = (IdentityStmt) s;
+        Value rhs = is.getRightOp();
+        if (rhs instanceof CaughtExceptionRef || (calledFromOutside && (rhs instanceof ThisRef
+            || rhs instanceof ParameterRef))) {
+          addUnknown(node(is.getLeftOp()), is.getLeftOp().getType());
+        }
+      } else if (s instanceof AssignStmt && ((AssignStmt) s).getLeftOp().getType() instanceof RefLikeType) {
+        Value lhs = ((AssignStmt) s).getLeftOp();
+        Value rhs = ((AssignStmt) s).getRightOp();
+        Node target;
+        if (lhs instanceof FieldRef) {
+          target = fieldNode(((FieldRef) lhs).getField());
+        } else if (lhs instanceof ArrayRef) {
+          target = arrayNode();
+        } else {
+          target = node(lhs);
+        }
+        if (rhs instanceof InvokeExpr) {
+          addReturnFlow(s, target, lhs.getType());
+        } else if (rhs instanceof FieldRef) {
+          addFlow(fieldNode(((FieldRef) rhs).getField()), target);
+        } else if (rhs instanceof ArrayRef) {
+          addFlow(arrayNode(), target);
+        } else {
+          addFlow(rhs, target);
+        }
+      } else if (s instanceof ReturnStmt) {
+        addFlow(((ReturnStmt) s).getOp(), returnNode(m));
+      }
+      if (s.containsInvokeExpr()) {
+        addCallFlow(s);
+      }
+    }
+  }
+
+  /** Connects the arguments of a call to the parameters of its targets. */
+  private void addCallFlow(Stmt s) {
+    InvokeExpr ie = s.getInvokeExpr();
+    for (Iterator<Edge> it = cg.edgesOutOf(s); it.hasNext();) {
+      Edge e = it.next();
+      SootMethod tgt = e.tgt();
+      if (!e.isExplicit() || !tgt.hasActiveBody()) {
+        continue;
+      }
+      for (Unit u : tgt.getActiveBody().getUnits()) {
+        if (!(u instanceof IdentityStmt)) {
+          break;
+        }
+        IdentityStmt is = (IdentityStmt) u;
+        Value rhs = is.getRightOp();
+        if (rhs instanceof ThisRef && e.kind().isInstance() && ie instanceof InstanceInvokeExpr) {
+          addFlow(((InstanceInvokeExpr) ie).getBase(), node(is.getLeftOp()));
+        } else if (rhs instanceof ParameterRef) {
+          int index = ((ParameterRef) rhs).getIndex();
+          if (index < ie.getArgCount()) {
+            addFlow(ie.getArg(index), node(is.getLeftOp()));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Connects the return values of the targets of a call to the variable that receives the result. Implicit edges whose
+   * target does not return into the call site, such as those to static initializers or to the run method of a started
+   * thread, are skipped.
+   */
+  private void addReturnFlow(Stmt s, Node target, Type declaredType) {
+    boolean returns = false;
+    for (Iterator<Edge> it = cg.edgesOutOf(s); it.hasNext();) {
+      Edge e = it.next();
+      if (e.isExplicit() && e.tgt().hasActiveBody()) {
+        addFlow(returnNode(e.tgt()), target);
+      } else if (e.isExplicit() || e.kind().isReflection() || e.kind() == Kind.NEWINSTANCE
+          || e.kind().isPrivileged()) {
+        // A native or phantom target, or a reflective call whose result we do not see
+        addUnknown(target, declaredType);
+      } else {
+        continue;
+      }
+      returns = true;
+    }
+    if (!returns) {
+      addUnknown(target, declaredType);
+    }
+  }
+
+  private void addFlow(Value from, Node to) {
+    if (from instanceof Local) {
+      if (from.getType() instanceof RefLikeType) {
+        addFlow(node(from), to);
+      }
+    } else if (from instanceof CastExpr) {
+      addFlow(((CastExpr) from).getOp(), to);
+    } else if (from instanceof NewExpr) {
+      addType(to, ((NewExpr) from).getBaseType());
+    } else if (from instanceof NewArrayExpr || from instanceof NewMultiArrayExpr) {
+      addType(to, from.getType());
+    } else if (from instanceof StringConstant) {
+      addType(to, RefType.v("java.lang.String"));
+    } else if (from instanceof ClassConstant) {
+      addType(to, RefType.v("java.lang.Class"));
+    } else if (!(from instanceof NullConstant)) {
+      addUnknown(to, from.getType());
+    }
+  }
+
+  private void addFlow(Node from, Node to) {
+    from.successors.add(to);
+    to.hasSources = true;
+  }
+
+  private void addType(Node n, Type t) {
+    Integer index = typeToIndex.get(t);
+    if (index != null) {
+      n.types.set(index);
+    }
+    n.hasSources = true;
+  }
+
+  /** Lets the node hold any type its declared type admits, including through the elements of an array. */
+  private void addUnknown(Node n, Type declaredType) {
+    n.types.or(n.mask);
+    n.hasSources = true;
+    if (declaredType instanceof ArrayType) {
+      Node elements = arrayNode();
+      elements.types.or(mask(((ArrayType) declaredType).getElementType()));
+      elements.hasSources = true;
+    }
+  }
+
+  private void propagate() {
+    ArrayDeque<Node> worklist = new ArrayDeque<Node>();
+    for (Node n : nodes.values()) {
+      if (!n.types.isEmpty()) {
+        n.inWorklist = true;
+        worklist.add(n);
+      }
+    }
+    BitSet added = new BitSet();
+    while (!worklist.isEmpty()) {
+      Node n = worklist.poll();
+      n.inWorklist = false;
+      for (Node succ : n.successors) {
+        added.clear();
+        added.or(n.types);
+        added.and(succ.mask);
+        added.andNot(succ.types);
+        if (!added.isEmpty()) {
+          succ.types.or(added);
+          if (!succ.inWorklist) {
+            succ.inWorklist = true;
+            worklist.add(succ);
+          }
+        }
+      }
+    }
+  }
+
+  private Node node(Value l) {
+    Node n = nodes.get(l);
+    if (n == null) {
+      n = new Node(mask(l.getType()));
+      nodes.put(l, n);
+    }
+    return n;
+  }
+
+  private Node fieldNode(SootField f) {
+    Node n = nodes.get(f);
+    if (n == null) {
+      n = new Node(mask(f.getType()));
+      nodes.put(f, n);
+    }
+    return n;
+  }
+
+  private Node returnNode(SootMethod m) {
+    Node n = nodes.get(m);
+    if (n == null) {
+      n = new Node(mask(m.getReturnType()));
+      nodes.put(m, n);
+    }
+    return n;
+  }
+
+  private Node arrayNode() {
+    Node n = nodes.get(ARRAY_ELEMENTS);
+    if (n == null) {
+      n = new Node(allTypes);
+      nodes.put(ARRAY_ELEMENTS, n);
+    }
+    return n;
+  }
+
+  /** Returns the instantiated types that may be stored in a variable of the given type. */
+  private BitSet mask(Type declaredType) {
+    BitSet mask = masks.get(declaredType);
+    if (mask == null) {
+      mask = new BitSet(types.size());
+      if (declaredType instanceof RefLikeType) {
+        for (int i = 0; i < types.size(); i++) {
+          if (fh.canStoreType(types.get(i), declaredType)) {
+            mask.set(i);
+          }
+        }
+      }
+      masks.put(declaredType, mask);
+    }
+    return mask;
+  }
+
+  private PointsToSet toSet(Node n) {
+    Set<Type> ret = new LinkedHashSet<Type>();
+    for (int i = n.types.nextSetBit(0); i >= 0; i = n.types.nextSetBit(i + 1)) {
+      ret.add(types.get(i));
+    }
+    return new TypeSet(Collections.unmodifiableSet(ret));
+  }
+
+  /** Returns the set of objects pointed to by variable l. */
+  @Override
+  public PointsToSet reachingObjects(Local l) {
+    Node n = nodes.get(l);
+    return n == null ? DumbPointerAnalysis.v().reachingObjects(l) : toSet(n);
+  }
+
+  /** Returns the set of objects pointed to by variable l in context c. */
+  @Override
+  public PointsToSet reachingObjects(Context c, Local l) {
+    return reachingObjects(l);
+  }
+
+  /** Returns the set of objects pointed to by field f. */
+  @Override
+  public PointsToSet reachingObjects(SootField f) {
+    Node n = nodes.get(f);
+    return n == null ? DumbPointerAnalysis.v().reachingObjects(f) : toSet(n);
+  }
+
+  @Override
+  public PointsToSet reachingObjects(PointsToSet s, SootField f) {
+    return reachingObjects(f);
+  }
+
+  @Override
+  public PointsToSet reachingObjects(Local l, SootField f) {
+    return reachingObjects(f);
+  }
+
+  @Override
+  public PointsToSet reachingObjects(Context c, Local l, SootField f) {
+    return reachingObjects(f);
+  }
+
+  /** Returns the set of objects pointed to by the elements of any array. */
+  @Override
+  public PointsToSet reachingObjectsOfArrayElement(PointsToSet s) {
+    Node n = nodes.get(ARRAY_ELEMENTS);
+    return n == null ? DumbPointerAnalysis.v().reachingObjectsOfArrayElement(s) : toSet(n);
+  }
+
+  /** A set of objects known only by their types. */
+  private static class TypeSet implements PointsToSet {
+    private final Set<Type> types;
+
+    TypeSet(Set<Type> types) {
+      this.types = types;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return types.isEmpty();
+    }
+
+    @Override
+    public boolean hasNonEmptyIntersection(PointsToSet other) {
+      if (other instanceof TypeSet) {
+        return !Collections.disjoint(types, ((TypeSet) other).types);
+      }
+      return !isEmpty() && !other.isEmpty();
+    }
+
+    @Override
+    public Set<Type> possibleTypes() {
+      return types;
+    }
+
+    @Override
+    public Set<String> possibleStringConstants() {
+      return null;
+    }
+
+    @Override
+    public Set<ClassConstant> possibleClassConstants() {
+      return null;
+    }
+  }
+}
@@ -27,7 +27,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.AnySubType;
 import soot.ArrayType;
@@ -45,6 +48,7 @@ import soot.jimple.SpecialInvokeExpr;
 import soot.options.CGOptions;
 import soot.toolkits.scalar.Pair;
 import soot.util.Chain;
+import soot.util.ConcurrentHashMultiMap;
 import soot.util.HashMultiMap;
 import soot.util.LargeNumberedMap;
 import soot.util.MultiMap;
@@ -53,7 +57,7 @@ import soot.util.SmallNumberedMap;
 import soot.util.queue.ChunkedQueue;
 
 /**
- * Resolves virtual calls.
+ * Resolves virtual calls. Calls may only be resolved on several threads at once after {@link #setConcurrent(boolean)}.
  *
  * @author Ondrej Lhotak
  */
@@ -70,6 +74,32 @@ public class VirtualCalls {
   private final LargeNumberedMap<Type, SmallNumberedMap<SootMethod>> typeToVtbl
       = new LargeNumberedMap<Type, SmallNumberedMap<SootMethod>>(Scene.v().getTypeNumberer());
 
+  /** Replaces typeToVtbl while calls may be resolved on several threads, null otherwise. */
+  private ConcurrentMap<Type, ConcurrentMap<NumberedString, SootMethod>> concurrentTypeToVtbl = null;
+
+  /**
+   * Switches the caches of this class to concurrent maps, so that calls can be resolved on several threads at once, or back
+   * to the cheaper maps for resolving calls on one thread. The parallel call graph builder switches them on while it
+   * resolves calls and off afterwards. Must not be called while calls are being resolved.
+   */
+  public void setConcurrent(boolean concurrent) {
+    if (concurrent == (concurrentTypeToVtbl != null)) {
+      return;
+    }
+    if (concurrent) {
+      concurrentTypeToVtbl = new ConcurrentHashMap<Type, ConcurrentMap<NumberedString, SootMethod>>();
+      baseToSubTypes = new ConcurrentHashMultiMap<Type, Type>(baseToSubTypes);
+      baseToPossibleSubTypes
+          = new ConcurrentHashMultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>>(baseToPossibleSubTypes);
+    } else {
+      // The targets resolved in the meantime are not copied back, typeToVtbl is only a cache
+      concurrentTypeToVtbl = null;
+      baseToSubTypes = new HashMultiMap<Type, Type>(baseToSubTypes);
+      baseToPossibleSubTypes
+          = new HashMultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>>(baseToPossibleSubTypes);
+    }
+  }
+
   public SootMethod resolveSpecial(SpecialInvokeExpr iie, NumberedString subSig, SootMethod container) {
     return resolveSpecial(iie, subSig, container, false);
   }
@@ -93,11 +123,7 @@ public class VirtualCalls {
   }
 
   public SootMethod resolveNonSpecial(RefType t, NumberedString subSig, boolean appOnly) {
-    SmallNumberedMap<SootMethod> vtbl = typeToVtbl.get(t);
-    if (vtbl == null) {
-      typeToVtbl.put(t, vtbl = new SmallNumberedMap<SootMethod>());
-    }
-    SootMethod ret = vtbl.get(subSig);
+    SootMethod ret = cachedTarget(t, subSig);
     if (ret != null) {
       return ret;
     }
@@ -117,10 +143,34 @@ public class VirtualCalls {
         ret = resolveNonSpecial(c.getType(), subSig);
       }
     }
-    vtbl.put(subSig, ret);
+    if (ret != null) {
+      cacheTarget(t, subSig, ret);
+    }
     return ret;
   }
 
+  private SootMethod cachedTarget(RefType t, NumberedString subSig) {
+    if (concurrentTypeToVtbl != null) {
+      Map<NumberedString, SootMethod> vtbl = concurrentTypeToVtbl.get(t);
+      return vtbl == null ? null : vtbl.get(subSig);
+    }
+    SmallNumberedMap<SootMethod> vtbl = typeToVtbl.get(t);
+    return vtbl == null ? null : vtbl.get(subSig);
+  }
+
+  private void cacheTarget(RefType t, NumberedString subSig, SootMethod target) {
+    if (concurrentTypeToVtbl != null) {
+      concurrentTypeToVtbl.computeIfAbsent(t, k -> new ConcurrentHashMap<NumberedString, SootMethod>()).put(subSig, target);
+      return;
+    }
+    SmallNumberedMap<SootMethod> vtbl = typeToVtbl.get(t);
+    if (vtbl == null) {
+      typeToVtbl.put(t, vtbl = new SmallNumberedMap<SootMethod>());
+    }
+    vtbl.put(subSig, target);
+  }
+
+  // Concurrent after setConcurrent(true); the first putAll for a key then makes the whole set visible at once
   protected MultiMap<Type, Type> baseToSubTypes = new HashMultiMap<Type, Type>();
   protected MultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>> baseToPossibleSubTypes
       = new HashMultiMap<Pair<Type, NumberedString>, Pair<Type, NumberedString>>();
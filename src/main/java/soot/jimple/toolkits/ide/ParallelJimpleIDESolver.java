@@ -0,0 +1,622 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.EdgeFunction;
+import heros.EdgeFunctions;
+import heros.FlowFunction;
+import heros.FlowFunctions;
+import heros.IDETabulationProblem;
+import heros.InterproceduralCFG;
+import heros.MeetLattice;
+import heros.edgefunc.EdgeIdentity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.SootMethod;
+import soot.Unit;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * An IDE solver for Jimple that scales to many threads. It solves the same {@link IDETabulationProblem}s as {@link
+ * JimpleIDESolver}, for instance a {@link DefaultJimpleIDETabulationProblem}, and computes the same values, but like
+ * {@link ParallelJimpleIFDSSolver} it does not share the solver of Heros, whose jump functions, end summaries and
+ * values are tables guarded by a single lock.
+ *
+ * <p>
+ * The jump functions are kept in one concurrent table per statement, indexed by the fact at the statement and then by
+ * the fact at the start point of its method, and a jump function is widened by meeting it with a new edge function in
+ * place, without a lock. The end summaries, with their summary functions, and the incoming calls of a method are kept
+ * in a table of that method, guarded by its own lock. Path edges whose jump function changed are processed as tasks of
+ * a {@link ForkJoinPool}, as in {@link ParallelJimpleIFDSSolver}.
+ * </p>
+ *
+ * <p>
+ * If the problem asks for them with computeValues, the values are computed in two more phases on the same pool. The
+ * first propagates values from the start points of methods to the calls within them and from calls to the start points
+ * of their callees, one task for each value that changed, meeting values in place in a concurrent table per statement.
+ * The second applies the jump functions of every other statement to the values at the start points, one task per
+ * method.
+ * </p>
+ *
+ * <p>
+ * The number of threads is taken from {@link IDETabulationProblem#numThreads()}. The options followReturnsPastSeeds
+ * and autoAddZero of the problem are honoured; recordEdges is ignored. Flow functions, edge functions and the meet
+ * lattice may be called from several threads at the same time and must be thread-safe, as with the solver of Heros.
+ * Path edges are not collected and summaries are not spilled, since edge functions need not be serializable.
+ * </p>
+ *
+ * @param <D>
+ *          The type of data-flow facts to be computed by the tabulation problem.
+ * @param <V>
+ *          The type of values to be computed along flow edges.
+ */
+public class ParallelJimpleIDESolver<D, V, I extends InterproceduralCFG<Unit, SootMethod>> {
+  private static final Logger logger = LoggerFactory.getLogger(ParallelJimpleIDESolver.class);
+
+  private final IDETabulationProblem<Unit, D, SootMethod, V, I> problem;
+  private final I icfg;
+  private final FlowFunctions<Unit, D, SootMethod> flowFunctions;
+  private final EdgeFunctions<Unit, D, SootMethod, V> edgeFunctions;
+  private final MeetLattice<V> valueLattice;
+  private final EdgeFunction<V> allTop;
+  private final D zeroValue;
+  private final boolean followReturnsPastSeeds;
+  private final boolean autoAddZero;
+  private final int numThreads;
+
+  private Map<Unit, Set<D>> initialSeeds;
+
+  private final ConcurrentHashMap<SootMethod, MethodState> methods = new ConcurrentHashMap<SootMethod, MethodState>();
+
+  /** Return sites reached by returning past a seed, which are start points of the value computation. */
+  private final Set<Unit> unbalancedRetSites = ConcurrentHashMap.newKeySet();
+
+  /** For each statement, the values of the facts at it, leaving out those at the top element. */
+  private final ConcurrentHashMap<Unit, ConcurrentHashMap<D, V>> values
+      = new ConcurrentHashMap<Unit, ConcurrentHashMap<D, V>>();
+
+  private ForkJoinPool pool;
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+  private final AtomicLong propagationCount = new AtomicLong();
+
+  /**
+   * The jump functions, end summaries and incoming calls of a method. Accesses to the summaries synchronize on the
+   * object, so that a call that registers itself and an exit that adds a summary cannot miss each other.
+   */
+  private class MethodState {
+    /**
+     * For each statement of the method and each fact d2 at it, the jump functions from the facts d1 at the start point
+     * that reach d2.
+     */
+    final ConcurrentHashMap<Unit, ConcurrentHashMap<D, ConcurrentHashMap<D, EdgeFunction<V>>>> jumpFunctions
+        = new ConcurrentHashMap<Unit, ConcurrentHashMap<D, ConcurrentHashMap<D, EdgeFunction<V>>>>();
+
+    /** For a start point and a fact at it, the exit statements and facts it reaches, with their summary functions. */
+    final Map<Pair<Unit, D>, Map<Pair<Unit, D>, EdgeFunction<V>>> endSummary
+        = new HashMap<Pair<Unit, D>, Map<Pair<Unit, D>, EdgeFunction<V>>>();
+
+    /** For a start point and a fact at it, the call sites that reach it, each with the fact at the call site. */
+    final Map<Pair<Unit, D>, Set<Pair<Unit, D>>> incoming = new HashMap<Pair<Unit, D>, Set<Pair<Unit, D>>>();
+  }
+
+  public ParallelJimpleIDESolver(IDETabulationProblem<Unit, D, SootMethod, V, I> problem) {
+    this.problem = problem;
+    this.icfg = problem.interproceduralCFG();
+    this.flowFunctions = problem.flowFunctions();
+    this.edgeFunctions = problem.edgeFunctions();
+    this.valueLattice = problem.meetLattice();
+    this.allTop = problem.allTopFunction();
+    this.zeroValue = problem.zeroValue();
+    this.followReturnsPastSeeds = problem.followReturnsPastSeeds();
+    this.autoAddZero = problem.autoAddZero();
+    int n = problem.numThreads();
+    this.numThreads = n > 0 ? n : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Runs the solver on the initial seeds of the problem and returns when all jump functions and, if the problem
+   * computes values, all values have been computed.
+   */
+  public void solve() {
+    pool = new ForkJoinPool(numThreads);
+    try {
+      initialSeeds = problem.initialSeeds();
+      for (Map.Entry<Unit, Set<D>> seed : initialSeeds.entrySet()) {
+        Unit startPoint = seed.getKey();
+        for (D d : seed.getValue()) {
+          propagate(zeroValue, startPoint, d, EdgeIdentity.<V>v());
+        }
+        functionsTo(stateOf(icfg.getMethodOf(startPoint)), startPoint, zeroValue).put(zeroValue, EdgeIdentity.<V>v());
+      }
+      awaitCompletion();
+      checkFailure();
+      logger.debug("IDE solver computed {} jump functions with {} threads", propagationCount.get(), numThreads);
+      if (problem.computeValues()) {
+        computeValues();
+      }
+    } finally {
+      pool.shutdown();
+      pool = null;
+    }
+  }
+
+  private void checkFailure() {
+    Throwable t = failure.get();
+    if (t != null) {
+      throw new RuntimeException("IDE solver failed", t);
+    }
+  }
+
+  private void awaitCompletion() {
+    synchronized (pending) {
+      while (pending.get() > 0) {
+        try {
+          pending.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while waiting for the IDE solver", e);
+        }
+      }
+    }
+  }
+
+  /** Returns the value of the given fact before the given statement, or null if the fact does not hold there. */
+  public V resultAt(Unit stmt, D value) {
+    Map<D, V> atStmt = values.get(stmt);
+    return atStmt == null ? null : atStmt.get(value);
+  }
+
+  /** Returns the facts that hold before the given statement with their values, not including the zero value. */
+  public Map<D, V> resultsAt(Unit stmt) {
+    Map<D, V> ret = new HashMap<D, V>();
+    Map<D, V> atStmt = values.get(stmt);
+    if (atStmt != null) {
+      for (Map.Entry<D, V> e : atStmt.entrySet()) {
+        if (e.getKey() != zeroValue) {
+          ret.put(e.getKey(), e.getValue());
+        }
+      }
+    }
+    return ret;
+  }
+
+  /** Returns the number of times a jump function was created or widened. */
+  public long getPropagationCount() {
+    return propagationCount.get();
+  }
+
+  private MethodState stateOf(SootMethod m) {
+    MethodState s = methods.get(m);
+    if (s == null) {
+      MethodState newState = new MethodState();
+      s = methods.putIfAbsent(m, newState);
+      if (s == null) {
+        s = newState;
+      }
+    }
+    return s;
+  }
+
+  /** Returns the jump functions to the fact d2 at statement n, indexed by the fact at the start point. */
+  private ConcurrentHashMap<D, EdgeFunction<V>> functionsTo(MethodState s, Unit n, D d2) {
+    ConcurrentHashMap<D, ConcurrentHashMap<D, EdgeFunction<V>>> atStmt = s.jumpFunctions.get(n);
+    if (atStmt == null) {
+      ConcurrentHashMap<D, ConcurrentHashMap<D, EdgeFunction<V>>> newAtStmt
+          = new ConcurrentHashMap<D, ConcurrentHashMap<D, EdgeFunction<V>>>();
+      atStmt = s.jumpFunctions.putIfAbsent(n, newAtStmt);
+      if (atStmt == null) {
+        atStmt = newAtStmt;
+      }
+    }
+    ConcurrentHashMap<D, EdgeFunction<V>> ret = atStmt.get(d2);
+    if (ret == null) {
+      ConcurrentHashMap<D, EdgeFunction<V>> newRet = new ConcurrentHashMap<D, EdgeFunction<V>>();
+      ret = atStmt.putIfAbsent(d2, newRet);
+      if (ret == null) {
+        ret = newRet;
+      }
+    }
+    return ret;
+  }
+
+  private EdgeFunction<V> jumpFunction(MethodState s, D d1, Unit n, D d2) {
+    EdgeFunction<V> f = functionsTo(s, n, d2).get(d1);
+    return f == null ? allTop : f;
+  }
+
+  /**
+   * Meets f with the jump function of the path edge (d1, n, d2) and, if that changed the jump function, schedules a
+   * task to process the path edge.
+   */
+  private void propagate(D d1, Unit n, D d2, EdgeFunction<V> f) {
+    ConcurrentHashMap<D, EdgeFunction<V>> functions = functionsTo(stateOf(icfg.getMethodOf(n)), n, d2);
+    while (true) {
+      EdgeFunction<V> old = functions.get(d1);
+      EdgeFunction<V> current = old == null ? allTop : old;
+      EdgeFunction<V> met = current.meetWith(f);
+      if (met.equalTo(current)) {
+        return;
+      }
+      if (old == null ? functions.putIfAbsent(d1, met) == null : functions.replace(d1, old, met)) {
+        break;
+      }
+    }
+    propagationCount.incrementAndGet();
+    schedule(new PathEdgeTask(d1, n, d2));
+  }
+
+  private void schedule(SolverTask task) {
+    pending.incrementAndGet();
+    if (ForkJoinTask.getPool() == pool) {
+      task.fork();
+    } else {
+      pool.execute(task);
+    }
+  }
+
+  /** A task of the solver. The first failure is kept and stops the tasks that start later. */
+  @SuppressWarnings("serial")
+  private abstract class SolverTask extends RecursiveAction {
+    @Override
+    protected void compute() {
+      try {
+        if (failure.get() == null) {
+          run();
+        }
+      } catch (Throwable t) {
+        failure.compareAndSet(null, t);
+      } finally {
+        if (pending.decrementAndGet() == 0) {
+          synchronized (pending) {
+            pending.notifyAll();
+          }
+        }
+      }
+    }
+
+    abstract void run();
+  }
+
+  @SuppressWarnings("serial")
+  private class PathEdgeTask extends SolverTask {
+    private final D d1;
+    private final Unit n;
+    private final D d2;
+
+    PathEdgeTask(D d1, Unit n, D d2) {
+      this.d1 = d1;
+      this.n = n;
+      this.d2 = d2;
+    }
+
+    @Override
+    void run() {
+      if (icfg.isCallStmt(n)) {
+        processCall(d1, n, d2);
+      } else {
+        if (icfg.isExitStmt(n)) {
+          processExit(d1, n, d2);
+        }
+        if (!icfg.getSuccsOf(n).isEmpty()) {
+          processNormalFlow(d1, n, d2);
+        }
+      }
+    }
+  }
+
+  private void processCall(D d1, Unit n, D d2) {
+    EdgeFunction<V> f = jumpFunction(stateOf(icfg.getMethodOf(n)), d1, n, d2);
+    Collection<Unit> returnSites = icfg.getReturnSitesOfCallAt(n);
+    for (SootMethod callee : icfg.getCalleesOfCallAt(n)) {
+      Set<D> calleeFacts = computeTargets(flowFunctions.getCallFlowFunction(n, callee), d2);
+      MethodState s = stateOf(callee);
+      for (Unit sP : icfg.getStartPointsOf(callee)) {
+        for (D d3 : calleeFacts) {
+          propagate(d3, sP, d3, EdgeIdentity.<V>v());
+
+          Pair<Unit, D> entry = new Pair<Unit, D>(sP, d3);
+          Map<Pair<Unit, D>, EdgeFunction<V>> exits;
+          synchronized (s) {
+            Set<Pair<Unit, D>> inc = s.incoming.get(entry);
+            if (inc == null) {
+              inc = new HashSet<Pair<Unit, D>>();
+              s.incoming.put(entry, inc);
+            }
+            inc.add(new Pair<Unit, D>(n, d2));
+            Map<Pair<Unit, D>, EdgeFunction<V>> ends = s.endSummary.get(entry);
+            exits = ends == null ? Collections.<Pair<Unit, D>, EdgeFunction<V>>emptyMap()
+                : new HashMap<Pair<Unit, D>, EdgeFunction<V>>(ends);
+          }
+          // Apply the summaries the callee already has; later ones are applied by processExit
+          EdgeFunction<V> f4 = edgeFunctions.getCallEdgeFunction(n, d2, callee, d3);
+          for (Map.Entry<Pair<Unit, D>, EdgeFunction<V>> exit : exits.entrySet()) {
+            Unit eP = exit.getKey().getO1();
+            D d4 = exit.getKey().getO2();
+            EdgeFunction<V> fCalleeSummary = exit.getValue();
+            for (Unit retSite : returnSites) {
+              FlowFunction<D> retFunction = flowFunctions.getReturnFlowFunction(n, callee, eP, retSite);
+              for (D d5 : computeTargets(retFunction, d4)) {
+                EdgeFunction<V> f5 = edgeFunctions.getReturnEdgeFunction(n, callee, eP, d4, retSite, d5);
+                propagate(d1, retSite, d5, f.composeWith(f4.composeWith(fCalleeSummary).composeWith(f5)));
+              }
+            }
+          }
+        }
+      }
+    }
+    for (Unit retSite : returnSites) {
+      for (D d3 : computeTargets(flowFunctions.getCallToReturnFlowFunction(n, retSite), d2)) {
+        propagate(d1, retSite, d3, f.composeWith(edgeFunctions.getCallToReturnEdgeFunction(n, d2, retSite, d3)));
+      }
+    }
+  }
+
+  private void processExit(D d1, Unit n, D d2) {
+    SootMethod method = icfg.getMethodOf(n);
+    MethodState s = stateOf(method);
+    EdgeFunction<V> f = jumpFunction(s, d1, n, d2);
+    for (Unit sP : icfg.getStartPointsOf(method)) {
+      Pair<Unit, D> entry = new Pair<Unit, D>(sP, d1);
+      List<Pair<Unit, D>> callers;
+      synchronized (s) {
+        Map<Pair<Unit, D>, EdgeFunction<V>> ends = s.endSummary.get(entry);
+        if (ends == null) {
+          ends = new HashMap<Pair<Unit, D>, EdgeFunction<V>>();
+          s.endSummary.put(entry, ends);
+        }
+        EdgeFunction<V> old = ends.put(new Pair<Unit, D>(n, d2), f);
+        if (old != null && old.equalTo(f)) {
+          // Callers already received this summary
+          continue;
+        }
+        Set<Pair<Unit, D>> inc = s.incoming.get(entry);
+        callers = inc == null ? Collections.<Pair<Unit, D>>emptyList() : new ArrayList<Pair<Unit, D>>(inc);
+      }
+      for (Pair<Unit, D> caller : callers) {
+        Unit c = caller.getO1();
+        D d4 = caller.getO2();
+        ConcurrentHashMap<D, EdgeFunction<V>> callerFunctions = functionsTo(stateOf(icfg.getMethodOf(c)), c, d4);
+        EdgeFunction<V> f4 = edgeFunctions.getCallEdgeFunction(c, d4, method, d1);
+        for (Unit retSite : icfg.getReturnSitesOfCallAt(c)) {
+          for (D d5 : computeTargets(flowFunctions.getReturnFlowFunction(c, method, n, retSite), d2)) {
+            EdgeFunction<V> f5 = edgeFunctions.getReturnEdgeFunction(c, method, n, d2, retSite, d5);
+            EdgeFunction<V> fPrime = f4.composeWith(f).composeWith(f5);
+            for (Map.Entry<D, EdgeFunction<V>> e : callerFunctions.entrySet()) {
+              if (!e.getValue().equalTo(allTop)) {
+                propagate(e.getKey(), retSite, d5, e.getValue().composeWith(fPrime));
+              }
+            }
+          }
+        }
+      }
+      // An exit reached from a seed without a caller returns into every caller, in the context of the zero value
+      if (followReturnsPastSeeds && callers.isEmpty() && d1 == zeroValue) {
+        for (Unit c : icfg.getCallersOf(method)) {
+          for (Unit retSite : icfg.getReturnSitesOfCallAt(c)) {
+            for (D d5 : computeTargets(flowFunctions.getReturnFlowFunction(c, method, n, retSite), d2)) {
+              EdgeFunction<V> f5 = edgeFunctions.getReturnEdgeFunction(c, method, n, d2, retSite, d5);
+              unbalancedRetSites.add(retSite);
+              propagate(zeroValue, retSite, d5, f.composeWith(f5));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void processNormalFlow(D d1, Unit n, D d2) {
+    EdgeFunction<V> f = jumpFunction(stateOf(icfg.getMethodOf(n)), d1, n, d2);
+    for (Unit m : icfg.getSuccsOf(n)) {
+      for (D d3 : computeTargets(flowFunctions.getNormalFlowFunction(n, m), d2)) {
+        propagate(d1, m, d3, f.composeWith(edgeFunctions.getNormalEdgeFunction(n, d2, m, d3)));
+      }
+    }
+  }
+
+  private Set<D> computeTargets(FlowFunction<D> function, D source) {
+    Set<D> targets = function.computeTargets(source);
+    if (autoAddZero && source == zeroValue && !targets.contains(zeroValue)) {
+      Set<D> ret = new LinkedHashSet<D>(targets);
+      ret.add(zeroValue);
+      return ret;
+    }
+    return targets;
+  }
+
+  private void computeValues() {
+    // Values flow from the seeds, and from the return sites reached past them, to start points and calls
+    Map<Unit, Set<D>> seeds = new HashMap<Unit, Set<D>>();
+    for (Map.Entry<Unit, Set<D>> seed : initialSeeds.entrySet()) {
+      seeds.put(seed.getKey(), new HashSet<D>(seed.getValue()));
+    }
+    for (Unit retSite : unbalancedRetSites) {
+      Set<D> atRetSite = seeds.get(retSite);
+      if (atRetSite == null) {
+        atRetSite = new HashSet<D>();
+        seeds.put(retSite, atRetSite);
+      }
+      atRetSite.add(zeroValue);
+    }
+    for (Map.Entry<Unit, Set<D>> seed : seeds.entrySet()) {
+      for (D d : seed.getValue()) {
+        setValue(seed.getKey(), d, valueLattice.bottomElement());
+        schedule(new ValuePropagationTask(seed.getKey(), d));
+      }
+    }
+    awaitCompletion();
+    checkFailure();
+
+    // The other statements only need the values at the start points of their method
+    for (final Map.Entry<SootMethod, MethodState> e : methods.entrySet()) {
+      schedule(new SolverTask() {
+        @Override
+        void run() {
+          computeValuesOf(e.getKey(), e.getValue());
+        }
+      });
+    }
+    awaitCompletion();
+    checkFailure();
+  }
+
+  private V value(Unit n, D d) {
+    Map<D, V> atStmt = values.get(n);
+    V v = atStmt == null ? null : atStmt.get(d);
+    return v == null ? valueLattice.topElement() : v;
+  }
+
+  private ConcurrentHashMap<D, V> valuesAt(Unit n) {
+    ConcurrentHashMap<D, V> ret = values.get(n);
+    if (ret == null) {
+      ConcurrentHashMap<D, V> newRet = new ConcurrentHashMap<D, V>();
+      ret = values.putIfAbsent(n, newRet);
+      if (ret == null) {
+        ret = newRet;
+      }
+    }
+    return ret;
+  }
+
+  private void setValue(Unit n, D d, V v) {
+    // The top element is the value of facts that are not stored
+    if (v.equals(valueLattice.topElement())) {
+      ConcurrentHashMap<D, V> atStmt = values.get(n);
+      if (atStmt != null) {
+        atStmt.remove(d);
+      }
+    } else {
+      valuesAt(n).put(d, v);
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private class ValuePropagationTask extends SolverTask {
+    private final Unit n;
+    private final D d;
+
+    ValuePropagationTask(Unit n, D d) {
+      this.n = n;
+      this.d = d;
+    }
+
+    @Override
+    void run() {
+      if (icfg.isStartPoint(n) || initialSeeds.containsKey(n) || unbalancedRetSites.contains(n)) {
+        propagateValueAtStart(n, d);
+      }
+      if (icfg.isCallStmt(n)) {
+        propagateValueAtCall(n, d);
+      }
+    }
+  }
+
+  private void propagateValueAtStart(Unit n, D d) {
+    SootMethod p = icfg.getMethodOf(n);
+    MethodState s = methods.get(p);
+    if (s == null) {
+      return;
+    }
+    V value = value(n, d);
+    for (Unit c : icfg.getCallsFromWithin(p)) {
+      Map<D, ConcurrentHashMap<D, EdgeFunction<V>>> atCall = s.jumpFunctions.get(c);
+      if (atCall == null) {
+        continue;
+      }
+      for (Map.Entry<D, ConcurrentHashMap<D, EdgeFunction<V>>> e : atCall.entrySet()) {
+        EdgeFunction<V> fPrime = e.getValue().get(d);
+        if (fPrime != null) {
+          propagateValue(c, e.getKey(), fPrime.computeTarget(value));
+        }
+      }
+    }
+  }
+
+  private void propagateValueAtCall(Unit n, D d) {
+    V value = value(n, d);
+    for (SootMethod q : icfg.getCalleesOfCallAt(n)) {
+      for (D dPrime : computeTargets(flowFunctions.getCallFlowFunction(n, q), d)) {
+        V v = edgeFunctions.getCallEdgeFunction(n, d, q, dPrime).computeTarget(value);
+        for (Unit startPoint : icfg.getStartPointsOf(q)) {
+          propagateValue(startPoint, dPrime, v);
+        }
+      }
+    }
+  }
+
+  /** Meets v with the value of d at n and, if that changed the value, schedules a task to pass it on. */
+  private void propagateValue(Unit n, D d, V v) {
+    ConcurrentHashMap<D, V> atStmt = valuesAt(n);
+    while (true) {
+      V old = atStmt.get(d);
+      V current = old == null ? valueLattice.topElement() : old;
+      V met = valueLattice.meet(current, v);
+      if (met.equals(current)) {
+        return;
+      }
+      if (old == null ? atStmt.putIfAbsent(d, met) == null : atStmt.replace(d, old, met)) {
+        break;
+      }
+    }
+    schedule(new ValuePropagationTask(n, d));
+  }
+
+  /** Computes the values at the statements of m other than calls and start points. */
+  private void computeValuesOf(SootMethod m, MethodState s) {
+    Collection<Unit> startPoints = icfg.getStartPointsOf(m);
+    for (Map.Entry<Unit, ConcurrentHashMap<D, ConcurrentHashMap<D, EdgeFunction<V>>>> atStmt : s.jumpFunctions
+        .entrySet()) {
+      Unit n = atStmt.getKey();
+      if (icfg.isCallStmt(n) || icfg.isStartPoint(n)) {
+        continue;
+      }
+      for (Unit sP : startPoints) {
+        for (Map.Entry<D, ConcurrentHashMap<D, EdgeFunction<V>>> e : atStmt.getValue().entrySet()) {
+          D d = e.getKey();
+          for (Map.Entry<D, EdgeFunction<V>> fn : e.getValue().entrySet()) {
+            V v = fn.getValue().computeTarget(value(sP, fn.getKey()));
+            setValue(n, d, valueLattice.meet(value(n, d), v));
+          }
+        }
+      }
+    }
+  }
+}
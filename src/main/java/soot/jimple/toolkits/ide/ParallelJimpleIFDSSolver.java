@@ -0,0 +1,575 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.FlowFunction;
+import heros.FlowFunctions;
+import heros.IFDSTabulationProblem;
+import heros.InterproceduralCFG;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.SootMethod;
+import soot.Unit;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * An IFDS solver for Jimple that scales to many threads. It solves the same {@link IFDSTabulationProblem}s as {@link
+ * JimpleIFDSSolver}, for instance a {@link DefaultJimpleIFDSTabulationProblem} over a {@link
+ * soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG}, and computes the same results, but does not share the
+ * solver of Heros, whose jump functions and end summaries are tables guarded by a single lock. IDE problems are solved
+ * the same way by {@link ParallelJimpleIDESolver}.
+ *
+ * <p>
+ * Here the path edges are kept in one concurrent set per statement, so threads only meet when they reach the same
+ * statement, and the path edges, end summaries and incoming calls of a method are kept in a table of that method,
+ * guarded by its own lock. Path edges are processed as tasks of a {@link ForkJoinPool}: a task forks the tasks for the
+ * path edges it creates onto the queue of its own thread, from which idle threads steal.
+ * </p>
+ *
+ * <p>
+ * On large programs the path edges take most of the memory. With {@link #setCollectPathEdges(boolean)}, the path edges
+ * of a method are dropped whenever no work for the method is left, keeping only those at its start points, which are
+ * enough to reuse its end summaries for calls in a context seen before. Should a new end summary of a callee return
+ * into the method later, the path edges after the call are computed again. The results of {@link #ifdsResultsAt(Unit)}
+ * are kept aside if the problem asks for them with computeValues. With {@link #setSpillDirectory(File, int)}, the end
+ * summaries and incoming calls of methods that have not been used recently are moved to a file once more than a given
+ * number of methods hold them in memory, and read back when a call or exit needs them.
+ * </p>
+ *
+ * <p>
+ * The number of threads is taken from {@link IFDSTabulationProblem#numThreads()}. The options followReturnsPastSeeds
+ * and autoAddZero of the problem are honoured; recordEdges is ignored. Flow functions may be called from several
+ * threads at the same time and must be thread-safe, as with the solver of Heros.
+ * </p>
+ *
+ * @param <D>
+ *          The type of data-flow facts to be computed by the tabulation problem.
+ */
+public class ParallelJimpleIFDSSolver<D, I extends InterproceduralCFG<Unit, SootMethod>> {
+  private static final Logger logger = LoggerFactory.getLogger(ParallelJimpleIFDSSolver.class);
+
+  private final IFDSTabulationProblem<Unit, D, SootMethod, I> problem;
+  private final I icfg;
+  private final FlowFunctions<Unit, D, SootMethod> flowFunctions;
+  private final D zeroValue;
+  private final boolean followReturnsPastSeeds;
+  private final boolean autoAddZero;
+  private final int numThreads;
+
+  private boolean collectPathEdges = false;
+  private File spillDirectory = null;
+  private int maxResidentMethods = Integer.MAX_VALUE;
+
+  private final ConcurrentHashMap<SootMethod, MethodState> methods = new ConcurrentHashMap<SootMethod, MethodState>();
+
+  /** Facts at each statement, if path edges are collected and the problem computes values. */
+  private final ConcurrentHashMap<Unit, Set<D>> collectedResults = new ConcurrentHashMap<Unit, Set<D>>();
+
+  private ForkJoinPool pool;
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+  private final AtomicLong propagationCount = new AtomicLong();
+
+  private SummarySpillFile<D> spillFile;
+  private final AtomicInteger residentMethods = new AtomicInteger();
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicBoolean spilling = new AtomicBoolean();
+  private final AtomicLong spillCount = new AtomicLong();
+
+  /**
+   * The path edges, end summaries and incoming calls of a method. Accesses to the summaries synchronize on the object,
+   * so that a call that registers itself and an exit that adds a summary cannot miss each other.
+   */
+  private class MethodState {
+    /** For each statement of the method, the path edges (d1, d2) ending at it, where d1 holds at the start point. */
+    final ConcurrentHashMap<Unit, Set<Pair<D, D>>> pathEdges = new ConcurrentHashMap<Unit, Set<Pair<D, D>>>();
+
+    /** The number of path edges in the method that are scheduled or being processed. */
+    final AtomicInteger pending = new AtomicInteger();
+
+    /** For a start point and a fact at it, the exit statements and facts that it reaches. */
+    Map<Pair<Unit, D>, Set<Pair<Unit, D>>> endSummary = new HashMap<Pair<Unit, D>, Set<Pair<Unit, D>>>();
+
+    /**
+     * For a start point and a fact at it, the call sites that reach it, each with a fact at the start of the calling
+     * method.
+     */
+    Map<Pair<Unit, D>, Set<Pair<Unit, D>>> incoming = new HashMap<Pair<Unit, D>, Set<Pair<Unit, D>>>();
+
+    /** Where the summaries are in the spill file, or null if they are in memory. */
+    SummarySpillFile.Spilled spilled;
+
+    volatile long lastUse;
+
+    /** Makes sure the summaries are in memory. Must be called while synchronized on this object. */
+    void load() {
+      lastUse = clock.incrementAndGet();
+      if (spilled == null) {
+        return;
+      }
+      try {
+        List<Map<Pair<Unit, D>, Set<Pair<Unit, D>>>> tables = spillFile.read(spilled);
+        endSummary = tables.get(0);
+        incoming = tables.get(1);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not read IFDS summaries", e);
+      }
+      spilled = null;
+      residentMethods.incrementAndGet();
+    }
+
+    /** Moves the summaries to the spill file, unless work for the method is pending. */
+    synchronized void spill() {
+      if (spilled != null || pending.get() != 0) {
+        return;
+      }
+      List<Map<Pair<Unit, D>, Set<Pair<Unit, D>>>> tables = new ArrayList<Map<Pair<Unit, D>, Set<Pair<Unit, D>>>>(2);
+      tables.add(endSummary);
+      tables.add(incoming);
+      try {
+        spilled = spillFile.write(tables);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not write IFDS summaries", e);
+      }
+      endSummary = null;
+      incoming = null;
+      residentMethods.decrementAndGet();
+      spillCount.incrementAndGet();
+    }
+  }
+
+  public ParallelJimpleIFDSSolver(IFDSTabulationProblem<Unit, D, SootMethod, I> problem) {
+    this.problem = problem;
+    this.icfg = problem.interproceduralCFG();
+    this.flowFunctions = problem.flowFunctions();
+    this.zeroValue = problem.zeroValue();
+    this.followReturnsPastSeeds = problem.followReturnsPastSeeds();
+    this.autoAddZero = problem.autoAddZero();
+    int n = problem.numThreads();
+    this.numThreads = n > 0 ? n : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Sets whether the path edges of a method are dropped when no work for it is left. This saves memory at the cost of
+   * recomputing some path edges.
+   */
+  public void setCollectPathEdges(boolean collectPathEdges) {
+    this.collectPathEdges = collectPathEdges;
+  }
+
+  /**
+   * Moves the summaries of the least recently used methods to a temporary file in the given directory once more than
+   * maxResidentMethods methods hold summaries in memory.
+   */
+  public void setSpillDirectory(File directory, int maxResidentMethods) {
+    if (maxResidentMethods < 1) {
+      throw new IllegalArgumentException("maxResidentMethods must be positive");
+    }
+    this.spillDirectory = directory;
+    this.maxResidentMethods = maxResidentMethods;
+  }
+
+  /** Runs the solver on the initial seeds of the problem and returns when all path edges have been computed. */
+  public void solve() {
+    pool = new ForkJoinPool(numThreads);
+    try {
+      if (spillDirectory != null) {
+        spillFile = new SummarySpillFile<D>(spillDirectory);
+      }
+      for (Map.Entry<Unit, Set<D>> seed : problem.initialSeeds().entrySet()) {
+        for (D d : seed.getValue()) {
+          propagate(zeroValue, seed.getKey(), d);
+        }
+      }
+      awaitCompletion();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not create IFDS summary file", e);
+    } finally {
+      pool.shutdown();
+      pool = null;
+      closeSpillFile();
+    }
+    Throwable t = failure.get();
+    if (t != null) {
+      throw new RuntimeException("IFDS solver failed", t);
+    }
+    logger.debug("IFDS solver computed {} path edges with {} threads", propagationCount.get(), numThreads);
+  }
+
+  private void closeSpillFile() {
+    if (spillFile == null) {
+      return;
+    }
+    // The summaries are not needed once the solver is done, so those in the file are dropped with it
+    for (MethodState s : methods.values()) {
+      synchronized (s) {
+        if (s.spilled != null) {
+          s.spilled = null;
+          s.endSummary = new HashMap<Pair<Unit, D>, Set<Pair<Unit, D>>>();
+          s.incoming = new HashMap<Pair<Unit, D>, Set<Pair<Unit, D>>>();
+        }
+      }
+    }
+    try {
+      spillFile.close();
+    } catch (IOException e) {
+      logger.warn("Could not delete IFDS summary file", e);
+    }
+    spillFile = null;
+  }
+
+  private void awaitCompletion() {
+    synchronized (pending) {
+      while (pending.get() > 0) {
+        try {
+          pending.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while waiting for the IFDS solver", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the facts that hold before the given statement, not including the zero value. If path edges are collected,
+   * only the facts at start points are kept unless the problem computes values.
+   */
+  public Set<D> ifdsResultsAt(Unit stmt) {
+    Set<D> ret = new LinkedHashSet<D>();
+    Set<D> collected = collectedResults.get(stmt);
+    if (collected != null) {
+      ret.addAll(collected);
+    }
+    MethodState s = methods.get(icfg.getMethodOf(stmt));
+    Set<Pair<D, D>> edges = s == null ? null : s.pathEdges.get(stmt);
+    if (edges != null) {
+      for (Pair<D, D> e : edges) {
+        if (e.getO2() != zeroValue) {
+          ret.add(e.getO2());
+        }
+      }
+    }
+    return ret;
+  }
+
+  /** Returns the number of path edges processed so far, including those computed again after being collected. */
+  public long getPropagationCount() {
+    return propagationCount.get();
+  }
+
+  /** Returns the number of times the summaries of a method were moved to the spill file so far. */
+  public long getSpillCount() {
+    return spillCount.get();
+  }
+
+  private MethodState stateOf(SootMethod m) {
+    MethodState s = methods.get(m);
+    if (s == null) {
+      MethodState newState = new MethodState();
+      s = methods.putIfAbsent(m, newState);
+      if (s == null) {
+        s = newState;
+        residentMethods.incrementAndGet();
+      }
+    }
+    return s;
+  }
+
+  /** Records the path edge (d1, n, d2) and, if it is new, schedules a task to process it. */
+  private void propagate(D d1, Unit n, D d2) {
+    MethodState s = stateOf(icfg.getMethodOf(n));
+    // Counted before the edge is added, so that the method is not collected in between
+    s.pending.incrementAndGet();
+    boolean added;
+    while (true) {
+      Set<Pair<D, D>> edges = s.pathEdges.get(n);
+      if (edges == null) {
+        Set<Pair<D, D>> newEdges = ConcurrentHashMap.newKeySet();
+        edges = s.pathEdges.putIfAbsent(n, newEdges);
+        if (edges == null) {
+          edges = newEdges;
+        }
+      }
+      // Under the lock that collect holds while it removes the set, so the edge never goes into a removed set
+      synchronized (edges) {
+        if (s.pathEdges.get(n) == edges) {
+          added = edges.add(new Pair<D, D>(d1, d2));
+          break;
+        }
+      }
+    }
+    if (!added) {
+      s.pending.decrementAndGet();
+      return;
+    }
+    if (collectPathEdges && problem.computeValues() && d2 != zeroValue) {
+      // Recorded right away, as the path edge may be collected at any time once it is processed
+      Set<D> results = collectedResults.get(n);
+      if (results == null) {
+        Set<D> newResults = ConcurrentHashMap.newKeySet();
+        results = collectedResults.putIfAbsent(n, newResults);
+        if (results == null) {
+          results = newResults;
+        }
+      }
+      results.add(d2);
+    }
+    propagationCount.incrementAndGet();
+    pending.incrementAndGet();
+    PathEdgeTask task = new PathEdgeTask(s, d1, n, d2);
+    if (ForkJoinTask.getPool() == pool) {
+      task.fork();
+    } else {
+      pool.execute(task);
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private class PathEdgeTask extends RecursiveAction {
+    private final MethodState state;
+    private final D d1;
+    private final Unit n;
+    private final D d2;
+
+    PathEdgeTask(MethodState state, D d1, Unit n, D d2) {
+      this.state = state;
+      this.d1 = d1;
+      this.n = n;
+      this.d2 = d2;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        if (failure.get() == null) {
+          process(d1, n, d2);
+          if (state.pending.decrementAndGet() == 0) {
+            methodDone(state);
+          }
+        }
+      } catch (Throwable t) {
+        failure.compareAndSet(null, t);
+      } finally {
+        if (pending.decrementAndGet() == 0) {
+          synchronized (pending) {
+            pending.notifyAll();
+          }
+        }
+      }
+    }
+  }
+
+  /** Called when no work for a method is left, until other path edges reach it. */
+  private void methodDone(MethodState s) {
+    s.lastUse = clock.incrementAndGet();
+    if (collectPathEdges) {
+      collect(s);
+    }
+    if (spillFile != null && residentMethods.get() > maxResidentMethods) {
+      spillColdest();
+    }
+  }
+
+  private void collect(MethodState s) {
+    for (Map.Entry<Unit, Set<Pair<D, D>>> e : s.pathEdges.entrySet()) {
+      if (icfg.isStartPoint(e.getKey())) {
+        continue;
+      }
+      Set<Pair<D, D>> edges = e.getValue();
+      synchronized (edges) {
+        if (s.pending.get() != 0) {
+          // New work arrived, the rest is collected when it is done
+          return;
+        }
+        s.pathEdges.remove(e.getKey(), edges);
+      }
+    }
+  }
+
+  /** Spills the least recently used methods without pending work until a quarter of the allowed methods are free. */
+  private void spillColdest() {
+    if (!spilling.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      List<MethodState> candidates = new ArrayList<MethodState>();
+      for (MethodState s : methods.values()) {
+        if (s.spilled == null && s.pending.get() == 0) {
+          candidates.add(s);
+        }
+      }
+      Collections.sort(candidates, new Comparator<MethodState>() {
+        @Override
+        public int compare(MethodState a, MethodState b) {
+          return Long.compare(a.lastUse, b.lastUse);
+        }
+      });
+      int target = maxResidentMethods - Math.max(1, maxResidentMethods / 4);
+      for (MethodState s : candidates) {
+        if (residentMethods.get() <= target) {
+          break;
+        }
+        s.spill();
+      }
+    } finally {
+      spilling.set(false);
+    }
+  }
+
+  private void process(D d1, Unit n, D d2) {
+    if (icfg.isCallStmt(n)) {
+      processCall(d1, n, d2);
+    } else {
+      if (icfg.isExitStmt(n)) {
+        processExit(d1, n, d2);
+      }
+      if (!icfg.getSuccsOf(n).isEmpty()) {
+        processNormalFlow(d1, n, d2);
+      }
+    }
+  }
+
+  private void processCall(D d1, Unit n, D d2) {
+    Collection<Unit> returnSites = icfg.getReturnSitesOfCallAt(n);
+    for (SootMethod callee : icfg.getCalleesOfCallAt(n)) {
+      Set<D> calleeFacts = computeTargets(flowFunctions.getCallFlowFunction(n, callee), d2);
+      MethodState s = stateOf(callee);
+      for (Unit sP : icfg.getStartPointsOf(callee)) {
+        for (D d3 : calleeFacts) {
+          propagate(d3, sP, d3);
+
+          Pair<Unit, D> entry = new Pair<Unit, D>(sP, d3);
+          List<Pair<Unit, D>> exits;
+          synchronized (s) {
+            s.load();
+            Set<Pair<Unit, D>> inc = s.incoming.get(entry);
+            if (inc == null) {
+              inc = new HashSet<Pair<Unit, D>>();
+              s.incoming.put(entry, inc);
+            }
+            inc.add(new Pair<Unit, D>(n, d1));
+            Set<Pair<Unit, D>> ends = s.endSummary.get(entry);
+            exits = ends == null ? Collections.<Pair<Unit, D>>emptyList() : new ArrayList<Pair<Unit, D>>(ends);
+          }
+          // Apply the summaries the callee already has; later ones are applied by processExit
+          for (Pair<Unit, D> exit : exits) {
+            for (Unit retSite : returnSites) {
+              FlowFunction<D> retFunction = flowFunctions.getReturnFlowFunction(n, callee, exit.getO1(), retSite);
+              for (D d5 : computeTargets(retFunction, exit.getO2())) {
+                propagate(d1, retSite, d5);
+              }
+            }
+          }
+        }
+      }
+    }
+    for (Unit retSite : returnSites) {
+      for (D d3 : computeTargets(flowFunctions.getCallToReturnFlowFunction(n, retSite), d2)) {
+        propagate(d1, retSite, d3);
+      }
+    }
+  }
+
+  private void processExit(D d1, Unit n, D d2) {
+    SootMethod method = icfg.getMethodOf(n);
+    MethodState s = stateOf(method);
+    for (Unit sP : icfg.getStartPointsOf(method)) {
+      Pair<Unit, D> entry = new Pair<Unit, D>(sP, d1);
+      List<Pair<Unit, D>> callers;
+      synchronized (s) {
+        s.load();
+        Set<Pair<Unit, D>> ends = s.endSummary.get(entry);
+        if (ends == null) {
+          ends = new HashSet<Pair<Unit, D>>();
+          s.endSummary.put(entry, ends);
+        }
+        if (!ends.add(new Pair<Unit, D>(n, d2))) {
+          // Callers already received this summary, the exit was only reached again after its path edges were collected
+          continue;
+        }
+        Set<Pair<Unit, D>> inc = s.incoming.get(entry);
+        callers = inc == null ? Collections.<Pair<Unit, D>>emptyList() : new ArrayList<Pair<Unit, D>>(inc);
+      }
+      for (Pair<Unit, D> caller : callers) {
+        Unit c = caller.getO1();
+        for (Unit retSite : icfg.getReturnSitesOfCallAt(c)) {
+          for (D d5 : computeTargets(flowFunctions.getReturnFlowFunction(c, method, n, retSite), d2)) {
+            propagate(caller.getO2(), retSite, d5);
+          }
+        }
+      }
+      // An exit reached from a seed without a caller returns into every caller, in the context of the zero value
+      if (followReturnsPastSeeds && callers.isEmpty() && d1 == zeroValue) {
+        for (Unit c : icfg.getCallersOf(method)) {
+          for (Unit retSite : icfg.getReturnSitesOfCallAt(c)) {
+            for (D d5 : computeTargets(flowFunctions.getReturnFlowFunction(c, method, n, retSite), d2)) {
+              propagate(zeroValue, retSite, d5);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void processNormalFlow(D d1, Unit n, D d2) {
+    for (Unit m : icfg.getSuccsOf(n)) {
+      for (D d3 : computeTargets(flowFunctions.getNormalFlowFunction(n, m), d2)) {
+        propagate(d1, m, d3);
+      }
+    }
+  }
+
+  private Set<D> computeTargets(FlowFunction<D> function, D source) {
+    Set<D> targets = function.computeTargets(source);
+    if (autoAddZero && source == zeroValue && !targets.contains(zeroValue)) {
+      Set<D> ret = new LinkedHashSet<D>(targets);
+      ret.add(zeroValue);
+      return ret;
+    }
+    return targets;
+  }
+}
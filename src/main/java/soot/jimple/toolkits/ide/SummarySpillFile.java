@@ -0,0 +1,208 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import soot.Unit;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * A temporary file to which {@link ParallelJimpleIFDSSolver} moves the end summaries and incoming calls of methods that
+ * have not been used for a while. Statements and facts are written as numbers into a table of the distinct statements
+ * and facts of the spilled tables, which stays in memory until the tables are read back, so that the memory used by a
+ * spilled method grows with the number of its distinct facts instead of the number of its summaries. Reading tables
+ * back frees their space in the file, which later tables reuse, and the file shrinks when its end is free. The file is
+ * deleted when it is closed.
+ *
+ * @param <D>
+ *          The type of data-flow facts.
+ */
+class SummarySpillFile<D> implements Closeable {
+  private final File file;
+  private final FileChannel channel;
+
+  /** The free regions before the end of the used part of the file, by position, with their lengths. */
+  private final TreeMap<Long, Integer> free = new TreeMap<Long, Integer>();
+  private long end = 0;
+
+  /** Tables in the file: where they are and the statements and facts that their numbers stand for. */
+  static class Spilled {
+    private final long position;
+    private final int length;
+    private Object[] objects;
+
+    private Spilled(long position, int length, Object[] objects) {
+      this.position = position;
+      this.length = length;
+      this.objects = objects;
+    }
+  }
+
+  SummarySpillFile(File dir) throws IOException {
+    file = File.createTempFile("ifds-summaries", ".bin", dir);
+    file.deleteOnExit();
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  private static int id(Object o, Map<Object, Integer> ids, List<Object> objects) {
+    Integer id = ids.get(o);
+    if (id == null) {
+      id = objects.size();
+      ids.put(o, id);
+      objects.add(o);
+    }
+    return id;
+  }
+
+  /** Writes the given tables to the file and returns where they can be read back. */
+  synchronized Spilled write(List<Map<Pair<Unit, D>, Set<Pair<Unit, D>>>> tables) throws IOException {
+    int size = 1;
+    for (Map<Pair<Unit, D>, Set<Pair<Unit, D>>> table : tables) {
+      size += 1;
+      for (Set<Pair<Unit, D>> values : table.values()) {
+        size += 3 + 2 * values.size();
+      }
+    }
+    Map<Object, Integer> ids = new HashMap<Object, Integer>();
+    List<Object> objects = new ArrayList<Object>();
+    ByteBuffer buf = ByteBuffer.allocate(size * 4);
+    buf.putInt(tables.size());
+    for (Map<Pair<Unit, D>, Set<Pair<Unit, D>>> table : tables) {
+      buf.putInt(table.size());
+      for (Map.Entry<Pair<Unit, D>, Set<Pair<Unit, D>>> e : table.entrySet()) {
+        buf.putInt(id(e.getKey().getO1(), ids, objects));
+        buf.putInt(id(e.getKey().getO2(), ids, objects));
+        buf.putInt(e.getValue().size());
+        for (Pair<Unit, D> value : e.getValue()) {
+          buf.putInt(id(value.getO1(), ids, objects));
+          buf.putInt(id(value.getO2(), ids, objects));
+        }
+      }
+    }
+    buf.flip();
+    long position = allocate(buf.limit());
+    while (buf.hasRemaining()) {
+      channel.write(buf, position + buf.position());
+    }
+    return new Spilled(position, buf.limit(), objects.toArray());
+  }
+
+  /** Reads back the given tables and frees their space. They cannot be read again. */
+  @SuppressWarnings("unchecked")
+  synchronized List<Map<Pair<Unit, D>, Set<Pair<Unit, D>>>> read(Spilled spilled) throws IOException {
+    Object[] objects = spilled.objects;
+    if (objects == null) {
+      throw new IllegalStateException("Tables were already read back");
+    }
+    ByteBuffer buf = ByteBuffer.allocate(spilled.length);
+    while (buf.hasRemaining()) {
+      if (channel.read(buf, spilled.position + buf.position()) < 0) {
+        throw new IOException("Unexpected end of " + file);
+      }
+    }
+    buf.flip();
+    spilled.objects = null;
+    release(spilled.position, spilled.length);
+
+    int numTables = buf.getInt();
+    List<Map<Pair<Unit, D>, Set<Pair<Unit, D>>>> ret = new ArrayList<Map<Pair<Unit, D>, Set<Pair<Unit, D>>>>(numTables);
+    for (int t = 0; t < numTables; t++) {
+      int numEntries = buf.getInt();
+      Map<Pair<Unit, D>, Set<Pair<Unit, D>>> table = new HashMap<Pair<Unit, D>, Set<Pair<Unit, D>>>();
+      for (int i = 0; i < numEntries; i++) {
+        Pair<Unit, D> key = new Pair<Unit, D>((Unit) objects[buf.getInt()], (D) objects[buf.getInt()]);
+        int numValues = buf.getInt();
+        Set<Pair<Unit, D>> values = new HashSet<Pair<Unit, D>>();
+        for (int j = 0; j < numValues; j++) {
+          values.add(new Pair<Unit, D>((Unit) objects[buf.getInt()], (D) objects[buf.getInt()]));
+        }
+        table.put(key, values);
+      }
+      ret.add(table);
+    }
+    return ret;
+  }
+
+  /** Returns the position of a region of the given length, the first free one that is large enough or the end. */
+  private long allocate(int length) {
+    for (Map.Entry<Long, Integer> e : free.entrySet()) {
+      long position = e.getKey();
+      int available = e.getValue();
+      if (available >= length) {
+        free.remove(position);
+        if (available > length) {
+          free.put(position + length, available - length);
+        }
+        return position;
+      }
+    }
+    long position = end;
+    end += length;
+    return position;
+  }
+
+  /** Frees the given region, merging it with the free regions next to it. */
+  private void release(long position, int length) throws IOException {
+    Map.Entry<Long, Integer> before = free.lowerEntry(position);
+    if (before != null && before.getKey() + before.getValue() == position) {
+      free.remove(before.getKey());
+      position = before.getKey();
+      length += before.getValue();
+    }
+    Integer after = free.remove(position + length);
+    if (after != null) {
+      length += after;
+    }
+    if (position + length == end) {
+      end = position;
+      channel.truncate(end);
+    } else {
+      free.put(position, length);
+    }
+  }
+
+  /** Returns the number of bytes in the file, including free regions. */
+  synchronized long size() {
+    return end;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.close();
+    file.delete();
+    free.clear();
+  }
+}
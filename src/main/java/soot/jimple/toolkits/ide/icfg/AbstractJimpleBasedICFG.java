@@ -290,4 +290,18 @@ public abstract class AbstractJimpleBasedICFG implements BiDiInterproceduralCFG<
     return unitToOwner.containsKey(u);
   }
 
+  /**
+   * Returns a read-only copy of this graph over all statements known to it, which answers queries through array
+   * lookups. Changes made to bodies or to the call graph afterwards are not reflected in the copy.
+   */
+  public FrozenInterproceduralCFG freeze() {
+    Set<SootMethod> methods = new LinkedHashSet<SootMethod>();
+    for (Body b : unitToOwner.values()) {
+      if (b != null) {
+        methods.add(b.getMethod());
+      }
+    }
+    return new FrozenInterproceduralCFG(this, methods);
+  }
+
 }
@@ -0,0 +1,525 @@
+package soot.jimple.toolkits.ide.icfg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import soot.Body;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.pointer.LocalMustNotAliasAnalysis;
+import soot.toolkits.graph.DirectedGraph;
+import soot.util.IdentityIndex;
+
+/**
+ * An on-the-fly interprocedural control-flow graph that loads the body of a method only when a client asks about the
+ * method itself, typically for the start points of a callee that an IFDS solver enters, rather than when a call to it
+ * is resolved. Once a body is loaded, its control-flow graph, call flags and resolved callees are copied into a compact
+ * summary of int arrays and the unit graph and alias analysis used to build it are dropped, so that the graph holds no
+ * reference to the {@link Body} itself.
+ *
+ * <p>
+ * A summary still holds every statement of its method, in an array with an identity hash index over it, and the graph
+ * maps every statement it knows to its summary, so the statements and the values they refer to stay in memory as long
+ * as the graph does. What is saved are the lists of successors and predecessors that a unit graph keeps for every
+ * statement, which become ranges of int arrays, and the alias analysis of each body. How much of the heap that is
+ * depends on the size of the statements compared to their control-flow graphs.
+ * </p>
+ *
+ * <p>
+ * With {@link #setReleaseBodies(boolean)}, or for single methods with {@link #releaseBody(SootMethod)}, the active body
+ * of a method is released once its summary exists, which also drops its locals, traps and chain of statements, leaving
+ * the statements held by the summary. The graph still answers all queries about the method from its summary, including
+ * {@link #getParameterRefs(SootMethod)}, but clients such as flow functions must then no longer use the body:
+ * retrieving it again creates new statements that this graph does not know.
+ * </p>
+ *
+ * <p>
+ * Callers are recorded when the summary of the calling method is built, so {@link #getCallersOf(SootMethod)} only
+ * returns call sites in methods that have been loaded. The same requirements on the class hierarchy as for
+ * {@link OnTheFlyJimpleBasedICFG} apply.
+ * </p>
+ */
+public class DemandDrivenJimpleBasedICFG extends OnTheFlyJimpleBasedICFG {
+  private static final byte CALL = 1;
+  private static final byte EXIT = 2;
+  private static final byte START = 4;
+  private static final byte RETURN_SITE = 8;
+
+  private final ConcurrentHashMap<SootMethod, MethodSummary> summaries
+      = new ConcurrentHashMap<SootMethod, MethodSummary>();
+  private final ConcurrentHashMap<Unit, MethodSummary> unitToSummary = new ConcurrentHashMap<Unit, MethodSummary>();
+
+  /** Unit graphs of the bodies whose summaries are being built, for the alias analysis that resolves calls. */
+  private final ConcurrentHashMap<Body, DirectedGraph<Unit>> graphsInProgress
+      = new ConcurrentHashMap<Body, DirectedGraph<Unit>>();
+  private final ConcurrentHashMap<Body, LocalMustNotAliasAnalysis> aliasInProgress
+      = new ConcurrentHashMap<Body, LocalMustNotAliasAnalysis>();
+
+  private volatile boolean releaseBodies = false;
+
+  /** The compact control-flow graph of one method. */
+  private class MethodSummary implements DirectedGraph<Unit> {
+    final SootMethod method;
+    final Unit[] units;
+    final IdentityIndex<Unit> index;
+    final byte[] flags;
+    /** The number of the statement that follows each statement in the body if it falls through, or -1. */
+    final int[] fallThrough;
+    final int[] succOffsets;
+    final int[] succs;
+    final int[] predOffsets;
+    final int[] preds;
+    final int[] heads;
+    final int[] tails;
+    final int[] calls;
+    /** The callees of each call, indexed like calls. */
+    final Set<SootMethod>[] callees;
+    final List<Value> parameterRefs;
+
+    @SuppressWarnings("unchecked")
+    MethodSummary(SootMethod method, Body body, DirectedGraph<Unit> graph) {
+      this.method = method;
+      int n = body.getUnits().size();
+      units = body.getUnits().toArray(new Unit[n]);
+      index = new IdentityIndex<Unit>(units);
+      flags = new byte[n];
+      fallThrough = new int[n];
+      succOffsets = new int[n + 1];
+      predOffsets = new int[n + 1];
+      List<Integer> succList = new ArrayList<Integer>();
+      List<Integer> predList = new ArrayList<Integer>();
+      List<Integer> callList = new ArrayList<Integer>();
+      List<Set<SootMethod>> calleeList = new ArrayList<Set<SootMethod>>();
+      for (int u = 0; u < n; u++) {
+        Unit unit = units[u];
+        succOffsets[u] = succList.size();
+        for (Unit s : graph.getSuccsOf(unit)) {
+          succList.add(index.indexOf(s));
+        }
+        predOffsets[u] = predList.size();
+        for (Unit p : graph.getPredsOf(unit)) {
+          predList.add(index.indexOf(p));
+        }
+        Unit next = unit.fallsThrough() ? body.getUnits().getSuccOf(unit) : null;
+        fallThrough[u] = next == null ? -1 : index.indexOf(next);
+        if (((Stmt) unit).containsInvokeExpr()) {
+          flags[u] |= CALL;
+          callList.add(u);
+          calleeList.add(resolveCallees((Stmt) unit, body));
+        }
+      }
+      succOffsets[n] = succList.size();
+      predOffsets[n] = predList.size();
+      succs = toIntArray(succList);
+      preds = toIntArray(predList);
+      calls = toIntArray(callList);
+      callees = calleeList.toArray(new Set[calleeList.size()]);
+      heads = indicesOf(graph.getHeads(), START);
+      tails = indicesOf(graph.getTails(), EXIT);
+      for (int c : calls) {
+        for (int i = succOffsets[c]; i < succOffsets[c + 1]; i++) {
+          flags[succs[i]] |= RETURN_SITE;
+        }
+      }
+      parameterRefs = Collections.unmodifiableList(new ArrayList<Value>(body.getParameterRefs()));
+    }
+
+    private int[] indicesOf(List<Unit> list, byte flag) {
+      int[] ret = new int[list.size()];
+      for (int i = 0; i < ret.length; i++) {
+        ret[i] = index.indexOf(list.get(i));
+        flags[ret[i]] |= flag;
+      }
+      return ret;
+    }
+
+    Set<SootMethod> calleesOf(int u) {
+      int i = Arrays.binarySearch(calls, u);
+      return i < 0 ? Collections.<SootMethod>emptySet() : callees[i];
+    }
+
+    @Override
+    public List<Unit> getHeads() {
+      return new UnitList(this, heads, 0, heads.length);
+    }
+
+    @Override
+    public List<Unit> getTails() {
+      return new UnitList(this, tails, 0, tails.length);
+    }
+
+    @Override
+    public List<Unit> getPredsOf(Unit s) {
+      int u = index.indexOf(s);
+      return u < 0 ? Collections.<Unit>emptyList() : new UnitList(this, preds, predOffsets[u], predOffsets[u + 1]);
+    }
+
+    @Override
+    public List<Unit> getSuccsOf(Unit s) {
+      int u = index.indexOf(s);
+      return u < 0 ? Collections.<Unit>emptyList() : new UnitList(this, succs, succOffsets[u], succOffsets[u + 1]);
+    }
+
+    @Override
+    public int size() {
+      return units.length;
+    }
+
+    @Override
+    public Iterator<Unit> iterator() {
+      return Collections.unmodifiableList(Arrays.asList(units)).iterator();
+    }
+  }
+
+  /** A read-only list of the statements of a summary whose numbers are stored in a range of an array. */
+  private static class UnitList extends AbstractList<Unit> implements RandomAccess {
+    private final Unit[] units;
+    private final int[] indices;
+    private final int start;
+    private final int end;
+
+    UnitList(MethodSummary summary, int[] indices, int start, int end) {
+      this.units = summary.units;
+      this.indices = indices;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public Unit get(int i) {
+      if (i < 0 || i >= end - start) {
+        throw new IndexOutOfBoundsException(String.valueOf(i));
+      }
+      return units[indices[start + i]];
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+
+  private static int[] toIntArray(List<Integer> list) {
+    int[] ret = new int[list.size()];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = list.get(i);
+    }
+    return ret;
+  }
+
+  /** Creates a graph whose summaries are built, and bodies loaded, starting from the given methods. */
+  public DemandDrivenJimpleBasedICFG(SootMethod... entryPoints) {
+    this(Arrays.asList(entryPoints));
+  }
+
+  /** Creates a graph whose summaries are built, and bodies loaded, starting from the given methods. */
+  public DemandDrivenJimpleBasedICFG(Collection<SootMethod> entryPoints) {
+    super(Collections.<SootMethod>emptyList());
+    for (SootMethod m : entryPoints) {
+      summaryOf(m);
+    }
+  }
+
+  /** Sets whether the active body of a method is released as soon as its summary has been built. */
+  public void setReleaseBodies(boolean releaseBodies) {
+    this.releaseBodies = releaseBodies;
+    if (releaseBodies) {
+      for (SootMethod m : summaries.keySet()) {
+        releaseBody(m);
+      }
+    }
+  }
+
+  /**
+   * Releases the active body of the given method if its summary has been built, for instance once an analysis is done
+   * with the method.
+   */
+  public void releaseBody(SootMethod m) {
+    if (summaries.containsKey(m)) {
+      m.releaseActiveBody();
+    }
+  }
+
+  /** Returns the summary of the given method, loading its body if needed, or null if it has no body. */
+  private MethodSummary summaryOf(SootMethod m) {
+    MethodSummary s = summaries.get(m);
+    if (s == null && m.isConcrete()) {
+      // Built outside the map so that no bin lock is held while the body is loaded. The units are registered before the
+      // summary is published; a thread that loses the race points them back to the summary that won.
+      s = buildSummary(m);
+      if (s != null) {
+        MethodSummary winner = summaries.putIfAbsent(m, s);
+        if (winner != null) {
+          s = winner;
+          register(s);
+        }
+      }
+      if (releaseBodies) {
+        m.releaseActiveBody();
+      }
+    }
+    return s;
+  }
+
+  private MethodSummary buildSummary(SootMethod m) {
+    Body body = initForMethod(m);
+    if (body == null) {
+      return null;
+    }
+    DirectedGraph<Unit> graph = makeGraph(body);
+    graphsInProgress.put(body, graph);
+    try {
+      MethodSummary s = new MethodSummary(m, body, graph);
+      register(s);
+      return s;
+    } finally {
+      graphsInProgress.remove(body);
+      aliasInProgress.remove(body);
+    }
+  }
+
+  private void register(MethodSummary s) {
+    for (Unit u : s.units) {
+      unitToSummary.put(u, s);
+    }
+    for (int i = 0; i < s.calls.length; i++) {
+      for (SootMethod callee : s.callees[i]) {
+        addCallerForMethod(s.units[s.calls[i]], callee);
+      }
+    }
+  }
+
+  @Override
+  protected Body initForMethod(SootMethod m) {
+    if (!m.isConcrete()) {
+      return null;
+    }
+    ensureClassHasBodies(m.getDeclaringClass());
+    synchronized (Scene.v()) {
+      return m.retrieveActiveBody();
+    }
+  }
+
+  @Override
+  protected LocalMustNotAliasAnalysis getLocalMustNotAliasAnalysis(Body body) {
+    DirectedGraph<Unit> graph = graphsInProgress.get(body);
+    if (graph == null) {
+      return super.getLocalMustNotAliasAnalysis(body);
+    }
+    LocalMustNotAliasAnalysis ret = aliasInProgress.get(body);
+    if (ret == null) {
+      ret = new LocalMustNotAliasAnalysis(graph, body);
+      aliasInProgress.put(body, ret);
+    }
+    return ret;
+  }
+
+  @Override
+  public SootMethod getMethodOf(Unit u) {
+    MethodSummary s = unitToSummary.get(u);
+    return s == null ? null : s.method;
+  }
+
+  @Override
+  public List<Unit> getSuccsOf(Unit u) {
+    MethodSummary s = unitToSummary.get(u);
+    return s == null ? Collections.<Unit>emptyList() : s.getSuccsOf(u);
+  }
+
+  @Override
+  public List<Unit> getPredsOf(Unit u) {
+    MethodSummary s = unitToSummary.get(u);
+    return s == null ? Collections.<Unit>emptyList() : s.getPredsOf(u);
+  }
+
+  @Override
+  public DirectedGraph<Unit> getOrCreateUnitGraph(SootMethod m) {
+    return summaryOf(m);
+  }
+
+  @Override
+  public Set<SootMethod> getCalleesOfCallAt(Unit u) {
+    MethodSummary s = unitToSummary.get(u);
+    return s == null ? Collections.<SootMethod>emptySet() : s.calleesOf(s.index.indexOf(u));
+  }
+
+  @Override
+  public Set<Unit> getCallersOf(SootMethod m) {
+    synchronized (methodToCallers) {
+      Set<Unit> callers = methodToCallers.get(m);
+      return callers == null ? Collections.<Unit>emptySet() : new HashSet<Unit>(callers);
+    }
+  }
+
+  @Override
+  public Set<Unit> getCallsFromWithin(SootMethod m) {
+    final MethodSummary s = summaryOf(m);
+    if (s == null) {
+      return Collections.emptySet();
+    }
+    return new AbstractSet<Unit>() {
+      @Override
+      public boolean contains(Object o) {
+        int u = s.index.indexOf(o);
+        return u >= 0 && (s.flags[u] & CALL) != 0;
+      }
+
+      @Override
+      public Iterator<Unit> iterator() {
+        return new UnitList(s, s.calls, 0, s.calls.length).iterator();
+      }
+
+      @Override
+      public int size() {
+        return s.calls.length;
+      }
+    };
+  }
+
+  @Override
+  public Collection<Unit> getStartPointsOf(SootMethod m) {
+    MethodSummary s = summaryOf(m);
+    return s == null ? Collections.<Unit>emptySet() : s.getHeads();
+  }
+
+  @Override
+  public Collection<Unit> getEndPointsOf(SootMethod m) {
+    MethodSummary s = summaryOf(m);
+    return s == null ? Collections.<Unit>emptySet() : s.getTails();
+  }
+
+  @Override
+  public List<Value> getParameterRefs(SootMethod m) {
+    MethodSummary s = summaryOf(m);
+    return s == null ? Collections.<Value>emptyList() : s.parameterRefs;
+  }
+
+  private boolean hasFlag(Unit u, byte flag) {
+    MethodSummary s = unitToSummary.get(u);
+    if (s == null) {
+      return false;
+    }
+    int i = s.index.indexOf(u);
+    return (s.flags[i] & flag) != 0;
+  }
+
+  @Override
+  public boolean isCallStmt(Unit u) {
+    return ((Stmt) u).containsInvokeExpr();
+  }
+
+  @Override
+  public boolean isExitStmt(Unit u) {
+    return hasFlag(u, EXIT);
+  }
+
+  @Override
+  public boolean isStartPoint(Unit u) {
+    return hasFlag(u, START);
+  }
+
+  @Override
+  public boolean isReturnSite(Unit u) {
+    return hasFlag(u, RETURN_SITE);
+  }
+
+  @Override
+  public boolean isFallThroughSuccessor(Unit u, Unit succ) {
+    MethodSummary s = unitToSummary.get(u);
+    if (s == null) {
+      return false;
+    }
+    int next = s.fallThrough[s.index.indexOf(u)];
+    return next >= 0 && s.units[next] == succ;
+  }
+
+  @Override
+  public boolean isBranchTarget(Unit u, Unit succ) {
+    if (!u.branches()) {
+      return false;
+    }
+    for (UnitBox ub : u.getUnitBoxes()) {
+      if (ub.getUnit() == succ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isReachable(Unit u) {
+    return unitToSummary.containsKey(u);
+  }
+
+  @Override
+  public Set<Unit> allNonCallStartNodes() {
+    Set<Unit> res = new LinkedHashSet<Unit>();
+    for (MethodSummary s : summaries.values()) {
+      for (int u = 0; u < s.units.length; u++) {
+        if ((s.flags[u] & (CALL | START)) == 0) {
+          res.add(s.units[u]);
+        }
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public Set<Unit> allNonCallEndNodes() {
+    Set<Unit> res = new LinkedHashSet<Unit>();
+    for (MethodSummary s : summaries.values()) {
+      for (int u = 0; u < s.units.length; u++) {
+        if ((s.flags[u] & (CALL | EXIT)) == 0) {
+          res.add(s.units[u]);
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Returns a read-only copy of this graph over the methods whose summaries have been built. The bodies of these
+   * methods must not have been released.
+   */
+  @Override
+  public FrozenInterproceduralCFG freeze() {
+    return new FrozenInterproceduralCFG(this, new ArrayList<SootMethod>(summaries.keySet()));
+  }
+}
@@ -0,0 +1,458 @@
+package soot.jimple.toolkits.ide.icfg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.ThreadSafe;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import soot.Body;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.toolkits.graph.DirectedGraph;
+import soot.util.IdentityIndex;
+
+/**
+ * A read-only copy of an interprocedural control-flow graph in which every statement of the given methods is numbered
+ * once, and successors, predecessors, owning methods, call and exit flags and callees are stored in int arrays indexed
+ * by that number. A query finds the number of a statement with a single probe into an identity hash table and then only
+ * reads arrays, instead of going through the caches and the unit-to-owner map of {@link AbstractJimpleBasedICFG}. This
+ * suits IFDS solvers, which ask the same questions about the same statements very many times.
+ *
+ * <p>
+ * The copy does not see changes to the bodies or the call graph made after it was created. Statements and methods that
+ * were not copied are passed to the original graph. Lists and sets are returned as read-only views of the arrays.
+ * </p>
+ */
+@ThreadSafe
+public class FrozenInterproceduralCFG implements BiDiInterproceduralCFG<Unit, SootMethod> {
+  private static final byte CALL = 1;
+  private static final byte EXIT = 2;
+  private static final byte START = 4;
+  private static final byte RETURN_SITE = 8;
+
+  private final BiDiInterproceduralCFG<Unit, SootMethod> delegate;
+
+  private final IdentityIndex<Unit> unitIndex;
+  private final Unit[] units;
+  private final int[] unitMethod;
+  private final byte[] flags;
+  /** The number of the statement that follows each statement in its body if it falls through, or -1. */
+  private final int[] fallThrough;
+  private final int[] succOffsets;
+  private final int[] succs;
+  private final int[] predOffsets;
+  private final int[] preds;
+  private final int[] calleeOffsets;
+  private final int[] callees;
+
+  private final IdentityIndex<SootMethod> methodIndex;
+  private final SootMethod[] methods;
+  /** The statements of method number m are numbered from methodUnits[m] to methodUnits[m + 1] - 1. */
+  private final int[] methodUnits;
+  private final int[] startOffsets;
+  private final int[] starts;
+  private final int[] endOffsets;
+  private final int[] ends;
+  private final int[] callOffsets;
+  private final int[] calls;
+  private final int[] callerOffsets;
+  private final Unit[] callers;
+
+  /** Copies the part of the given graph that covers the given methods, which must have active bodies. */
+  public FrozenInterproceduralCFG(BiDiInterproceduralCFG<Unit, SootMethod> delegate, Collection<SootMethod> bodies) {
+    this.delegate = delegate;
+
+    List<SootMethod> methodList = new ArrayList<SootMethod>(bodies);
+    List<Unit> unitList = new ArrayList<Unit>();
+    methodUnits = new int[methodList.size() + 1];
+    for (int m = 0; m < methodList.size(); m++) {
+      methodUnits[m] = unitList.size();
+      unitList.addAll(methodList.get(m).getActiveBody().getUnits());
+    }
+    methodUnits[methodList.size()] = unitList.size();
+
+    int n = unitList.size();
+    units = unitList.toArray(new Unit[n]);
+    unitIndex = new IdentityIndex<Unit>(units);
+    unitMethod = new int[n];
+    flags = new byte[n];
+    fallThrough = new int[n];
+    succOffsets = new int[n + 1];
+    predOffsets = new int[n + 1];
+    calleeOffsets = new int[n + 1];
+    IntList succList = new IntList();
+    IntList predList = new IntList();
+    IntList calleeList = new IntList();
+
+    IdentityIndex<SootMethod> bodyMethods = new IdentityIndex<SootMethod>(methodList.toArray(new SootMethod[0]));
+    Map<SootMethod, Integer> otherMethods = new HashMap<SootMethod, Integer>();
+    for (int m = 0; m < methodUnits.length - 1; m++) {
+      Body body = methodList.get(m).getActiveBody();
+      for (int u = methodUnits[m]; u < methodUnits[m + 1]; u++) {
+        Unit unit = units[u];
+        unitMethod[u] = m;
+        succOffsets[u] = succList.size;
+        for (Unit s : delegate.getSuccsOf(unit)) {
+          succList.add(indexOrFail(s));
+        }
+        predOffsets[u] = predList.size;
+        for (Unit p : delegate.getPredsOf(unit)) {
+          predList.add(indexOrFail(p));
+        }
+        Unit next = unit.fallsThrough() ? body.getUnits().getSuccOf(unit) : null;
+        fallThrough[u] = next == null ? -1 : indexOrFail(next);
+
+        calleeOffsets[u] = calleeList.size;
+        if (delegate.isCallStmt(unit)) {
+          flags[u] |= CALL;
+          for (SootMethod callee : delegate.getCalleesOfCallAt(unit)) {
+            int c = bodyMethods.indexOf(callee);
+            if (c < 0) {
+              // A callee that was not copied, such as a phantom method, is numbered after the copied ones
+              Integer other = otherMethods.get(callee);
+              if (other == null) {
+                other = methodList.size();
+                otherMethods.put(callee, other);
+                methodList.add(callee);
+              }
+              c = other;
+            }
+            calleeList.add(c);
+          }
+        }
+        if (delegate.isExitStmt(unit)) {
+          flags[u] |= EXIT;
+        }
+        if (delegate.isStartPoint(unit)) {
+          flags[u] |= START;
+        }
+      }
+    }
+    succOffsets[n] = succList.size;
+    predOffsets[n] = predList.size;
+    calleeOffsets[n] = calleeList.size;
+    succs = succList.toArray();
+    preds = predList.toArray();
+    callees = calleeList.toArray();
+    for (int u = 0; u < n; u++) {
+      if ((flags[u] & CALL) != 0) {
+        for (int i = succOffsets[u]; i < succOffsets[u + 1]; i++) {
+          flags[succs[i]] |= RETURN_SITE;
+        }
+      }
+    }
+
+    int numMethods = methodList.size();
+    methods = methodList.toArray(new SootMethod[numMethods]);
+    methodIndex = new IdentityIndex<SootMethod>(methods);
+    int numBodies = methodUnits.length - 1;
+    startOffsets = new int[numMethods + 1];
+    endOffsets = new int[numMethods + 1];
+    callOffsets = new int[numMethods + 1];
+    callerOffsets = new int[numMethods + 1];
+    IntList startList = new IntList();
+    IntList endList = new IntList();
+    IntList callList = new IntList();
+    List<Unit> callerList = new ArrayList<Unit>();
+    for (int m = 0; m < numMethods; m++) {
+      startOffsets[m] = startList.size;
+      endOffsets[m] = endList.size;
+      callOffsets[m] = callList.size;
+      callerOffsets[m] = callerList.size();
+      if (m < numBodies) {
+        for (Unit s : delegate.getStartPointsOf(methods[m])) {
+          startList.add(indexOrFail(s));
+        }
+        for (Unit e : delegate.getEndPointsOf(methods[m])) {
+          endList.add(indexOrFail(e));
+        }
+        for (int u = methodUnits[m]; u < methodUnits[m + 1]; u++) {
+          if ((flags[u] & CALL) != 0) {
+            callList.add(u);
+          }
+        }
+      }
+      callerList.addAll(delegate.getCallersOf(methods[m]));
+    }
+    startOffsets[numMethods] = startList.size;
+    endOffsets[numMethods] = endList.size;
+    callOffsets[numMethods] = callList.size;
+    callerOffsets[numMethods] = callerList.size();
+    starts = startList.toArray();
+    ends = endList.toArray();
+    calls = callList.toArray();
+    callers = callerList.toArray(new Unit[callerList.size()]);
+  }
+
+  private int indexOrFail(Unit u) {
+    int i = unitIndex.indexOf(u);
+    if (i < 0) {
+      throw new RuntimeException("Statement " + u + " is not in the methods that were copied");
+    }
+    return i;
+  }
+
+  /** Returns the number of the given method if its body was copied, or -1. */
+  private int bodyIndex(SootMethod m) {
+    int i = methodIndex.indexOf(m);
+    return i < methodUnits.length - 1 ? i : -1;
+  }
+
+  @Override
+  public SootMethod getMethodOf(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.getMethodOf(u) : methods[unitMethod[i]];
+  }
+
+  @Override
+  public List<Unit> getSuccsOf(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.getSuccsOf(u) : new UnitList(succs, succOffsets[i], succOffsets[i + 1]);
+  }
+
+  @Override
+  public List<Unit> getPredsOf(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.getPredsOf(u) : new UnitList(preds, predOffsets[i], predOffsets[i + 1]);
+  }
+
+  @Override
+  public List<Unit> getPredsOfCallAt(Unit u) {
+    return getPredsOf(u);
+  }
+
+  @Override
+  public Collection<Unit> getReturnSitesOfCallAt(Unit u) {
+    return getSuccsOf(u);
+  }
+
+  @Override
+  public Collection<SootMethod> getCalleesOfCallAt(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.getCalleesOfCallAt(u) : new MethodList(callees, calleeOffsets[i], calleeOffsets[i + 1]);
+  }
+
+  @Override
+  public Collection<Unit> getCallersOf(SootMethod m) {
+    int i = methodIndex.indexOf(m);
+    if (i < 0) {
+      return delegate.getCallersOf(m);
+    }
+    return Collections.unmodifiableList(Arrays.asList(callers).subList(callerOffsets[i], callerOffsets[i + 1]));
+  }
+
+  @Override
+  public Set<Unit> getCallsFromWithin(final SootMethod m) {
+    final int i = bodyIndex(m);
+    if (i < 0) {
+      return delegate.getCallsFromWithin(m);
+    }
+    return new AbstractSet<Unit>() {
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Unit)) {
+          return false;
+        }
+        int u = unitIndex.indexOf((Unit) o);
+        return u >= 0 && unitMethod[u] == i && (flags[u] & CALL) != 0;
+      }
+
+      @Override
+      public Iterator<Unit> iterator() {
+        return new UnitList(calls, callOffsets[i], callOffsets[i + 1]).iterator();
+      }
+
+      @Override
+      public int size() {
+        return callOffsets[i + 1] - callOffsets[i];
+      }
+    };
+  }
+
+  @Override
+  public Collection<Unit> getStartPointsOf(SootMethod m) {
+    int i = bodyIndex(m);
+    return i < 0 ? delegate.getStartPointsOf(m) : new UnitList(starts, startOffsets[i], startOffsets[i + 1]);
+  }
+
+  @Override
+  public Collection<Unit> getEndPointsOf(SootMethod m) {
+    int i = bodyIndex(m);
+    return i < 0 ? delegate.getEndPointsOf(m) : new UnitList(ends, endOffsets[i], endOffsets[i + 1]);
+  }
+
+  @Override
+  public boolean isCallStmt(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.isCallStmt(u) : (flags[i] & CALL) != 0;
+  }
+
+  @Override
+  public boolean isExitStmt(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.isExitStmt(u) : (flags[i] & EXIT) != 0;
+  }
+
+  @Override
+  public boolean isStartPoint(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.isStartPoint(u) : (flags[i] & START) != 0;
+  }
+
+  @Override
+  public boolean isReturnSite(Unit u) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.isReturnSite(u) : (flags[i] & RETURN_SITE) != 0;
+  }
+
+  @Override
+  public boolean isFallThroughSuccessor(Unit u, Unit succ) {
+    int i = unitIndex.indexOf(u);
+    return i < 0 ? delegate.isFallThroughSuccessor(u, succ) : fallThrough[i] >= 0 && units[fallThrough[i]] == succ;
+  }
+
+  @Override
+  public boolean isBranchTarget(Unit u, Unit succ) {
+    return delegate.isBranchTarget(u, succ);
+  }
+
+  @Override
+  public boolean isReachable(Unit u) {
+    return unitIndex.indexOf(u) >= 0 || delegate.isReachable(u);
+  }
+
+  @Override
+  public Set<Unit> allNonCallStartNodes() {
+    Set<Unit> res = new LinkedHashSet<Unit>();
+    for (int u = 0; u < units.length; u++) {
+      if ((flags[u] & (CALL | START)) == 0) {
+        res.add(units[u]);
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public Set<Unit> allNonCallEndNodes() {
+    Set<Unit> res = new LinkedHashSet<Unit>();
+    for (int u = 0; u < units.length; u++) {
+      if ((flags[u] & (CALL | EXIT)) == 0) {
+        res.add(units[u]);
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public DirectedGraph<Unit> getOrCreateUnitGraph(SootMethod m) {
+    return delegate.getOrCreateUnitGraph(m);
+  }
+
+  @Override
+  public List<Value> getParameterRefs(SootMethod m) {
+    return delegate.getParameterRefs(m);
+  }
+
+  /** A read-only list of the statements whose numbers are stored in a range of an array. */
+  private class UnitList extends AbstractList<Unit> implements RandomAccess {
+    private final int[] indices;
+    private final int start;
+    private final int end;
+
+    UnitList(int[] indices, int start, int end) {
+      this.indices = indices;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public Unit get(int i) {
+      if (i < 0 || i >= end - start) {
+        throw new IndexOutOfBoundsException(String.valueOf(i));
+      }
+      return units[indices[start + i]];
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+
+  /** A read-only list of the methods whose numbers are stored in a range of an array. */
+  private class MethodList extends AbstractList<SootMethod> implements RandomAccess {
+    private final int[] indices;
+    private final int start;
+    private final int end;
+
+    MethodList(int[] indices, int start, int end) {
+      this.indices = indices;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public SootMethod get(int i) {
+      if (i < 0 || i >= end - start) {
+        throw new IndexOutOfBoundsException(String.valueOf(i));
+      }
+      return methods[indices[start + i]];
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+
+  /** A growable array of ints. */
+  private static class IntList {
+    private int[] data = new int[16];
+    private int size;
+
+    void add(int i) {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = i;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(data, size);
+    }
+  }
+}
@@ -92,44 +92,7 @@ public class OnTheFlyJimpleBasedICFG extends AbstractJimpleBasedICFG {
       = IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<Unit, Set<SootMethod>>() {
         @Override
         public Set<SootMethod> load(Unit u) throws Exception {
-          Stmt stmt = (Stmt) u;
-          InvokeExpr ie = stmt.getInvokeExpr();
-          FastHierarchy fastHierarchy = Scene.v().getFastHierarchy();
-          // FIXME Handle Thread.start etc.
-          if (ie instanceof InstanceInvokeExpr) {
-            if (ie instanceof SpecialInvokeExpr) {
-              // special
-              return Collections.singleton(ie.getMethod());
-            } else {
-              // virtual and interface
-              InstanceInvokeExpr iie = (InstanceInvokeExpr) ie;
-              Local base = (Local) iie.getBase();
-              RefType concreteType = bodyToLMNAA.getUnchecked(getBodyOf(u)).concreteType(base, stmt);
-              if (concreteType != null) {
-                // the base variable definitely points to a single concrete type
-                SootMethod singleTargetMethod
-                    = fastHierarchy.resolveConcreteDispatch(concreteType.getSootClass(), iie.getMethod());
-                return Collections.singleton(singleTargetMethod);
-              } else {
-                SootClass baseTypeClass;
-                if (base.getType() instanceof RefType) {
-                  RefType refType = (RefType) base.getType();
-                  baseTypeClass = refType.getSootClass();
-                } else if (base.getType() instanceof ArrayType) {
-                  baseTypeClass = Scene.v().getSootClass("java.lang.Object");
-                } else if (base.getType() instanceof NullType) {
-                  // if the base is definitely null then there is no call target
-                  return Collections.emptySet();
-                } else {
-                  throw new InternalError("Unexpected base type:" + base.getType());
-                }
-                return fastHierarchy.resolveAbstractDispatch(baseTypeClass, iie.getMethod());
-              }
-            }
-          } else {
-            // static
-            return Collections.singleton(ie.getMethod());
-          }
+          return resolveCallees((Stmt) u, getBodyOf(u));
         }
       });
 
@@ -169,7 +132,56 @@ public class OnTheFlyJimpleBasedICFG extends AbstractJimpleBasedICFG {
     return b;
   }
 
-  private synchronized void ensureClassHasBodies(SootClass cl) {
+  /**
+   * Resolves the targets of the call at the given statement of the given body through the class hierarchy, or to a single
+   * target if the {@link LocalMustNotAliasAnalysis} of the body knows the concrete type of the receiver.
+   */
+  protected Set<SootMethod> resolveCallees(Stmt stmt, Body body) {
+    InvokeExpr ie = stmt.getInvokeExpr();
+    FastHierarchy fastHierarchy = Scene.v().getFastHierarchy();
+    // FIXME Handle Thread.start etc.
+    if (ie instanceof InstanceInvokeExpr) {
+      if (ie instanceof SpecialInvokeExpr) {
+        // special
+        return Collections.singleton(ie.getMethod());
+      } else {
+        // virtual and interface
+        InstanceInvokeExpr iie = (InstanceInvokeExpr) ie;
+        Local base = (Local) iie.getBase();
+        RefType concreteType = getLocalMustNotAliasAnalysis(body).concreteType(base, stmt);
+        if (concreteType != null) {
+          // the base variable definitely points to a single concrete type
+          SootMethod singleTargetMethod
+              = fastHierarchy.resolveConcreteDispatch(concreteType.getSootClass(), iie.getMethod());
+          return Collections.singleton(singleTargetMethod);
+        } else {
+          SootClass baseTypeClass;
+          if (base.getType() instanceof RefType) {
+            RefType refType = (RefType) base.getType();
+            baseTypeClass = refType.getSootClass();
+          } else if (base.getType() instanceof ArrayType) {
+            baseTypeClass = Scene.v().getSootClass("java.lang.Object");
+          } else if (base.getType() instanceof NullType) {
+            // if the base is definitely null then there is no call target
+            return Collections.emptySet();
+          } else {
+            throw new InternalError("Unexpected base type:" + base.getType());
+          }
+          return fastHierarchy.resolveAbstractDispatch(baseTypeClass, iie.getMethod());
+        }
+      }
+    } else {
+      // static
+      return Collections.singleton(ie.getMethod());
+    }
+  }
+
+  /** Returns the {@link LocalMustNotAliasAnalysis} used to resolve calls in the given body. */
+  protected LocalMustNotAliasAnalysis getLocalMustNotAliasAnalysis(Body body) {
+    return bodyToLMNAA.getUnchecked(body);
+  }
+
+  protected synchronized void ensureClassHasBodies(SootClass cl) {
     assert Scene.v().hasFastHierarchy();
     if (cl.resolvingLevel() < SootClass.BODIES) {
       Scene.v().forceResolve(cl.getName(), SootClass.BODIES);
@@ -188,7 +200,7 @@ public class OnTheFlyJimpleBasedICFG extends AbstractJimpleBasedICFG {
     return targets;
   }
 
-  private void addCallerForMethod(Unit callSite, SootMethod target) {
+  protected void addCallerForMethod(Unit callSite, SootMethod target) {
     synchronized (methodToCallers) {
       Set<Unit> callers = methodToCallers.get(target);
       if (callers == null) {
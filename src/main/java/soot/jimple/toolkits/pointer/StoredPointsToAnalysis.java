@@ -0,0 +1,271 @@
+package soot.jimple.toolkits.pointer;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Context;
+import soot.Local;
+import soot.PointsToAnalysis;
+import soot.PointsToSet;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.ClassConstant;
+
+/**
+ * Points-to information that was computed earlier, for instance by Spark, and read back from a file. Abstract objects
+ * are numbered from 0 and known only by their type, their allocation site if they have one and, for string and class
+ * constants, their value. The sets answer the same queries as the ones of the analysis that computed them, but without
+ * its pointer assignment graph.
+ */
+public class StoredPointsToAnalysis implements PointsToAnalysis {
+  /** The key under which the elements of arrays are stored, in place of a field. */
+  public static final Object ARRAY_ELEMENTS = "[]";
+
+  private final List<Type> allocTypes = new ArrayList<Type>();
+  private final List<Object> allocConstants = new ArrayList<Object>();
+  private final List<SootMethod> allocMethods = new ArrayList<SootMethod>();
+  private final List<Unit> allocSites = new ArrayList<Unit>();
+  private final Map<Local, BitSet> locals = new HashMap<Local, BitSet>();
+  private final Map<SootField, BitSet> globals = new HashMap<SootField, BitSet>();
+  private final Map<Object, Map<Integer, BitSet>> fields = new HashMap<Object, Map<Integer, BitSet>>();
+
+  /**
+   * Adds an abstract object and returns its number.
+   *
+   * @param constant
+   *          the String or ClassConstant that the object stands for, or null if it is not a constant
+   */
+  public int addAlloc(Type type, Object constant) {
+    return addAlloc(type, constant, null, null);
+  }
+
+  /**
+   * Adds an abstract object allocated by the given statement of the given method and returns its number.
+   *
+   * @param constant
+   *          the String or ClassConstant that the object stands for, or null if it is not a constant
+   */
+  public int addAlloc(Type type, Object constant, SootMethod method, Unit site) {
+    allocTypes.add(type);
+    allocConstants.add(constant);
+    allocMethods.add(method);
+    allocSites.add(site);
+    return allocTypes.size() - 1;
+  }
+
+  /** Returns the method that allocates the given object, or null if it is not known. */
+  public SootMethod getAllocMethod(int alloc) {
+    return allocMethods.get(alloc);
+  }
+
+  /** Returns the statement that allocates the given object, or null if it is not known. */
+  public Unit getAllocSite(int alloc) {
+    return allocSites.get(alloc);
+  }
+
+  /** Returns the number of abstract objects. */
+  public int allocCount() {
+    return allocTypes.size();
+  }
+
+  /** Sets the objects the given local may point to. */
+  public void setLocal(Local l, BitSet allocs) {
+    locals.put(l, allocs);
+  }
+
+  /** Sets the objects the given field may point to, if it is static or fields are not told apart by their base. */
+  public void setGlobal(SootField f, BitSet allocs) {
+    globals.put(f, allocs);
+  }
+
+  /**
+   * Sets the objects the given field of the given object may point to.
+   *
+   * @param field
+   *          a SootField, or {@link #ARRAY_ELEMENTS}
+   */
+  public void setField(int alloc, Object field, BitSet allocs) {
+    Map<Integer, BitSet> m = fields.get(field);
+    if (m == null) {
+      m = new HashMap<Integer, BitSet>();
+      fields.put(field, m);
+    }
+    m.put(alloc, allocs);
+  }
+
+  private PointsToSet toSet(BitSet allocs) {
+    return new StoredPointsToSet(allocs == null ? new BitSet() : allocs);
+  }
+
+  /** Returns the set of objects pointed to by variable l. */
+  @Override
+  public PointsToSet reachingObjects(Local l) {
+    return toSet(locals.get(l));
+  }
+
+  /** Returns the set of objects pointed to by variable l in context c. */
+  @Override
+  public PointsToSet reachingObjects(Context c, Local l) {
+    return reachingObjects(l);
+  }
+
+  /** Returns the set of objects pointed to by static field f. */
+  @Override
+  public PointsToSet reachingObjects(SootField f) {
+    return toSet(globals.get(f));
+  }
+
+  /**
+   * Returns the set of objects pointed to by instance field f of the objects in the PointsToSet s.
+   */
+  @Override
+  public PointsToSet reachingObjects(PointsToSet s, SootField f) {
+    BitSet global = globals.get(f);
+    if (global != null) {
+      return toSet(global);
+    }
+    return reachingObjectsOfField(s, f);
+  }
+
+  /**
+   * Returns the set of objects pointed to by instance field f of the objects pointed to by l.
+   */
+  @Override
+  public PointsToSet reachingObjects(Local l, SootField f) {
+    return reachingObjects(reachingObjects(l), f);
+  }
+
+  /**
+   * Returns the set of objects pointed to by instance field f of the objects pointed to by l in context c.
+   */
+  @Override
+  public PointsToSet reachingObjects(Context c, Local l, SootField f) {
+    return reachingObjects(l, f);
+  }
+
+  /**
+   * Returns the set of objects pointed to by elements of the arrays in the PointsToSet s.
+   */
+  @Override
+  public PointsToSet reachingObjectsOfArrayElement(PointsToSet s) {
+    return reachingObjectsOfField(s, ARRAY_ELEMENTS);
+  }
+
+  private PointsToSet reachingObjectsOfField(PointsToSet s, Object field) {
+    BitSet ret = new BitSet();
+    Map<Integer, BitSet> m = fields.get(field);
+    if (m != null && s instanceof StoredPointsToSet) {
+      BitSet bases = ((StoredPointsToSet) s).allocs;
+      for (int i = bases.nextSetBit(0); i >= 0; i = bases.nextSetBit(i + 1)) {
+        BitSet targets = m.get(i);
+        if (targets != null) {
+          ret.or(targets);
+        }
+      }
+    }
+    return toSet(ret);
+  }
+
+  /** A set of the abstract objects of a {@link StoredPointsToAnalysis}. */
+  public class StoredPointsToSet implements PointsToSet {
+    private final BitSet allocs;
+
+    StoredPointsToSet(BitSet allocs) {
+      this.allocs = allocs;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return allocs.isEmpty();
+    }
+
+    @Override
+    public boolean hasNonEmptyIntersection(PointsToSet other) {
+      if (other instanceof StoredPointsToSet) {
+        return allocs.intersects(((StoredPointsToSet) other).allocs);
+      }
+      return !isEmpty() && other != null && !other.isEmpty();
+    }
+
+    @Override
+    public Set<Type> possibleTypes() {
+      Set<Type> ret = new HashSet<Type>();
+      for (int i = allocs.nextSetBit(0); i >= 0; i = allocs.nextSetBit(i + 1)) {
+        ret.add(allocTypes.get(i));
+      }
+      return ret;
+    }
+
+    @Override
+    public Set<String> possibleStringConstants() {
+      Set<String> ret = new HashSet<String>();
+      for (int i = allocs.nextSetBit(0); i >= 0; i = allocs.nextSetBit(i + 1)) {
+        Object constant = allocConstants.get(i);
+        if (!(constant instanceof String)) {
+          return null;
+        }
+        ret.add((String) constant);
+      }
+      return Collections.unmodifiableSet(ret);
+    }
+
+    /**
+     * Returns the statements that allocate the objects of this set, or null if the allocation site of one of them is not
+     * known.
+     */
+    public Set<Unit> possibleAllocSites() {
+      Set<Unit> ret = new HashSet<Unit>();
+      for (int i = allocs.nextSetBit(0); i >= 0; i = allocs.nextSetBit(i + 1)) {
+        Unit site = allocSites.get(i);
+        if (site == null) {
+          return null;
+        }
+        ret.add(site);
+      }
+      return Collections.unmodifiableSet(ret);
+    }
+
+    @Override
+    public Set<ClassConstant> possibleClassConstants() {
+      Set<ClassConstant> ret = new HashSet<ClassConstant>();
+      for (int i = allocs.nextSetBit(0); i >= 0; i = allocs.nextSetBit(i + 1)) {
+        Object constant = allocConstants.get(i);
+        if (!(constant instanceof ClassConstant)) {
+          return null;
+        }
+        ret.add((ClassConstant) constant);
+      }
+      return Collections.unmodifiableSet(ret);
+    }
+  }
+}
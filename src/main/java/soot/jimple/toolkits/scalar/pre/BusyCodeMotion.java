@@ -48,7 +48,7 @@ import soot.jimple.toolkits.pointer.PASideEffectTester;
 import soot.jimple.toolkits.scalar.LocalCreation;
 import soot.options.BCMOptions;
 import soot.options.Options;
-import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.IndexedUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 import soot.util.Chain;
 import soot.util.UnitMap;
@@ -92,7 +92,7 @@ public class BusyCodeMotion extends BodyTransformer {
 
     CriticalEdgeRemover.v().transform(b, phaseName + ".cer");
 
-    UnitGraph graph = new BriefUnitGraph(b);
+    UnitGraph graph = new IndexedUnitGraph(b);
 
     /* map each unit to its RHS. only take binary expressions */
     Map<Unit, EquivalentValue> unitToEquivRhs = new UnitMap<EquivalentValue>(b, graph.size() + 1, 0.7f) {
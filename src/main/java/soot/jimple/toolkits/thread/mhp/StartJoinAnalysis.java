@@ -54,7 +54,7 @@ import soot.jimple.toolkits.callgraph.Filter;
 import soot.jimple.toolkits.callgraph.TransitiveTargets;
 import soot.jimple.toolkits.pointer.LocalMustAliasAnalysis;
 import soot.toolkits.graph.BriefUnitGraph;
-import soot.toolkits.graph.MHGPostDominatorsFinder;
+import soot.toolkits.graph.FastPostDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.ArraySparseSet;
 import soot.toolkits.scalar.FlowSet;
@@ -95,7 +95,7 @@ public class StartJoinAnalysis extends ForwardFlowAnalysis {
 
     if (!startStatements.isEmpty()) {
       // Get supporting info and analyses
-      MHGPostDominatorsFinder pd = new MHGPostDominatorsFinder(new BriefUnitGraph(sm.getActiveBody()));
+      FastPostDominatorsFinder pd = new FastPostDominatorsFinder(new BriefUnitGraph(sm.getActiveBody()));
       // EqualUsesAnalysis lif = new EqualUsesAnalysis(g);
       LocalMustAliasAnalysis lma = new LocalMustAliasAnalysis(g);
       TransitiveTargets runMethodTargets = new TransitiveTargets(callGraph, new Filter(new RunMethodsPred()));
@@ -38,9 +38,9 @@ import soot.toolkits.graph.DominatorTree;
 import soot.toolkits.graph.DominatorsFinder;
 import soot.toolkits.graph.ExceptionalBlockGraph;
 import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.FastDominatorsFinder;
 import soot.toolkits.graph.HashReversibleGraph;
 import soot.toolkits.graph.ReversibleGraph;
-import soot.toolkits.graph.SimpleDominatorsFinder;
 import soot.toolkits.graph.UnitGraph;
 
 /**
@@ -107,7 +107,7 @@ public class DefaultShimpleFactory implements ShimpleFactory {
       return rdFinder;
     }
 
-    rdFinder = new SimpleDominatorsFinder<Block>(getReverseBlockGraph());
+    rdFinder = new FastDominatorsFinder<Block>(getReverseBlockGraph());
     return rdFinder;
   }
 
@@ -155,7 +155,7 @@ public class DefaultShimpleFactory implements ShimpleFactory {
       return dFinder;
     }
 
-    dFinder = new SimpleDominatorsFinder<Block>(getBlockGraph());
+    dFinder = new FastDominatorsFinder<Block>(getBlockGraph());
     return dFinder;
   }
 
@@ -22,7 +22,9 @@ package soot.toolkits.exceptions;
  * #L%
  */
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -32,6 +34,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import soot.AnySubType;
 import soot.FastHierarchy;
@@ -103,13 +108,17 @@ public class ThrowableSet {
    * the various <code>add()</code> methods of this class must bar additions of subtypes of those excluded types.
    */
   protected final Set<AnySubType> exceptionsExcluded;
+
+  /** The manager that created this set, which also keeps the memoized results of operations on it. */
+  private final Manager manager;
+
   /**
-   * A map from ({@link RefLikeType} \\union <code>ThrowableSet</code>) to <code>ThrowableSet</code>. If the mapping (k,v) is
-   * in <code>memoizedAdds</code> and k is a <code>ThrowableSet</code>, then v is the set that results from adding all
-   * elements in k to <code>this</code>. If (k,v) is in <code>memoizedAdds</code> and k is a {@link RefLikeType}, then v is
-   * the set that results from adding k to <code>this</code>.
+   * The types in {@link #exceptionsIncluded} and {@link #exceptionsExcluded} as bit sets over the numbers that the
+   * {@link Manager} assigns to exception types, without trailing zero words, so that equal sets have equal arrays.
    */
-  protected Map<Object, ThrowableSet> memoizedAdds;
+  private final long[] includedBits;
+  private final long[] excludedBits;
+  private final int hashCode;
 
   /**
    * Constructs a <code>ThrowableSet</code> which contains the exception types represented in <code>include</code>, except
@@ -122,6 +131,10 @@ public class ThrowableSet {
    *          The set of {@link AnySubType} objects representing the types to be excluded from the set.
    */
   protected ThrowableSet(Set<RefLikeType> include, Set<AnySubType> exclude) {
+    this(include, exclude, Manager.v());
+  }
+
+  private ThrowableSet(Set<RefLikeType> include, Set<AnySubType> exclude, Manager manager) {
     exceptionsIncluded = getImmutable(include);
     exceptionsExcluded = getImmutable(exclude);
     // We don't need to clone include and exclude to guarantee
@@ -129,6 +142,41 @@ public class ThrowableSet {
     // class, where it is only called (via
     // Manager.v().registerSetIfNew()) with arguments which the
     // callers do not subsequently modify.
+    this.manager = manager;
+    includedBits = manager.toBits(exceptionsIncluded);
+    excludedBits = manager.toBits(exceptionsExcluded);
+    hashCode = 31 * Arrays.hashCode(includedBits) + Arrays.hashCode(excludedBits);
+  }
+
+  private static boolean containsBit(long[] bits, int number) {
+    int word = number >>> 6;
+    return word < bits.length && (bits[word] & (1L << number)) != 0;
+  }
+
+  private static boolean containsAllBits(long[] bits, long[] subset) {
+    if (subset.length > bits.length) {
+      return false;
+    }
+    for (int i = 0; i < subset.length; i++) {
+      if ((subset[i] & ~bits[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean intersectsBits(long[] a, long[] b) {
+    for (int i = Math.min(a.length, b.length) - 1; i >= 0; i--) {
+      if ((a[i] & b[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Indicates whether <code>e</code> is one of the types included in this set, not counting its subtypes. */
+  private boolean includes(RefLikeType e) {
+    return containsBit(includedBits, manager.numberOf(e));
   }
 
   private static <T> Set<T> getImmutable(Set<T> in) {
@@ -163,14 +211,13 @@ public class ThrowableSet {
   }
 
   private ThrowableSet getMemoizedAdds(Object key) {
-    return memoizedAdds == null ? null : memoizedAdds.get(key);
+    FastHierarchy hierarchy = Scene.v().getOrMakeFastHierarchy();
+    return (ThrowableSet) manager.memoFor(hierarchy).getIfPresent(new MemoKey(this, key, false, hierarchy));
   }
 
   private void addToMemoizedAdds(Object key, ThrowableSet value) {
-    if (memoizedAdds == null) {
-      memoizedAdds = new HashMap<>();
-    }
-    memoizedAdds.put(key, value);
+    FastHierarchy hierarchy = Scene.v().getOrMakeFastHierarchy();
+    manager.memoFor(hierarchy).put(new MemoKey(this, key, false, hierarchy), value);
   }
 
   /**
@@ -209,7 +256,7 @@ public class ThrowableSet {
     if (INSTRUMENTING) {
       Manager.v().addsOfRefType++;
     }
-    if (this.exceptionsIncluded.contains(e)) {
+    if (includes(e)) {
       if (INSTRUMENTING) {
         Manager.v().addsInclusionFromMap++;
         Manager.v().addsExclusionWithoutSearch++;
@@ -358,7 +405,7 @@ public class ThrowableSet {
       }
     }
 
-    if (this.exceptionsIncluded.contains(e)) {
+    if (includes(e)) {
       if (INSTRUMENTING) {
         Manager.v().addsInclusionFromMap++;
       }
@@ -448,7 +495,7 @@ public class ThrowableSet {
         Manager.v().addsInclusionFromSearch++;
         Manager.v().addsExclusionWithoutSearch++;
       }
-      result = this.add(s.exceptionsIncluded);
+      result = containsAllBits(includedBits, s.includedBits) ? this : this.add(s.exceptionsIncluded);
       addToMemoizedAdds(s, result);
     } else if (INSTRUMENTING) {
       Manager.v().addsInclusionFromMemo++;
@@ -601,6 +648,9 @@ public class ThrowableSet {
     }
 
     // Remove the exceptions
+    if (!intersectsBits(includedBits, s.includedBits)) {
+      return this;
+    }
     return this.remove(s.exceptionsIncluded);
   }
 
@@ -644,7 +694,7 @@ public class ThrowableSet {
       }
     }
 
-    if (exceptionsIncluded.contains(catcher)) {
+    if (includes(catcher)) {
       if (INSTRUMENTING) {
         if (exceptionsExcluded.size() == 0) {
           Manager.v().catchableAsFromMap++;
@@ -698,6 +748,18 @@ public class ThrowableSet {
    *         would not be caught as <code>catcher</code>.
    */
   public Pair whichCatchableAs(RefType catcher) {
+    FastHierarchy hierarchy = Scene.v().getOrMakeFastHierarchy();
+    MemoKey key = new MemoKey(this, catcher, true, hierarchy);
+    Cache<MemoKey, Object> memo = manager.memoFor(hierarchy);
+    Pair result = (Pair) memo.getIfPresent(key);
+    if (result == null) {
+      result = computeWhichCatchableAs(catcher);
+      memo.put(key, result);
+    }
+    return result;
+  }
+
+  private Pair computeWhichCatchableAs(RefType catcher) {
     if (INSTRUMENTING) {
       Manager.v().removesOfAnySubType++;
     }
@@ -947,20 +1009,19 @@ public class ThrowableSet {
    * A package-private method to provide unit tests with access to ThrowableSet's internals.
    */
   Map<Object, ThrowableSet> getMemoizedAdds() {
-    if (memoizedAdds == null) {
-      return Collections.emptyMap();
-    } else {
-      return Collections.unmodifiableMap(memoizedAdds);
+    Map<Object, ThrowableSet> result = new HashMap<>();
+    for (Map.Entry<MemoKey, Object> e : manager.memo.asMap().entrySet()) {
+      MemoKey key = e.getKey();
+      if (key.set == this && !key.catching) {
+        result.put(key.operand, (ThrowableSet) e.getValue());
+      }
     }
+    return Collections.unmodifiableMap(result);
   }
 
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = (prime * result) + exceptionsIncluded.hashCode();
-    result = (prime * result) + exceptionsExcluded.hashCode();
-    return result;
+    return hashCode;
   }
 
   @Override
@@ -976,7 +1037,47 @@ public class ThrowableSet {
     }
     ThrowableSet other = (ThrowableSet) obj;
 
-    return exceptionsIncluded.equals(other.exceptionsIncluded) && exceptionsExcluded.equals(other.exceptionsExcluded);
+    // The bits only mean the same types if the sets are numbered by the same manager
+    return hashCode == other.hashCode && manager == other.manager && Arrays.equals(includedBits, other.includedBits)
+        && Arrays.equals(excludedBits, other.excludedBits);
+  }
+
+  /**
+   * The key of a memoized operation. It stands for the result of adding <code>operand</code>, a {@link RefLikeType} or
+   * another <code>ThrowableSet</code>, to <code>set</code>. If <code>catching</code> is set, it stands for the
+   * {@link Pair} returned by {@link #whichCatchableAs(RefType)} instead. Both depend on the subtyping relation, so the key
+   * also holds the fast hierarchy the result was computed with.
+   */
+  private static final class MemoKey {
+    final ThrowableSet set;
+    final Object operand;
+    final boolean catching;
+    final FastHierarchy hierarchy;
+
+    MemoKey(ThrowableSet set, Object operand, boolean catching, FastHierarchy hierarchy) {
+      this.set = set;
+      this.operand = operand;
+      this.catching = catching;
+      this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public int hashCode() {
+      return (31 * System.identityHashCode(set) + operand.hashCode()) * 2 + (catching ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof MemoKey)) {
+        return false;
+      }
+      MemoKey other = (MemoKey) obj;
+      return set == other.set && catching == other.catching && hierarchy == other.hierarchy
+          && operand.equals(other.operand);
+    }
   }
 
   /**
@@ -984,6 +1085,7 @@ public class ThrowableSet {
    * initializers, in the absence of soot's {@link G} and {@link Singletons} classes).
    */
   public static class Manager {
+    private static final long[] NO_BITS = new long[0];
 
     /**
      * <code>ThrowableSet</code> containing no exception classes.
@@ -1032,8 +1134,42 @@ public class ThrowableSet {
     /**
      * This map stores all referenced <code>ThrowableSet</code>s.
      */
-    private final Map<ThrowableSet, ThrowableSet> registry
-        = CacheBuilder.newBuilder().weakValues().<ThrowableSet, ThrowableSet>build().asMap();
+    private final ConcurrentMap<ThrowableSet, ThrowableSet> registry = CacheBuilder.newBuilder().weakValues()
+        .concurrencyLevel(Runtime.getRuntime().availableProcessors()).<ThrowableSet, ThrowableSet>build().asMap();
+
+    /** The largest number of operation results kept in {@link #memo}. */
+    private static final int MEMO_LIMIT = 1 << 16;
+
+    /**
+     * The memoized results of adding types or sets to a set and of {@link ThrowableSet#whichCatchableAs(RefType)},
+     * shared by all threads. Once the limit is reached, the results used least recently are dropped.
+     */
+    private final Cache<MemoKey, Object> memo = CacheBuilder.newBuilder().maximumSize(MEMO_LIMIT)
+        .concurrencyLevel(Runtime.getRuntime().availableProcessors()).recordStats().build();
+
+    /** The fast hierarchy of the results in {@link #memo}. */
+    private volatile FastHierarchy memoHierarchy;
+
+    /**
+     * Returns the memo, after dropping the results computed with another hierarchy if the Scene's fast hierarchy has been
+     * replaced since the last lookup. Their keys would no longer match, but would keep the old hierarchy alive.
+     */
+    private Cache<MemoKey, Object> memoFor(FastHierarchy hierarchy) {
+      if (hierarchy != memoHierarchy) {
+        synchronized (memo) {
+          if (hierarchy != memoHierarchy) {
+            memo.invalidateAll();
+            memoHierarchy = hierarchy;
+          }
+        }
+      }
+      return memo;
+    }
+
+    /** Dense numbers for the exception types that occur in sets, used to index their bit sets. */
+    private final ConcurrentMap<RefLikeType, Integer> typeNumbers = new ConcurrentHashMap<>();
+    private final AtomicInteger typeCount = new AtomicInteger();
+
     private final int removesFromMap = 0;
     private final int removesFromMemo = 0;
     // counts for instrumenting:
@@ -1163,13 +1299,43 @@ public class ThrowableSet {
       if (INSTRUMENTING) {
         registrationCalls++;
       }
-      ThrowableSet result = new ThrowableSet(include, exclude);
-      ThrowableSet ref = registry.get(result);
-      if (null != ref) {
-        return ref;
+      ThrowableSet result = new ThrowableSet(include, exclude, this);
+      ThrowableSet ref = registry.putIfAbsent(result, result);
+      return ref == null ? result : ref;
+    }
+
+    private int numberOf(RefLikeType type) {
+      Integer number = typeNumbers.get(type);
+      if (number == null) {
+        number = typeNumbers.computeIfAbsent(type, t -> typeCount.getAndIncrement());
       }
-      registry.put(result, result);
-      return result;
+      return number;
+    }
+
+    private long[] toBits(Set<? extends RefLikeType> types) {
+      if (types.isEmpty()) {
+        return NO_BITS;
+      }
+      long[] bits = NO_BITS;
+      for (RefLikeType type : types) {
+        int number = numberOf(type);
+        int word = number >>> 6;
+        if (word >= bits.length) {
+          bits = Arrays.copyOf(bits, word + 1);
+        }
+        bits[word] |= 1L << number;
+      }
+      return bits;
+    }
+
+    /**
+     * Returns the hit and miss counts of the memoized results of <code>add()</code> and
+     * <code>whichCatchableAs()</code>.
+     *
+     * @return the statistics of the memo shared by all sets of this manager.
+     */
+    public CacheStats getMemoStats() {
+      return memo.stats();
     }
 
     /**
@@ -1192,7 +1358,7 @@ public class ThrowableSet {
           .append("\nremovesFromSearch: ").append(removesFromSearch).append("\nregistrationCalls: ")
           .append(registrationCalls).append("\ncatchableAsQueries: ").append(catchableAsQueries)
           .append("\ncatchableAsFromMap: ").append(catchableAsFromMap).append("\ncatchableAsFromSearch: ")
-          .append(catchableAsFromSearch).append('\n');
+          .append(catchableAsFromSearch).append("\nmemo: ").append(memo.stats()).append('\n');
       return buf.toString();
     }
 
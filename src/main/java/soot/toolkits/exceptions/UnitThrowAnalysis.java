@@ -22,19 +22,23 @@ package soot.toolkits.exceptions;
  * #L%
  */
 
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import heros.solver.IDESolver;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import soot.AnySubType;
 import soot.Body;
 import soot.FastHierarchy;
 import soot.G;
@@ -47,6 +51,7 @@ import soot.RefLikeType;
 import soot.RefType;
 import soot.Scene;
 import soot.Singletons;
+import soot.SootClass;
 import soot.SootMethod;
 import soot.SootMethodRef;
 import soot.Trap;
@@ -276,6 +281,117 @@ public class UnitThrowAnalysis extends AbstractThrowAnalysis {
     return sw.getResult();
   }
 
+  /**
+   * Returns the same set as {@link #mightThrow(Unit)}, remembering it for the given body so that building several
+   * graphs of an unchanged body analyzes each statement once. The remembered sets of a body are dropped once units,
+   * locals or traps are added to or removed from it; the set of a single statement is recomputed once one of its
+   * values, or the type of one of them, has been replaced. Only Jimple, Shimple and Grimp statements are remembered.
+   *
+   * @param u
+   *          the unit whose exceptions are to be returned.
+   * @param b
+   *          the body that contains <code>u</code>.
+   *
+   * @return a representation of the <code>Throwable</code> types that <code>u</code> might throw.
+   */
+  public ThrowableSet mightThrow(Unit u, Body b) {
+    // Whether a call throws depends on the bodies of its callees in
+    // the interprocedural case, and these are not tracked here.
+    if (!(u instanceof Stmt) || (isInterproc && ((Stmt) u).containsInvokeExpr())) {
+      return mightThrow(u);
+    }
+    BodyMemo memo = memoOf(b);
+    UnitMemo entry = memo.unitToMemo.get(u);
+    if (entry != null && entry.isCurrent()) {
+      return entry.result;
+    }
+    ThrowableSet result = mightThrow(u);
+    memo.unitToMemo.put(u, new UnitMemo((Stmt) u, result));
+    return result;
+  }
+
+  /**
+   * Returns the memo of the given body for its current modification count. Graphs are built for one body at a time, so
+   * the memo last used is checked before the cache of all memos.
+   */
+  private BodyMemo memoOf(Body b) {
+    long modificationCount = b.getModificationCount();
+    BodyMemo memo = lastMemo;
+    if (memo == null || memo.body.get() != b) {
+      memo = bodyMemos.getIfPresent(b);
+    }
+    if (memo == null || memo.modificationCount != modificationCount) {
+      memo = new BodyMemo(b, modificationCount);
+      bodyMemos.put(b, memo);
+    }
+    lastMemo = memo;
+    return memo;
+  }
+
+  /** The most bodies for which the throw sets of their statements are remembered at the same time. */
+  private static final int BODY_MEMO_LIMIT = 1 << 10;
+
+  private final Cache<Body, BodyMemo> bodyMemos
+      = CacheBuilder.newBuilder().weakKeys().maximumSize(BODY_MEMO_LIMIT).build();
+
+  /** The memo of the body whose statements were looked up last, by any thread. */
+  private volatile BodyMemo lastMemo;
+
+  /**
+   * The throw sets of the statements of one body, valid as long as the modification count of the body is the one they
+   * were computed for. A body whose count has changed gets a new memo.
+   */
+  private static final class BodyMemo {
+    final WeakReference<Body> body;
+    final long modificationCount;
+    final ConcurrentHashMap<Unit, UnitMemo> unitToMemo = new ConcurrentHashMap<Unit, UnitMemo>();
+
+    BodyMemo(Body body, long modificationCount) {
+      this.body = new WeakReference<Body>(body);
+      this.modificationCount = modificationCount;
+    }
+  }
+
+  /**
+   * The throw set of a statement, with the boxes of the statement and the values they held, the types of these values and
+   * the method the statement invokes, if any. The throw set only depends on these. A box whose value is replaced still
+   * belongs to the statement, and the boxes of the new value are only reached through it, so checking the remembered
+   * boxes finds every replacement without asking the statement for its boxes again.
+   */
+  private static final class UnitMemo {
+    final ValueBox[] boxes;
+    final Value[] values;
+    final Type[] types;
+    final InvokeExpr invoke;
+    final SootMethodRef methodRef;
+    final ThrowableSet result;
+
+    UnitMemo(Stmt s, ThrowableSet result) {
+      List<ValueBox> boxList = s.getUseAndDefBoxes();
+      this.boxes = boxList.toArray(new ValueBox[boxList.size()]);
+      this.values = new Value[boxes.length];
+      this.types = new Type[boxes.length];
+      for (int i = 0; i < boxes.length; i++) {
+        values[i] = boxes[i].getValue();
+        types[i] = values[i].getType();
+      }
+      this.invoke = s.containsInvokeExpr() ? s.getInvokeExpr() : null;
+      this.methodRef = invoke == null ? null : invoke.getMethodRef();
+      this.result = result;
+    }
+
+    /** Compares by identity, since the throw set must be recomputed once a value or a type has been replaced. */
+    boolean isCurrent() {
+      for (int i = 0; i < boxes.length; i++) {
+        Value v = boxes[i].getValue();
+        if (v != values[i] || v.getType() != types[i]) {
+          return false;
+        }
+      }
+      return invoke == null || invoke.getMethodRef() == methodRef;
+    }
+  }
+
   public ThrowableSet mightThrowImplicitly(ThrowInst t) {
     return implicitThrowExceptions;
   }
@@ -314,16 +430,93 @@ public class UnitThrowAnalysis extends AbstractThrowAnalysis {
     if (!isInterproc) {
       return ThrowableSet.Manager.v().ALL_THROWABLES;
     }
-    return methodToThrowSet.getUnchecked(sm);
+    return getThrowSummary(sm).getInferred();
+  }
+
+  protected final Cache<SootMethod, MethodThrowSummary> methodToThrowSummary = IDESolver.DEFAULT_CACHE_BUILDER.build();
+
+  /**
+   * Returns what is known about the exceptions of the specified method. The summary is computed again once the active
+   * body of the method, or in the interprocedural case of one of the methods it calls transitively, has been replaced or
+   * units, locals or traps have been added to or removed from it.
+   *
+   * @param sm
+   *          method whose exceptions are to be returned.
+   *
+   * @return the exceptions declared by <code>sm</code> and, if this analysis is interprocedural, those inferred from
+   * its body.
+   */
+  public MethodThrowSummary getThrowSummary(SootMethod sm) {
+    MethodThrowSummary summary = methodToThrowSummary.getIfPresent(sm);
+    if (summary == null || !summary.isCurrent()) {
+      ThrowableSet declared = mgr.EMPTY;
+      for (SootClass exception : sm.getExceptions()) {
+        declared = declared.add(AnySubType.v(exception.getType()));
+      }
+      // The methods whose bodies the inferred exceptions depend on, sm first
+      Set<SootMethod> doneSet = new LinkedHashSet<SootMethod>();
+      ThrowableSet inferred = null;
+      if (isInterproc) {
+        inferred = mightThrow(sm, doneSet);
+      } else {
+        doneSet.add(sm);
+      }
+      summary = new MethodThrowSummary(declared, inferred, doneSet);
+      methodToThrowSummary.put(sm, summary);
+    }
+    return summary;
   }
 
-  protected final LoadingCache<SootMethod, ThrowableSet> methodToThrowSet
-      = IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<SootMethod, ThrowableSet>() {
-        @Override
-        public ThrowableSet load(SootMethod sm) throws Exception {
-          return mightThrow(sm, new HashSet<SootMethod>());
+  /**
+   * The exceptions of a method, as returned by {@link UnitThrowAnalysis#getThrowSummary(SootMethod)}.
+   */
+  public static final class MethodThrowSummary {
+    private final ThrowableSet declared;
+    private final ThrowableSet inferred;
+    private final SootMethod[] methods;
+    private final Body[] bodies;
+    private final long[] modificationCounts;
+
+    MethodThrowSummary(ThrowableSet declared, ThrowableSet inferred, Collection<SootMethod> methods) {
+      this.declared = declared;
+      this.inferred = inferred;
+      this.methods = methods.toArray(new SootMethod[methods.size()]);
+      this.bodies = new Body[this.methods.length];
+      this.modificationCounts = new long[this.methods.length];
+      for (int i = 0; i < this.methods.length; i++) {
+        if (this.methods[i].hasActiveBody()) {
+          bodies[i] = this.methods[i].getActiveBody();
+          modificationCounts[i] = bodies[i].getModificationCount();
         }
-      });
+      }
+    }
+
+    /**
+     * Returns the exceptions listed in the <code>throws</code> clause of the method, including their subtypes.
+     */
+    public ThrowableSet getDeclared() {
+      return declared;
+    }
+
+    /**
+     * Returns the exceptions that calls of the method might throw as inferred from its body and the bodies of the
+     * methods it calls, or <code>null</code> if the summary was computed by an analysis which is not interprocedural.
+     */
+    public ThrowableSet getInferred() {
+      return inferred;
+    }
+
+    /** Indicates whether the bodies of the method and of the callees the summary was inferred from are unchanged. */
+    boolean isCurrent() {
+      for (int i = 0; i < methods.length; i++) {
+        Body current = methods[i].hasActiveBody() ? methods[i].getActiveBody() : null;
+        if (current != bodies[i] || (current != null && current.getModificationCount() != modificationCounts[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 
   /**
    * Returns the set of types that might be thrown as a result of calling the specified method.
@@ -376,7 +569,7 @@ public class UnitThrowAnalysis extends AbstractThrowAnalysis {
             InvokeExpr inv = stmt.getInvokeExpr();
             curStmtSet = mightThrow(inv.getMethod(), doneSet);
           } else {
-            curStmtSet = mightThrow(u);
+            curStmtSet = mightThrow(u, methodBody);
           }
 
           // The exception might be caught along the way
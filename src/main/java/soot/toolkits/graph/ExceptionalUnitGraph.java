@@ -54,6 +54,7 @@ import soot.jimple.ThrowStmt;
 import soot.options.Options;
 import soot.toolkits.exceptions.ThrowAnalysis;
 import soot.toolkits.exceptions.ThrowableSet;
+import soot.toolkits.exceptions.UnitThrowAnalysis;
 import soot.util.ArraySet;
 import soot.util.Chain;
 
@@ -284,7 +285,7 @@ public class ExceptionalUnitGraph extends UnitGraph implements ExceptionalGraph<
         Unit unit = unitIt.next();
         ThrowableSet thrownSet = unitToUncaughtThrowables.get(unit);
         if (thrownSet == null) {
-          thrownSet = throwAnalysis.mightThrow(unit);
+          thrownSet = mightThrow(throwAnalysis, unit);
         }
 
         ThrowableSet.Pair catchableAs = thrownSet.whichCatchableAs(catcher);
@@ -314,6 +315,17 @@ public class ExceptionalUnitGraph extends UnitGraph implements ExceptionalGraph<
     return result;
   }
 
+  /**
+   * Returns the exceptions the given unit of this graph's body might throw, letting a {@link UnitThrowAnalysis}
+   * remember them for the body so that graphs built later for the same body need not analyze the unit again.
+   */
+  private ThrowableSet mightThrow(ThrowAnalysis throwAnalysis, Unit u) {
+    if (throwAnalysis instanceof UnitThrowAnalysis) {
+      return ((UnitThrowAnalysis) throwAnalysis).mightThrow(u, body);
+    }
+    return throwAnalysis.mightThrow(u);
+  }
+
   /**
    * A utility method for recording the exceptions that a <code>Unit</code> throws to a particular <code>Trap</code>. Note
    * that this method relies on the fact that the call to add escaping exceptions for a <code>Unit</code> will always follow
@@ -686,7 +698,7 @@ public class ExceptionalUnitGraph extends UnitGraph implements ExceptionalGraph<
         @Override
         public ThrowableSet getThrowables() {
           if (null == throwables) {
-            throwables = throwAnalysis.mightThrow(u);
+            throwables = mightThrow(throwAnalysis, u);
           }
           return throwables;
         }
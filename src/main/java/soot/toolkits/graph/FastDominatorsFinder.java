@@ -0,0 +1,333 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates dominators with the algorithm of Lengauer and Tarjan, "A Fast Algorithm for Finding Dominators in a
+ * Flowgraph" (TOPLAS 1979), in its simple version with path compression. Unlike {@link MHGDominatorsFinder}, which
+ * iterates over a bit set per node until a fixed point is reached, the time taken is O(m log n) and the memory used is
+ * linear in the size of the graph, so it remains usable on methods with tens of thousands of blocks.
+ *
+ * <p>
+ * Nodes are numbered once and all further work is done on int arrays. Graphs with several heads are handled as if a
+ * virtual root preceded all heads, which gives the same dominators as {@link MHGDominatorsFinder} for all nodes that
+ * can be reached from a head. A node that cannot be reached from any head is only dominated by itself, so it has no
+ * immediate dominator and is the root of a tree of its own in a {@link DominatorTree}. {@link MHGDominatorsFinder} and
+ * {@link SimpleDominatorsFinder} instead let every node dominate such a node.
+ * </p>
+ *
+ * <p>
+ * The immediate dominator of a node and whether one node dominates another are answered in constant time, the latter by
+ * comparing the pre- and postorder numbers of the nodes in the dominator tree.
+ * </p>
+ *
+ * @see FastPostDominatorsFinder
+ **/
+public class FastDominatorsFinder<N> implements DominatorsFinder<N> {
+  protected final DirectedGraph<N> graph;
+
+  /** The nodes in the order of the graph's iterator. */
+  protected final N[] nodes;
+  protected final Map<N, Integer> nodeToIndex;
+
+  /** The index of the immediate dominator of each node, or -1 if it has none. */
+  protected final int[] idom;
+
+  /** Preorder and postorder numbers in the dominator tree, or -1 for nodes that cannot be reached. */
+  protected final int[] treePre;
+  protected final int[] treePost;
+
+  @SuppressWarnings("unchecked")
+  public FastDominatorsFinder(DirectedGraph<N> graph) {
+    this.graph = graph;
+    int n = graph.size();
+    nodes = (N[]) new Object[n];
+    nodeToIndex = new HashMap<N, Integer>(n * 2 + 1, 0.7f);
+    int i = 0;
+    for (N node : graph) {
+      nodes[i] = node;
+      nodeToIndex.put(node, i++);
+    }
+    idom = new int[n];
+    treePre = new int[n];
+    treePost = new int[n];
+    doAnalysis();
+  }
+
+  protected void doAnalysis() {
+    final int n = nodes.length;
+    // the virtual root that precedes all heads has index n
+    final int root = n;
+
+    // successors and predecessors as compressed rows; the root is the only predecessor it adds
+    int[] succOffsets = new int[n + 2];
+    int[] predOffsets = new int[n + 2];
+    List<N> heads = graph.getHeads();
+    int succCount = heads.size();
+    int predCount = heads.size();
+    for (int v = 0; v < n; v++) {
+      succCount += graph.getSuccsOf(nodes[v]).size();
+      predCount += graph.getPredsOf(nodes[v]).size();
+    }
+    int[] succs = new int[succCount];
+    int[] preds = new int[predCount];
+    boolean[] isHead = new boolean[n];
+    for (N h : heads) {
+      isHead[indexOf(h)] = true;
+    }
+    int s = 0;
+    int p = 0;
+    for (int v = 0; v < n; v++) {
+      succOffsets[v] = s;
+      for (N succ : graph.getSuccsOf(nodes[v])) {
+        succs[s++] = indexOf(succ);
+      }
+      predOffsets[v] = p;
+      if (isHead[v]) {
+        preds[p++] = root;
+      }
+      for (N pred : graph.getPredsOf(nodes[v])) {
+        preds[p++] = indexOf(pred);
+      }
+    }
+    succOffsets[n] = s;
+    for (N h : heads) {
+      succs[s++] = indexOf(h);
+    }
+    succOffsets[n + 1] = s;
+    predOffsets[n] = p;
+    predOffsets[n + 1] = p;
+
+    // depth-first numbering from the root
+    int[] dfnum = new int[n + 1];
+    Arrays.fill(dfnum, -1);
+    int[] vertex = new int[n + 1];
+    int[] parent = new int[n + 1];
+    int[] stack = new int[n + 1];
+    int[] nextSucc = new int[n + 1];
+    int count = 0;
+    int top = 0;
+    stack[top++] = root;
+    dfnum[root] = count;
+    vertex[count++] = root;
+    parent[root] = -1;
+    nextSucc[root] = succOffsets[root];
+    while (top > 0) {
+      int v = stack[top - 1];
+      if (nextSucc[v] < succOffsets[v + 1]) {
+        int w = succs[nextSucc[v]++];
+        if (dfnum[w] < 0) {
+          dfnum[w] = count;
+          vertex[count++] = w;
+          parent[w] = v;
+          nextSucc[w] = succOffsets[w];
+          stack[top++] = w;
+        }
+      } else {
+        top--;
+      }
+    }
+
+    // semi-dominators, evaluated over a forest that is linked in reverse preorder
+    int[] semi = new int[n + 1];
+    int[] label = new int[n + 1];
+    int[] ancestor = new int[n + 1];
+    int[] dom = new int[n + 1];
+    int[] bucketHead = new int[n + 1];
+    int[] bucketNext = new int[n + 1];
+    for (int v = 0; v <= n; v++) {
+      semi[v] = dfnum[v];
+      label[v] = v;
+      ancestor[v] = -1;
+      bucketHead[v] = -1;
+    }
+    for (int i = count - 1; i > 0; i--) {
+      int w = vertex[i];
+      for (int j = predOffsets[w]; j < predOffsets[w + 1]; j++) {
+        int v = preds[j];
+        if (dfnum[v] < 0) {
+          // predecessors that cannot be reached do not constrain dominance
+          continue;
+        }
+        int u = eval(v, ancestor, label, semi, stack);
+        if (semi[u] < semi[w]) {
+          semi[w] = semi[u];
+        }
+      }
+      int semiVertex = vertex[semi[w]];
+      bucketNext[w] = bucketHead[semiVertex];
+      bucketHead[semiVertex] = w;
+
+      int pw = parent[w];
+      ancestor[w] = pw;
+      for (int v = bucketHead[pw]; v >= 0; v = bucketNext[v]) {
+        int u = eval(v, ancestor, label, semi, stack);
+        dom[v] = semi[u] < semi[v] ? u : pw;
+      }
+      bucketHead[pw] = -1;
+    }
+    for (int i = 1; i < count; i++) {
+      int w = vertex[i];
+      if (dom[w] != vertex[semi[w]]) {
+        dom[w] = dom[dom[w]];
+      }
+    }
+
+    for (int v = 0; v < n; v++) {
+      idom[v] = dfnum[v] <= 0 || dom[v] == root ? -1 : dom[v];
+    }
+    numberTree(dom, vertex, count, stack);
+  }
+
+  /**
+   * Returns the node with the smallest semi-dominator on the path from v to the root of its tree in the forest,
+   * compressing the path on the way. The given stack is used as scratch space instead of recursion.
+   */
+  private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] stack) {
+    if (ancestor[v] < 0) {
+      return v;
+    }
+    int top = 0;
+    for (int x = v; ancestor[ancestor[x]] >= 0; x = ancestor[x]) {
+      stack[top++] = x;
+    }
+    while (top > 0) {
+      int x = stack[--top];
+      int a = ancestor[x];
+      if (semi[label[a]] < semi[label[x]]) {
+        label[x] = label[a];
+      }
+      ancestor[x] = ancestor[a];
+    }
+    return label[v];
+  }
+
+  /** Numbers the nodes of the dominator tree given by dom in pre- and postorder. */
+  private void numberTree(int[] dom, int[] vertex, int count, int[] stack) {
+    final int n = nodes.length;
+    int[] childHead = new int[n + 1];
+    int[] childNext = new int[n + 1];
+    Arrays.fill(childHead, -1);
+    Arrays.fill(treePre, -1);
+    Arrays.fill(treePost, -1);
+    // in reverse preorder, so that children are visited in preorder
+    for (int i = count - 1; i > 0; i--) {
+      int w = vertex[i];
+      childNext[w] = childHead[dom[w]];
+      childHead[dom[w]] = w;
+    }
+    int pre = 0;
+    int post = 0;
+    int top = 0;
+    // the root is never numbered, it only starts the traversal
+    stack[top++] = n;
+    int[] nextChild = childHead.clone();
+    while (top > 0) {
+      int v = stack[top - 1];
+      int c = nextChild[v];
+      if (c >= 0) {
+        nextChild[v] = childNext[c];
+        treePre[c] = pre++;
+        stack[top++] = c;
+      } else {
+        top--;
+        if (v != n) {
+          treePost[v] = post++;
+        }
+      }
+    }
+  }
+
+  protected int indexOf(N node) {
+    Integer index = nodeToIndex.get(node);
+    if (index == null) {
+      throw new RuntimeException("Node is not in the graph: " + node);
+    }
+    return index;
+  }
+
+  @Override
+  public DirectedGraph<N> getGraph() {
+    return graph;
+  }
+
+  /**
+   * Returns the dominators of the given node, starting with the outermost one and ending with the node itself.
+   **/
+  @Override
+  public List<N> getDominators(N node) {
+    int v = indexOf(node);
+    int depth = 1;
+    for (int d = idom[v]; d >= 0; d = idom[d]) {
+      depth++;
+    }
+    final int[] chain = new int[depth];
+    for (int d = v; d >= 0; d = idom[d]) {
+      chain[--depth] = d;
+    }
+    return new AbstractList<N>() {
+      @Override
+      public N get(int i) {
+        return nodes[chain[i]];
+      }
+
+      @Override
+      public int size() {
+        return chain.length;
+      }
+    };
+  }
+
+  @Override
+  public N getImmediateDominator(N node) {
+    int d = idom[indexOf(node)];
+    return d < 0 ? null : nodes[d];
+  }
+
+  @Override
+  public boolean isDominatedBy(N node, N dominator) {
+    int v = indexOf(node);
+    int d = indexOf(dominator);
+    if (v == d) {
+      return true;
+    }
+    return treePre[v] >= 0 && treePre[d] >= 0 && treePre[d] < treePre[v] && treePost[v] < treePost[d];
+  }
+
+  @Override
+  public boolean isDominatedByAll(N node, Collection<N> dominators) {
+    for (N dominator : dominators) {
+      if (!isDominatedBy(node, dominator)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
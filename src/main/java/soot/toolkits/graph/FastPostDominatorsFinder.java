@@ -0,0 +1,37 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Post-dominators finder based on {@link FastDominatorsFinder}. The dominators returned by this finder are
+ * postdominators, so e.g. {@link #getDominators(Object)} returns all post-dominators. Graphs with several tails are
+ * handled as if a virtual exit followed all tails. A node from which no tail can be reached, such as a node of a loop
+ * that never exits, is only post-dominated by itself.
+ **/
+public class FastPostDominatorsFinder<N> extends FastDominatorsFinder<N> {
+
+  public FastPostDominatorsFinder(DirectedGraph<N> graph) {
+    super(new InverseGraph<N>(graph));
+  }
+
+}
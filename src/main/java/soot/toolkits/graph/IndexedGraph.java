@@ -0,0 +1,56 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * A directed graph whose nodes are numbered densely from <tt>0</tt> to <tt>size() - 1</tt>, so that its edges can also
+ * be walked by index without hashing the nodes or allocating lists.
+ *
+ * @param N
+ *          node type
+ */
+public interface IndexedGraph<N> extends DirectedGraph<N> {
+  /** Returns the index of the given node, or <tt>-1</tt> if it is not part of this graph. */
+  public int indexOf(N node);
+
+  /** Returns the node with the given index. */
+  public N getNode(int index);
+
+  /** Returns the indices of the entry points of this graph, in the order of {@link #getHeads()}. */
+  public int[] getHeadIndices();
+
+  /** Returns the indices of the exit points of this graph, in the order of {@link #getTails()}. */
+  public int[] getTailIndices();
+
+  /** Returns the number of predecessors of the node with the given index. */
+  public int getPredCount(int index);
+
+  /** Returns the index of the <tt>k</tt>-th predecessor of the node with the given index. */
+  public int getPred(int index, int k);
+
+  /** Returns the number of successors of the node with the given index. */
+  public int getSuccCount(int index);
+
+  /** Returns the index of the <tt>k</tt>-th successor of the node with the given index. */
+  public int getSucc(int index, int k);
+}
@@ -0,0 +1,373 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import soot.Body;
+import soot.Timers;
+import soot.Unit;
+import soot.UnitBox;
+import soot.options.Options;
+
+/**
+ * A {@link UnitGraph} that numbers the units of a body once, in the order of the body's unit chain, and keeps its edges
+ * in int arrays in compressed sparse row form instead of maps from units to lists. Besides the {@link DirectedGraph}
+ * queries, which return small read-only views over these arrays, the edges can be walked by index through
+ * {@link IndexedGraph}; {@link soot.toolkits.scalar.FlowAnalysis} does so when it orders the nodes of such a graph.
+ *
+ * <p>
+ * A graph built from a {@link Body} has the same edges, heads and tails as a {@link BriefUnitGraph}. A graph built from
+ * another {@link UnitGraph} copies the edges, heads and tails of that graph. The exceptional edges of an {@link
+ * ExceptionalUnitGraph} become plain edges of the copy, so analyses that need to tell them apart should keep using the
+ * original graph. Like the other unit graphs, this graph does not follow later changes to the body.
+ * </p>
+ *
+ * <p>
+ * As in {@link UnitGraph}, a unit that is not in the graph has no predecessors or successors.
+ * </p>
+ *
+ * <p>
+ * The maps {@link #unitToSuccs} and {@link #unitToPreds} inherited from {@link UnitGraph} are not used and remain
+ * <code>null</code>.
+ * </p>
+ */
+public class IndexedUnitGraph extends UnitGraph implements IndexedGraph<Unit> {
+  /** The units in the order of the body's unit chain. */
+  protected final Unit[] units;
+
+  /** An open addressing table from units, compared by identity, to their indices. */
+  private final Unit[] tableKeys;
+  private final int[] tableValues;
+
+  /**
+   * The successors of the unit with index <tt>i</tt> are at <tt>succs[succStart[i]]</tt> up to, but excluding,
+   * <tt>succs[succStart[i + 1]]</tt>, and likewise for the predecessors.
+   */
+  protected final int[] succStart;
+  protected final int[] succs;
+  protected final int[] predStart;
+  protected final int[] preds;
+
+  protected final int[] headIndices;
+  protected final int[] tailIndices;
+
+  /**
+   * Constructs a graph without exceptional edges for the given body.
+   *
+   * @param body
+   *          The underlying body we want to make a graph for.
+   */
+  public IndexedUnitGraph(Body body) {
+    this(body, null);
+    soot.util.PhaseDumper.v().dumpGraph(this, body);
+  }
+
+  /**
+   * Constructs a graph with the same edges, heads and tails as the given graph.
+   *
+   * @param graph
+   *          The graph to copy.
+   */
+  public IndexedUnitGraph(UnitGraph graph) {
+    this(graph.getBody(), graph);
+  }
+
+  private IndexedUnitGraph(Body body, UnitGraph source) {
+    super(body);
+
+    if (Options.v().time()) {
+      Timers.v().graphTimer.start();
+    }
+
+    final int n = unitChain.size();
+    units = unitChain.toArray(new Unit[n]);
+
+    int capacity = 4;
+    while (capacity < n * 2) {
+      capacity <<= 1;
+    }
+    tableKeys = new Unit[capacity];
+    tableValues = new int[capacity];
+    for (int i = 0; i < n; i++) {
+      int slot = slotOf(units[i]);
+      tableKeys[slot] = units[i];
+      tableValues[slot] = i;
+    }
+
+    succStart = new int[n + 1];
+    predStart = new int[n + 1];
+    if (source == null) {
+      succs = buildUnexceptionalSuccs();
+      preds = transpose(succStart, succs, predStart);
+      headIndices = buildHeads();
+      tailIndices = buildTails();
+    } else {
+      succs = copyEdges(source, false, succStart);
+      preds = copyEdges(source, true, predStart);
+      headIndices = indicesOf(source.getHeads());
+      tailIndices = indicesOf(source.getTails());
+    }
+    heads = new UnitList(headIndices, 0, headIndices.length);
+    tails = new UnitList(tailIndices, 0, tailIndices.length);
+
+    if (Options.v().time()) {
+      Timers.v().graphTimer.end();
+    }
+  }
+
+  private int slotOf(Unit u) {
+    final int mask = tableKeys.length - 1;
+    int h = System.identityHashCode(u) * 0x9E3779B9;
+    int slot = (h ^ (h >>> 16)) & mask;
+    for (Unit key; (key = tableKeys[slot]) != null && key != u;) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int indexOfOrFail(Unit u) {
+    int i = indexOf(u);
+    if (i < 0) {
+      throw new RuntimeException("Unit is not in the body of " + method + ": " + u);
+    }
+    return i;
+  }
+
+  private int[] indicesOf(List<Unit> list) {
+    int[] result = new int[list.size()];
+    for (int k = 0; k < result.length; k++) {
+      result[k] = indexOfOrFail(list.get(k));
+    }
+    return result;
+  }
+
+  /**
+   * Computes the edges of unexceptional control flow, in the same order as
+   * {@link UnitGraph#buildUnexceptionalEdges(java.util.Map, java.util.Map)}.
+   */
+  private int[] buildUnexceptionalSuccs() {
+    final int n = units.length;
+    int[] buf = new int[n + 1];
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      succStart[i] = m;
+      Unit u = units[i];
+      if (u.fallsThrough() && i + 1 < n) {
+        buf[m++] = i + 1;
+      }
+      if (u.branches()) {
+        for (UnitBox box : u.getUnitBoxes()) {
+          int target = indexOfOrFail(box.getUnit());
+          // Arbitrary bytecode can branch to the same target it falls through to
+          if (!contains(buf, succStart[i], m, target)) {
+            if (m == buf.length) {
+              buf = Arrays.copyOf(buf, m * 2);
+            }
+            buf[m++] = target;
+          }
+        }
+      }
+      if (m + 1 >= buf.length) {
+        buf = Arrays.copyOf(buf, m * 2 + 2);
+      }
+    }
+    succStart[n] = m;
+    return Arrays.copyOf(buf, m);
+  }
+
+  private static boolean contains(int[] a, int from, int to, int value) {
+    for (int k = from; k < to; k++) {
+      if (a[k] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the reversed edges, ordered by source index, and fills in their start offsets. */
+  private static int[] transpose(int[] start, int[] edges, int[] reversedStart) {
+    final int n = start.length - 1;
+    for (int e : edges) {
+      reversedStart[e + 1]++;
+    }
+    for (int i = 0; i < n; i++) {
+      reversedStart[i + 1] += reversedStart[i];
+    }
+    int[] next = Arrays.copyOf(reversedStart, n);
+    int[] reversed = new int[edges.length];
+    for (int i = 0; i < n; i++) {
+      for (int k = start[i]; k < start[i + 1]; k++) {
+        reversed[next[edges[k]]++] = i;
+      }
+    }
+    return reversed;
+  }
+
+  private int[] copyEdges(UnitGraph source, boolean backward, int[] start) {
+    final int n = units.length;
+    int[] buf = new int[n + 1];
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      start[i] = m;
+      for (Unit u : backward ? source.getPredsOf(units[i]) : source.getSuccsOf(units[i])) {
+        if (m == buf.length) {
+          buf = Arrays.copyOf(buf, m * 2);
+        }
+        buf[m++] = indexOfOrFail(u);
+      }
+    }
+    start[n] = m;
+    return Arrays.copyOf(buf, m);
+  }
+
+  /** The units without predecessors, followed by the first unit if it has predecessors, as in {@link UnitGraph}. */
+  private int[] buildHeads() {
+    final int n = units.length;
+    int[] result = new int[n + 1];
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      if (predStart[i] == predStart[i + 1]) {
+        result[count++] = i;
+      }
+    }
+    if (n > 0 && predStart[0] != predStart[1]) {
+      result[count++] = 0;
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private int[] buildTails() {
+    final int n = units.length;
+    int[] result = new int[n];
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      if (succStart[i] == succStart[i + 1]) {
+        result[count++] = i;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  /** A read-only view of a range of an index array as a list of units. */
+  private class UnitList extends AbstractList<Unit> implements RandomAccess {
+    private final int[] indices;
+    private final int from;
+    private final int to;
+
+    UnitList(int[] indices, int from, int to) {
+      this.indices = indices;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Unit get(int k) {
+      if (k < 0 || k >= to - from) {
+        throw new IndexOutOfBoundsException(String.valueOf(k));
+      }
+      return units[indices[from + k]];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+  /* DirectedGraph implementation */
+  @Override
+  public List<Unit> getPredsOf(Unit u) {
+    int i = indexOf(u);
+    if (i < 0 || predStart[i] == predStart[i + 1]) {
+      return Collections.emptyList();
+    }
+    return new UnitList(preds, predStart[i], predStart[i + 1]);
+  }
+
+  @Override
+  public List<Unit> getSuccsOf(Unit u) {
+    int i = indexOf(u);
+    if (i < 0 || succStart[i] == succStart[i + 1]) {
+      return Collections.emptyList();
+    }
+    return new UnitList(succs, succStart[i], succStart[i + 1]);
+  }
+
+  @Override
+  public int size() {
+    return units.length;
+  }
+
+  @Override
+  public Iterator<Unit> iterator() {
+    return Collections.unmodifiableList(Arrays.asList(units)).iterator();
+  }
+
+  /* IndexedGraph implementation */
+  @Override
+  public int indexOf(Unit u) {
+    int slot = slotOf(u);
+    return tableKeys[slot] == null ? -1 : tableValues[slot];
+  }
+
+  @Override
+  public Unit getNode(int index) {
+    return units[index];
+  }
+
+  @Override
+  public int[] getHeadIndices() {
+    return headIndices.clone();
+  }
+
+  @Override
+  public int[] getTailIndices() {
+    return tailIndices.clone();
+  }
+
+  @Override
+  public int getPredCount(int index) {
+    return predStart[index + 1] - predStart[index];
+  }
+
+  @Override
+  public int getPred(int index, int k) {
+    return preds[predStart[index] + k];
+  }
+
+  @Override
+  public int getSuccCount(int index) {
+    return succStart[index + 1] - succStart[index];
+  }
+
+  @Override
+  public int getSucc(int index, int k) {
+    return succs[succStart[index] + k];
+  }
+}
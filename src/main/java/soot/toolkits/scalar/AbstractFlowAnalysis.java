@@ -51,7 +51,12 @@ public abstract class AbstractFlowAnalysis<N, A> {
 
   /** Constructs a flow analysis on the given <code>DirectedGraph</code>. */
   public AbstractFlowAnalysis(DirectedGraph<N> graph) {
-    unitToBeforeFlow = new IdentityHashMap<N, A>(graph.size() * 2 + 1);
+    this(graph, new IdentityHashMap<N, A>(graph.size() * 2 + 1));
+  }
+
+  /** Constructs a flow analysis on the given <code>DirectedGraph</code> that keeps its IN sets in the given map. */
+  AbstractFlowAnalysis(DirectedGraph<N> graph, Map<N, A> unitToBeforeFlow) {
+    this.unitToBeforeFlow = unitToBeforeFlow;
     this.graph = graph;
     if (Options.v().interactive_mode()) {
       InteractionHandler.v().handleCfgEvent(graph);
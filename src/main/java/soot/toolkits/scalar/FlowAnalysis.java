@@ -22,6 +22,7 @@ package soot.toolkits.scalar;
  * #L%
  */
 
+import java.util.AbstractMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,6 +31,7 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -40,6 +42,7 @@ import soot.baf.GotoInst;
 import soot.jimple.GotoStmt;
 import soot.options.Options;
 import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.IndexedGraph;
 import soot.toolkits.graph.interaction.FlowInfo;
 import soot.toolkits.graph.interaction.InteractionHandler;
 import soot.util.Numberable;
@@ -72,6 +75,11 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
     final D data;
     int number;
 
+    /**
+     * The index of the node in an {@link IndexedGraph}, or <code>-1</code>.
+     */
+    int index;
+
     /**
      * This Entry is part of a real scc.
      */
@@ -86,6 +94,7 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
     Entry(D u, Entry<D, F> pred) {
       in = new Entry[] { pred };
       data = u;
+      index = -1;
       number = Integer.MIN_VALUE;
       isRealStronglyConnected = false;
     }
@@ -112,19 +121,29 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
     /**
      * Creates a new {@code Entry} graph based on a {@code DirectedGraph}. This includes pseudo topological order, local
      * access for predecessors and successors, a graph entry-point, a {@code Numberable} interface and a real strongly
-     * connected component marker.
+     * connected component marker. If the graph is an {@code IndexedGraph}, its edges are walked by index and the
+     * entries are kept in an array instead of a map from nodes.
      *
      * @param g
      * @param gv
      * @param entryFlow
-     * @return
+     * @return the entries in reverse post-order
      */
-    <D, F> List<Entry<D, F>> newUniverse(DirectedGraph<D> g, GraphView gv, F entryFlow, boolean isForward) {
+    <D, F> Universe<D, F> newUniverse(DirectedGraph<D> g, GraphView gv, F entryFlow, boolean isForward) {
       final int n = g.size();
 
       Deque<Entry<D, F>> s = new ArrayDeque<Entry<D, F>>(n);
       List<Entry<D, F>> universe = new ArrayList<Entry<D, F>>(n);
-      Map<D, Entry<D, F>> visited = new HashMap<D, Entry<D, F>>(((n + 1) * 4) / 3);
+      final IndexedGraph<D> indexed = g instanceof IndexedGraph ? (IndexedGraph<D>) g : null;
+      Map<D, Entry<D, F>> visited = null;
+      Entry<D, F>[] visitedByIndex = null;
+      if (indexed == null) {
+        visited = new HashMap<D, Entry<D, F>>(((n + 1) * 4) / 3);
+      } else {
+        @SuppressWarnings("unchecked")
+        Entry<D, F>[] a = new Entry[n];
+        visitedByIndex = a;
+      }
 
       // out of universe node
       Entry<D, F> superEntry = new Entry<D, F>(null, null);
@@ -187,7 +206,11 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 
       }
 
-      visitEntry(visited, superEntry, entries);
+      if (indexed == null) {
+        visitEntry(visited, superEntry, entries);
+      } else {
+        visitEntry(indexed, visitedByIndex, superEntry, entries);
+      }
       superEntry.inFlow = entryFlow;
       superEntry.outFlow = entryFlow;
 
@@ -208,7 +231,11 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
             w.number = s.size();
             s.add(w);
 
-            visitEntry(visited, w, gv.getOut(g, w.data));
+            if (indexed == null) {
+              visitEntry(visited, w, gv.getOut(g, w.data));
+            } else {
+              visitEntry(indexed, visitedByIndex, w, gv);
+            }
 
             // save old
             si[index] = i;
@@ -222,7 +249,7 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
           if (index == 0) {
             assert universe.size() <= g.size();
             Collections.reverse(universe);
-            return universe;
+            return new Universe<D, F>(universe, indexed, visitedByIndex, visited);
           }
 
           universe.add(v);
@@ -250,6 +277,44 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
       return v.out = a;
     }
 
+    @SuppressWarnings("unchecked")
+    private <D, F> Entry<D, F>[] visitEntry(IndexedGraph<D> g, Entry<D, F>[] visited, Entry<D, F> v, List<D> out) {
+      int n = out.size();
+      Entry<D, F>[] a = new Entry[n];
+
+      for (int i = 0; i < n; i++) {
+        int index = g.indexOf(out.get(i));
+        if (index < 0) {
+          throw new RuntimeException("error: entry point is not part of the graph: " + out.get(i));
+        }
+        a[i] = getEntryOf(g, visited, index, v);
+      }
+
+      return v.out = a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <D, F> Entry<D, F>[] visitEntry(IndexedGraph<D> g, Entry<D, F>[] visited, Entry<D, F> v, GraphView gv) {
+      int n = gv.getOutCount(g, v.index);
+      Entry<D, F>[] a = new Entry[n];
+
+      for (int i = 0; i < n; i++) {
+        a[i] = getEntryOf(g, visited, gv.getOut(g, v.index, i), v);
+      }
+
+      return v.out = a;
+    }
+
+    private <D, F> Entry<D, F> getEntryOf(IndexedGraph<D> g, Entry<D, F>[] visited, int index, Entry<D, F> v) {
+      Entry<D, F> oldEntry = visited[index];
+      if (oldEntry == null) {
+        Entry<D, F> newEntry = new Entry<D, F>(g.getNode(index), v);
+        newEntry.index = index;
+        return visited[index] = newEntry;
+      }
+      return addIn(oldEntry, v);
+    }
+
     private <D, F> Entry<D, F> getEntryOf(Map<D, Entry<D, F>> visited, D d, Entry<D, F> v) {
       // either we reach a new node or a merge node, the latter one is rare
       // so put and restore should be better that a lookup
@@ -266,7 +331,10 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 
       // false prediction, restore the entry
       visited.put(d, oldEntry);
+      return addIn(oldEntry, v);
+    }
 
+    private <D, F> Entry<D, F> addIn(Entry<D, F> oldEntry, Entry<D, F> v) {
       // adding self ref (real strongly connected with itself)
       if (oldEntry == v) {
         oldEntry.isRealStronglyConnected = true;
@@ -313,6 +381,131 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
     }
   }
 
+  /**
+   * The entries of a graph in reverse post-order, which is also the order of their numbers, together with a lookup from
+   * nodes to entries. The lookup uses the node indices of an {@link IndexedGraph} and otherwise the map built by the
+   * {@link Orderer}.
+   */
+  static class Universe<D, F> {
+    final List<Entry<D, F>> order;
+    private final IndexedGraph<D> indexed;
+    private final Entry<D, F>[] byIndex;
+    private final Map<D, Entry<D, F>> byNode;
+
+    Universe(List<Entry<D, F>> order, IndexedGraph<D> indexed, Entry<D, F>[] byIndex, Map<D, Entry<D, F>> byNode) {
+      this.order = order;
+      this.indexed = indexed;
+      this.byIndex = byIndex;
+      this.byNode = byNode;
+    }
+
+    @SuppressWarnings("unchecked")
+    Entry<D, F> get(Object node) {
+      if (indexed == null) {
+        return byNode.get(node);
+      }
+      int index;
+      try {
+        index = indexed.indexOf((D) node);
+      } catch (ClassCastException e) {
+        return null;
+      }
+      return index < 0 ? null : byIndex[index];
+    }
+  }
+
+  /**
+   * The IN or OUT sets of a flow analysis as a map from nodes. The sets are not copied into the map but read from the
+   * entries of the last run of the analysis. Mappings that are put into the map explicitly are kept separately and take
+   * precedence; running the analysis again replaces those of the nodes in the graph and keeps the others, as a plain map
+   * filled by the analysis would. Going through {@link #entrySet()} turns this into such a plain map for good.
+   */
+  static class FlowMap<N, A> extends AbstractMap<N, A> {
+    private Universe<N, A> universe;
+    private Flow flow;
+    private Map<N, A> overlay;
+
+    void attach(Universe<N, A> universe, Flow flow) {
+      this.universe = universe;
+      this.flow = flow;
+      if (overlay != null) {
+        for (Iterator<N> it = overlay.keySet().iterator(); it.hasNext();) {
+          if (universe.get(it.next()) != null) {
+            it.remove();
+          }
+        }
+        if (overlay.isEmpty()) {
+          overlay = null;
+        }
+      }
+    }
+
+    /**
+     * Copies the flows of the last run into the overlay and forgets the run, so that the overlay holds every mapping.
+     */
+    private Map<N, A> detach() {
+      if (universe != null) {
+        Map<N, A> all = new IdentityHashMap<N, A>();
+        for (FlowAnalysis.Entry<N, A> e : universe.order) {
+          all.put(e.data, flow.getFlow(e));
+        }
+        if (overlay != null) {
+          all.putAll(overlay);
+        }
+        overlay = all;
+        universe = null;
+      } else if (overlay == null) {
+        overlay = new IdentityHashMap<N, A>();
+      }
+      return overlay;
+    }
+
+    @Override
+    public A get(Object key) {
+      if (overlay != null && overlay.containsKey(key)) {
+        return overlay.get(key);
+      }
+      if (universe == null) {
+        return null;
+      }
+      FlowAnalysis.Entry<N, A> e = universe.get(key);
+      return e == null ? null : flow.getFlow(e);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return (overlay != null && overlay.containsKey(key)) || (universe != null && universe.get(key) != null);
+    }
+
+    @Override
+    public A put(N key, A value) {
+      A old = get(key);
+      if (overlay == null) {
+        overlay = new IdentityHashMap<N, A>();
+      }
+      overlay.put(key, value);
+      return old;
+    }
+
+    @Override
+    public int size() {
+      int size = universe == null ? 0 : universe.order.size();
+      if (overlay != null) {
+        for (N key : overlay.keySet()) {
+          if (universe == null || universe.get(key) == null) {
+            size++;
+          }
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public Set<Map.Entry<N, A>> entrySet() {
+      return detach().entrySet();
+    }
+  }
+
   enum InteractionFlowHandler {
     NONE, FORWARD {
       @Override
@@ -382,6 +575,16 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
       <N> List<N> getOut(DirectedGraph<N> g, N s) {
         return g.getPredsOf(s);
       }
+
+      @Override
+      <N> int getOutCount(IndexedGraph<N> g, int index) {
+        return g.getPredCount(index);
+      }
+
+      @Override
+      <N> int getOut(IndexedGraph<N> g, int index, int k) {
+        return g.getPred(index, k);
+      }
     },
     FORWARD {
       @Override
@@ -393,11 +596,25 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
       <N> List<N> getOut(DirectedGraph<N> g, N s) {
         return g.getSuccsOf(s);
       }
+
+      @Override
+      <N> int getOutCount(IndexedGraph<N> g, int index) {
+        return g.getSuccCount(index);
+      }
+
+      @Override
+      <N> int getOut(IndexedGraph<N> g, int index, int k) {
+        return g.getSucc(index, k);
+      }
     };
 
     abstract <N> List<N> getEntries(DirectedGraph<N> g);
 
     abstract <N> List<N> getOut(DirectedGraph<N> g, N s);
+
+    abstract <N> int getOutCount(IndexedGraph<N> g, int index);
+
+    abstract <N> int getOut(IndexedGraph<N> g, int index, int k);
   }
 
   /** Maps graph nodes to OUT sets. */
@@ -408,9 +625,9 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 
   /** Constructs a flow analysis on the given <code>DirectedGraph</code>. */
   public FlowAnalysis(DirectedGraph<N> graph) {
-    super(graph);
+    super(graph, new FlowMap<N, A>());
 
-    unitToAfterFlow = new IdentityHashMap<N, A>(graph.size() * 2 + 1);
+    unitToAfterFlow = new FlowMap<N, A>();
   }
 
   /**
@@ -444,11 +661,16 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
     return a == null ? newInitialFlow() : a;
   }
 
-  private void initFlow(Iterable<Entry<N, A>> universe, Map<N, A> in, Map<N, A> out) {
+  private void initFlow(Universe<N, A> universe, Map<N, A> in, Map<N, A> out) {
     assert universe != null;
     assert in != null;
     assert out != null;
 
+    // The maps created by this class are served from the entries, only
+    // maps installed by subclasses need to be filled for the legacy api.
+    final boolean fillIn = !attach(in, universe, Flow.IN);
+    final boolean fillOut = !attach(out, universe, Flow.OUT);
+
     // If a node has only a single in-flow, the in-flow is always equal
     // to the out-flow if its predecessor, so we use the same object.
     // this saves memory and requires less object creation and copy calls.
@@ -458,7 +680,7 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
     // a real scc cannot be omitted, as it could cause endless loops within
     // the fixpoint-iteration!
 
-    for (Entry<N, A> n : universe) {
+    for (Entry<N, A> n : universe.order) {
       boolean omit = true;
       if (n.in.length > 1) {
         n.inFlow = newInitialFlow();
@@ -480,11 +702,23 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
       }
 
       // for legacy api
-      in.put(n.data, n.inFlow);
-      out.put(n.data, n.outFlow);
+      if (fillIn) {
+        in.put(n.data, n.inFlow);
+      }
+      if (fillOut) {
+        out.put(n.data, n.outFlow);
+      }
     }
   }
 
+  private static <N, A> boolean attach(Map<N, A> map, Universe<N, A> universe, Flow flow) {
+    if (map instanceof FlowMap) {
+      ((FlowMap<N, A>) map).attach(universe, flow);
+      return true;
+    }
+    return false;
+  }
+
   /**
    * If a flow node can be omitted return <code>true</code>, otherwise <code>false</code>. There is no guarantee a node will
    * be omitted. A omissible node does not influence the result of an analysis.
@@ -537,15 +771,21 @@ public abstract class FlowAnalysis<N, A> extends AbstractFlowAnalysis<N, A> {
 
     ifh = Options.v().interactive_mode() ? ifh : InteractionFlowHandler.NONE;
 
-    final List<Entry<N, A>> universe = Orderer.INSTANCE.newUniverse(graph, gv, entryInitialFlow(), isForward());
+    final Universe<N, A> universe = Orderer.INSTANCE.newUniverse(graph, gv, entryInitialFlow(), isForward());
     initFlow(universe, inFlow, outFlow);
 
-    Queue<Entry<N, A>> q = PriorityQueue.of(universe, true);
+    // the worklist is ordered by the entry numbers, i.e. in reverse post-order
+    Queue<Entry<N, A>> q = PriorityQueue.of(universe.order, true);
 
     // Perform fixed point flow analysis
     for (int numComputations = 0;; numComputations++) {
       Entry<N, A> e = q.poll();
       if (e == null) {
+        // the entries are kept to serve the flow sets, but not the edges
+        for (Entry<N, A> d : universe.order) {
+          d.in = null;
+          d.out = null;
+        }
         return numComputations;
       }
 
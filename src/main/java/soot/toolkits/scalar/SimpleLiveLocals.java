@@ -34,6 +34,7 @@ import soot.Value;
 import soot.ValueBox;
 import soot.options.Options;
 import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.IndexedUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 
 /**
@@ -45,12 +46,14 @@ public class SimpleLiveLocals implements LiveLocals {
 
   /**
    * Computes the analysis given a UnitGraph computed from a method body. It is recommended that a ExceptionalUnitGraph (or
-   * similar) be provided for correct results in the case of exceptional control flow.
+   * similar) be provided for correct results in the case of exceptional control flow. If the graph is an
+   * {@link IndexedUnitGraph}, its edges are walked by index.
    *
    * @param graph
    *          a graph on which to compute the analysis.
    *
    * @see ExceptionalUnitGraph
+   * @see IndexedUnitGraph
    */
   public SimpleLiveLocals(UnitGraph graph) {
     if (Options.v().time()) {
@@ -44,6 +44,7 @@ import soot.options.Options;
 import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.ExceptionalGraph;
 import soot.toolkits.graph.ExceptionalGraph.ExceptionDest;
+import soot.toolkits.graph.IndexedGraph;
 import soot.toolkits.graph.UnitGraph;
 
 /**
@@ -144,7 +145,13 @@ public class SimpleLocalDefs implements LocalDefs {
     final int[] localRange;
     final Unit[] universe;
 
+    /**
+     * The position in {@link #universe} of each def point of a local with several def points, by unit or, on an
+     * {@link IndexedGraph}, by node index. Only needed while the analysis runs.
+     */
     private Map<Unit, Integer> indexOfUnit;
+    private int[] indexOfNode;
+    private final IndexedGraph<Unit> indexedGraph;
 
     FlowAssignment(DirectedGraph<Unit> graph, Local[] locals, List<Unit>[] unitList, int units, boolean omitSSA) {
       super(graph);
@@ -155,7 +162,13 @@ public class SimpleLocalDefs implements LocalDefs {
       this.unitList = unitList;
 
       universe = new Unit[units];
-      indexOfUnit = new HashMap<Unit, Integer>(units);
+      if (graph instanceof IndexedGraph) {
+        indexedGraph = (IndexedGraph<Unit>) graph;
+        indexOfNode = new int[graph.size()];
+      } else {
+        indexedGraph = null;
+        indexOfUnit = new HashMap<Unit, Integer>(units);
+      }
 
       localRange = new int[N + 1];
       for (int j = 0, i = 0; i < N; localRange[++i] = j) {
@@ -167,7 +180,11 @@ public class SimpleLocalDefs implements LocalDefs {
 
         if (unitList[i].size() >= 2) {
           for (Unit u : unitList[i]) {
-            indexOfUnit.put(u, j);
+            if (indexedGraph != null) {
+              indexOfNode[indexedGraph.indexOf(u)] = j;
+            } else {
+              indexOfUnit.put(u, j);
+            }
             universe[j++] = u;
           }
         } else if (omitSSA) {
@@ -178,8 +195,8 @@ public class SimpleLocalDefs implements LocalDefs {
 
       doAnalysis();
 
-      indexOfUnit.clear();
       indexOfUnit = null;
+      indexOfNode = null;
     }
 
     @Override
@@ -268,7 +285,7 @@ public class SimpleLocalDefs implements LocalDefs {
             out.set(from);
           } else {
             out.clear(from, to);
-            out.set(indexOfUnit.get(unit));
+            out.set(indexedGraph != null ? indexOfNode[indexedGraph.indexOf(unit)] : indexOfUnit.get(unit));
           }
         }
       }
@@ -0,0 +1,200 @@
+package soot.toolkits.scalar;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.ValueBox;
+import soot.shimple.ShimpleBody;
+import soot.shimple.toolkits.scalar.ShimpleLocalDefs;
+import soot.shimple.toolkits.scalar.ShimpleLocalUses;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Abstract class that provides a sparse fixed point iteration for forward problems whose facts are attached to locals,
+ * such as constant propagation or nullness. Instead of a flow set before and after every unit, as kept by
+ * {@link ForwardFlowAnalysis}, it keeps one value per definition of a local and propagates changes along def-use chains:
+ * a definition is evaluated again only when the value of a definition it uses has changed. Memory and work therefore grow
+ * with the number of definitions and uses, not with the number of units times the number of locals.
+ *
+ * <p>
+ * The value of a local at a use is the {@link #merge(Object, Object) merge} of the values of all definitions that reach
+ * the use. On a {@link ShimpleBody} in SSA form every use has exactly one definition and merging happens only at phi
+ * nodes, which subclasses evaluate like any other definition, so no dense analysis runs at all. On other bodies, reaching
+ * definitions come from {@link LocalDefs}. As with {@link FlowAnalysis}, the lattice must have finite height and
+ * {@link #evaluate(Unit, Local)} must be monotone for the analysis to terminate.
+ * </p>
+ *
+ * <p>
+ * The analysis is flow-insensitive with respect to branch conditions: a definition's value does not depend on which way
+ * an earlier branch went.
+ * </p>
+ *
+ * @param <A>
+ *          the type of the values attached to locals
+ */
+public abstract class SparseForwardFlowAnalysis<A> {
+  protected final Body body;
+  protected final LocalDefs localDefs;
+  protected final LocalUses localUses;
+
+  /** Maps each unit that defines a local to the current value of that local. */
+  private final Map<Unit, A> defToValue;
+
+  /**
+   * Construct the analysis from a UnitGraph. Def-use chains are built with {@link ShimpleLocalDefs} and
+   * {@link ShimpleLocalUses} if the body is a ShimpleBody in SSA form, and with {@link LocalDefs.Factory} and
+   * {@link LocalUses.Factory} otherwise.
+   */
+  public SparseForwardFlowAnalysis(UnitGraph graph) {
+    this(graph.getBody(), isSSA(graph.getBody()) ? new ShimpleLocalDefs((ShimpleBody) graph.getBody())
+        : LocalDefs.Factory.newLocalDefs(graph, true), null);
+  }
+
+  /**
+   * Construct the analysis from a body and def-use chains already computed for it. If localUses is null, it is computed
+   * from localDefs.
+   */
+  public SparseForwardFlowAnalysis(Body body, LocalDefs localDefs, LocalUses localUses) {
+    this.body = body;
+    this.localDefs = localDefs;
+    if (localUses == null) {
+      localUses = isSSA(body) ? new ShimpleLocalUses((ShimpleBody) body) : LocalUses.Factory.newLocalUses(body, localDefs);
+    }
+    this.localUses = localUses;
+    this.defToValue = new HashMap<Unit, A>();
+  }
+
+  private static boolean isSSA(Body body) {
+    return body instanceof ShimpleBody && ((ShimpleBody) body).isSSA();
+  }
+
+  /**
+   * Returns the value of a definition before it has been evaluated, and of a use that no definition reaches. This is
+   * normally the bottom element of the lattice.
+   */
+  protected abstract A newInitialValue();
+
+  /** Returns the least upper bound of two values. Must not modify either argument. */
+  protected abstract A merge(A in1, A in2);
+
+  /**
+   * Computes the value that the given unit assigns to the given local. Implementations look up the values of the locals
+   * the unit uses with {@link #getValueAt(Local, Unit)}. Phi nodes of Shimple bodies are evaluated here as well.
+   *
+   * @param def
+   *          a unit that defines a local
+   * @param l
+   *          the local defined by def
+   */
+  protected abstract A evaluate(Unit def, Local l);
+
+  /**
+   * Returns true if the two values are equal. The default uses {@link Object#equals(Object)}.
+   */
+  protected boolean isEqual(A a, A b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+  /** Runs the analysis. Subclasses call this from their constructor, as with {@link FlowAnalysis#doAnalysis()}. */
+  protected void doAnalysis() {
+    ArrayDeque<Unit> worklist = new ArrayDeque<Unit>();
+    Set<Unit> inWorklist = new HashSet<Unit>();
+    for (Unit u : body.getUnits()) {
+      if (definedLocal(u) != null) {
+        worklist.add(u);
+        inWorklist.add(u);
+      }
+    }
+
+    int evaluations = 0;
+    while (!worklist.isEmpty()) {
+      Unit def = worklist.poll();
+      inWorklist.remove(def);
+      evaluations++;
+
+      A newValue = evaluate(def, definedLocal(def));
+      if (isEqual(getDefinedValue(def), newValue)) {
+        continue;
+      }
+      defToValue.put(def, newValue);
+
+      for (UnitValueBoxPair use : localUses.getUsesOf(def)) {
+        Unit user = use.getUnit();
+        if (definedLocal(user) != null && inWorklist.add(user)) {
+          worklist.add(user);
+        }
+      }
+    }
+
+    soot.Timers.v().totalFlowNodes += defToValue.size();
+    soot.Timers.v().totalFlowComputations += evaluations;
+  }
+
+  /** Returns the local defined by the given unit, or null if it defines none. */
+  protected static Local definedLocal(Unit u) {
+    for (ValueBox box : u.getDefBoxes()) {
+      if (box.getValue() instanceof Local) {
+        return (Local) box.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value the given definition assigns to its local, or the initial value if the unit defines no local.
+   */
+  public A getDefinedValue(Unit def) {
+    A value = defToValue.get(def);
+    return value == null ? newInitialValue() : value;
+  }
+
+  /**
+   * Returns the value of a local where it is used by the given unit: the merge of the values of all definitions of l that
+   * reach u.
+   *
+   * @param l
+   *          a local used by u
+   * @param u
+   *          the unit using l
+   */
+  public A getValueAt(Local l, Unit u) {
+    List<Unit> defs = localDefs.getDefsOfAt(l, u);
+    if (defs == null || defs.isEmpty()) {
+      return newInitialValue();
+    }
+    A value = getDefinedValue(defs.get(0));
+    for (int i = 1; i < defs.size(); i++) {
+      value = merge(value, getDefinedValue(defs.get(i)));
+    }
+    return value;
+  }
+}
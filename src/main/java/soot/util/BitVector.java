@@ -274,6 +274,11 @@ public class BitVector {
     return ret;
   }
 
+  /** Returns the word holding bits 64 * index to 64 * index + 63, or 0 if it lies beyond the underlying array. */
+  public long getWord(int index) {
+    return index < bits.length ? bits[index] : 0L;
+  }
+
   /** Returns number of bits in the underlying array. */
   public int size() {
     return bits.length << 6;
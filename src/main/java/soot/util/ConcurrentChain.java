@@ -0,0 +1,394 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe Chain for chains that are shared between threads, such as the class chains of the {@link soot.Scene}. The
+ * elements are kept in an {@link IndexedChain} guarded by a read-write lock, so that lookups like {@link #contains(Object)}
+ * or {@link #getSuccOf(Object)} from several threads do not block each other, while modifications are exclusive.
+ *
+ * <p>
+ * The iterators returned by this chain iterate the live chain, not a copy. Each call to hasNext() and next() takes the read
+ * lock, and remove() takes the write lock, so an iterator never sees the chain while another thread changes it. As with
+ * {@link HashChain}, they fail with a {@link java.util.ConcurrentModificationException} if the chain is modified other
+ * than through the iterator itself. Use {@link #snapshotIterator()} or {@link #getElementsUnsorted()} to iterate while
+ * other threads modify the chain.
+ * </p>
+ *
+ * @param <E>
+ *          element type
+ */
+public class ConcurrentChain<E> extends AbstractCollection<E> implements Chain<E> {
+  private static final long serialVersionUID = 4419870733158271745L;
+
+  private final IndexedChain<E> chain;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Lock readLock = lock.readLock();
+  private final Lock writeLock = lock.writeLock();
+
+  /** Constructs an empty ConcurrentChain. */
+  public ConcurrentChain() {
+    this.chain = new IndexedChain<E>();
+  }
+
+  /** Constructs a ConcurrentChain filled with the contents of the src Chain. */
+  public ConcurrentChain(Chain<E> src) {
+    this.chain = new IndexedChain<E>(src);
+  }
+
+  @Override
+  public void clear() {
+    writeLock.lock();
+    try {
+      chain.clear();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void swapWith(E out, E in) {
+    writeLock.lock();
+    try {
+      chain.swapWith(out, in);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean add(E item) {
+    writeLock.lock();
+    try {
+      return chain.add(item);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Gets all elements in the chain. There is no guarantee on sorting. The returned collection is a copy taken under the read
+   * lock and can be iterated while the chain is modified.
+   *
+   * @return All elements in the chain in an unsorted collection
+   */
+  @Override
+  public Collection<E> getElementsUnsorted() {
+    readLock.lock();
+    try {
+      return new ArrayList<E>(chain);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean follows(E someObject, E someReferenceObject) {
+    readLock.lock();
+    try {
+      return chain.follows(someObject, someReferenceObject);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    readLock.lock();
+    try {
+      return chain.contains(o);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsAll(Collection<?> c) {
+    readLock.lock();
+    try {
+      return chain.containsAll(c);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public void insertAfter(E toInsert, E point) {
+    writeLock.lock();
+    try {
+      chain.insertAfter(toInsert, point);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void insertAfter(Collection<? extends E> toInsert, E point) {
+    writeLock.lock();
+    try {
+      chain.insertAfter(toInsert, point);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void insertAfter(List<E> toInsert, E point) {
+    insertAfter((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public void insertAfter(Chain<E> toInsert, E point) {
+    insertAfter((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public void insertBefore(E toInsert, E point) {
+    writeLock.lock();
+    try {
+      chain.insertBefore(toInsert, point);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void insertBefore(Collection<? extends E> toInsert, E point) {
+    writeLock.lock();
+    try {
+      chain.insertBefore(toInsert, point);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void insertBefore(List<E> toInsert, E point) {
+    insertBefore((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public void insertBefore(Chain<E> toInsert, E point) {
+    insertBefore((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public boolean remove(Object item) {
+    writeLock.lock();
+    try {
+      return chain.remove(item);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void addFirst(E item) {
+    writeLock.lock();
+    try {
+      chain.addFirst(item);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void addLast(E item) {
+    writeLock.lock();
+    try {
+      chain.addLast(item);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeFirst() {
+    writeLock.lock();
+    try {
+      chain.removeFirst();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeLast() {
+    writeLock.lock();
+    try {
+      chain.removeLast();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public E getFirst() {
+    readLock.lock();
+    try {
+      return chain.getFirst();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public E getLast() {
+    readLock.lock();
+    try {
+      return chain.getLast();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public E getSuccOf(E point) {
+    readLock.lock();
+    try {
+      return chain.getSuccOf(point);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public E getPredOf(E point) {
+    readLock.lock();
+    try {
+      return chain.getPredOf(point);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Iterator<E> snapshotIterator() {
+    return getElementsUnsorted().iterator();
+  }
+
+  /**
+   * Iterates over the underlying chain, taking the read lock to move on and the write lock to remove elements, since the
+   * {@link IndexedChain} reallocates its arrays as it grows.
+   */
+  private class LockedIterator implements Iterator<E> {
+    private final Iterator<E> it;
+
+    LockedIterator(Iterator<E> it) {
+      this.it = it;
+    }
+
+    @Override
+    public boolean hasNext() {
+      readLock.lock();
+      try {
+        return it.hasNext();
+      } finally {
+        readLock.unlock();
+      }
+    }
+
+    @Override
+    public E next() {
+      readLock.lock();
+      try {
+        return it.next();
+      } finally {
+        readLock.unlock();
+      }
+    }
+
+    @Override
+    public void remove() {
+      writeLock.lock();
+      try {
+        it.remove();
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    readLock.lock();
+    try {
+      return new LockedIterator(chain.iterator());
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Iterator<E> iterator(E u) {
+    readLock.lock();
+    try {
+      return new LockedIterator(chain.iterator(u));
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Iterator<E> iterator(E head, E tail) {
+    readLock.lock();
+    try {
+      return new LockedIterator(chain.iterator(head, tail));
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    readLock.lock();
+    try {
+      return chain.size();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    readLock.lock();
+    try {
+      return chain.toString();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public long getModificationCount() {
+    return chain.getModificationCount();
+  }
+}
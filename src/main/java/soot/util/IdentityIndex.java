@@ -0,0 +1,71 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Maps objects to their position in the array the index was built from, by identity. The index is an open-addressing
+ * hash table with linear probing and cannot be changed once built.
+ */
+public class IdentityIndex<T> {
+  private final Object[] keys;
+  private final int[] values;
+  private final int mask;
+
+  public IdentityIndex(T[] objects) {
+    int capacity = Integer.highestOneBit(Math.max(objects.length, 1) * 2 - 1) << 1;
+    keys = new Object[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < objects.length; i++) {
+      int h = hash(objects[i]);
+      while (keys[h] != null && keys[h] != objects[i]) {
+        h = (h + 1) & mask;
+      }
+      if (keys[h] == null) {
+        keys[h] = objects[i];
+        values[h] = i;
+      }
+    }
+  }
+
+  private int hash(Object o) {
+    int h = System.identityHashCode(o);
+    return (h ^ (h >>> 16)) * 0x9E3779B9 & mask;
+  }
+
+  /** Returns the position of the given object in the array, or -1 if it is not in it. */
+  public int indexOf(Object o) {
+    if (o == null) {
+      return -1;
+    }
+    for (int h = hash(o);; h = (h + 1) & mask) {
+      Object k = keys[h];
+      if (k == o) {
+        return values[h];
+      }
+      if (k == null) {
+        return -1;
+      }
+    }
+  }
+}
@@ -0,0 +1,573 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Unsynchronized implementation of the Chain interface for chains that are only used by one thread at a time, such as the
+ * unit, local and trap chains of a method body.
+ *
+ * <p>
+ * Instead of one link object per element, elements live in slots of parallel arrays holding the element and the slot
+ * numbers of its neighbours. An open-addressing table maps elements (by <code>equals</code>, as in {@link HashChain}) to
+ * their slots. Slots of removed elements are reused by later insertions.
+ * </p>
+ *
+ * <p>
+ * This class behaves like {@link HashChain} in every respect except that it performs no locking. Use
+ * {@link ConcurrentChain} for chains that are shared between threads.
+ * </p>
+ *
+ * @param <E>
+ *          element type
+ */
+public class IndexedChain<E> extends AbstractCollection<E> implements Chain<E> {
+  private static final long serialVersionUID = -1937283728117306429L;
+
+  private static final int NONE = -1;
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /** Element stored in each slot, null for free slots. */
+  private Object[] items;
+  /** Slot of the successor of each slot, or the next free slot for free slots. */
+  private int[] next;
+  /** Slot of the predecessor of each slot. */
+  private int[] prev;
+
+  /** Open-addressing table holding slot+1 of each element, 0 for empty buckets. */
+  private int[] table;
+
+  private int first = NONE;
+  private int last = NONE;
+  private int freeList = NONE;
+  /** Number of slots that have ever been used. */
+  private int used = 0;
+  private int size = 0;
+  private long stateCount = 0;
+
+  /** Constructs an empty IndexedChain. */
+  public IndexedChain() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** Constructs an empty IndexedChain that can hold <code>capacity</code> elements without growing. */
+  public IndexedChain(int capacity) {
+    capacity = Math.max(capacity, 2);
+    items = new Object[capacity];
+    next = new int[capacity];
+    prev = new int[capacity];
+    table = new int[tableSizeFor(capacity)];
+  }
+
+  /** Constructs an IndexedChain filled with the contents of the src Chain. */
+  public IndexedChain(Chain<E> src) {
+    this(src.size());
+    addAll(src);
+  }
+
+  private static int tableSizeFor(int capacity) {
+    // keep the load factor at or below 1/2
+    return Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+  }
+
+  private static int hash(Object o) {
+    int h = o.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /** Returns the slot of the given element, or NONE if it is not in this chain. */
+  private int slotOf(Object o) {
+    if (o == null) {
+      return NONE;
+    }
+    final int[] table = this.table;
+    final int mask = table.length - 1;
+    for (int i = hash(o) & mask;; i = (i + 1) & mask) {
+      int s = table[i] - 1;
+      if (s == NONE) {
+        return NONE;
+      }
+      Object item = items[s];
+      if (item == o || item.equals(o)) {
+        return s;
+      }
+    }
+  }
+
+  private int slotOfExisting(Object o) {
+    int s = slotOf(o);
+    if (s == NONE) {
+      throw new NoSuchElementException();
+    }
+    return s;
+  }
+
+  private void putSlot(int[] table, int s) {
+    final int mask = table.length - 1;
+    int i = hash(items[s]) & mask;
+    while (table[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    table[i] = s + 1;
+  }
+
+  /** Removes the table entry of slot s, shifting back later entries of the same probe sequence. */
+  private void removeSlot(int s) {
+    final int[] table = this.table;
+    final int mask = table.length - 1;
+    int i = hash(items[s]) & mask;
+    while (table[i] != s + 1) {
+      i = (i + 1) & mask;
+    }
+    for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+      int home = hash(items[table[j] - 1]) & mask;
+      // move the entry at j into the gap at i if its home bucket does not lie cyclically in (i, j]
+      if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+        table[i] = table[j];
+        i = j;
+      }
+    }
+    table[i] = 0;
+  }
+
+  /** Allocates a slot for the given element and enters it into the table, without linking it. */
+  private int allocate(E item) {
+    if (item == null) {
+      throw new RuntimeException("Bad idea! You tried to insert a null object into a Chain!");
+    }
+    if (slotOf(item) != NONE) {
+      throw new RuntimeException("Chain already contains object: " + item);
+    }
+    int s;
+    if (freeList != NONE) {
+      s = freeList;
+      freeList = next[s];
+    } else {
+      if (used == items.length) {
+        int capacity = items.length + (items.length >> 1) + 1;
+        items = Arrays.copyOf(items, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+      }
+      s = used++;
+    }
+    items[s] = item;
+    if ((size + 1) * 2 > table.length) {
+      int[] newTable = new int[table.length * 2];
+      for (int i = first; i != NONE; i = next[i]) {
+        putSlot(newTable, i);
+      }
+      table = newTable;
+    }
+    putSlot(table, s);
+    size++;
+    stateCount++;
+    return s;
+  }
+
+  private void linkBefore(int s, int point) {
+    int p = (point == NONE) ? last : prev[point];
+    prev[s] = p;
+    next[s] = point;
+    if (p == NONE) {
+      first = s;
+    } else {
+      next[p] = s;
+    }
+    if (point == NONE) {
+      last = s;
+    } else {
+      prev[point] = s;
+    }
+  }
+
+  private void unlink(int s) {
+    int p = prev[s];
+    int n = next[s];
+    if (p == NONE) {
+      first = n;
+    } else {
+      next[p] = n;
+    }
+    if (n == NONE) {
+      last = p;
+    } else {
+      prev[n] = p;
+    }
+    removeSlot(s);
+    items[s] = null;
+    next[s] = freeList;
+    freeList = s;
+    size--;
+    stateCount++;
+  }
+
+  @SuppressWarnings("unchecked")
+  private E itemAt(int s) {
+    return (E) items[s];
+  }
+
+  /** Erases the contents of the current IndexedChain. */
+  @Override
+  public void clear() {
+    stateCount++;
+    Arrays.fill(items, 0, used, null);
+    Arrays.fill(table, 0);
+    first = last = freeList = NONE;
+    used = size = 0;
+  }
+
+  @Override
+  public void swapWith(E out, E in) {
+    insertBefore(in, out);
+    remove(out);
+  }
+
+  /** Adds the given object to this IndexedChain. */
+  @Override
+  public boolean add(E item) {
+    addLast(item);
+    return true;
+  }
+
+  /**
+   * Gets all elements in the chain. There is no guarantee on sorting. The returned collection is a copy and is therefore not
+   * affected by later modifications of this chain.
+   *
+   * @return All elements in the chain in an unsorted collection
+   */
+  @Override
+  public Collection<E> getElementsUnsorted() {
+    return new ArrayList<E>(this);
+  }
+
+  @Override
+  public boolean follows(E someObject, E someReferenceObject) {
+    int s = slotOf(someReferenceObject);
+    if (s == NONE) {
+      // someReferenceObject not in chain.
+      return false;
+    }
+    for (; s != NONE; s = next[s]) {
+      if (items[s] == someObject) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return slotOf(o) != NONE;
+  }
+
+  @Override
+  public void insertAfter(E toInsert, E point) {
+    int p = slotOf(point);
+    if (p == NONE) {
+      if (toInsert == null) {
+        throw new RuntimeException("Bad idea! You tried to insert a null object into a Chain!");
+      }
+      throw new RuntimeException("Insertion point not found in chain!");
+    }
+    linkBefore(allocate(toInsert), next[p]);
+  }
+
+  @Override
+  public void insertAfter(Collection<? extends E> toInsert, E point) {
+    // if the list is null, treat it as an empty list
+    if (toInsert == null) {
+      throw new RuntimeException("Warning! You tried to insert " + "a null list into a Chain!");
+    }
+
+    E previousPoint = point;
+    for (E o : toInsert) {
+      insertAfter(o, previousPoint);
+      previousPoint = o;
+    }
+  }
+
+  @Override
+  public void insertAfter(List<E> toInsert, E point) {
+    insertAfter((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public void insertAfter(Chain<E> toInsert, E point) {
+    insertAfter((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public void insertBefore(E toInsert, E point) {
+    int p = slotOf(point);
+    if (p == NONE) {
+      if (toInsert == null) {
+        throw new RuntimeException("Bad idea! You tried to insert " + "a null object into a Chain!");
+      }
+      throw new RuntimeException("Insertion point not found in chain!");
+    }
+    linkBefore(allocate(toInsert), p);
+  }
+
+  @Override
+  public void insertBefore(Collection<? extends E> toInsert, E point) {
+    // if the list is null, treat it as an empty list
+    if (toInsert == null) {
+      throw new RuntimeException("Warning! You tried to insert a null list into a Chain!");
+    }
+
+    for (E o : toInsert) {
+      insertBefore(o, point);
+    }
+  }
+
+  @Override
+  public void insertBefore(List<E> toInsert, E point) {
+    insertBefore((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public void insertBefore(Chain<E> toInsert, E point) {
+    insertBefore((Collection<? extends E>) toInsert, point);
+  }
+
+  @Override
+  public boolean remove(Object item) {
+    if (item == null) {
+      throw new RuntimeException("Bad idea! You tried to remove " + " a null object from a Chain!");
+    }
+
+    int s = slotOf(item);
+    if (s == NONE) {
+      return false;
+    }
+    unlink(s);
+    return true;
+  }
+
+  @Override
+  public void addFirst(E item) {
+    linkBefore(allocate(item), first);
+  }
+
+  @Override
+  public void addLast(E item) {
+    linkBefore(allocate(item), NONE);
+  }
+
+  @Override
+  public void removeFirst() {
+    if (first == NONE) {
+      throw new NoSuchElementException();
+    }
+    unlink(first);
+  }
+
+  @Override
+  public void removeLast() {
+    if (last == NONE) {
+      throw new NoSuchElementException();
+    }
+    unlink(last);
+  }
+
+  @Override
+  public E getFirst() {
+    if (first == NONE) {
+      throw new NoSuchElementException();
+    }
+    return itemAt(first);
+  }
+
+  @Override
+  public E getLast() {
+    if (last == NONE) {
+      throw new NoSuchElementException();
+    }
+    return itemAt(last);
+  }
+
+  @Override
+  public E getSuccOf(E point) throws NoSuchElementException {
+    int n = next[slotOfExisting(point)];
+    return n == NONE ? null : itemAt(n);
+  }
+
+  @Override
+  public E getPredOf(E point) throws NoSuchElementException {
+    if (point == null) {
+      throw new RuntimeException("trying to hash null value.");
+    }
+    int p = prev[slotOfExisting(point)];
+    return p == NONE ? null : itemAt(p);
+  }
+
+  @Override
+  public Iterator<E> snapshotIterator() {
+    return (new ArrayList<E>(this)).iterator();
+  }
+
+  public Iterator<E> snapshotIterator(E item) {
+    List<E> l = new ArrayList<E>(size);
+
+    Iterator<E> it = new SlotIterator(item, null);
+    while (it.hasNext()) {
+      l.add(it.next());
+    }
+
+    return l.iterator();
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new SlotIterator(first);
+  }
+
+  @Override
+  public Iterator<E> iterator(E item) {
+    if (size == 0) {
+      return new SlotIterator(NONE);
+    }
+    return new SlotIterator(item, null);
+  }
+
+  /**
+   * <p>
+   * Returns an iterator ranging from <code>head</code> to <code>tail</code>, inclusive.
+   * </p>
+   *
+   * <p>
+   * If <code>tail</code> is the element immediately preceding <code>head</code> in this <code>IndexedChain</code>, the
+   * returned iterator will iterate 0 times (a special case to allow the specification of an empty range of elements).
+   * Otherwise if <code>tail</code> is not one of the elements following <code>head</code>, the returned iterator will
+   * iterate past the end of the <code>IndexedChain</code>, provoking a {@link NoSuchElementException}.
+   * </p>
+   *
+   * @throws NoSuchElementException
+   *           if <code>head</code> is not an element of the chain.
+   */
+  @Override
+  public Iterator<E> iterator(E head, E tail) {
+    if (size == 0) {
+      return new SlotIterator(NONE);
+    }
+    if (head != null && this.getPredOf(head) == tail) {
+      return new SlotIterator(NONE);
+    }
+    return new SlotIterator(head, tail);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** Returns the number of times this chain has been modified. */
+  @Override
+  public long getModificationCount() {
+    return stateCount;
+  }
+
+  protected class SlotIterator implements Iterator<E> {
+    private int nextSlot;
+    private int lastSlot = NONE;
+    private Object lastItem = null;
+    private final E destination;
+    private long iteratorStateCount;
+
+    SlotIterator(int start) {
+      this.nextSlot = start;
+      this.destination = null;
+      this.iteratorStateCount = stateCount;
+    }
+
+    SlotIterator(E from, E to) {
+      int s = slotOf(from);
+      if (s == NONE && from != null) {
+        throw new NoSuchElementException(
+            "IndexedChain.SlotIterator(obj) with obj that is not in the chain: " + from.toString());
+      }
+      this.nextSlot = s;
+      this.destination = to;
+      this.iteratorStateCount = stateCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (stateCount != iteratorStateCount) {
+        throw new ConcurrentModificationException();
+      }
+
+      if (destination == null) {
+        return nextSlot != NONE;
+      } else {
+        // Ignore whether there is a next slot, so next() will produce a
+        // NoSuchElementException if destination is not in the chain.
+        return destination != lastItem;
+      }
+    }
+
+    @Override
+    public E next() throws NoSuchElementException {
+      if (stateCount != iteratorStateCount) {
+        throw new ConcurrentModificationException();
+      }
+
+      if (nextSlot == NONE) {
+        String exceptionMsg;
+        if (destination != null && destination != lastItem) {
+          exceptionMsg = "IndexedChain.SlotIterator.next() reached end of chain without reaching specified tail unit";
+        } else {
+          exceptionMsg = "IndexedChain.SlotIterator.next() called past the end of the Chain";
+        }
+        throw new NoSuchElementException(exceptionMsg);
+      }
+      lastSlot = nextSlot;
+      lastItem = items[lastSlot];
+      nextSlot = next[lastSlot];
+      return itemAt(lastSlot);
+    }
+
+    @Override
+    public void remove() throws IllegalStateException {
+      if (stateCount != iteratorStateCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (lastSlot == NONE) {
+        throw new IllegalStateException();
+      }
+
+      unlink(lastSlot);
+      lastSlot = NONE;
+      iteratorStateCount = stateCount;
+    }
+  }
+}
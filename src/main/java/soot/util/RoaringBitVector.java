@@ -0,0 +1,587 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed set of non-negative ints in the style of Roaring bitmaps. The bits are split into chunks of 2^16 by their
+ * upper 16 bits, and only chunks that contain a set bit are stored. A chunk with at most 4096 bits set is a sorted array of
+ * its lower 16 bits, a fuller chunk is a plain bitmap of 1024 words. Sparse sets whose bits are spread over a large range
+ * therefore cost memory proportional to their cardinality rather than to their highest bit, and dense regions still get
+ * word-parallel operations.
+ */
+public final class RoaringBitVector {
+  /** Chunks with more bits than this are stored as bitmaps. */
+  static final int ARRAY_MAX = 4096;
+
+  private static final int BITMAP_WORDS = 1024;
+  private static final char[] EMPTY_KEYS = new char[0];
+
+  /** Upper 16 bits of each chunk, in ascending order. */
+  private char[] keys = EMPTY_KEYS;
+  /** Either a char[] of sorted lower bits or a long[] bitmap for each chunk. */
+  private Object[] chunks = new Object[0];
+  /** Number of bits set in each chunk. */
+  private int[] cards = new int[0];
+  private int numChunks = 0;
+  private int cardinality = 0;
+
+  public RoaringBitVector() {
+  }
+
+  /** Copy constructor */
+  public RoaringBitVector(RoaringBitVector other) {
+    keys = Arrays.copyOf(other.keys, other.numChunks);
+    chunks = new Object[other.numChunks];
+    cards = Arrays.copyOf(other.cards, other.numChunks);
+    for (int i = 0; i < other.numChunks; i++) {
+      Object c = other.chunks[i];
+      chunks[i] = c instanceof long[] ? ((long[]) c).clone() : Arrays.copyOf((char[]) c, cards[i]);
+    }
+    numChunks = other.numChunks;
+    cardinality = other.cardinality;
+  }
+
+  /** Sets the given bit, returning true if it was not set before. */
+  public boolean set(int bit) {
+    checkBit(bit);
+    int i = find((char) (bit >>> 16));
+    if (i < 0) {
+      i = -i - 1;
+      insertChunk(i, (char) (bit >>> 16), new char[] { (char) bit }, 1);
+      return true;
+    }
+    return setInChunk(i, (char) bit);
+  }
+
+  public boolean get(int bit) {
+    if (bit < 0) {
+      return false;
+    }
+    int i = find((char) (bit >>> 16));
+    if (i < 0) {
+      return false;
+    }
+    return chunkContains(chunks[i], cards[i], (char) bit);
+  }
+
+  /** Returns the number of set bits. */
+  public int cardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  /**
+   * Computes this = this OR ((orset AND andset) AND (NOT andnotset)). Any of the arguments may be null, in which case the
+   * corresponding operation is skipped. Returns true iff this is modified.
+   */
+  public boolean orAndAndNot(RoaringBitVector orset, BitVector andset, RoaringBitVector andnotset) {
+    if (orset == null) {
+      return false;
+    }
+    int oldCardinality = cardinality;
+    int j = 0;
+    for (int oi = 0; oi < orset.numChunks; oi++) {
+      char key = orset.keys[oi];
+      Object exclude = null;
+      int excludeCard = 0;
+      if (andnotset != null) {
+        int e = andnotset.find(key);
+        if (e >= 0) {
+          exclude = andnotset.chunks[e];
+          excludeCard = andnotset.cards[e];
+        }
+      }
+      // The chunks of orset come in ascending order, so the search can start at the last position
+      j = find(key, j, numChunks);
+      Object src = orset.chunks[oi];
+      if (src instanceof char[]) {
+        char[] filtered = (char[]) src;
+        int n = orset.cards[oi];
+        if (andset != null || exclude != null) {
+          filtered = filterArray(key, filtered, n, andset, exclude, excludeCard);
+          n = filtered.length;
+        }
+        if (n == 0) {
+          j = j < 0 ? -j - 1 : j;
+          continue;
+        }
+        if (j < 0) {
+          j = -j - 1;
+          insertChunk(j, key, Arrays.copyOf(filtered, n), n);
+        } else {
+          orArrayIntoChunk(j, filtered, n);
+        }
+      } else if (j >= 0 && chunks[j] instanceof long[] && !(exclude instanceof char[])) {
+        orBitmapIntoBitmap(j, key, (long[]) src, andset, (long[]) exclude);
+      } else {
+        long[] words = filterBitmap(key, (long[]) src, andset, exclude, excludeCard);
+        int n = bitCount(words);
+        if (n == 0) {
+          j = j < 0 ? -j - 1 : j;
+          continue;
+        }
+        if (j < 0) {
+          j = -j - 1;
+          insertChunk(j, key, n <= ARRAY_MAX ? toArray(words, n) : words, n);
+        } else {
+          orBitmapIntoChunk(j, words, n);
+        }
+      }
+      j++;
+    }
+    return cardinality != oldCardinality;
+  }
+
+  /** Computes this = this OR other. Returns true iff this is modified. */
+  public boolean or(RoaringBitVector other) {
+    return orAndAndNot(other, null, null);
+  }
+
+  /** Returns true if this and other have a set bit in common. */
+  public boolean intersects(RoaringBitVector other) {
+    int i = 0, j = 0;
+    while (i < numChunks && j < other.numChunks) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        Object a = chunks[i], b = other.chunks[j];
+        if (a instanceof long[] && b instanceof long[]) {
+          long[] wa = (long[]) a, wb = (long[]) b;
+          for (int w = 0; w < BITMAP_WORDS; w++) {
+            if ((wa[w] & wb[w]) != 0L) {
+              return true;
+            }
+          }
+        } else if (a instanceof char[]) {
+          char[] va = (char[]) a;
+          for (int k = 0; k < cards[i]; k++) {
+            if (chunkContains(b, other.cards[j], va[k])) {
+              return true;
+            }
+          }
+        } else {
+          char[] vb = (char[]) b;
+          for (int k = 0; k < other.cards[j]; k++) {
+            if (chunkContains(a, cards[i], vb[k])) {
+              return true;
+            }
+          }
+        }
+        i++;
+        j++;
+      }
+    }
+    return false;
+  }
+
+  public SetBitIterator iterator() {
+    return new SetBitIterator();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof RoaringBitVector)) {
+      return false;
+    }
+    RoaringBitVector other = (RoaringBitVector) o;
+    if (cardinality != other.cardinality || numChunks != other.numChunks) {
+      return false;
+    }
+    for (int i = 0; i < numChunks; i++) {
+      if (keys[i] != other.keys[i] || cards[i] != other.cards[i]) {
+        return false;
+      }
+      // Both chunks use the same representation, since it only depends on the cardinality
+      Object a = chunks[i], b = other.chunks[i];
+      if (a instanceof long[] ? !Arrays.equals((long[]) a, (long[]) b)
+          : !Arrays.equals(Arrays.copyOf((char[]) a, cards[i]), Arrays.copyOf((char[]) b, cards[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int ret = 1;
+    for (SetBitIterator it = iterator(); it.hasNext();) {
+      ret = 31 * ret + it.next();
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder ret = new StringBuilder("{");
+    for (SetBitIterator it = iterator(); it.hasNext();) {
+      ret.append(it.next());
+      if (it.hasNext()) {
+        ret.append(", ");
+      }
+    }
+    return ret.append('}').toString();
+  }
+
+  /**
+   * Iterates over the set bits in ascending order. Like {@link BitSetIterator}, next returns an int, so this does not
+   * implement Iterator. The set must not be modified during the iteration.
+   */
+  public final class SetBitIterator {
+    private int chunk = 0;
+    private int pos = 0;
+    private int word = -1;
+    private long save = 0L;
+
+    SetBitIterator() {
+      advance();
+    }
+
+    public boolean hasNext() {
+      return chunk < numChunks;
+    }
+
+    public int next() {
+      if (chunk >= numChunks) {
+        throw new NoSuchElementException();
+      }
+      int high = keys[chunk] << 16;
+      int ret;
+      Object c = chunks[chunk];
+      if (c instanceof char[]) {
+        ret = high | ((char[]) c)[pos++];
+      } else {
+        long lowest = save & -save;
+        save ^= lowest;
+        ret = high | (word << 6) | Long.numberOfTrailingZeros(lowest);
+      }
+      advance();
+      return ret;
+    }
+
+    private void advance() {
+      while (chunk < numChunks) {
+        Object c = chunks[chunk];
+        if (c instanceof char[]) {
+          if (pos < cards[chunk]) {
+            return;
+          }
+        } else {
+          long[] words = (long[]) c;
+          while (save == 0L && ++word < BITMAP_WORDS) {
+            save = words[word];
+          }
+          if (save != 0L) {
+            return;
+          }
+        }
+        chunk++;
+        pos = 0;
+        word = -1;
+        save = 0L;
+      }
+    }
+  }
+
+  /* Chunk handling */
+
+  private static void checkBit(int bit) {
+    if (bit < 0) {
+      throw new IndexOutOfBoundsException("Negative bit " + bit);
+    }
+  }
+
+  private int find(char key) {
+    return find(key, 0, numChunks);
+  }
+
+  /** Binary search for key among the chunks from..to-1; returns -(insertion point)-1 if absent. */
+  private int find(char key, int from, int to) {
+    int lo = from, hi = to - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      char k = keys[mid];
+      if (k < key) {
+        lo = mid + 1;
+      } else if (k > key) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  private void insertChunk(int i, char key, Object chunk, int card) {
+    if (numChunks == keys.length) {
+      int newLength = Math.max(4, numChunks * 2);
+      keys = Arrays.copyOf(keys, newLength);
+      chunks = Arrays.copyOf(chunks, newLength);
+      cards = Arrays.copyOf(cards, newLength);
+    }
+    System.arraycopy(keys, i, keys, i + 1, numChunks - i);
+    System.arraycopy(chunks, i, chunks, i + 1, numChunks - i);
+    System.arraycopy(cards, i, cards, i + 1, numChunks - i);
+    keys[i] = key;
+    chunks[i] = chunk;
+    cards[i] = card;
+    numChunks++;
+    cardinality += card;
+  }
+
+  private static boolean chunkContains(Object chunk, int card, char low) {
+    if (chunk instanceof long[]) {
+      return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0L;
+    }
+    return Arrays.binarySearch((char[]) chunk, 0, card, low) >= 0;
+  }
+
+  private boolean setInChunk(int i, char low) {
+    Object c = chunks[i];
+    int card = cards[i];
+    if (c instanceof long[]) {
+      long[] words = (long[]) c;
+      long old = words[low >>> 6];
+      words[low >>> 6] = old | (1L << low);
+      if (old == words[low >>> 6]) {
+        return false;
+      }
+    } else {
+      char[] values = (char[]) c;
+      int pos = Arrays.binarySearch(values, 0, card, low);
+      if (pos >= 0) {
+        return false;
+      }
+      pos = -pos - 1;
+      if (card == ARRAY_MAX) {
+        long[] words = toBitmap(values, card);
+        words[low >>> 6] |= 1L << low;
+        chunks[i] = words;
+      } else {
+        if (card == values.length) {
+          chunks[i] = values = Arrays.copyOf(values, Math.min(ARRAY_MAX, card * 2));
+        }
+        System.arraycopy(values, pos, values, pos + 1, card - pos);
+        values[pos] = low;
+      }
+    }
+    cards[i] = card + 1;
+    cardinality++;
+    return true;
+  }
+
+  private void orArrayIntoChunk(int i, char[] values, int n) {
+    Object c = chunks[i];
+    int card = cards[i];
+    if (c instanceof long[]) {
+      long[] words = (long[]) c;
+      int added = 0;
+      for (int k = 0; k < n; k++) {
+        char low = values[k];
+        long old = words[low >>> 6];
+        long now = old | (1L << low);
+        if (now != old) {
+          words[low >>> 6] = now;
+          added++;
+        }
+      }
+      cards[i] = card + added;
+      cardinality += added;
+      return;
+    }
+    // Count the values that are not there yet first, so that the common case of nothing new does not allocate
+    char[] mine = (char[]) c;
+    int fresh = 0;
+    for (int a = 0, b = 0; b < n;) {
+      if (a < card && mine[a] < values[b]) {
+        a++;
+      } else {
+        if (a < card && mine[a] == values[b]) {
+          a++;
+        } else {
+          fresh++;
+        }
+        b++;
+      }
+    }
+    if (fresh == 0) {
+      return;
+    }
+    int m = card + fresh;
+    if (m > ARRAY_MAX) {
+      long[] words = toBitmap(mine, card);
+      for (int b = 0; b < n; b++) {
+        words[values[b] >>> 6] |= 1L << values[b];
+      }
+      chunks[i] = words;
+    } else {
+      if (m > mine.length) {
+        chunks[i] = mine = Arrays.copyOf(mine, Math.min(ARRAY_MAX, m + (m >> 2)));
+      }
+      // Merge from the back, so that no value of mine is overwritten before it is moved
+      int a = card - 1, w = m - 1;
+      for (int b = n - 1; b >= 0;) {
+        if (a >= 0 && mine[a] >= values[b]) {
+          if (mine[a] == values[b]) {
+            b--;
+          }
+          mine[w--] = mine[a--];
+        } else {
+          mine[w--] = values[b--];
+        }
+      }
+    }
+    cards[i] = m;
+    cardinality += fresh;
+  }
+
+  private void orBitmapIntoChunk(int i, long[] words, int n) {
+    Object c = chunks[i];
+    int card = cards[i];
+    long[] mine;
+    if (c instanceof long[]) {
+      mine = (long[]) c;
+    } else if (card + n <= ARRAY_MAX) {
+      orArrayIntoChunk(i, toArray(words, n), n);
+      return;
+    } else {
+      mine = toBitmap((char[]) c, card);
+    }
+    int added = 0;
+    for (int w = 0; w < BITMAP_WORDS; w++) {
+      long fresh = words[w] & ~mine[w];
+      if (fresh != 0L) {
+        mine[w] |= fresh;
+        added += Long.bitCount(fresh);
+      }
+    }
+    if (added == 0) {
+      return;
+    }
+    // Keep chunks with few bits as arrays, so that the representation only depends on the cardinality
+    chunks[i] = card + added <= ARRAY_MAX ? toArray(mine, card + added) : mine;
+    cards[i] = card + added;
+    cardinality += added;
+  }
+
+  /** Ors the bits of a bitmap chunk that are set in andset and not in exclude into the bitmap chunk i, in place. */
+  private void orBitmapIntoBitmap(int i, char key, long[] words, BitVector andset, long[] exclude) {
+    long[] mine = (long[]) chunks[i];
+    int base = key << 10;
+    int added = 0;
+    for (int w = 0; w < BITMAP_WORDS; w++) {
+      long fresh = words[w] & ~mine[w];
+      if (fresh == 0L) {
+        continue;
+      }
+      if (andset != null) {
+        fresh &= andset.getWord(base + w);
+      }
+      if (exclude != null) {
+        fresh &= ~exclude[w];
+      }
+      if (fresh != 0L) {
+        mine[w] |= fresh;
+        added += Long.bitCount(fresh);
+      }
+    }
+    cards[i] += added;
+    cardinality += added;
+  }
+
+  /** Returns the bits of an array chunk that are set in andset and not in the given exclude chunk. */
+  private static char[] filterArray(char key, char[] values, int card, BitVector andset, Object exclude,
+      int excludeCard) {
+    char[] ret = new char[card];
+    int n = 0;
+    int high = key << 16;
+    for (int k = 0; k < card; k++) {
+      char low = values[k];
+      if (andset != null && !andset.get(high | low)) {
+        continue;
+      }
+      if (exclude != null && chunkContains(exclude, excludeCard, low)) {
+        continue;
+      }
+      ret[n++] = low;
+    }
+    return n == card ? ret : Arrays.copyOf(ret, n);
+  }
+
+  /** Returns a fresh bitmap of the bits of a bitmap chunk that are set in andset and not in the given exclude chunk. */
+  private static long[] filterBitmap(char key, long[] words, BitVector andset, Object exclude, int excludeCard) {
+    long[] ret = words.clone();
+    if (andset != null) {
+      int base = key << 10;
+      for (int w = 0; w < BITMAP_WORDS; w++) {
+        ret[w] &= andset.getWord(base + w);
+      }
+    }
+    if (exclude instanceof long[]) {
+      long[] ex = (long[]) exclude;
+      for (int w = 0; w < BITMAP_WORDS; w++) {
+        ret[w] &= ~ex[w];
+      }
+    } else if (exclude != null) {
+      char[] ex = (char[]) exclude;
+      for (int k = 0; k < excludeCard; k++) {
+        ret[ex[k] >>> 6] &= ~(1L << ex[k]);
+      }
+    }
+    return ret;
+  }
+
+  private static int bitCount(long[] words) {
+    int ret = 0;
+    for (long w : words) {
+      ret += Long.bitCount(w);
+    }
+    return ret;
+  }
+
+  private static long[] toBitmap(char[] values, int card) {
+    long[] ret = new long[BITMAP_WORDS];
+    for (int k = 0; k < card; k++) {
+      ret[values[k] >>> 6] |= 1L << values[k];
+    }
+    return ret;
+  }
+
+  private static char[] toArray(long[] words, int card) {
+    char[] ret = new char[card];
+    int n = 0;
+    for (int w = 0; w < BITMAP_WORDS; w++) {
+      for (long bits = words[w]; bits != 0L; bits &= bits - 1) {
+        ret[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(bits));
+      }
+    }
+    return ret;
+  }
+}
@@ -53,6 +53,12 @@ public class TagCollector {
     return attributes.isEmpty() && keys.isEmpty();
   }
 
+  /** Adds the attributes and keys collected by the given collector after those collected so far. */
+  public synchronized void addAll(TagCollector other) {
+    attributes.addAll(other.attributes);
+    keys.addAll(other.keys);
+  }
+
   /** Convenience function for <code>collectTags(sc, true)</code>. */
   public void collectTags(SootClass sc) {
     collectTags(sc, true);
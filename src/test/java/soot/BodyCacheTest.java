@@ -0,0 +1,165 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.Stmt;
+import soot.options.Options;
+
+public class BodyCacheTest {
+  private SootClass cl;
+  private SootMethod m;
+  private BodyCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+    G.reset();
+    cl = new SootClass("Test", Modifier.PUBLIC);
+    Scene.v().addClass(cl);
+    m = new SootMethod("m", Collections.<Type>singletonList(IntType.v()), IntType.v(), Modifier.PUBLIC | Modifier.STATIC);
+    cl.addMethod(m);
+
+    JimpleBody b = Jimple.v().newBody(m);
+    Local p = Jimple.v().newLocal("p", IntType.v());
+    Local q = Jimple.v().newLocal("q", IntType.v());
+    b.getLocals().add(p);
+    b.getLocals().add(q);
+    Stmt ret = Jimple.v().newReturnStmt(q);
+    b.getUnits().add(Jimple.v().newIdentityStmt(p, Jimple.v().newParameterRef(IntType.v(), 0)));
+    b.getUnits().add(Jimple.v().newAssignStmt(q, Jimple.v().newAddExpr(p, IntConstant.v(1))));
+    b.getUnits().add(Jimple.v().newIfStmt(Jimple.v().newGtExpr(q, IntConstant.v(10)), ret));
+    b.getUnits().add(Jimple.v().newAssignStmt(q, Jimple.v().newMulExpr(q, IntConstant.v(2))));
+    b.getUnits().add(ret);
+    m.setActiveBody(b);
+
+    File dir = Files.createTempDirectory("bodycache").toFile();
+    dir.deleteOnExit();
+    cache = new BodyCache(dir);
+  }
+
+  private static List<String> units(Body b) {
+    List<String> ret = new ArrayList<String>();
+    for (Unit u : b.getUnits()) {
+      ret.add(u.toString());
+    }
+    return ret;
+  }
+
+  private static List<String> locals(Body b) {
+    List<String> ret = new ArrayList<String>();
+    for (Local l : b.getLocals()) {
+      ret.add(l.getName() + ":" + l.getType());
+    }
+    Collections.sort(ret);
+    return ret;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    String key = cache.keyFor("0123456789abcdef", "", m);
+    cache.store(key, m.getActiveBody());
+    Body loaded = cache.load(m, key);
+    assertNotNull(loaded);
+    assertEquals(m, loaded.getMethod());
+    assertEquals(units(m.getActiveBody()), units(loaded));
+    assertEquals(locals(m.getActiveBody()), locals(loaded));
+  }
+
+  @Test
+  public void testMissingEntry() {
+    assertNull(cache.load(m, cache.keyFor("0123456789abcdef", "", m)));
+  }
+
+  @Test
+  public void testKeyDependsOnClassDigest() {
+    assertNotEquals(cache.keyFor("0123456789abcdef", "", m), cache.keyFor("fedcba9876543210", "", m));
+  }
+
+  @Test
+  public void testKeyDependsOnGlobalOptions() {
+    String key = cache.keyFor("0123456789abcdef", "", m);
+    Options.v().set_throw_analysis(Options.throw_analysis_pedantic);
+    BodyCache other = new BodyCache(new File(System.getProperty("java.io.tmpdir")));
+    assertNotEquals(key, other.keyFor("0123456789abcdef", "", m));
+  }
+
+  @Test
+  public void testKeyDependsOnDependencies() {
+    assertNotEquals(cache.keyFor("0123456789abcdef", "0123", m), cache.keyFor("0123456789abcdef", "3210", m));
+  }
+
+  @Test
+  public void testDependencyDigestFollowsHierarchy() {
+    // Looking up a class sets up the class path in which the class files are searched
+    Options.v().set_soot_classpath(System.getProperty("java.io.tmpdir"));
+    assertNull(SourceLocator.v().getClassSource("Test"));
+
+    String digest = cache.dependencyDigest(Collections.singleton("Test"));
+    assertEquals(digest, cache.dependencyDigest(Collections.singleton("Test")));
+
+    SootClass base = new SootClass("Base", Modifier.PUBLIC);
+    Scene.v().addClass(base);
+    cl.setSuperclass(base);
+    assertNotEquals(digest, cache.dependencyDigest(Collections.singleton("Test")));
+  }
+
+  @Test
+  public void testNullBodyIsNotStored() throws IOException {
+    File dir = Files.createTempDirectory("classes").toFile();
+    File classFile = new File(dir, "Test.class");
+    Files.write(classFile.toPath(), new byte[] { 1, 2, 3 });
+    classFile.deleteOnExit();
+    dir.deleteOnExit();
+    Options.v().set_soot_classpath(dir.getPath());
+    assertNotNull(SourceLocator.v().getClassSource("Test"));
+
+    MethodSource nothing = new MethodSource() {
+      @Override
+      public Body getBody(SootMethod m, String phaseName) {
+        return null;
+      }
+    };
+    CachingClassProvider.ClassFileDigest classDigest = new CachingClassProvider.ClassFileDigest("Test.class");
+    CachingClassProvider.DependencyDigest dependencyDigest = new CachingClassProvider.DependencyDigest(cache, "Test", null);
+    CachedMethodSource source = new CachedMethodSource(nothing, cache, classDigest, dependencyDigest);
+    assertNull(source.getBody(m, "jb"));
+    assertNull(cache.load(m, cache.keyFor(classDigest.get(), dependencyDigest.get(), m)));
+  }
+}
@@ -24,6 +24,8 @@ package soot;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertThat;
 
 import java.util.ArrayList;
@@ -176,6 +178,108 @@ public class FastHierarchyTest {
     assertThat(fh.getAllImplementersOfInterface(interfaceD), containsInAnyOrder(scA, scB, scC1, scD));
   }
 
+  @Test
+  public void testCanStoreClassInterfaces() {
+    G.reset();
+
+    Scene s = Scene.v();
+    s.loadNecessaryClasses();
+
+    SootClass interfaceA = generacteSceneClass("InterfaceA", Modifier.INTERFACE);
+    SootClass interfaceB = generacteSceneClass("InterfaceB", Modifier.INTERFACE);
+    SootClass interfaceC = generacteSceneClass("InterfaceC", Modifier.INTERFACE);
+    SootClass scA = generacteSceneClass("ClassA", 0);
+    SootClass scB = generacteSceneClass("ClassB", 0);
+    SootClass scC = generacteSceneClass("ClassC", 0);
+
+    interfaceA.addInterface(interfaceB);
+    scA.addInterface(interfaceA);
+    scB.setSuperclass(scA);
+    scC.addInterface(interfaceC);
+
+    FastHierarchy fh = s.getOrMakeFastHierarchy();
+
+    assertTrue(fh.canStoreClass(scA, interfaceA));
+    assertTrue(fh.canStoreClass(scA, interfaceB));
+    assertTrue(fh.canStoreClass(scB, interfaceB));
+    assertTrue(fh.canStoreClass(interfaceA, interfaceB));
+    assertTrue(fh.canStoreClass(interfaceB, interfaceB));
+    assertFalse(fh.canStoreClass(interfaceB, interfaceA));
+    assertFalse(fh.canStoreClass(scB, interfaceC));
+    assertFalse(fh.canStoreClass(scC, interfaceA));
+    assertTrue(fh.canStoreClass(interfaceC, s.getObjectType().getSootClass()));
+  }
+
+  @Test
+  public void testAddClassIncrementally() {
+    G.reset();
+
+    Scene s = Scene.v();
+    s.loadNecessaryClasses();
+
+    SootClass interfaceA = generacteSceneClass("InterfaceA", Modifier.INTERFACE);
+    SootClass scA = generacteSceneClass("ClassA", 0);
+    scA.addInterface(interfaceA);
+    FastHierarchy fh = s.getOrMakeFastHierarchy();
+
+    // more classes than there are free positions in the interval of ClassA
+    SootClass[] subclasses = new SootClass[5];
+    for (int i = 0; i < subclasses.length; i++) {
+      subclasses[i] = new SootClass("SubClass" + i, 0);
+      subclasses[i].setSuperclass(i == 0 ? scA : subclasses[i - 1]);
+      s.addClassToHierarchy(subclasses[i]);
+    }
+    SootClass interfaceB = new SootClass("InterfaceB", Modifier.INTERFACE);
+    interfaceB.setSuperclass(s.getObjectType().getSootClass());
+    interfaceB.addInterface(interfaceA);
+    s.addClassToHierarchy(interfaceB);
+    SootClass scB = new SootClass("ClassB", 0);
+    scB.setSuperclass(subclasses[2]);
+    scB.addInterface(interfaceB);
+    s.addClassToHierarchy(scB);
+
+    assertTrue(s.getFastHierarchy() == fh);
+    for (SootClass sub : subclasses) {
+      assertTrue(fh.canStoreClass(sub, scA));
+      assertTrue(fh.canStoreClass(sub, interfaceA));
+      assertFalse(fh.canStoreClass(sub, interfaceB));
+    }
+    assertTrue(fh.canStoreClass(subclasses[4], subclasses[1]));
+    assertFalse(fh.canStoreClass(subclasses[1], subclasses[4]));
+    assertTrue(fh.canStoreClass(scB, subclasses[0]));
+    assertFalse(fh.canStoreClass(scB, subclasses[3]));
+    assertTrue(fh.canStoreClass(scB, interfaceB));
+    assertTrue(fh.canStoreClass(interfaceB, interfaceA));
+    assertThat(fh.getAllImplementersOfInterface(interfaceA), containsInAnyOrder(scA, scB));
+  }
+
+  @Test
+  public void testDanglingClasses() {
+    G.reset();
+
+    Scene s = Scene.v();
+    s.loadNecessaryClasses();
+
+    SootClass interfaceA = generacteSceneClass("InterfaceA", Modifier.INTERFACE);
+    SootClass scA = generacteSceneClass("ClassA", 0);
+    scA.addInterface(interfaceA);
+    // Only known by name, so whether it is an interface cannot be asked
+    SootClass dangling = new SootClass("Dangling");
+    dangling.setResolvingLevel(SootClass.DANGLING);
+    s.addClass(dangling);
+    SootClass interfaceB = generacteSceneClass("InterfaceB", Modifier.INTERFACE);
+    interfaceB.addInterface(interfaceA);
+    SootClass scB = generacteSceneClass("ClassB", 0);
+    scB.addInterface(interfaceB);
+
+    FastHierarchy fh = s.getOrMakeFastHierarchy();
+
+    assertTrue(fh.canStoreClass(scA, interfaceA));
+    assertTrue(fh.canStoreClass(scB, interfaceA));
+    assertTrue(fh.canStoreClass(interfaceB, interfaceA));
+    assertFalse(fh.canStoreClass(scA, interfaceB));
+  }
+
   private static class FastHierarchyForUnittest extends FastHierarchy {
 
     @Override
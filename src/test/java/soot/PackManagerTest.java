@@ -0,0 +1,121 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.Test;
+
+import soot.options.Options;
+
+public class PackManagerTest {
+  private static final String SHAPES = "soot.jimple.toolkits.callgraph.targets.Shapes";
+
+  /** Sets up Soot to run the body packs on Shapes with the given phases enabled and returns the output directory. */
+  private static File setUp(boolean parallelMethods, String... phases) throws IOException {
+    G.reset();
+    File outputDir = Files.createTempDirectory("packmanager").toFile();
+    outputDir.deleteOnExit();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_src_prec(Options.src_prec_only_class);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_keep_line_number(true);
+    Options.v().set_xml_attributes(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_output_dir(outputDir.getPath());
+    Options.v().set_num_threads(4);
+    Options.v().set_parallel_methods(parallelMethods);
+    Options.v().classes().add(SHAPES);
+    Options.v().setPhaseOption("jap", "enabled:true");
+    for (String phase : phases) {
+      Options.v().setPhaseOption(phase, "enabled:true");
+    }
+    Scene.v().loadNecessaryClasses();
+    return outputDir;
+  }
+
+  /** Runs the body packs on Shapes and returns the XML attributes written for it. */
+  private static String attributes(boolean parallelMethods, String... phases) throws IOException {
+    File outputDir = setUp(parallelMethods, phases);
+
+    PackManager.v().runBodyPacks();
+
+    File attributes = new File(new File(outputDir, "attributes"), SHAPES + ".xml");
+    String ret = new String(Files.readAllBytes(attributes.toPath()), StandardCharsets.ISO_8859_1);
+    attributes.delete();
+    return ret;
+  }
+
+  @Test
+  public void testPerMethodAttributesMatchPerClass() throws IOException {
+    // Tags the uses of locals with links to their definitions
+    String perClass = attributes(false, "jap.rdtagger");
+    assertTrue(perClass.contains("<attribute>"));
+    for (int i = 0; i < 5; i++) {
+      assertEquals(perClass, attributes(true, "jap.rdtagger"));
+    }
+  }
+
+  @Test
+  public void testClassLevelPhaseRunsPerClass() throws IOException {
+    // Tags the class with the legend of its colors, so the methods of a class must not run concurrently
+    // The attributes of the class show the identity hash codes of its key tags
+    String perClass = attributes(false, "jap.npcolorer").replaceAll("KeyTag@\\p{XDigit}+", "KeyTag");
+    assertTrue(perClass.contains("Nullness: Null"));
+    for (int i = 0; i < 5; i++) {
+      assertEquals(perClass, attributes(true, "jap.npcolorer").replaceAll("KeyTag@\\p{XDigit}+", "KeyTag"));
+    }
+  }
+
+  @Test
+  public void testChangedClassIsReported() throws IOException {
+    setUp(true);
+    PackManager.v().getPack("jtp").add(new Transform("jtp.addfield", new BodyTransformer() {
+      @Override
+      protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
+        SootClass c = b.getMethod().getDeclaringClass();
+        synchronized (c) {
+          String name = "field_" + b.getMethod().getName();
+          if (c.getFieldByNameUnsafe(name) == null) {
+            c.addField(Scene.v().makeSootField(name, IntType.v()));
+          }
+        }
+      }
+    }));
+    try {
+      PackManager.v().runBodyPacks();
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(SHAPES));
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package soot;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import soot.asm.AsmClassProvider;
+import soot.javaToJimple.IInitialResolver.Dependencies;
+import soot.options.Options;
+
+public class SootResolverTest {
+  private static final String SHAPES = "soot.jimple.toolkits.callgraph.targets.Shapes";
+
+  /**
+   * Resolves Shapes and everything it refers to and returns the classes and phantom classes in Scene order, with the
+   * numbers of their types, methods and method subsignatures.
+   */
+  private static List<String> resolve(boolean parallel) throws IOException {
+    setUp(parallel);
+    Scene.v().loadNecessaryClasses();
+
+    List<String> ret = new ArrayList<String>();
+    for (SootClass sc : Scene.v().getClasses()) {
+      ret.add(sc.getName() + " " + sc.getType().getNumber() + " " + sc.resolvingLevel());
+      for (SootMethod m : sc.getMethods()) {
+        ret.add("  " + m.getSubSignature() + " " + m.getNumber() + " " + m.getNumberedSubSignature().getNumber());
+      }
+    }
+    for (SootClass sc : Scene.v().getPhantomClasses()) {
+      ret.add("phantom " + sc.getName());
+    }
+    return ret;
+  }
+
+  private static void setUp(boolean parallel) throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_src_prec(Options.src_prec_only_class);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_parallel_resolver(parallel);
+    Options.v().set_num_threads(4);
+    Options.v().classes().add(SHAPES);
+  }
+
+  /** Counts the class sources that are found and not closed yet, and fails to resolve the given class. */
+  private static class CountingClassProvider implements ClassProvider {
+    private final ClassProvider provider = new AsmClassProvider();
+    private final String failingClass;
+    final AtomicInteger open = new AtomicInteger();
+    final AtomicInteger maxOpen = new AtomicInteger();
+
+    CountingClassProvider(String failingClass) {
+      this.failingClass = failingClass;
+    }
+
+    @Override
+    public ClassSource find(String className) {
+      final ClassSource source = provider.find(className);
+      if (source == null) {
+        return null;
+      }
+      maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+      return new ClassSource(className) {
+        private boolean closed = false;
+
+        @Override
+        public Dependencies resolve(SootClass sc) {
+          if (className.equals(failingClass)) {
+            throw new RuntimeException("Cannot resolve " + className);
+          }
+          return source.resolve(sc);
+        }
+
+        @Override
+        public void prepare() {
+          source.prepare();
+        }
+
+        @Override
+        public void close() {
+          if (!closed) {
+            closed = true;
+            open.decrementAndGet();
+          }
+          source.close();
+        }
+      };
+    }
+  }
+
+  @Test
+  public void testReadAheadIsBounded() throws IOException {
+    setUp(true);
+    CountingClassProvider provider = new CountingClassProvider(null);
+    SourceLocator.v().setClassProviders(Collections.<ClassProvider>singletonList(provider));
+    Scene.v().loadNecessaryClasses();
+    assertTrue(Scene.v().getClasses().size() > 100);
+    assertEquals(0, provider.open.get());
+    // The prepared sources of 4 threads and the one being resolved
+    assertTrue(provider.maxOpen.get() <= 4 * 4 + 1);
+  }
+
+  @Test
+  public void testSourcesAreClosedWhenResolvingFails() throws IOException {
+    setUp(true);
+    CountingClassProvider provider = new CountingClassProvider("java.lang.String");
+    SourceLocator.v().setClassProviders(Collections.<ClassProvider>singletonList(provider));
+    try {
+      Scene.v().loadNecessaryClasses();
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals("Cannot resolve java.lang.String", e.getMessage());
+    }
+    assertTrue(provider.maxOpen.get() > 1);
+    assertEquals(0, provider.open.get());
+  }
+
+  @Test
+  public void testParallelResolutionMatchesSequential() throws IOException {
+    List<String> sequential = resolve(false);
+    assertTrue(sequential.size() > 100);
+    assertEquals(sequential, resolve(true));
+  }
+}
@@ -0,0 +1,185 @@
+package soot.jimple.spark.pag;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.options.SparkOptions;
+
+public class EdgeMapTest {
+  private PAG pag;
+  private RefType object;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    SootClass c = new SootClass("java.lang.Object");
+    c.setResolvingLevel(SootClass.BODIES);
+    Scene.v().addClass(c);
+    object = c.getType();
+    pag = new PAG(new SparkOptions(new HashMap<String, String>()));
+  }
+
+  private List<VarNode> makeNodes(int n) {
+    List<VarNode> nodes = new ArrayList<VarNode>();
+    for (int i = 0; i < n; i++) {
+      nodes.add(pag.makeGlobalVarNode("v" + i, object));
+    }
+    return nodes;
+  }
+
+  @Test
+  public void testAddGetRemove() {
+    List<VarNode> n = makeNodes(4);
+    EdgeMap<VarNode> m = new EdgeMap<VarNode>();
+    assertNull(m.get(n.get(0)));
+
+    assertTrue(m.addTarget(n.get(0), n.get(1)));
+    assertTrue(m.addTarget(n.get(0), n.get(2)));
+    assertFalse(m.addTarget(n.get(0), n.get(1)));
+    assertTrue(m.addTarget(n.get(3), n.get(0)));
+    assertEquals(2, m.size());
+    assertArrayEquals(new Node[] { n.get(1), n.get(2) }, m.get(n.get(0)));
+    assertTrue(m.containsKey(n.get(3)));
+    assertFalse(m.containsKey(n.get(1)));
+    assertFalse(m.containsKey("v0"));
+
+    Node[] before = m.get(n.get(0));
+    assertTrue(m.removeTarget(n.get(0), n.get(1)));
+    assertFalse(m.removeTarget(n.get(0), n.get(1)));
+    assertFalse(m.removeTarget(n.get(1), n.get(0)));
+    assertArrayEquals(new Node[] { n.get(1), n.get(2) }, before);
+    assertArrayEquals(new Node[] { n.get(2) }, m.get(n.get(0)));
+
+    assertTrue(m.removeTarget(n.get(0), n.get(2)));
+    assertNull(m.get(n.get(0)));
+    assertFalse(m.containsKey(n.get(0)));
+    assertEquals(1, m.size());
+
+    assertArrayEquals(new Node[] { n.get(0) }, m.remove(n.get(3)));
+    assertTrue(m.isEmpty());
+  }
+
+  @Test
+  public void testManyTargets() {
+    List<VarNode> n = makeNodes(100);
+    VarNode src = n.get(0);
+    EdgeMap<VarNode> m = new EdgeMap<VarNode>();
+    for (VarNode target : n) {
+      assertTrue(m.addTarget(src, target));
+    }
+    for (VarNode target : n) {
+      assertFalse(m.addTarget(src, target));
+    }
+    assertEquals(n, Arrays.asList(m.get(src)));
+
+    for (int i = 0; i < n.size(); i += 2) {
+      assertTrue(m.removeTarget(src, n.get(i)));
+    }
+    for (int i = 0; i < n.size(); i++) {
+      assertEquals(i % 2 != 0, !m.addTarget(src, n.get(i)));
+    }
+    assertEquals(new HashSet<Node>(n), new HashSet<Node>(Arrays.asList(m.get(src))));
+  }
+
+  @Test
+  public void testPutAndIteration() {
+    List<VarNode> n = makeNodes(1000);
+    EdgeMap<VarNode> m = new EdgeMap<VarNode>();
+    Map<VarNode, Set<Node>> expected = new HashMap<VarNode, Set<Node>>();
+    Random random = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      VarNode src = n.get(random.nextInt(n.size()));
+      VarNode tgt = n.get(random.nextInt(n.size()));
+      Set<Node> targets = expected.get(src);
+      if (targets == null) {
+        expected.put(src, targets = new HashSet<Node>());
+      }
+      assertEquals(targets.add(tgt), m.addTarget(src, tgt));
+    }
+    // put accepts arrays and collections, and an empty value removes the key
+    m.put(n.get(0), new Node[] { n.get(1) });
+    expected.put(n.get(0), new HashSet<Node>(Arrays.asList(n.get(1))));
+    m.put(n.get(1), Arrays.asList(n.get(2), n.get(3)));
+    expected.put(n.get(1), new HashSet<Node>(Arrays.asList(n.get(2), n.get(3))));
+    m.put(n.get(2), new Node[0]);
+    expected.remove(n.get(2));
+    checkSame(expected, m);
+
+    // Remove every other key while iterating; the rest must stay reachable
+    int i = 0;
+    for (Iterator<VarNode> it = m.keySet().iterator(); it.hasNext();) {
+      VarNode key = it.next();
+      if (i++ % 2 == 0) {
+        it.remove();
+        expected.remove(key);
+      }
+    }
+    checkSame(expected, m);
+
+    // Refill the slots freed above
+    for (VarNode src : n) {
+      if (!expected.containsKey(src)) {
+        m.addTarget(src, src);
+        expected.put(src, new HashSet<Node>(Arrays.asList(src)));
+      }
+    }
+    checkSame(expected, m);
+  }
+
+  private static void checkSame(Map<VarNode, Set<Node>> expected, EdgeMap<VarNode> m) {
+    assertEquals(expected.size(), m.size());
+    Set<VarNode> seen = new HashSet<VarNode>();
+    for (Entry<VarNode, Object> e : m.entrySet()) {
+      assertTrue(seen.add(e.getKey()));
+      Node[] targets = (Node[]) e.getValue();
+      assertEquals(expected.get(e.getKey()), new HashSet<Node>(Arrays.asList(targets)));
+      assertEquals(targets.length, expected.get(e.getKey()).size());
+      assertArrayEquals(targets, m.get(e.getKey()));
+    }
+    assertEquals(expected.keySet(), seen);
+    assertEquals(expected.keySet(), m.keySet());
+  }
+}
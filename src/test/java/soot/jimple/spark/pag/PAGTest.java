@@ -0,0 +1,70 @@
+package soot.jimple.spark.pag;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.RefType;
+import soot.Type;
+import soot.jimple.spark.solver.SparkTestUtility;
+
+public class PAGTest {
+  private PAG pag;
+
+  @Before
+  public void setUp() throws IOException {
+    SparkTestUtility.loadProgram(SparkTestUtility.POINTS_TO);
+    pag = SparkTestUtility.runSpark();
+  }
+
+  @Test
+  public void testLookupAfterMergeCopies() {
+    Type object = RefType.v("java.lang.Object");
+    VarNode src = pag.makeGlobalVarNode("src", object);
+    VarNode a = pag.makeGlobalVarNode("a", object);
+    VarNode b = pag.makeGlobalVarNode("b", object);
+    VarNode c = pag.makeGlobalVarNode("c", object);
+    pag.addSimpleEdge(src, a);
+    pag.addSimpleEdge(src, b);
+    pag.addSimpleEdge(src, c);
+    pag.addSimpleEdge(src, src);
+
+    Node[] before = pag.simpleLookup(src);
+    Node[] copy = before.clone();
+    a.mergeWith(b);
+
+    Node[] after = pag.simpleLookup(src);
+    assertArrayEquals(copy, before);
+    assertEquals(new HashSet<Node>(Arrays.asList(a, c)), new HashSet<Node>(Arrays.asList(after)));
+    assertEquals(2, after.length);
+    assertArrayEquals(after, pag.simpleLookup(src));
+  }
+}
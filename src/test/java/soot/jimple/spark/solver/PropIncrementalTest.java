@@ -0,0 +1,95 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static soot.jimple.spark.solver.SparkTestUtility.pointsToSets;
+import static soot.jimple.spark.solver.SparkTestUtility.runSpark;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.ReturnStmt;
+import soot.jimple.spark.pag.PAG;
+
+/**
+ * Checks that updating the points-to sets with {@link PropIncremental} after a body change gives the same result as running
+ * Spark again on the changed program.
+ */
+public class PropIncrementalTest {
+  private static final String CHOOSE = "<soot.jimple.spark.targets.PointsTo: soot.jimple.spark.targets.PointsTo "
+      + "choose(soot.jimple.spark.targets.PointsTo,soot.jimple.spark.targets.PointsTo)>";
+
+  private SootMethod choose;
+
+  @Before
+  public void setUp() throws IOException {
+    SparkTestUtility.loadProgram(SparkTestUtility.POINTS_TO);
+    choose = Scene.v().getMethod(CHOOSE);
+  }
+
+  /** Makes choose() return its second parameter instead of the first. */
+  private void changeChoose() {
+    Body b = choose.retrieveActiveBody();
+    for (Unit u : b.getUnits()) {
+      if (u instanceof ReturnStmt) {
+        ((ReturnStmt) u).setOp(b.getParameterLocal(1));
+      }
+    }
+  }
+
+  @Test
+  public void testChangedMethod() {
+    PAG pag = runSpark("propagator:worklist");
+    Map<String, Set<String>> before = pointsToSets(pag);
+
+    changeChoose();
+    PropIncremental incremental = new PropIncremental(pag);
+    incremental.changeMethod(choose);
+    incremental.propagate();
+    Map<String, Set<String>> updated = pointsToSets(pag);
+    assertNotEquals(before, updated);
+
+    assertEquals(pointsToSets(runSpark("propagator:worklist")), updated);
+  }
+
+  @Test
+  public void testUnchangedMethod() {
+    PAG pag = runSpark("propagator:worklist");
+    Map<String, Set<String>> before = pointsToSets(pag);
+
+    PropIncremental incremental = new PropIncremental(pag);
+    incremental.changeMethod(choose);
+    incremental.propagate();
+    assertEquals(before, pointsToSets(pag));
+  }
+}
@@ -0,0 +1,91 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static soot.jimple.spark.solver.SparkTestUtility.pointsToSets;
+import static soot.jimple.spark.solver.SparkTestUtility.runSpark;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.edges;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Scene;
+import soot.options.Options;
+
+/**
+ * Checks that {@link PropParallel} computes the same points-to sets and on-the-fly call graph as {@link PropWorklist}.
+ */
+public class PropParallelTest {
+  @Before
+  public void setUp() throws IOException {
+    SparkTestUtility.loadProgram(SparkTestUtility.POINTS_TO);
+    Options.v().set_num_threads(4);
+    // The test program is too small to reach the default threshold of the parallel steps
+    PropParallel.setMinParallelTargets(1);
+  }
+
+  @After
+  public void tearDown() {
+    PropParallel.setMinParallelTargets(PropParallel.MIN_PARALLEL_TARGETS);
+  }
+
+  private void assertSameAsWorklist(String setImpl) {
+    Map<String, Set<String>> expected = pointsToSets(runSpark("propagator:worklist", "set-impl:" + setImpl));
+    Set<String> expectedEdges = edges(Scene.v().getCallGraph());
+
+    Map<String, Set<String>> actual = pointsToSets(runSpark("propagator:parallel", "set-impl:" + setImpl));
+    assertEquals(expected, actual);
+    assertEquals(expectedEdges, edges(Scene.v().getCallGraph()));
+  }
+
+  @Test
+  public void testDoubleSets() {
+    assertSameAsWorklist("double");
+  }
+
+  @Test
+  public void testHybridSets() {
+    assertSameAsWorklist("hybrid");
+  }
+
+  @Test
+  public void testBitSets() {
+    assertSameAsWorklist("bit");
+  }
+
+  @Test
+  public void testRoaringSets() {
+    assertSameAsWorklist("roaring");
+  }
+
+  @Test
+  public void testSharedListSetsRunSequentially() {
+    assertSameAsWorklist("sharedlist");
+  }
+}
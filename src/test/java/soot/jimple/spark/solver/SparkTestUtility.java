@@ -0,0 +1,118 @@
+package soot.jimple.spark.solver;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import soot.G;
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Value;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.toolkits.callgraph.CallGraphTestUtility;
+
+/**
+ * Runs Spark on a small test program and collects its points-to sets in a form that can be compared across runs.
+ */
+public class SparkTestUtility {
+  public static final String POINTS_TO = "soot.jimple.spark.targets.PointsTo";
+
+  /** Loads the given program in whole-program mode, with its main method as the only entry point. */
+  public static void loadProgram(String mainClass) throws IOException {
+    CallGraphTestUtility.loadProgram(mainClass);
+  }
+
+  /**
+   * Runs Spark from scratch with its default options, overridden by the given "name:value" pairs, and returns the
+   * resulting PAG.
+   */
+  public static PAG runSpark(String... options) {
+    G.v().resetSpark();
+    Scene.v().releaseCallGraph();
+    Scene.v().releasePointsToAnalysis();
+    Scene.v().releaseReachableMethods();
+
+    Map<String, String> opts = new HashMap<String, String>(PhaseOptions.v().getPhaseOptions("cg.spark"));
+    opts.put("enabled", "true");
+    for (String o : options) {
+      int i = o.indexOf(':');
+      opts.put(o.substring(0, i), o.substring(i + 1));
+    }
+    SparkTransformer.v().transform("cg.spark", opts);
+    return (PAG) Scene.v().getPointsToAnalysis();
+  }
+
+  /**
+   * Returns the points-to set of every local of every reachable application method, and of every static field of the
+   * application classes. Keys name the method and local or the field; allocation sites are named by the identity of
+   * their new expression, which is the same in all runs on the same bodies.
+   */
+  public static Map<String, Set<String>> pointsToSets(PAG pag) {
+    Map<String, Set<String>> ret = new HashMap<String, Set<String>>();
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      SootMethod m = it.next().method();
+      if (!m.getDeclaringClass().isApplicationClass() || !m.hasActiveBody()) {
+        continue;
+      }
+      for (Local l : m.getActiveBody().getLocals()) {
+        ret.put(m.getSignature() + " " + l.getName(), allocSites((PointsToSetInternal) pag.reachingObjects(l)));
+      }
+      for (SootField f : m.getDeclaringClass().getFields()) {
+        if (f.isStatic()) {
+          ret.put(f.getSignature(), allocSites((PointsToSetInternal) pag.reachingObjects(f)));
+        }
+      }
+    }
+    return ret;
+  }
+
+  private static Set<String> allocSites(PointsToSetInternal set) {
+    final Set<String> ret = new HashSet<String>();
+    set.forall(new P2SetVisitor() {
+      @Override
+      public void visit(Node n) {
+        Object newExpr = ((AllocNode) n).getNewExpr();
+        if (newExpr instanceof Value) {
+          ret.add(newExpr + "@" + System.identityHashCode(newExpr));
+        } else {
+          ret.add(String.valueOf(newExpr));
+        }
+      }
+    });
+    return ret;
+  }
+}
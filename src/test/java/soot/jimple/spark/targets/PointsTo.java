@@ -0,0 +1,83 @@
+package soot.jimple.spark.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Small program for the points-to tests, with field stores and loads, arrays, string and class constants, and virtual and
+ * static calls. a and b are of the same class, so changing which of them choose() returns does not change the targets of
+ * any virtual call.
+ */
+public class PointsTo {
+  static Object global;
+  static Object name;
+  static Object type;
+
+  Object f;
+
+  public static void main(String[] args) {
+    PointsTo a = new PointsTo();
+    PointsTo b = new PointsTo();
+    PointsTo s = new SubPointsTo();
+    Item x = new Item();
+    Item y = new Item();
+    a.f = x;
+    b.f = y;
+    s.f = x;
+    Object ax = a.get();
+    Object by = b.get();
+    Object sx = s.get();
+    PointsTo c = choose(a, b);
+    c.f = new Item();
+    global = c.get();
+    Object[] arr = new Object[2];
+    arr[0] = ax;
+    arr[1] = identity(by);
+    Object z = arr[1];
+    global = identity(z != null ? z : sx);
+    name = "item";
+    type = Item.class;
+  }
+
+  Object get() {
+    return f;
+  }
+
+  static PointsTo choose(PointsTo p, PointsTo q) {
+    return p;
+  }
+
+  static Object identity(Object o) {
+    return o;
+  }
+}
+
+class SubPointsTo extends PointsTo {
+  @Override
+  Object get() {
+    Object ret = f;
+    return ret != null ? ret : new Item();
+  }
+}
+
+class Item {
+}
@@ -0,0 +1,251 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.edges;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.AnySubType;
+import soot.ArrayType;
+import soot.G;
+import soot.Kind;
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.Modifier;
+import soot.NullType;
+import soot.PointsToAnalysis;
+import soot.PointsToSet;
+import soot.RefLikeType;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.AssignStmt;
+import soot.jimple.ClassConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.NewExpr;
+import soot.jimple.Stmt;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.spark.solver.SparkTestUtility;
+import soot.jimple.toolkits.pointer.StoredPointsToAnalysis;
+import soot.jimple.toolkits.pointer.StoredPointsToAnalysis.StoredPointsToSet;
+import soot.options.Options;
+
+public class CallGraphSerializerTest {
+  private SootMethod a;
+  private SootMethod b;
+  private SootMethod c;
+  private Stmt callB;
+  private Stmt callC;
+  private CallGraph cg;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    G.reset();
+    SootClass cl = new SootClass("Test", Modifier.PUBLIC);
+    Scene.v().addClass(cl);
+    a = newMethod(cl, "a");
+    b = newMethod(cl, "b");
+    c = newMethod(cl, "c");
+    callB = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(b.makeRef()));
+    callC = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(c.makeRef()));
+    a.getActiveBody().getUnits().add(callB);
+    a.getActiveBody().getUnits().add(callC);
+    b.getActiveBody().getUnits().add(Jimple.v().newNopStmt());
+    b.getActiveBody().getUnits().add((Stmt) callC.clone());
+
+    cg = new CallGraph();
+    cg.addEdge(new Edge(a, callB, b));
+    cg.addEdge(new Edge(a, callC, c));
+    cg.addEdge(new Edge(a, callC, b, Kind.VIRTUAL));
+    cg.addEdge(new Edge(b, b.getActiveBody().getUnits().getLast(), c, Kind.CLINIT));
+    cg.addEdge(new Edge(null, null, a, Kind.THREAD));
+
+    file = File.createTempFile("callgraph", ".bin");
+    file.deleteOnExit();
+  }
+
+  private static SootMethod newMethod(SootClass cl, String name) {
+    SootMethod m = new SootMethod(name, Collections.<Type>emptyList(), VoidType.v(), Modifier.STATIC);
+    cl.addMethod(m);
+    JimpleBody body = Jimple.v().newBody(m);
+    m.setActiveBody(body);
+    return m;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    CallGraphSerializer.write(file, cg, null);
+    CallGraphSerializer.read(file);
+    CallGraph read = Scene.v().getCallGraph();
+    assertTrue(read != cg);
+    assertEquals(cg.size(), read.size());
+    assertEquals(edges(cg), edges(read));
+  }
+
+  @Test
+  public void testRemovedEdgesAreNotWritten() {
+    cg.removeEdge(new Edge(a, callB, b));
+    CallGraphSerializer.write(file, cg, null);
+    CallGraphSerializer.read(file);
+    assertEquals(edges(cg), edges(Scene.v().getCallGraph()));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testChangedBodyIsRejected() {
+    CallGraphSerializer.write(file, cg, null);
+    a.getActiveBody().getUnits().add(Jimple.v().newNopStmt());
+    CallGraphSerializer.read(file);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testChangedBodyOfSameSizeIsRejected() {
+    CallGraphSerializer.write(file, cg, null);
+    // Same number of units and locals, but the calls are swapped
+    a.getActiveBody().getUnits().remove(callB);
+    a.getActiveBody().getUnits().addLast(callB);
+    CallGraphSerializer.read(file);
+  }
+
+  @Test
+  public void testReadInSmallMappings() {
+    CallGraphSerializer.write(file, cg, null);
+    // Forces the reader to map the file again for almost every number
+    CallGraphSerializer.read(file, 10);
+    assertEquals(edges(cg), edges(Scene.v().getCallGraph()));
+  }
+
+  @Test
+  public void testPointsToRoundTrip() throws IOException {
+    SparkTestUtility.loadProgram(SparkTestUtility.POINTS_TO);
+    PAG pag = SparkTestUtility.runSpark("string-constants:true");
+    SootClass pointsTo = Scene.v().getSootClass(SparkTestUtility.POINTS_TO);
+    SootField global = pointsTo.getFieldByName("global");
+    SootField f = pointsTo.getFieldByName("f");
+    // Spark only makes objects of these types for the library, which is not loaded here
+    PointsToSetInternal globalSet = pag.findGlobalVarNode(global).getP2Set();
+    globalSet.add(pag.makeAllocNode(PointsToAnalysis.DEFAULT_CLASS_LOADER,
+        AnySubType.v(RefType.v("java.lang.ClassLoader")), null));
+    globalSet.add(pag.makeAllocNode(NullType.v(), NullType.v(), null));
+    List<SootMethod> methods = new ArrayList<SootMethod>();
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      SootMethod m = it.next().method();
+      if (m.getDeclaringClass().isApplicationClass() && m.hasActiveBody()) {
+        methods.add(m);
+      }
+    }
+
+    CallGraphSerializer.write(file, Scene.v().getCallGraph(), pag);
+    CallGraphSerializer.read(file);
+    assertTrue(Scene.v().getPointsToAnalysis() instanceof StoredPointsToAnalysis);
+    StoredPointsToAnalysis read = (StoredPointsToAnalysis) Scene.v().getPointsToAnalysis();
+
+    List<PointsToSet> expected = new ArrayList<PointsToSet>();
+    List<PointsToSet> actual = new ArrayList<PointsToSet>();
+    for (SootField sf : pointsTo.getFields()) {
+      if (sf.isStatic()) {
+        expected.add(pag.reachingObjects(sf));
+        actual.add(read.reachingObjects(sf));
+      }
+    }
+    for (SootMethod m : methods) {
+      for (Local l : m.getActiveBody().getLocals()) {
+        if (!(l.getType() instanceof RefLikeType)) {
+          continue;
+        }
+        expected.add(pag.reachingObjects(l));
+        actual.add(read.reachingObjects(l));
+        if (l.getType() instanceof ArrayType) {
+          expected.add(pag.reachingObjectsOfArrayElement(pag.reachingObjects(l)));
+          actual.add(read.reachingObjectsOfArrayElement(read.reachingObjects(l)));
+        } else {
+          expected.add(pag.reachingObjects(l, f));
+          actual.add(read.reachingObjects(l, f));
+        }
+      }
+    }
+    for (int i = 0; i < expected.size(); i++) {
+      PointsToSet e = expected.get(i);
+      PointsToSet a = actual.get(i);
+      assertEquals(e.isEmpty(), a.isEmpty());
+      assertEquals(e.possibleTypes(), a.possibleTypes());
+      assertEquals(e.possibleStringConstants(), a.possibleStringConstants());
+      assertEquals(e.possibleClassConstants(), a.possibleClassConstants());
+      // Objects of the same type are told apart by which sets they share
+      for (int j = 0; j < expected.size(); j++) {
+        assertEquals(e.hasNonEmptyIntersection(expected.get(j)), a.hasNonEmptyIntersection(actual.get(j)));
+      }
+    }
+
+    Set<Type> globalTypes = read.reachingObjects(global).possibleTypes();
+    assertTrue(globalTypes.contains(AnySubType.v(RefType.v("java.lang.ClassLoader"))));
+    assertTrue(globalTypes.contains(NullType.v()));
+    Set<String> strings = read.reachingObjects(pointsTo.getFieldByName("name")).possibleStringConstants();
+    assertEquals(Collections.singleton("item"), strings);
+    Set<ClassConstant> classes = read.reachingObjects(pointsTo.getFieldByName("type")).possibleClassConstants();
+    assertEquals(1, classes.size());
+    assertTrue(classes.iterator().next().getValue().contains("Item"));
+
+    // main allocates two PointsTo objects, which are told apart by their allocation sites
+    List<Unit> sites = new ArrayList<Unit>();
+    for (Unit u : pointsTo.getMethodByName("main").getActiveBody().getUnits()) {
+      if (u instanceof AssignStmt && ((AssignStmt) u).getRightOp() instanceof NewExpr
+          && ((AssignStmt) u).getRightOp().getType().equals(pointsTo.getType())) {
+        sites.add(u);
+        Local l = (Local) ((AssignStmt) u).getLeftOp();
+        StoredPointsToSet set = (StoredPointsToSet) read.reachingObjects(l);
+        assertEquals(Collections.singleton(u), set.possibleAllocSites());
+      }
+    }
+    assertEquals(2, sites.size());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testChangedOptionsAreRejected() throws IOException {
+    SparkTestUtility.loadProgram(SparkTestUtility.POINTS_TO);
+    SparkTestUtility.runSpark();
+    CallGraphSerializer.write(file, Scene.v().getCallGraph(), null);
+    // The bodies of classes loaded from class files are checked against the options they were built with
+    Options.v().setPhaseOption("jb", "use-original-names:true");
+    CallGraphSerializer.read(file);
+  }
+}
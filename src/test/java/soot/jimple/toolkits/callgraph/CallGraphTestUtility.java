@@ -0,0 +1,132 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.options.Options;
+
+/**
+ * Loads a small whole program from the test classes and compares call graphs built for it.
+ */
+public class CallGraphTestUtility {
+  public static final String SHAPES = "soot.jimple.toolkits.callgraph.targets.Shapes";
+
+  /**
+   * Resets Soot and loads the given main class and everything it refers to from the test classes in whole-program mode.
+   * The library only contributes signatures, and main is the only entry point.
+   *
+   * @return the main method
+   */
+  public static SootMethod loadProgram(String mainClass) throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_src_prec(Options.src_prec_only_class);
+    Options.v().set_whole_program(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_main_class(mainClass);
+    Options.v().classes().add(mainClass);
+    Scene.v().loadNecessaryClasses();
+
+    SootMethod main = Scene.v().getMainMethod();
+    Scene.v().setEntryPoints(Collections.singletonList(main));
+    return main;
+  }
+
+  /**
+   * Returns one string per edge, made up of the source, the index of the call site in the body of the source, the target
+   * and the kind. The strings can be compared across calls to {@link G#reset()} that load the same program.
+   */
+  public static Set<String> edges(CallGraph cg) {
+    Set<String> ret = new HashSet<String>();
+    for (Edge e : cg) {
+      ret.add(e.src() + " " + indexOf(e.src(), e.srcUnit()) + " " + e.tgt() + " " + e.kind());
+    }
+    return ret;
+  }
+
+  private static int indexOf(SootMethod m, Unit u) {
+    if (u == null) {
+      return -1;
+    }
+    int i = 0;
+    for (Unit v : m.getActiveBody().getUnits()) {
+      if (v == u) {
+        return i;
+      }
+      i++;
+    }
+    throw new IllegalArgumentException(u + " is not in " + m);
+  }
+
+  /** Returns the signatures of the methods the Scene's reachable methods contain. */
+  public static Set<String> reachables() {
+    Set<String> ret = new HashSet<String>();
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      ret.add(it.next().method().getSignature());
+    }
+    return ret;
+  }
+
+  /** Returns the signatures of the targets of the given call site. */
+  public static Set<String> targets(CallGraph cg, Unit callSite) {
+    Set<String> ret = new HashSet<String>();
+    for (Iterator<Edge> it = cg.edgesOutOf(callSite); it.hasNext();) {
+      ret.add(it.next().tgt().getSignature());
+    }
+    return ret;
+  }
+
+  /** Returns the calls in the active body of m to methods of the given name, in body order. */
+  public static List<Stmt> callsTo(SootMethod m, String name) {
+    List<Stmt> ret = new ArrayList<Stmt>();
+    for (Unit u : m.retrieveActiveBody().getUnits()) {
+      Stmt s = (Stmt) u;
+      if (s.containsInvokeExpr() && s.getInvokeExpr().getMethodRef().name().equals(name)) {
+        ret.add(s);
+      }
+    }
+    return ret;
+  }
+
+  /** Returns the signature of the method with the given subsignature in the test class of the given simple name. */
+  public static String method(String simpleClassName, String subSignature) {
+    return "<soot.jimple.toolkits.callgraph.targets." + simpleClassName + ": " + subSignature + ">";
+  }
+}
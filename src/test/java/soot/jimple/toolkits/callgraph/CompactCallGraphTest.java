@@ -0,0 +1,227 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Kind;
+import soot.Modifier;
+import soot.MethodOrMethodContext;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.options.Options;
+import soot.util.queue.QueueReader;
+
+public class CompactCallGraphTest {
+  private SootMethod a;
+  private SootMethod b;
+  private SootMethod c;
+  private Stmt callB;
+  private Stmt callC;
+  private Edge aCallsB;
+  private CallGraph cg;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    SootClass cl = new SootClass("Test", Modifier.PUBLIC);
+    Scene.v().addClass(cl);
+    a = newMethod(cl, "a");
+    b = newMethod(cl, "b");
+    c = newMethod(cl, "c");
+    callB = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(b.makeRef()));
+    callC = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(c.makeRef()));
+
+    cg = new CallGraph();
+    aCallsB = new Edge(a, callB, b);
+    cg.addEdge(aCallsB);
+    cg.addEdge(new Edge(a, callC, c));
+    cg.addEdge(new Edge(a, callC, b, Kind.VIRTUAL));
+    cg.addEdge(new Edge(b, callC, c, Kind.CLINIT));
+    cg.addEdge(new Edge(null, null, a, Kind.THREAD));
+  }
+
+  private static SootMethod newMethod(SootClass cl, String name) {
+    SootMethod m = new SootMethod(name, Collections.<Type>emptyList(), VoidType.v(), Modifier.STATIC);
+    cl.addMethod(m);
+    Scene.v().getMethodNumberer().add(m);
+    return m;
+  }
+
+  private static Set<Edge> toSet(Iterator<Edge> it) {
+    Set<Edge> ret = new HashSet<Edge>();
+    while (it.hasNext()) {
+      ret.add(it.next());
+    }
+    return ret;
+  }
+
+  private void assertSameEdges(CallGraph expected, CallGraph actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(toSet(expected.iterator()), toSet(actual.iterator()));
+    for (SootMethod m : new SootMethod[] { a, b, c }) {
+      assertEquals(toSet(expected.edgesOutOf(m)), toSet(actual.edgesOutOf(m)));
+      assertEquals(toSet(expected.edgesInto(m)), toSet(actual.edgesInto(m)));
+      assertEquals(expected.isEntryMethod(m), actual.isEntryMethod(m));
+    }
+    for (Stmt s : new Stmt[] { callB, callC }) {
+      assertEquals(toSet(expected.edgesOutOf(s)), toSet(actual.edgesOutOf(s)));
+    }
+  }
+
+  @Test
+  public void testSameEdges() {
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    assertSameEdges(cg, compact);
+    assertEquals(b, compact.findEdge(callC, b).tgt());
+    assertNull(compact.findEdge(callB, c));
+
+    List<MethodOrMethodContext> sources = new ArrayList<MethodOrMethodContext>();
+    for (Iterator<MethodOrMethodContext> it = compact.sourceMethods(); it.hasNext();) {
+      sources.add(it.next());
+    }
+    assertEquals(3, sources.size());
+    assertTrue(sources.contains(a) && sources.contains(b) && sources.contains(null));
+  }
+
+  @Test
+  public void testRemovedEdgesAreDropped() {
+    cg.removeEdge(aCallsB);
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    assertSameEdges(cg, compact);
+    assertFalse(compact.edgesOutOf(callB).hasNext());
+  }
+
+  @Test
+  public void testUnknownUnit() {
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    assertFalse(compact.edgesOutOf(Jimple.v().newNopStmt()).hasNext());
+  }
+
+  @Test
+  public void testAddAndRemoveEdges() {
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    assertFalse(compact.addEdge(new Edge(a, callC, c)));
+
+    Edge added = new Edge(b, callB, b, Kind.VIRTUAL);
+    assertTrue(cg.addEdge(added));
+    assertTrue(compact.addEdge(new Edge(b, callB, b, Kind.VIRTUAL)));
+    assertTrue(cg.removeEdge(aCallsB));
+    assertTrue(compact.removeEdge(new Edge(a, callB, b)));
+    assertFalse(compact.removeEdge(new Edge(a, callB, b)));
+    assertSameEdges(cg, compact);
+    assertEquals(b, compact.findEdge(callB, b).tgt());
+
+    assertTrue(cg.removeEdge(added));
+    assertTrue(compact.removeEdge(new Edge(b, callB, b, Kind.VIRTUAL)));
+    assertSameEdges(cg, compact);
+    assertNull(compact.findEdge(callB, b));
+  }
+
+  @Test
+  public void testSwapAndRemoveEdgesOutOf() {
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    Stmt newCallC = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(c.makeRef()));
+
+    assertTrue(cg.swapEdgesOutOf(callC, newCallC));
+    assertTrue(compact.swapEdgesOutOf(callC, newCallC));
+    assertTrue(cg.removeAllEdgesOutOf(callB));
+    assertTrue(compact.removeAllEdgesOutOf(callB));
+    assertFalse(compact.removeAllEdgesOutOf(callB));
+    assertSameEdges(cg, compact);
+    assertEquals(toSet(cg.edgesOutOf(newCallC)), toSet(compact.edgesOutOf(newCallC)));
+    assertEquals(3, toSet(compact.edgesOutOf(newCallC)).size());
+  }
+
+  @Test
+  public void testListenerSeesChanges() {
+    CompactCallGraph compact = new CompactCallGraph(cg);
+    QueueReader<Edge> all = compact.listener();
+    QueueReader<Edge> fresh = compact.newListener();
+    Edge added = new Edge(b, callB, b, Kind.VIRTUAL);
+    compact.addEdge(added);
+    compact.removeEdge(new Edge(a, callB, b));
+
+    assertEquals(toSet(compact.iterator()), toSet(all));
+    assertEquals(Collections.singleton(added), toSet(fresh));
+  }
+
+  /** Runs the whole-program and body optimizations, which change the call graph, once on a compact call graph. */
+  @Test
+  public void testOptimizationsOnCompactCallGraph() throws IOException {
+    Set<String> plain = optimizeShapes(false);
+    Set<String> compact = optimizeShapes(true);
+    assertEquals(plain, compact);
+    assertTrue(compact.toString(), compact.contains(
+        CallGraphTestUtility.method("Shapes", "void main(java.lang.String[])") + " -> "
+            + CallGraphTestUtility.method("Derived", "void run_static(soot.jimple.toolkits.callgraph.targets.Derived)")));
+  }
+
+  private static Set<String> optimizeShapes(boolean compact) throws IOException {
+    SootMethod main = CallGraphTestUtility.loadProgram(CallGraphTestUtility.SHAPES);
+    // The static method binder only rewrites calls to application classes
+    for (SootClass cl : Scene.v().getClasses()) {
+      if (cl.getPackageName().equals(main.getDeclaringClass().getPackageName())) {
+        cl.setApplicationClass();
+      }
+    }
+    Options.v().setPhaseOption("cg", "compact:" + compact);
+    Options.v().setPhaseOption("cg.spark", "on");
+    Options.v().setPhaseOption("wjop", "on");
+    Options.v().setPhaseOption("wjop.smb", "on");
+    Options.v().setPhaseOption("wjop.si", "off");
+    Options.v().setPhaseOption("jop", "on");
+    PackManager.v().getPack("cg").apply();
+    PackManager.v().getPack("wjop").apply();
+    PackManager.v().getPack("jop").apply(main.retrieveActiveBody());
+
+    CallGraph cg = Scene.v().getCallGraph();
+    assertEquals(compact, cg instanceof CompactCallGraph);
+    Set<String> ret = new HashSet<String>();
+    for (Edge e : cg) {
+      ret.add(e.src() + " -> " + e.tgt());
+    }
+    return ret;
+  }
+}
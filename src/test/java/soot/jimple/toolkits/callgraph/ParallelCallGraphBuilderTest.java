@@ -0,0 +1,85 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.edges;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.reachables;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+
+/**
+ * Checks that CHA builds the same call graph with one and with several threads.
+ */
+public class ParallelCallGraphBuilderTest {
+  @Before
+  public void setUp() throws IOException {
+    CallGraphTestUtility.loadProgram(CallGraphTestUtility.SHAPES);
+  }
+
+  private static CallGraph build(int numThreads) {
+    CallGraphBuilder builder = new CallGraphBuilder(DumbPointerAnalysis.v());
+    builder.setNumThreads(numThreads);
+    builder.build();
+    return builder.getCallGraph();
+  }
+
+  /**
+   * Builds the parallel call graphs first, each after reloading the program, so that the bodies are loaded concurrently
+   * while the call graph is built.
+   */
+  @Test
+  public void testSameEdges() throws IOException {
+    Map<Integer, Set<String>> parallelEdges = new HashMap<Integer, Set<String>>();
+    Map<Integer, Set<String>> parallelReachables = new HashMap<Integer, Set<String>>();
+    for (int numThreads : new int[] { 2, 4, 8 }) {
+      CallGraphTestUtility.loadProgram(CallGraphTestUtility.SHAPES);
+      parallelEdges.put(numThreads, edges(build(numThreads)));
+      parallelReachables.put(numThreads, reachables());
+    }
+
+    CallGraphTestUtility.loadProgram(CallGraphTestUtility.SHAPES);
+    Set<String> sequential = edges(build(1));
+    Set<String> sequentialReachables = reachables();
+    for (int numThreads : parallelEdges.keySet()) {
+      assertEquals(sequential, parallelEdges.get(numThreads));
+      assertEquals(sequentialReachables, parallelReachables.get(numThreads));
+    }
+  }
+
+  @Test
+  public void testSameEdgesWhenRepeated() {
+    CallGraph first = build(4);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(edges(first), edges(build(4)));
+    }
+  }
+}
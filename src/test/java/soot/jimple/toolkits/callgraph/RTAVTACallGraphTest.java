@@ -0,0 +1,167 @@
+package soot.jimple.toolkits.callgraph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.callsTo;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.edges;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.method;
+import static soot.jimple.toolkits.callgraph.CallGraphTestUtility.targets;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.RefType;
+import soot.Scene;
+import soot.SootMethod;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+
+/**
+ * Compares the call graphs of RTA and VTA with the one of CHA on {@link soot.jimple.toolkits.callgraph.targets.Shapes}.
+ */
+public class RTAVTACallGraphTest {
+  private static final String CIRCLE_DRAW = method("Circle", "void draw()");
+  private static final String SQUARE_DRAW = method("Square", "void draw()");
+  private static final String TRIANGLE_DRAW = method("Triangle", "void draw()");
+  private static final String BASE_RUN = method("Base", "void run()");
+  private static final String DERIVED_RUN = method("Derived", "void run()");
+
+  private SootMethod main;
+  private Stmt drawA;
+  private Stmt drawB;
+  private Stmt drawS;
+  private Stmt drawP;
+  private Stmt run;
+
+  @Before
+  public void setUp() throws IOException {
+    main = CallGraphTestUtility.loadProgram(CallGraphTestUtility.SHAPES);
+    List<Stmt> draws = callsTo(main, "draw");
+    assertEquals(4, draws.size());
+    drawA = draws.get(0);
+    drawB = draws.get(1);
+    drawS = draws.get(2);
+    drawP = draws.get(3);
+    run = callsTo(main, "run").get(0);
+  }
+
+  private static CallGraph cha() {
+    CallGraphBuilder cg = new CallGraphBuilder(DumbPointerAnalysis.v());
+    cg.build();
+    return cg.getCallGraph();
+  }
+
+  private static Set<String> set(String... elements) {
+    return new HashSet<String>(Arrays.asList(elements));
+  }
+
+  @Test
+  public void testCHA() {
+    CallGraph cha = cha();
+    Set<String> shapes = set(CIRCLE_DRAW, SQUARE_DRAW, TRIANGLE_DRAW);
+    assertEquals(shapes, targets(cha, drawA));
+    assertEquals(shapes, targets(cha, drawB));
+    assertEquals(shapes, targets(cha, drawS));
+    assertEquals(set(BASE_RUN, DERIVED_RUN), targets(cha, run));
+  }
+
+  @Test
+  public void testRTA() {
+    Set<String> cha = edges(cha());
+
+    RTACallGraphBuilder builder = new RTACallGraphBuilder();
+    builder.build();
+    CallGraph rta = builder.getCallGraph();
+
+    Set<String> rtaEdges = edges(rta);
+    assertTrue(cha.containsAll(rtaEdges));
+    assertTrue(rtaEdges.size() < cha.size());
+
+    // Triangle is never allocated in reachable code
+    Set<String> shapes = set(CIRCLE_DRAW, SQUARE_DRAW);
+    assertEquals(shapes, targets(rta, drawA));
+    assertEquals(shapes, targets(rta, drawB));
+    assertEquals(shapes, targets(rta, drawS));
+
+    // Base is only constructed through the super() call of Derived
+    assertEquals(set(DERIVED_RUN), targets(rta, run));
+    assertFalse(builder.getInstantiatedTypes().contains(RefType.v("soot.jimple.toolkits.callgraph.targets.Base")));
+    assertFalse(builder.getInstantiatedTypes().contains(RefType.v("soot.jimple.toolkits.callgraph.targets.Shape")));
+    assertFalse(builder.getInstantiatedTypes().contains(RefType.v("java.lang.Object")));
+    assertTrue(builder.getInstantiatedTypes().contains(RefType.v("soot.jimple.toolkits.callgraph.targets.Derived")));
+  }
+
+  @Test
+  public void testVTA() {
+    Set<String> cha = edges(cha());
+    RTACallGraphBuilder rtaBuilder = new RTACallGraphBuilder();
+    rtaBuilder.build();
+    Set<String> rta = edges(rtaBuilder.getCallGraph());
+
+    VTATransformer.v().transform();
+    CallGraph vta = Scene.v().getCallGraph();
+
+    Set<String> vtaEdges = edges(vta);
+    assertTrue(cha.containsAll(vtaEdges));
+    assertTrue(rta.containsAll(vtaEdges));
+
+    // a only holds a Circle and b only a Square; s may hold either
+    assertEquals(set(CIRCLE_DRAW), targets(vta, drawA));
+    assertEquals(set(SQUARE_DRAW), targets(vta, drawB));
+    assertEquals(set(CIRCLE_DRAW, SQUARE_DRAW), targets(vta, drawS));
+    assertEquals(set(DERIVED_RUN), targets(vta, run));
+  }
+
+  @Test
+  public void testVTAIgnoresStaticInitializerEdges() {
+    VTATransformer.v().transform();
+    CallGraph vta = Scene.v().getCallGraph();
+
+    // The factory call also has an edge to Palette.<clinit>, which returns nothing into p
+    Stmt factory = callsTo(main, "circle").get(1);
+    assertTrue(targets(vta, factory).contains(method("Palette", "void <clinit>()")));
+    assertEquals(set(CIRCLE_DRAW), targets(vta, drawP));
+  }
+
+  @Test
+  public void testVTAEntryPointParameters() {
+    SootMethod redraw = Scene.v().getMainClass().getMethodByName("redraw");
+    Stmt draw = callsTo(redraw, "draw").get(0);
+    VTATransformer.v().transform();
+    assertEquals(set(CIRCLE_DRAW), targets(Scene.v().getCallGraph(), draw));
+
+    // As an entry point, redraw may also be called from outside with any shape
+    Scene.v().setEntryPoints(Arrays.asList(main, redraw));
+    VTATransformer.v().transform();
+    assertEquals(set(CIRCLE_DRAW, SQUARE_DRAW), targets(Scene.v().getCallGraph(), draw));
+  }
+}
@@ -0,0 +1,131 @@
+package soot.jimple.toolkits.callgraph.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Small program for the call graph tests. Triangle is only allocated in a method that is never called, so only CHA
+ * resolves calls to it. Base is only constructed as the superclass of Derived. In main, local a only ever holds a Circle
+ * and b only a Square, which VTA can tell apart but RTA cannot. The locals of main are assigned from factory methods, so
+ * that Jimple types them as Shape and Base rather than as the allocated class. The factory of Palette also has an
+ * edge to the static initializer of Palette, and redraw is only called with a Circle.
+ */
+public class Shapes {
+  public static void main(String[] args) {
+    Shape a = circle();
+    Shape b = square();
+    a.draw();
+    b.draw();
+    Shape s = args.length > 0 ? a : b;
+    s.draw();
+    Base d = derived();
+    d.run();
+    area(s);
+    Shape p = Palette.circle();
+    p.draw();
+    redraw(a);
+  }
+
+  static Shape circle() {
+    return new Circle();
+  }
+
+  static Shape square() {
+    return new Square();
+  }
+
+  static Base derived() {
+    return new Derived();
+  }
+
+  static int area(Shape s) {
+    return s.area();
+  }
+
+  static void redraw(Shape s) {
+    s.draw();
+  }
+
+  static Shape unused() {
+    return new Triangle();
+  }
+}
+
+abstract class Shape {
+  abstract void draw();
+
+  int area() {
+    return 0;
+  }
+}
+
+class Circle extends Shape {
+  @Override
+  void draw() {
+  }
+
+  @Override
+  int area() {
+    return 3;
+  }
+}
+
+class Square extends Shape {
+  @Override
+  void draw() {
+  }
+
+  @Override
+  int area() {
+    return 4;
+  }
+}
+
+class Triangle extends Shape {
+  @Override
+  void draw() {
+  }
+}
+
+class Palette {
+  static int made;
+
+  static {
+    made = 0;
+  }
+
+  static Shape circle() {
+    made++;
+    return new Circle();
+  }
+}
+
+class Base {
+  void run() {
+  }
+}
+
+class Derived extends Base {
+  @Override
+  void run() {
+  }
+}
@@ -0,0 +1,304 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import heros.DefaultSeeds;
+import heros.EdgeFunction;
+import heros.EdgeFunctions;
+import heros.FlowFunction;
+import heros.FlowFunctions;
+import heros.InterproceduralCFG;
+import heros.MeetLattice;
+import heros.edgefunc.EdgeIdentity;
+import heros.flowfunc.Identity;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.IntegerType;
+import soot.Local;
+import soot.NullType;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.AssignStmt;
+import soot.jimple.IntConstant;
+import soot.jimple.InvokeExpr;
+import soot.jimple.ReturnStmt;
+import soot.jimple.Stmt;
+import soot.jimple.internal.JimpleLocal;
+
+/**
+ * A small IDE problem for the solver tests: the constants held by locals of integer types. A local copied from another
+ * one has its value, and a local computed by any other expression is not constant. Values are the decimal strings of
+ * constants, {@link #TOP} where nothing is known and {@link #BOTTOM} where a local is not constant.
+ */
+public class IDEConstantPropagation
+    extends DefaultJimpleIDETabulationProblem<Local, String, InterproceduralCFG<Unit, SootMethod>> {
+  public static final String TOP = "TOP";
+  public static final String BOTTOM = "BOTTOM";
+
+  public IDEConstantPropagation(InterproceduralCFG<Unit, SootMethod> icfg) {
+    super(icfg);
+  }
+
+  private static String meet(String left, String right) {
+    if (left.equals(TOP) || left.equals(right)) {
+      return right;
+    }
+    return right.equals(TOP) ? left : BOTTOM;
+  }
+
+  /** An edge function that maps every value to the same one, which may be {@link #TOP} or {@link #BOTTOM}. */
+  private static class ConstantFunction implements EdgeFunction<String> {
+    private final String value;
+
+    ConstantFunction(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String computeTarget(String source) {
+      return value;
+    }
+
+    @Override
+    public EdgeFunction<String> composeWith(EdgeFunction<String> secondFunction) {
+      // Every other function maps all values to one
+      return secondFunction instanceof EdgeIdentity ? this : secondFunction;
+    }
+
+    @Override
+    public EdgeFunction<String> meetWith(EdgeFunction<String> otherFunction) {
+      if (otherFunction instanceof ConstantFunction) {
+        return new ConstantFunction(meet(value, ((ConstantFunction) otherFunction).value));
+      }
+      // Met with the identity, only the constant top keeps it as it is
+      return value.equals(TOP) ? otherFunction : new ConstantFunction(BOTTOM);
+    }
+
+    @Override
+    public boolean equalTo(EdgeFunction<String> other) {
+      return other instanceof ConstantFunction && ((ConstantFunction) other).value.equals(value);
+    }
+
+    @Override
+    public String toString() {
+      return "const " + value;
+    }
+  }
+
+  /** Returns the local of integer type that u assigns to, or null. */
+  private static Local assignedLocal(Unit u) {
+    if (u instanceof AssignStmt) {
+      Value left = ((AssignStmt) u).getLeftOp();
+      if (left instanceof Local && left.getType() instanceof IntegerType) {
+        return (Local) left;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the parameter local of integer type of m that receives the i-th argument, or null. */
+  private static Local parameter(SootMethod m, int i) {
+    if (!m.hasActiveBody()) {
+      return null;
+    }
+    Body b = m.getActiveBody();
+    Local l = b.getParameterLocal(i);
+    return l.getType() instanceof IntegerType ? l : null;
+  }
+
+  private Set<Local> facts(Local... locals) {
+    Set<Local> ret = new LinkedHashSet<Local>();
+    for (Local l : locals) {
+      ret.add(l);
+    }
+    return ret;
+  }
+
+  @Override
+  public FlowFunctions<Unit, Local, SootMethod> createFlowFunctionsFactory() {
+    return new FlowFunctions<Unit, Local, SootMethod>() {
+
+      @Override
+      public FlowFunction<Local> getNormalFlowFunction(Unit curr, Unit succ) {
+        final Local left = assignedLocal(curr);
+        if (left == null) {
+          return Identity.v();
+        }
+        final Value right = ((AssignStmt) curr).getRightOp();
+        return new FlowFunction<Local>() {
+          @Override
+          public Set<Local> computeTargets(Local source) {
+            if (source == zeroValue()) {
+              return right instanceof Local ? facts(source) : facts(source, left);
+            }
+            if (source == right) {
+              return facts(source, left);
+            }
+            return source == left ? Collections.<Local>emptySet() : facts(source);
+          }
+        };
+      }
+
+      @Override
+      public FlowFunction<Local> getCallFlowFunction(Unit callStmt, final SootMethod destinationMethod) {
+        final InvokeExpr ie = ((Stmt) callStmt).getInvokeExpr();
+        return new FlowFunction<Local>() {
+          @Override
+          public Set<Local> computeTargets(Local source) {
+            Set<Local> ret = new LinkedHashSet<Local>();
+            if (source == zeroValue()) {
+              ret.add(source);
+            }
+            for (int i = 0; i < ie.getArgCount(); i++) {
+              Value arg = ie.getArg(i);
+              if (source == zeroValue() ? arg instanceof IntConstant : arg == source) {
+                Local param = parameter(destinationMethod, i);
+                if (param != null) {
+                  ret.add(param);
+                }
+              }
+            }
+            return ret;
+          }
+        };
+      }
+
+      @Override
+      public FlowFunction<Local> getReturnFlowFunction(Unit callSite, SootMethod calleeMethod, Unit exitStmt,
+          Unit returnSite) {
+        final Local left = assignedLocal(callSite);
+        final Value op = exitStmt instanceof ReturnStmt ? ((ReturnStmt) exitStmt).getOp() : null;
+        return new FlowFunction<Local>() {
+          @Override
+          public Set<Local> computeTargets(Local source) {
+            if (source == zeroValue()) {
+              return left != null && op instanceof IntConstant ? facts(source, left) : facts(source);
+            }
+            return left != null && source == op ? facts(left) : Collections.<Local>emptySet();
+          }
+        };
+      }
+
+      @Override
+      public FlowFunction<Local> getCallToReturnFlowFunction(Unit callSite, Unit returnSite) {
+        final Local left = assignedLocal(callSite);
+        if (left == null) {
+          return Identity.v();
+        }
+        return new FlowFunction<Local>() {
+          @Override
+          public Set<Local> computeTargets(Local source) {
+            return source == left ? Collections.<Local>emptySet() : facts(source);
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public EdgeFunctions<Unit, Local, SootMethod, String> createEdgeFunctionsFactory() {
+    return new EdgeFunctions<Unit, Local, SootMethod, String>() {
+
+      @Override
+      public EdgeFunction<String> getNormalEdgeFunction(Unit curr, Local currNode, Unit succ, Local succNode) {
+        if (currNode == zeroValue() && succNode != zeroValue()) {
+          Value right = ((AssignStmt) curr).getRightOp();
+          return new ConstantFunction(right instanceof IntConstant ? right.toString() : BOTTOM);
+        }
+        return EdgeIdentity.v();
+      }
+
+      @Override
+      public EdgeFunction<String> getCallEdgeFunction(Unit callStmt, Local srcNode, SootMethod destinationMethod,
+          Local destNode) {
+        if (srcNode == zeroValue() && destNode != zeroValue()) {
+          InvokeExpr ie = ((Stmt) callStmt).getInvokeExpr();
+          for (int i = 0; i < ie.getArgCount(); i++) {
+            if (parameter(destinationMethod, i) == destNode && ie.getArg(i) instanceof IntConstant) {
+              return new ConstantFunction(ie.getArg(i).toString());
+            }
+          }
+        }
+        return EdgeIdentity.v();
+      }
+
+      @Override
+      public EdgeFunction<String> getReturnEdgeFunction(Unit callSite, SootMethod calleeMethod, Unit exitStmt,
+          Local exitNode, Unit returnSite, Local retNode) {
+        if (exitNode == zeroValue() && retNode != zeroValue()) {
+          return new ConstantFunction(((ReturnStmt) exitStmt).getOp().toString());
+        }
+        return EdgeIdentity.v();
+      }
+
+      @Override
+      public EdgeFunction<String> getCallToReturnEdgeFunction(Unit callSite, Local callNode, Unit returnSite,
+          Local returnSideNode) {
+        return EdgeIdentity.v();
+      }
+    };
+  }
+
+  @Override
+  public MeetLattice<String> createJoinLattice() {
+    return new MeetLattice<String>() {
+      @Override
+      public String topElement() {
+        return TOP;
+      }
+
+      @Override
+      public String bottomElement() {
+        return BOTTOM;
+      }
+
+      @Override
+      public String meet(String left, String right) {
+        return IDEConstantPropagation.meet(left, right);
+      }
+    };
+  }
+
+  @Override
+  public EdgeFunction<String> createAllTopFunction() {
+    return new ConstantFunction(TOP);
+  }
+
+  @Override
+  public Map<Unit, Set<Local>> initialSeeds() {
+    return DefaultSeeds.make(Collections.singleton(Scene.v().getMainMethod().getActiveBody().getUnits().getFirst()),
+        zeroValue());
+  }
+
+  @Override
+  public Local createZeroValue() {
+    return new JimpleLocal("<<zero>>", NullType.v());
+  }
+}
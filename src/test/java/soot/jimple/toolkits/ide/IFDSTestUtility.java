@@ -0,0 +1,81 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.callgraph.CallGraphBuilder;
+import soot.jimple.toolkits.callgraph.CallGraphTestUtility;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
+
+/**
+ * Loads a small whole program with a call graph, for tests that compare IFDS solvers and interprocedural CFGs.
+ */
+public class IFDSTestUtility {
+  public static final String DEFINITIONS = "soot.jimple.toolkits.ide.targets.Definitions";
+
+  /** Loads the given program in whole-program mode and builds its call graph with CHA. */
+  public static void loadProgram(String mainClass) throws IOException {
+    CallGraphTestUtility.loadProgram(mainClass);
+    new CallGraphBuilder(DumbPointerAnalysis.v()).build();
+  }
+
+  /** Returns the reachable methods that have a body. */
+  public static List<SootMethod> reachableMethods() {
+    List<SootMethod> ret = new ArrayList<SootMethod>();
+    for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+      SootMethod m = it.next().method();
+      if (m.hasActiveBody()) {
+        ret.add(m);
+      }
+    }
+    return ret;
+  }
+
+  /** Returns the statements of the reachable methods that have a body. */
+  public static List<Unit> reachableUnits() {
+    List<Unit> ret = new ArrayList<Unit>();
+    for (SootMethod m : reachableMethods()) {
+      ret.addAll(m.getActiveBody().getUnits());
+    }
+    return ret;
+  }
+
+  /** Copies the given collection into a set, so that sets of different classes compare equal. */
+  public static <T> Set<T> asSet(Iterable<T> c) {
+    Set<T> ret = new HashSet<T>();
+    for (T t : c) {
+      ret.add(t);
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,104 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import heros.InterproceduralCFG;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Local;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+
+/**
+ * Checks that the parallel IDE solver computes the same constants as the solver of Heros, with one and with several
+ * threads.
+ */
+public class ParallelJimpleIDESolverTest {
+  private InterproceduralCFG<Unit, SootMethod> icfg;
+  private JimpleIDESolver<Local, String, InterproceduralCFG<Unit, SootMethod>> expected;
+
+  @Before
+  public void setUp() throws IOException {
+    IFDSTestUtility.loadProgram(IFDSTestUtility.DEFINITIONS);
+    icfg = new JimpleBasedInterproceduralCFG();
+    expected
+        = new JimpleIDESolver<Local, String, InterproceduralCFG<Unit, SootMethod>>(new IDEConstantPropagation(icfg));
+    expected.solve();
+  }
+
+  private ParallelJimpleIDESolver<Local, String, InterproceduralCFG<Unit, SootMethod>> solve(final int numThreads) {
+    ParallelJimpleIDESolver<Local, String, InterproceduralCFG<Unit, SootMethod>> solver
+        = new ParallelJimpleIDESolver<Local, String, InterproceduralCFG<Unit, SootMethod>>(
+            new IDEConstantPropagation(icfg) {
+              @Override
+              public int numThreads() {
+                return numThreads;
+              }
+            });
+    solver.solve();
+    return solver;
+  }
+
+  private void assertSameResults(ParallelJimpleIDESolver<Local, String, ?> solver) {
+    boolean constant = false;
+    for (Unit u : IFDSTestUtility.reachableUnits()) {
+      Map<Local, String> values = solver.resultsAt(u);
+      assertEquals(u.toString(), new HashMap<Local, String>(expected.resultsAt(u)), values);
+      for (Map.Entry<Local, String> e : values.entrySet()) {
+        assertEquals(expected.resultAt(u, e.getKey()), solver.resultAt(u, e.getKey()));
+        constant |= !e.getValue().equals(IDEConstantPropagation.BOTTOM);
+      }
+    }
+    // Some locals hold constants, not only values that are not constant
+    assertTrue(constant);
+  }
+
+  @Test
+  public void testOneThread() {
+    assertSameResults(solve(1));
+  }
+
+  @Test
+  public void testManyThreads() {
+    for (int numThreads : new int[] { 2, 4, 8 }) {
+      assertSameResults(solve(numThreads));
+    }
+  }
+
+  @Test
+  public void testRepeated() {
+    for (int i = 0; i < 5; i++) {
+      assertSameResults(solve(4));
+    }
+  }
+}
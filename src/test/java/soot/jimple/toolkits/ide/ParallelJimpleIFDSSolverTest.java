@@ -0,0 +1,168 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static soot.jimple.toolkits.ide.IFDSTestUtility.asSet;
+
+import heros.InterproceduralCFG;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Checks that the parallel IFDS solver computes the same reaching definitions as the solver of Heros, with one and with
+ * several threads, and when path edges are collected and summaries spilled to disk.
+ */
+public class ParallelJimpleIFDSSolverTest {
+  private InterproceduralCFG<Unit, SootMethod> icfg;
+  private JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> expected;
+
+  @Before
+  public void setUp() throws IOException {
+    IFDSTestUtility.loadProgram(IFDSTestUtility.DEFINITIONS);
+    icfg = new JimpleBasedInterproceduralCFG();
+    expected = new JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>>(
+        new IFDSReachingDefinitions(icfg));
+    expected.solve();
+  }
+
+  private IFDSReachingDefinitions problem(final int numThreads) {
+    return new IFDSReachingDefinitions(icfg) {
+      @Override
+      public int numThreads() {
+        return numThreads;
+      }
+    };
+  }
+
+  private void assertSameResults(ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, ?> solver) {
+    boolean nonEmpty = false;
+    for (Unit u : IFDSTestUtility.reachableUnits()) {
+      Set<Pair<Value, Set<DefinitionStmt>>> facts = asSet(solver.ifdsResultsAt(u));
+      assertEquals(u.toString(), asSet(expected.ifdsResultsAt(u)), facts);
+      nonEmpty |= !facts.isEmpty();
+    }
+    assertTrue(nonEmpty);
+  }
+
+  private ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> solver(
+      int numThreads) {
+    return new ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>>(
+        problem(numThreads));
+  }
+
+  private ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> solve(
+      int numThreads) {
+    ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> solver
+        = solver(numThreads);
+    solver.solve();
+    return solver;
+  }
+
+  private static File newSpillDirectory() throws IOException {
+    File dir = Files.createTempDirectory("ifds").toFile();
+    dir.deleteOnExit();
+    return dir;
+  }
+
+  @Test
+  public void testOneThread() {
+    assertSameResults(solve(1));
+  }
+
+  @Test
+  public void testManyThreads() {
+    for (int numThreads : new int[] { 2, 4, 8 }) {
+      assertSameResults(solve(numThreads));
+    }
+  }
+
+  @Test
+  public void testRepeated() {
+    for (int i = 0; i < 5; i++) {
+      assertSameResults(solve(4));
+    }
+  }
+
+  @Test
+  public void testCollectPathEdges() {
+    for (int numThreads : new int[] { 1, 4 }) {
+      long plainCount = solve(numThreads).getPropagationCount();
+      ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, ?> solver = solver(numThreads);
+      solver.setCollectPathEdges(true);
+      solver.solve();
+      assertSameResults(solver);
+      // Collected path edges may be computed again, but none are lost
+      assertTrue(solver.getPropagationCount() >= plainCount);
+    }
+  }
+
+  @Test
+  public void testSpill() throws IOException {
+    for (int numThreads : new int[] { 1, 4 }) {
+      File dir = newSpillDirectory();
+      ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, ?> solver = solver(numThreads);
+      solver.setSpillDirectory(dir, 1);
+      solver.solve();
+      assertTrue(solver.getSpillCount() > 0);
+      assertSameResults(solver);
+      // The spill file is deleted once the solver is done
+      assertEquals(0, dir.list().length);
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void testCollectPathEdgesAndSpill() throws IOException {
+    for (int numThreads : new int[] { 1, 4 }) {
+      File dir = newSpillDirectory();
+      ParallelJimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, ?> solver = solver(numThreads);
+      solver.setCollectPathEdges(true);
+      solver.setSpillDirectory(dir, 1);
+      solver.solve();
+      assertTrue(solver.getSpillCount() > 0);
+      assertSameResults(solver);
+      dir.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoResidentMethods() {
+    solver(1).setSpillDirectory(new File("."), 0);
+  }
+}
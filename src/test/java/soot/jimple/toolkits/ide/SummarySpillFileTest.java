@@ -0,0 +1,128 @@
+package soot.jimple.toolkits.ide;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Unit;
+import soot.jimple.Jimple;
+import soot.toolkits.scalar.Pair;
+
+public class SummarySpillFileTest {
+  private File dir;
+  private SummarySpillFile<String> file;
+  private Unit start;
+  private Unit exit;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("ifds").toFile();
+    file = new SummarySpillFile<String>(dir);
+    start = Jimple.v().newNopStmt();
+    exit = Jimple.v().newReturnVoidStmt();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    file.close();
+    dir.delete();
+  }
+
+  private List<Map<Pair<Unit, String>, Set<Pair<Unit, String>>>> tables(String fact, int numExits) {
+    Map<Pair<Unit, String>, Set<Pair<Unit, String>>> endSummary
+        = new HashMap<Pair<Unit, String>, Set<Pair<Unit, String>>>();
+    Set<Pair<Unit, String>> exits = new HashSet<Pair<Unit, String>>();
+    for (int i = 0; i < numExits; i++) {
+      exits.add(new Pair<Unit, String>(exit, fact + i));
+    }
+    endSummary.put(new Pair<Unit, String>(start, fact), exits);
+    Map<Pair<Unit, String>, Set<Pair<Unit, String>>> incoming
+        = new HashMap<Pair<Unit, String>, Set<Pair<Unit, String>>>();
+    incoming.put(new Pair<Unit, String>(start, fact), Collections.singleton(new Pair<Unit, String>(exit, fact)));
+    List<Map<Pair<Unit, String>, Set<Pair<Unit, String>>>> ret
+        = new ArrayList<Map<Pair<Unit, String>, Set<Pair<Unit, String>>>>();
+    ret.add(endSummary);
+    ret.add(incoming);
+    return ret;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<Map<Pair<Unit, String>, Set<Pair<Unit, String>>>> first = tables("a", 3);
+    List<Map<Pair<Unit, String>, Set<Pair<Unit, String>>>> second = tables("b", 0);
+    SummarySpillFile.Spilled firstSpilled = file.write(first);
+    SummarySpillFile.Spilled secondSpilled = file.write(second);
+    assertEquals(second, file.read(secondSpilled));
+    assertEquals(first, file.read(firstSpilled));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTablesAreReadOnce() throws IOException {
+    SummarySpillFile.Spilled spilled = file.write(tables("a", 1));
+    file.read(spilled);
+    file.read(spilled);
+  }
+
+  @Test
+  public void testSpaceIsReused() throws IOException {
+    SummarySpillFile.Spilled first = file.write(tables("a", 4));
+    SummarySpillFile.Spilled second = file.write(tables("b", 1));
+    long size = file.size();
+    assertEquals(size, dir.listFiles()[0].length());
+
+    // The space of the first tables is free, and smaller tables fit into it
+    file.read(first);
+    assertEquals(size, file.size());
+    SummarySpillFile.Spilled third = file.write(tables("c", 2));
+    assertEquals(size, file.size());
+    assertEquals(tables("c", 2), file.read(third));
+
+    // The file shrinks once its end is free
+    assertEquals(tables("b", 1), file.read(second));
+    assertEquals(0, file.size());
+    assertEquals(0, dir.listFiles()[0].length());
+  }
+
+  @Test
+  public void testFileIsDeletedOnClose() throws IOException {
+    file.write(tables("a", 1));
+    assertEquals(1, dir.list().length);
+    file.close();
+    assertEquals(0, dir.list().length);
+  }
+}
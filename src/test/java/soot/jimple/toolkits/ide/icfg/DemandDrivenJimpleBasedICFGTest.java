@@ -0,0 +1,148 @@
+package soot.jimple.toolkits.ide.icfg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static soot.jimple.toolkits.ide.IFDSTestUtility.asSet;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.CallGraphTestUtility;
+import soot.jimple.toolkits.ide.IFDSTestUtility;
+
+/**
+ * Checks that {@link DemandDrivenJimpleBasedICFG} only loads the bodies of methods that are asked about, and that it
+ * answers like an {@link OnTheFlyJimpleBasedICFG} once the program has been explored.
+ */
+public class DemandDrivenJimpleBasedICFGTest {
+  private SootMethod main;
+  private SootMethod twice;
+
+  @Before
+  public void setUp() throws IOException {
+    // No call graph, which would load every reachable body
+    CallGraphTestUtility.loadProgram(IFDSTestUtility.DEFINITIONS);
+    Scene.v().getOrMakeFastHierarchy();
+    main = Scene.v().getMainMethod();
+    twice = method("int twice(int)");
+  }
+
+  private static SootMethod method(String subSignature) {
+    return Scene.v().getMethod("<" + IFDSTestUtility.DEFINITIONS + ": " + subSignature + ">");
+  }
+
+  /** Visits the methods reachable from main in the given graph, asking for their start points and calls. */
+  private static Set<SootMethod> explore(BiDiInterproceduralCFG<Unit, SootMethod> icfg, SootMethod main) {
+    Set<SootMethod> visited = new LinkedHashSet<SootMethod>();
+    Deque<SootMethod> worklist = new ArrayDeque<SootMethod>();
+    worklist.add(main);
+    while (!worklist.isEmpty()) {
+      SootMethod m = worklist.poll();
+      if (!visited.add(m)) {
+        continue;
+      }
+      icfg.getStartPointsOf(m);
+      for (Unit u : icfg.getCallsFromWithin(m)) {
+        for (SootMethod callee : icfg.getCalleesOfCallAt(u)) {
+          if (callee.isConcrete()) {
+            worklist.add(callee);
+          }
+        }
+      }
+    }
+    return visited;
+  }
+
+  @Test
+  public void testOnlyReachedBodiesAreLoaded() {
+    DemandDrivenJimpleBasedICFG icfg = new DemandDrivenJimpleBasedICFG(main);
+    assertTrue(main.hasActiveBody());
+
+    // Resolving a call does not load the callee
+    Stmt callTwice = CallGraphTestUtility.callsTo(main, "twice").get(0);
+    assertEquals(Collections.singleton(twice), asSet(icfg.getCalleesOfCallAt(callTwice)));
+    assertEquals(Collections.singleton((Unit) callTwice), asSet(icfg.getCallersOf(twice)));
+    assertFalse(twice.hasActiveBody());
+
+    // Asking about the callee itself does
+    assertEquals(1, icfg.getStartPointsOf(twice).size());
+    assertTrue(twice.hasActiveBody());
+    for (String subSignature : new String[] { "int identity(int)", "int sum(int)", "void print(int)",
+        "void <init>()" }) {
+      assertFalse(subSignature, method(subSignature).hasActiveBody());
+    }
+
+    // Only methods reachable from main are loaded when the whole program is explored
+    explore(icfg, main);
+    assertTrue(method("int sum(int)").hasActiveBody());
+    assertFalse(method("void <init>()").hasActiveBody());
+  }
+
+  @Test
+  public void testSameAnswersAsOnTheFly() {
+    DemandDrivenJimpleBasedICFG demandDriven = new DemandDrivenJimpleBasedICFG(main);
+    Set<SootMethod> methods = explore(demandDriven, main);
+    OnTheFlyJimpleBasedICFG onTheFly = new OnTheFlyJimpleBasedICFG(main);
+    assertEquals(methods, explore(onTheFly, main));
+    assertEquals(5, methods.size());
+
+    ICFGTestUtility.assertSameGraph(onTheFly, demandDriven, methods);
+    assertEquals(asSet(onTheFly.allNonCallStartNodes()), asSet(demandDriven.allNonCallStartNodes()));
+    assertEquals(asSet(onTheFly.allNonCallEndNodes()), asSet(demandDriven.allNonCallEndNodes()));
+  }
+
+  @Test
+  public void testReleasedBodiesStillAnswer() {
+    DemandDrivenJimpleBasedICFG icfg = new DemandDrivenJimpleBasedICFG(main);
+    Unit first = main.getActiveBody().getUnits().getFirst();
+    List<Unit> succs = icfg.getSuccsOf(first);
+    int numParameters = main.getActiveBody().getParameterRefs().size();
+
+    icfg.setReleaseBodies(true);
+    assertFalse(main.hasActiveBody());
+    assertEquals(succs, icfg.getSuccsOf(first));
+    assertEquals(main, icfg.getMethodOf(first));
+    assertTrue(icfg.isStartPoint(first));
+    assertEquals(numParameters, icfg.getParameterRefs(main).size());
+
+    // Methods loaded later are released right away
+    icfg.getStartPointsOf(twice);
+    assertFalse(twice.hasActiveBody());
+    assertFalse(icfg.getStartPointsOf(twice).isEmpty());
+  }
+}
@@ -0,0 +1,109 @@
+package soot.jimple.toolkits.ide.icfg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static soot.jimple.toolkits.ide.IFDSTestUtility.asSet;
+
+import heros.InterproceduralCFG;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.Jimple;
+import soot.jimple.toolkits.ide.IFDSTestUtility;
+import soot.jimple.toolkits.ide.JimpleIFDSSolver;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.toolkits.scalar.Pair;
+
+/**
+ * Checks that a frozen copy of a {@link JimpleBasedInterproceduralCFG} answers every query like the original.
+ */
+public class FrozenInterproceduralCFGTest {
+  private JimpleBasedInterproceduralCFG icfg;
+  private List<SootMethod> methods;
+
+  @Before
+  public void setUp() throws IOException {
+    IFDSTestUtility.loadProgram(IFDSTestUtility.DEFINITIONS);
+    icfg = new JimpleBasedInterproceduralCFG();
+    methods = IFDSTestUtility.reachableMethods();
+  }
+
+  @Test
+  public void testSameAnswers() {
+    FrozenInterproceduralCFG frozen = icfg.freeze();
+    ICFGTestUtility.assertSameGraph(icfg, frozen, methods);
+    assertEquals(asSet(icfg.allNonCallStartNodes()), asSet(frozen.allNonCallStartNodes()));
+    assertEquals(asSet(icfg.allNonCallEndNodes()), asSet(frozen.allNonCallEndNodes()));
+  }
+
+  @Test
+  public void testPartialCopyPassesOtherQueriesOn() {
+    SootMethod main = Scene.v().getMainMethod();
+    FrozenInterproceduralCFG frozen = new FrozenInterproceduralCFG(icfg, Collections.singletonList(main));
+    ICFGTestUtility.assertSameGraph(icfg, frozen, methods);
+  }
+
+  @Test
+  public void testLaterChangesAreNotSeen() {
+    SootMethod main = Scene.v().getMainMethod();
+    FrozenInterproceduralCFG frozen = icfg.freeze();
+    Unit first = main.getActiveBody().getUnits().getFirst();
+    List<Unit> succs = frozen.getSuccsOf(first);
+    Unit nop = Jimple.v().newNopStmt();
+    main.getActiveBody().getUnits().insertAfter(nop, first);
+    assertEquals(succs, frozen.getSuccsOf(first));
+    assertFalse(frozen.getSuccsOf(first).contains(nop));
+  }
+
+  @Test
+  public void testSameIFDSResults() {
+    JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> expected
+        = new JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>>(
+            new IFDSReachingDefinitions(icfg));
+    expected.solve();
+    JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>> actual
+        = new JimpleIFDSSolver<Pair<Value, Set<DefinitionStmt>>, InterproceduralCFG<Unit, SootMethod>>(
+            new IFDSReachingDefinitions(icfg.freeze()));
+    actual.solve();
+    boolean nonEmpty = false;
+    for (Unit u : IFDSTestUtility.reachableUnits()) {
+      assertEquals(u.toString(), asSet(expected.ifdsResultsAt(u)), asSet(actual.ifdsResultsAt(u)));
+      nonEmpty |= !expected.ifdsResultsAt(u).isEmpty();
+    }
+    assertTrue(nonEmpty);
+  }
+}
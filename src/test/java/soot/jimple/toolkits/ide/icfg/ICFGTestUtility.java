@@ -0,0 +1,79 @@
+package soot.jimple.toolkits.ide.icfg;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static soot.jimple.toolkits.ide.IFDSTestUtility.asSet;
+
+import java.util.Collection;
+import java.util.List;
+
+import soot.SootMethod;
+import soot.Unit;
+
+/**
+ * Compares the answers of two interprocedural control-flow graphs.
+ */
+public class ICFGTestUtility {
+  /**
+   * Asserts that the two graphs answer all queries about the given methods and their statements alike. Lists are
+   * compared in order, other collections as sets.
+   */
+  public static void assertSameGraph(BiDiInterproceduralCFG<Unit, SootMethod> expected,
+      BiDiInterproceduralCFG<Unit, SootMethod> actual, Collection<SootMethod> methods) {
+    for (SootMethod m : methods) {
+      String msg = m.getSignature();
+      assertEquals(msg, asSet(expected.getStartPointsOf(m)), asSet(actual.getStartPointsOf(m)));
+      assertEquals(msg, asSet(expected.getEndPointsOf(m)), asSet(actual.getEndPointsOf(m)));
+      assertEquals(msg, asSet(expected.getCallersOf(m)), asSet(actual.getCallersOf(m)));
+      assertEquals(msg, asSet(expected.getCallsFromWithin(m)), asSet(actual.getCallsFromWithin(m)));
+      assertEquals(msg, expected.getParameterRefs(m), actual.getParameterRefs(m));
+      for (Unit u : m.getActiveBody().getUnits()) {
+        assertSameUnit(expected, actual, u);
+      }
+    }
+  }
+
+  private static void assertSameUnit(BiDiInterproceduralCFG<Unit, SootMethod> expected,
+      BiDiInterproceduralCFG<Unit, SootMethod> actual, Unit u) {
+    String msg = u.toString();
+    assertEquals(msg, expected.getMethodOf(u), actual.getMethodOf(u));
+    List<Unit> succs = expected.getSuccsOf(u);
+    assertEquals(msg, succs, actual.getSuccsOf(u));
+    assertEquals(msg, expected.getPredsOf(u), actual.getPredsOf(u));
+    assertEquals(msg, expected.isCallStmt(u), actual.isCallStmt(u));
+    assertEquals(msg, expected.isExitStmt(u), actual.isExitStmt(u));
+    assertEquals(msg, expected.isStartPoint(u), actual.isStartPoint(u));
+    assertEquals(msg, expected.isReturnSite(u), actual.isReturnSite(u));
+    assertEquals(msg, expected.isReachable(u), actual.isReachable(u));
+    if (expected.isCallStmt(u)) {
+      assertEquals(msg, asSet(expected.getCalleesOfCallAt(u)), asSet(actual.getCalleesOfCallAt(u)));
+      assertEquals(msg, asSet(expected.getReturnSitesOfCallAt(u)), asSet(actual.getReturnSitesOfCallAt(u)));
+      assertEquals(msg, expected.getPredsOfCallAt(u), actual.getPredsOfCallAt(u));
+    }
+    for (Unit succ : succs) {
+      assertEquals(msg, expected.isFallThroughSuccessor(u, succ), actual.isFallThroughSuccessor(u, succ));
+      assertEquals(msg, expected.isBranchTarget(u, succ), actual.isBranchTarget(u, succ));
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package soot.jimple.toolkits.ide.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Small program for the IFDS and ICFG tests. All methods are static, so that no library code is reachable. Values flow
+ * through parameters and return values, a recursive call and a branch.
+ */
+public class Definitions {
+  public static void main(String[] args) {
+    int x = 1;
+    int y = twice(x);
+    int z = args.length > 0 ? sum(y) : x;
+    x = z + identity(y);
+    print(x);
+    print(z);
+  }
+
+  static int twice(int a) {
+    int b = a + a;
+    return b;
+  }
+
+  static int identity(int a) {
+    return a;
+  }
+
+  static int sum(int n) {
+    if (n <= 0) {
+      return 0;
+    }
+    int rest = sum(n - 1);
+    return n + rest;
+  }
+
+  static void print(int v) {
+    int w = v;
+  }
+}
@@ -0,0 +1,198 @@
+package soot.shimple;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Body;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+import soot.toolkits.graph.Block;
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.DominanceFrontier;
+import soot.toolkits.graph.DominatorNode;
+import soot.toolkits.graph.DominatorTree;
+import soot.toolkits.graph.DominatorsFinder;
+import soot.toolkits.graph.SimpleDominatorsFinder;
+
+/**
+ * Builds Shimple bodies for {@link soot.shimple.targets.Loops}, converts them back to Jimple,
+ * and checks that the dominators Shimple uses agree with those of {@link SimpleDominatorsFinder}, which it used before.
+ */
+public class ShimpleRoundTripTest {
+  private static final String LOOPS = "soot.shimple.targets.Loops";
+
+  private SootClass loops;
+
+  @Before
+  public void setUp() throws IOException {
+    G.reset();
+    Options.v().set_soot_classpath(new File("./target/test-classes").getCanonicalPath());
+    Options.v().set_prepend_classpath(true);
+    Options.v().set_src_prec(Options.src_prec_only_class);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_output_format(Options.output_format_none);
+    loops = Scene.v().loadClassAndSupport(LOOPS);
+    Scene.v().loadNecessaryClasses();
+  }
+
+  /** A factory that finds dominators as Shimple did before it used the fast finder. */
+  private static class SimpleFinderFactory extends DefaultShimpleFactory {
+    SimpleFinderFactory(Body body) {
+      super(body);
+    }
+
+    @Override
+    public DominatorsFinder<Block> getDominatorsFinder() {
+      if (dFinder == null) {
+        dFinder = new SimpleDominatorsFinder<Block>(getBlockGraph());
+      }
+      return dFinder;
+    }
+
+    @Override
+    public DominatorsFinder<Block> getReverseDominatorsFinder() {
+      if (rdFinder == null) {
+        rdFinder = new SimpleDominatorsFinder<Block>(getReverseBlockGraph());
+      }
+      return rdFinder;
+    }
+  }
+
+  private Body body(String name) {
+    return loops.getMethodByName(name).retrieveActiveBody();
+  }
+
+  private static int countPhiNodes(Body b) {
+    int ret = 0;
+    for (Unit u : b.getUnits()) {
+      if (Shimple.isPhiNode(u)) {
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  /** Returns the index of each block reachable from the heads of g. */
+  private static Set<Integer> reachable(DirectedGraph<Block> g) {
+    Set<Integer> ret = new HashSet<Integer>();
+    ArrayDeque<Block> worklist = new ArrayDeque<Block>(g.getHeads());
+    while (!worklist.isEmpty()) {
+      Block b = worklist.poll();
+      if (ret.add(b.getIndexInMethod())) {
+        worklist.addAll(g.getSuccsOf(b));
+      }
+    }
+    return ret;
+  }
+
+  private static int index(DominatorNode<Block> node) {
+    return node == null ? -1 : node.getGode().getIndexInMethod();
+  }
+
+  /** Returns the index of the immediate dominator of each of the given blocks, or -1 for the roots of the tree. */
+  private static Map<Integer, Integer> idoms(DominatorTree<Block> tree, Set<Integer> blocks) {
+    Map<Integer, Integer> ret = new HashMap<Integer, Integer>();
+    for (DominatorNode<Block> node : tree) {
+      int block = index(node);
+      if (blocks.contains(block)) {
+        ret.put(block, index(tree.getParentOf(node)));
+      }
+    }
+    return ret;
+  }
+
+  private static Map<Integer, Set<Integer>> frontiers(DominatorTree<Block> tree, DominanceFrontier<Block> frontier) {
+    Map<Integer, Set<Integer>> ret = new HashMap<Integer, Set<Integer>>();
+    for (DominatorNode<Block> node : tree) {
+      Set<Integer> blocks = new HashSet<Integer>();
+      for (DominatorNode<Block> f : frontier.getDominanceFrontierOf(node)) {
+        blocks.add(index(f));
+      }
+      ret.put(index(node), blocks);
+    }
+    return ret;
+  }
+
+  @Test
+  public void testSameDominatorsAsSimpleFinder() {
+    for (SootMethod m : loops.getMethods()) {
+      Body b = m.retrieveActiveBody();
+      ShimpleFactory fast = new DefaultShimpleFactory((Body) b.clone());
+      ShimpleFactory simple = new SimpleFinderFactory((Body) b.clone());
+
+      Set<Integer> all = reachable(fast.getBlockGraph());
+      assertEquals(m.getName(), all.size(), fast.getBlockGraph().size());
+      assertEquals(m.getName(), idoms(simple.getDominatorTree(), all), idoms(fast.getDominatorTree(), all));
+      assertEquals(m.getName(), frontiers(simple.getDominatorTree(), simple.getDominanceFrontier()),
+          frontiers(fast.getDominatorTree(), fast.getDominanceFrontier()));
+
+      // Blocks of loops that never exit cannot be reached in the reverse graph, and are left out
+      Set<Integer> exits = reachable(fast.getReverseBlockGraph());
+      if (exits.isEmpty()) {
+        // The simple finder needs a head; the fast one makes each block the root of its own tree
+        assertEquals(m.getName(), fast.getReverseBlockGraph().size(), fast.getReverseDominatorTree().getHeads().size());
+      } else {
+        assertEquals(m.getName(), idoms(simple.getReverseDominatorTree(), exits),
+            idoms(fast.getReverseDominatorTree(), exits));
+      }
+      fast.getReverseDominanceFrontier();
+    }
+  }
+
+  @Test
+  public void testRoundTrip() {
+    for (SootMethod m : loops.getMethods()) {
+      ShimpleBody sb = Shimple.v().newBody(m.retrieveActiveBody());
+      sb.validate();
+      JimpleBody jb = Shimple.v().newJimpleBody(sb);
+      jb.validate();
+      assertEquals(m.getName(), 0, countPhiNodes(jb));
+    }
+  }
+
+  @Test
+  public void testPhiNodes() {
+    for (String name : new String[] { "sum", "nested", "parse", "pick", "spin", "spinSometimes" }) {
+      ShimpleBody sb = Shimple.v().newBody(body(name));
+      assertTrue(name, countPhiNodes(sb) > 0);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package soot.shimple.targets;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+/**
+ * Methods with loops, branches, a switch, a handler and loops that never exit, for the Shimple tests.
+ */
+public class Loops {
+  static int sum(int[] a) {
+    int s = 0;
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] > 0) {
+        s += a[i];
+      } else {
+        s--;
+      }
+    }
+    return s;
+  }
+
+  static int nested(int n) {
+    int x = 0;
+    for (int i = 0; i < n; i++) {
+      for (int j = i; j < n; j++) {
+        if ((i + j) % 3 == 0) {
+          x += j;
+        }
+      }
+    }
+    return x;
+  }
+
+  static int parse(String s) {
+    int r;
+    try {
+      r = Integer.parseInt(s);
+    } catch (NumberFormatException e) {
+      r = -1;
+    }
+    return r;
+  }
+
+  static int pick(int k) {
+    int r;
+    switch (k) {
+      case 0:
+        r = 10;
+        break;
+      case 1:
+        r = 20;
+        break;
+      default:
+        r = k;
+    }
+    return r * 2;
+  }
+
+  static void spin(int n) {
+    int i = 0;
+    while (true) {
+      if (i > n) {
+        i = 0;
+      } else {
+        i++;
+      }
+    }
+  }
+
+  static int spinSometimes(int n) {
+    while (n > 0) {
+      if (n == 5) {
+        for (;;) {
+          n++;
+        }
+      }
+      n--;
+    }
+    return n;
+  }
+}
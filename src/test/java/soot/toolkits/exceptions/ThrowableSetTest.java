@@ -27,13 +27,21 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
@@ -41,6 +49,7 @@ import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
 import soot.AnySubType;
+import soot.FastHierarchy;
 import soot.G;
 import soot.RefLikeType;
 import soot.RefType;
@@ -1516,6 +1525,97 @@ public class ThrowableSetTest {
 		assertTrue(bothPhantoms == bothPhantoms2);
 	}
 
+	@Test
+	public void test_15_MemoizedWhichCatchableAs() {
+		ThrowableSet.Pair p0 = mgr.RESOLVE_CLASS_ERRORS.whichCatchableAs(util.LINKAGE_ERROR);
+		long hits = mgr.getMemoStats().hitCount();
+		ThrowableSet.Pair p1 = mgr.RESOLVE_CLASS_ERRORS.whichCatchableAs(util.LINKAGE_ERROR);
+		assertTrue(p0 == p1);
+		assertEquals(hits + 1, mgr.getMemoStats().hitCount());
+	}
+
+	@Test
+	public void test_16_MemoDependsOnHierarchy() {
+		ThrowableSet.Pair p0 = mgr.RESOLVE_CLASS_ERRORS.whichCatchableAs(util.LINKAGE_ERROR);
+		FastHierarchy hierarchy = Scene.v().getOrMakeFastHierarchy();
+		Scene.v().setFastHierarchy(new FastHierarchy());
+		try {
+			long misses = mgr.getMemoStats().missCount();
+			ThrowableSet.Pair p1 = mgr.RESOLVE_CLASS_ERRORS.whichCatchableAs(util.LINKAGE_ERROR);
+			assertEquals(misses + 1, mgr.getMemoStats().missCount());
+			assertEquals(p0.getCaught(), p1.getCaught());
+			assertEquals(p0.getUncaught(), p1.getUncaught());
+		} finally {
+			Scene.v().setFastHierarchy(hierarchy);
+		}
+	}
+
+	@Test
+	public void test_17_SetsOfOtherManagersDiffer() {
+		ThrowableSet.Manager other = new ThrowableSet.Manager(null);
+		assertFalse(mgr.EMPTY.equals(other.EMPTY));
+		assertFalse(mgr.VM_ERRORS.equals(other.VM_ERRORS));
+	}
+
+	/**
+	 * Adds the given types one at a time, starting from the empty set, and
+	 * returns each set and the sets that whichCatchableAs() splits it
+	 * into.
+	 */
+	private List<ThrowableSet> addOneByOne(List<RefLikeType> types) {
+		List<ThrowableSet> result = new ArrayList<ThrowableSet>();
+		ThrowableSet set = mgr.EMPTY;
+		for (RefLikeType type : types) {
+			set = type instanceof RefType ? set.add((RefType) type) : set.add((AnySubType) type);
+			result.add(set);
+			for (RefType catcher : new RefType[] { util.LINKAGE_ERROR, util.ERROR, util.THROWABLE }) {
+				ThrowableSet.Pair pair = set.whichCatchableAs(catcher);
+				result.add(pair.getCaught());
+				result.add(pair.getUncaught());
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void test_18_ConcurrentRegistryAndMemo() throws Exception {
+		final List<RefLikeType> types = new ArrayList<RefLikeType>();
+		for (RefType type : util.ALL_TEST_THROWABLES) {
+			types.add(type);
+			types.add(AnySubType.v(type));
+		}
+		Collections.shuffle(types, new Random(18));
+
+		final int threads = 8;
+		final CyclicBarrier start = new CyclicBarrier(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<ThrowableSet>>> results = new ArrayList<Future<List<ThrowableSet>>>();
+			for (int i = 0; i < threads; i++) {
+				results.add(executor.submit(new Callable<List<ThrowableSet>>() {
+					@Override
+					public List<ThrowableSet> call() throws Exception {
+						start.await();
+						return addOneByOne(types);
+					}
+				}));
+			}
+			List<ThrowableSet> expected = results.get(0).get();
+			for (Future<List<ThrowableSet>> result : results) {
+				List<ThrowableSet> sets = result.get();
+				assertEquals(expected.size(), sets.size());
+				for (int i = 0; i < sets.size(); i++) {
+					// The registry hands out one instance per set
+					assertTrue(expected.get(i) == sets.get(i));
+				}
+			}
+			// The same again on one thread, now from the memo
+			assertEquals(expected, addOneByOne(types));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	void printAllSets() {
 		for (ThrowableSet s : mgr.getThrowableSets()) {
 			System.err.println(s.toString());
@@ -37,6 +37,7 @@ import org.junit.Test;
 
 import soot.AnySubType;
 import soot.ArrayType;
+import soot.Body;
 import soot.DoubleType;
 import soot.FloatType;
 import soot.IntType;
@@ -298,6 +299,71 @@ public class UnitThrowAnalysisTest {
 		assertEquals(expectedCatch, utility.catchableSubset(unitAnalysis.mightThrow(s)));
 	}
 
+	@Test
+	public void testMightThrowInBody() {
+		Body b = Jimple.v().newBody();
+		Local quotient = Jimple.v().newLocal("local0", IntType.v());
+		Local divisor = Jimple.v().newLocal("local1", IntType.v());
+		b.getLocals().add(quotient);
+		b.getLocals().add(divisor);
+		DivExpr div = Jimple.v().newDivExpr(IntConstant.v(4), divisor);
+		Stmt s = Jimple.v().newAssignStmt(quotient, div);
+		b.getUnits().add(s);
+
+		ThrowableSet thrown = unitAnalysis.mightThrow(s, b);
+		assertEquals(unitAnalysis.mightThrow(s), thrown);
+		assertTrue(thrown.catchableAs(utility.ARITHMETIC_EXCEPTION));
+		assertTrue(thrown == unitAnalysis.mightThrow(s, b));
+
+		// Replacing a value in place must not return the remembered set.
+		div.setOp2(IntConstant.v(2));
+		assertEquals(unitAnalysis.mightThrow(s), unitAnalysis.mightThrow(s, b));
+		assertTrue(!unitAnalysis.mightThrow(s, b).catchableAs(utility.ARITHMETIC_EXCEPTION));
+	}
+
+	@Test
+	public void testMightThrowInBodyAfterTypeChange() {
+		Body b = Jimple.v().newBody();
+		Local thrown = Jimple.v().newLocal("local0", utility.ERROR);
+		b.getLocals().add(thrown);
+		ThrowStmt s = Jimple.v().newThrowStmt(thrown);
+		b.getUnits().add(s);
+
+		assertTrue(!unitAnalysis.mightThrow(s, b).catchableAs(utility.UNDECLARED_THROWABLE_EXCEPTION));
+		// Retyping a local changes neither the chains nor the boxes.
+		thrown.setType(utility.UNDECLARED_THROWABLE_EXCEPTION);
+		assertTrue(unitAnalysis.mightThrow(s, b).catchableAs(utility.UNDECLARED_THROWABLE_EXCEPTION));
+	}
+
+	@Test
+	public void testThrowSummaryFollowsCalleeBodies() {
+		SootClass c = new SootClass("SummaryClass");
+		Scene.v().addClass(c);
+		SootMethod callee = new SootMethod("callee", Collections.<Type>emptyList(), VoidType.v(), Modifier.STATIC);
+		c.addMethod(callee);
+		SootMethod caller = new SootMethod("caller", Collections.<Type>emptyList(), VoidType.v(), Modifier.STATIC);
+		c.addMethod(caller);
+
+		Body calleeBody = Jimple.v().newBody(callee);
+		Local thrown = Jimple.v().newLocal("local0", utility.UNDECLARED_THROWABLE_EXCEPTION);
+		calleeBody.getLocals().add(thrown);
+		Stmt throwStmt = Jimple.v().newThrowStmt(thrown);
+		calleeBody.getUnits().add(throwStmt);
+		callee.setActiveBody(calleeBody);
+
+		Body callerBody = Jimple.v().newBody(caller);
+		callerBody.getUnits().add(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(callee.makeRef())));
+		callerBody.getUnits().add(Jimple.v().newReturnVoidStmt());
+		caller.setActiveBody(callerBody);
+
+		UnitThrowAnalysis interproc = new UnitThrowAnalysis(true);
+		assertTrue(interproc.getThrowSummary(caller).getInferred().catchableAs(utility.UNDECLARED_THROWABLE_EXCEPTION));
+
+		// The caller's summary is inferred from the callee's body, so it must follow changes to that body.
+		calleeBody.getUnits().swapWith(throwStmt, Jimple.v().newReturnVoidStmt());
+		assertTrue(!interproc.getThrowSummary(caller).getInferred().catchableAs(utility.UNDECLARED_THROWABLE_EXCEPTION));
+	}
+
 	@Test
 	public void testJIdentityStmt() {
 
@@ -0,0 +1,144 @@
+package soot.toolkits.graph;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.UnitPatchingChain;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.toolkits.scalar.LocalDefs;
+import soot.toolkits.scalar.SimpleLiveLocals;
+import soot.toolkits.scalar.SimpleLocalDefs;
+
+public class IndexedUnitGraphTest {
+  private Jimple j;
+  private JimpleBody body;
+  private Local p;
+  private Local i;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    // The exceptional graph needs the exception classes
+    Scene.v().loadBasicClasses();
+    j = Jimple.v();
+    SootMethod m = new SootMethod("m", Collections.<Type>singletonList(IntType.v()), IntType.v(), Modifier.STATIC);
+    body = j.newBody(m);
+    m.setActiveBody(body);
+    p = j.newLocal("p", IntType.v());
+    i = j.newLocal("i", IntType.v());
+    body.getLocals().add(p);
+    body.getLocals().add(i);
+
+    // i = 0; while (i < p) { if (i == 3) goto exit; i = i + 1; } exit: return i
+    UnitPatchingChain units = body.getUnits();
+    Unit exit = j.newReturnStmt(i);
+    units.add(j.newIdentityStmt(p, j.newParameterRef(IntType.v(), 0)));
+    units.add(j.newAssignStmt(i, IntConstant.v(0)));
+    Unit head = j.newIfStmt(j.newGeExpr(i, p), exit);
+    units.add(head);
+    units.add(j.newIfStmt(j.newEqExpr(i, IntConstant.v(3)), exit));
+    units.add(j.newAssignStmt(i, j.newAddExpr(i, IntConstant.v(1))));
+    units.add(j.newGotoStmt(head));
+    units.add(exit);
+  }
+
+  private static void assertSameGraph(UnitGraph expected, IndexedUnitGraph actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.getHeads(), actual.getHeads());
+    assertEquals(expected.getTails(), actual.getTails());
+    int index = 0;
+    for (Unit u : expected) {
+      assertEquals(index, actual.indexOf(u));
+      assertEquals(u, actual.getNode(index));
+      assertEquals(expected.getSuccsOf(u), actual.getSuccsOf(u));
+      assertEquals(expected.getPredsOf(u), actual.getPredsOf(u));
+      assertEquals(expected.getSuccsOf(u).size(), actual.getSuccCount(index));
+      for (int k = 0; k < actual.getSuccCount(index); k++) {
+        assertEquals(expected.getSuccsOf(u).get(k), actual.getNode(actual.getSucc(index, k)));
+      }
+      assertEquals(expected.getPredsOf(u).size(), actual.getPredCount(index));
+      for (int k = 0; k < actual.getPredCount(index); k++) {
+        assertEquals(expected.getPredsOf(u).get(k), actual.getNode(actual.getPred(index, k)));
+      }
+      index++;
+    }
+  }
+
+  @Test
+  public void testSameEdgesAsBriefUnitGraph() {
+    BriefUnitGraph brief = new BriefUnitGraph(body);
+    assertSameGraph(brief, new IndexedUnitGraph(body));
+    assertSameGraph(brief, new IndexedUnitGraph(brief));
+  }
+
+  @Test
+  public void testCopyOfExceptionalUnitGraph() {
+    ExceptionalUnitGraph exceptional = new ExceptionalUnitGraph(body);
+    assertSameGraph(exceptional, new IndexedUnitGraph(exceptional));
+  }
+
+  @Test
+  public void testUnitNotInGraph() {
+    BriefUnitGraph brief = new BriefUnitGraph(body);
+    IndexedUnitGraph indexed = new IndexedUnitGraph(body);
+    Unit other = j.newNopStmt();
+    // Like UnitGraph, the graph treats units of other bodies as units without edges
+    assertEquals(-1, indexed.indexOf(other));
+    assertEquals(brief.getSuccsOf(other), indexed.getSuccsOf(other));
+    assertEquals(brief.getPredsOf(other), indexed.getPredsOf(other));
+    assertTrue(indexed.getSuccsOf(other).isEmpty());
+    assertTrue(indexed.getPredsOf(other).isEmpty());
+  }
+
+  @Test
+  public void testAnalysesAgree() {
+    BriefUnitGraph brief = new BriefUnitGraph(body);
+    IndexedUnitGraph indexed = new IndexedUnitGraph(body);
+    LocalDefs expectedDefs = new SimpleLocalDefs(brief);
+    LocalDefs actualDefs = new SimpleLocalDefs(indexed);
+    SimpleLiveLocals expectedLive = new SimpleLiveLocals(brief);
+    SimpleLiveLocals actualLive = new SimpleLiveLocals(indexed);
+    for (Unit u : body.getUnits()) {
+      assertEquals(expectedDefs.getDefsOfAt(i, u), actualDefs.getDefsOfAt(i, u));
+      assertEquals(expectedLive.getLiveLocalsBefore(u), actualLive.getLiveLocalsBefore(u));
+      assertEquals(expectedLive.getLiveLocalsAfter(u), actualLive.getLiveLocalsAfter(u));
+    }
+  }
+}
@@ -27,14 +27,17 @@ package soot.toolkits.graph;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
@@ -250,6 +253,190 @@ public class TestDominance {
         kids = kid_ids(m);
         assertThat(kids.size(), is(0));
     }
+
+    /**
+     * Checks that the fast finders give the same dominators and post-dominators as the MHG finders. All nodes of the
+     * graph must be reachable from a head and reach a tail.
+     */
+    private static void assertSameAsMHG(DirectedGraph<Node> g) {
+        MHGDominatorsFinder<Node> finder = new MHGDominatorsFinder<Node>(g);
+        FastDominatorsFinder<Node> fast = new FastDominatorsFinder<Node>(g);
+        MHGPostDominatorsFinder<Node> pfinder = new MHGPostDominatorsFinder<Node>(g);
+        FastPostDominatorsFinder<Node> pfast = new FastPostDominatorsFinder<Node>(g);
+        for (Node n : g) {
+            assertThat(fast.getImmediateDominator(n), is(finder.getImmediateDominator(n)));
+            assertThat(new HashSet<Node>(fast.getDominators(n)), is(new HashSet<Node>(finder.getDominators(n))));
+            assertThat(pfast.getImmediateDominator(n), is(pfinder.getImmediateDominator(n)));
+            assertThat(new HashSet<Node>(pfast.getDominators(n)), is(new HashSet<Node>(pfinder.getDominators(n))));
+            for (Node d : g) {
+                assertThat(fast.isDominatedBy(n, d), is(finder.isDominatedBy(n, d)));
+                assertThat(pfast.isDominatedBy(n, d), is(pfinder.isDominatedBy(n, d)));
+            }
+        }
+    }
+
+    private static Set<Integer> head_ids(DominatorTree<Node> tree) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (DominatorNode<Node> dhead : tree.getHeads()) {
+            ids.add(dhead.getGode().id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void TestFastFinderMatchesMHG() {
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        Node n4 = new Node(4);
+        Node n5 = new Node(5);
+        Node n6 = new Node(6);
+        Node n7 = new Node(7);
+        n1.addkid(n2);
+        n2.addkid(n3).addkid(n4);
+        n3.addkid(n5);
+        n4.addkid(n5).addkid(n6);
+        n5.addkid(n2).addkid(n7);
+        n6.addkid(n7);
+        Graph g = new Graph(n1);
+
+        assertSameAsMHG(g);
+        assertThat(new FastDominatorsFinder<Node>(g).getImmediateDominator(n5), is(n2));
+        assertThat(new FastPostDominatorsFinder<Node>(g).getImmediateDominator(n3), is(n5));
+    }
+
+    @Test
+    public void TestFastFinderMatchesMHGOnRandomGraphs() {
+        Random r = new Random(20);
+        for (int round = 0; round < 300; round++) {
+            int size = 2 + r.nextInt(40);
+            Node[] nodes = new Node[size];
+            boolean[] tail = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                nodes[i] = new Node(i);
+                tail[i] = i == size - 1 || (i > 0 && r.nextInt(8) == 0);
+            }
+            // every node is reached from an earlier one and every other node reaches a later one
+            for (int i = 1; i < size; i++) {
+                int from;
+                do {
+                    from = r.nextInt(i);
+                } while (tail[from]);
+                nodes[from].addkid(nodes[i]);
+            }
+            for (int i = 0; i < size - 1; i++) {
+                if (!tail[i]) {
+                    nodes[i].addkid(nodes[i + 1 + r.nextInt(size - i - 1)]);
+                }
+            }
+            // back and cross edges
+            for (int e = r.nextInt(2 * size); e > 0; e--) {
+                int from = r.nextInt(size);
+                if (!tail[from]) {
+                    nodes[from].addkid(nodes[r.nextInt(size)]);
+                }
+            }
+            List<Node> heads = new ArrayList<Node>();
+            heads.add(nodes[0]);
+            for (int i = 1; i < size; i++) {
+                if (r.nextInt(6) == 0) {
+                    heads.add(nodes[i]);
+                }
+            }
+            assertSameAsMHG(new MultiHeadGraph(heads));
+        }
+    }
+
+    @Test
+    public void TestFastFinderUnreachableNodes() {
+        // 4 cannot be reached from the head, but jumps into the loop of 2 and 3
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        Node n4 = new Node(4);
+        Node n5 = new Node(5);
+        n1.addkid(n2);
+        n2.addkid(n3);
+        n3.addkid(n2).addkid(n5);
+        n4.addkid(n3);
+        Graph g = new Graph(n1);
+        assertThat(g.size(), is(5));
+
+        MHGDominatorsFinder<Node> finder = new MHGDominatorsFinder<Node>(g);
+        FastDominatorsFinder<Node> fast = new FastDominatorsFinder<Node>(g);
+        for (Node n : Arrays.asList(n1, n2, n3, n5)) {
+            assertThat(fast.getImmediateDominator(n), is(finder.getImmediateDominator(n)));
+            assertThat(new HashSet<Node>(fast.getDominators(n)), is(new HashSet<Node>(finder.getDominators(n))));
+            assertThat(fast.isDominatedBy(n, n4), is(false));
+        }
+
+        // The MHG finder lets every node dominate 4, the fast finder only 4 itself
+        assertThat(finder.isDominatedBy(n4, n1), is(true));
+        assertThat(fast.getDominators(n4), contains(n4));
+        assertThat(fast.getImmediateDominator(n4), is(nullValue()));
+        assertThat(fast.isDominatedBy(n4, n1), is(false));
+        assertThat(fast.isDominatedBy(n4, n4), is(true));
+
+        DominatorTree<Node> tree = new DominatorTree<Node>(fast);
+        assertThat(head_ids(tree), is((Set<Integer>) new HashSet<Integer>(Arrays.asList(1, 4))));
+        new CytronDominanceFrontier<Node>(tree);
+    }
+
+    @Test
+    public void TestFastPostFinderLoopWithoutExit() {
+        // The loop of 2 and 3 never exits, 4 is the only tail
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        Node n4 = new Node(4);
+        n1.addkid(n2).addkid(n4);
+        n2.addkid(n3);
+        n3.addkid(n2);
+        Graph g = new Graph(n1);
+
+        MHGPostDominatorsFinder<Node> pfinder = new MHGPostDominatorsFinder<Node>(g);
+        FastPostDominatorsFinder<Node> pfast = new FastPostDominatorsFinder<Node>(g);
+        for (Node n : Arrays.asList(n1, n4)) {
+            assertThat(pfast.getImmediateDominator(n), is(pfinder.getImmediateDominator(n)));
+            assertThat(new HashSet<Node>(pfast.getDominators(n)), is(new HashSet<Node>(pfinder.getDominators(n))));
+        }
+        assertThat(pfast.getImmediateDominator(n1), is(n4));
+        for (Node n : Arrays.asList(n2, n3)) {
+            assertThat(pfast.getDominators(n), contains(n));
+            assertThat(pfast.getImmediateDominator(n), is(nullValue()));
+        }
+
+        DominatorTree<Node> tree = new DominatorTree<Node>(pfast);
+        assertThat(head_ids(tree), is((Set<Integer>) new HashSet<Integer>(Arrays.asList(2, 3, 4))));
+        new CytronDominanceFrontier<Node>(tree);
+
+        // Without any tail, every node is only post-dominated by itself
+        Node m1 = new Node(1);
+        Node m2 = new Node(2);
+        m1.addkid(m2);
+        m2.addkid(m1);
+        Graph loop = new Graph(m1);
+        assertThat(loop.getTails().isEmpty(), is(true));
+        FastPostDominatorsFinder<Node> lfast = new FastPostDominatorsFinder<Node>(loop);
+        assertThat(lfast.getDominators(m1), contains(m1));
+        assertThat(lfast.getDominators(m2), contains(m2));
+        assertThat(head_ids(new DominatorTree<Node>(lfast)).size(), is(2));
+    }
+}
+
+class MultiHeadGraph extends Graph {
+
+    List<Node> heads;
+
+    public MultiHeadGraph(List<Node> heads) {
+        super(heads.get(0));
+        this.heads = heads;
+    }
+
+    @Override
+    public List<Node> getHeads() {
+        return heads;
+    }
 }
 
 class Graph implements DirectedGraph<Node> {
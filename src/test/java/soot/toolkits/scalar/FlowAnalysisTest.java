@@ -0,0 +1,167 @@
+package soot.toolkits.scalar;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.UnitPatchingChain;
+import soot.ValueBox;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.IndexedUnitGraph;
+
+public class FlowAnalysisTest {
+  /** The locals that may have been assigned before a unit. */
+  private static class Assigned extends ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+    Assigned(DirectedGraph<Unit> graph) {
+      this(graph, null, null);
+    }
+
+    /** Puts the flow before a unit outside the graph before the analysis runs. */
+    Assigned(DirectedGraph<Unit> graph, Unit outside, FlowSet<Local> seed) {
+      super(graph);
+      if (outside != null) {
+        unitToBeforeFlow.put(outside, seed);
+      }
+      doAnalysis();
+    }
+
+    @Override
+    protected void flowThrough(FlowSet<Local> in, Unit d, FlowSet<Local> out) {
+      in.copy(out);
+      for (ValueBox box : d.getDefBoxes()) {
+        out.add((Local) box.getValue());
+      }
+    }
+
+    @Override
+    protected FlowSet<Local> newInitialFlow() {
+      return new ArraySparseSet<Local>();
+    }
+
+    @Override
+    protected void merge(FlowSet<Local> in1, FlowSet<Local> in2, FlowSet<Local> out) {
+      in1.union(in2, out);
+    }
+
+    @Override
+    protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+      source.copy(dest);
+    }
+  }
+
+  private JimpleBody body;
+  private Local i;
+  private Unit exit;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    Jimple j = Jimple.v();
+    SootMethod m = new SootMethod("m", Collections.<Type>singletonList(IntType.v()), IntType.v(), Modifier.STATIC);
+    body = j.newBody(m);
+    m.setActiveBody(body);
+    Local p = j.newLocal("p", IntType.v());
+    i = j.newLocal("i", IntType.v());
+    body.getLocals().add(p);
+    body.getLocals().add(i);
+
+    UnitPatchingChain units = body.getUnits();
+    exit = j.newReturnStmt(p);
+    units.add(j.newIdentityStmt(p, j.newParameterRef(IntType.v(), 0)));
+    units.add(j.newIfStmt(j.newEqExpr(p, IntConstant.v(0)), exit));
+    units.add(j.newAssignStmt(i, IntConstant.v(1)));
+    units.add(exit);
+  }
+
+  private void checkLegacyMaps(Assigned a) {
+    assertEquals(body.getUnits().size(), a.unitToBeforeFlow.size());
+    for (Unit u : body.getUnits()) {
+      assertSame(a.getFlowBefore(u), a.unitToBeforeFlow.get(u));
+      assertSame(a.getFlowAfter(u), a.unitToAfterFlow.get(u));
+      assertTrue(a.unitToAfterFlow.containsKey(u));
+    }
+    assertEquals(2, a.getFlowBefore(exit).size());
+    assertTrue(a.getFlowBefore(exit).contains(i));
+
+    FlowSet<Local> replaced = new ArraySparseSet<Local>();
+    a.unitToBeforeFlow.put(exit, replaced);
+    assertSame(replaced, a.getFlowBefore(exit));
+    assertEquals(body.getUnits().size(), a.unitToBeforeFlow.entrySet().size());
+  }
+
+  @Test
+  public void testFlowsServedFromEntries() {
+    checkLegacyMaps(new Assigned(new BriefUnitGraph(body)));
+    checkLegacyMaps(new Assigned(new IndexedUnitGraph(body)));
+  }
+
+  private void checkMutableMaps(DirectedGraph<Unit> graph) {
+    Unit outside = Jimple.v().newNopStmt();
+    FlowSet<Local> seed = new ArraySparseSet<Local>();
+    Assigned a = new Assigned(graph, outside, seed);
+    assertSame(seed, a.unitToBeforeFlow.get(outside));
+    assertEquals(body.getUnits().size() + 1, a.unitToBeforeFlow.size());
+
+    FlowSet<Local> replaced = new ArraySparseSet<Local>();
+    for (Map.Entry<Unit, FlowSet<Local>> e : a.unitToBeforeFlow.entrySet()) {
+      if (e.getKey() == exit) {
+        e.setValue(replaced);
+      }
+    }
+    assertSame(replaced, a.getFlowBefore(exit));
+    for (Iterator<Unit> it = a.unitToBeforeFlow.keySet().iterator(); it.hasNext();) {
+      if (it.next() == outside) {
+        it.remove();
+      }
+    }
+    assertFalse(a.unitToBeforeFlow.containsKey(outside));
+    assertEquals(body.getUnits().size(), a.unitToBeforeFlow.size());
+  }
+
+  @Test
+  public void testEntriesCanBeChanged() {
+    checkMutableMaps(new BriefUnitGraph(body));
+    checkMutableMaps(new IndexedUnitGraph(body));
+  }
+}
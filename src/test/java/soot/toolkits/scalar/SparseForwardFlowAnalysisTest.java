@@ -0,0 +1,166 @@
+package soot.toolkits.scalar;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.UnitPatchingChain;
+import soot.Value;
+import soot.jimple.AddExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.toolkits.graph.BriefUnitGraph;
+
+public class SparseForwardFlowAnalysisTest {
+  private static final Object UNDEFINED = "undefined";
+  private static final Object NOT_CONSTANT = "not constant";
+
+  /** Integer constant propagation: values are UNDEFINED, an Integer or NOT_CONSTANT. */
+  private static class Constants extends SparseForwardFlowAnalysis<Object> {
+    Constants(JimpleBody b) {
+      super(new BriefUnitGraph(b));
+      doAnalysis();
+    }
+
+    @Override
+    protected Object newInitialValue() {
+      return UNDEFINED;
+    }
+
+    @Override
+    protected Object merge(Object in1, Object in2) {
+      if (in1 == UNDEFINED) {
+        return in2;
+      }
+      if (in2 == UNDEFINED || in1.equals(in2)) {
+        return in1;
+      }
+      return NOT_CONSTANT;
+    }
+
+    @Override
+    protected Object evaluate(Unit def, Local l) {
+      Value rhs = ((DefinitionStmt) def).getRightOp();
+      if (rhs instanceof IntConstant) {
+        return ((IntConstant) rhs).value;
+      }
+      if (rhs instanceof AddExpr) {
+        Object a = valueOf(((AddExpr) rhs).getOp1(), def);
+        Object b = valueOf(((AddExpr) rhs).getOp2(), def);
+        if (a == NOT_CONSTANT || b == NOT_CONSTANT) {
+          return NOT_CONSTANT;
+        }
+        if (a == UNDEFINED || b == UNDEFINED) {
+          return UNDEFINED;
+        }
+        return (Integer) a + (Integer) b;
+      }
+      return NOT_CONSTANT;
+    }
+
+    private Object valueOf(Value v, Unit u) {
+      if (v instanceof IntConstant) {
+        return ((IntConstant) v).value;
+      }
+      return getValueAt((Local) v, u);
+    }
+  }
+
+  private Jimple j;
+  private JimpleBody body;
+  private UnitPatchingChain units;
+  private Local p;
+
+  @Before
+  public void setUp() {
+    G.reset();
+    j = Jimple.v();
+    SootMethod m = new SootMethod("m", Collections.<Type>singletonList(IntType.v()), IntType.v(), Modifier.STATIC);
+    body = j.newBody(m);
+    m.setActiveBody(body);
+    units = body.getUnits();
+    p = newLocal("p");
+    units.add(j.newIdentityStmt(p, j.newParameterRef(IntType.v(), 0)));
+  }
+
+  private Local newLocal(String name) {
+    Local l = j.newLocal(name, IntType.v());
+    body.getLocals().add(l);
+    return l;
+  }
+
+  @Test
+  public void testMergeOfEqualConstants() {
+    Local x = newLocal("x");
+    Local z = newLocal("z");
+    Local w = newLocal("w");
+    Unit join = j.newAssignStmt(z, j.newAddExpr(x, IntConstant.v(2)));
+    Unit other = j.newAssignStmt(x, IntConstant.v(1));
+    units.add(j.newIfStmt(j.newGtExpr(p, IntConstant.v(0)), other));
+    units.add(j.newAssignStmt(x, IntConstant.v(1)));
+    units.add(j.newGotoStmt(join));
+    units.add(other);
+    units.add(join);
+    Unit useW = j.newAssignStmt(w, j.newAddExpr(z, p));
+    units.add(useW);
+    units.add(j.newReturnStmt(w));
+
+    Constants c = new Constants(body);
+    assertEquals(1, c.getValueAt(x, join));
+    assertEquals(3, c.getDefinedValue(join));
+    assertEquals(NOT_CONSTANT, c.getDefinedValue(useW));
+  }
+
+  @Test
+  public void testLoop() {
+    Local i = newLocal("i");
+    Local r = newLocal("r");
+    Unit exit = j.newAssignStmt(r, i);
+    units.add(j.newAssignStmt(i, IntConstant.v(0)));
+    Unit head = j.newIfStmt(j.newGeExpr(i, IntConstant.v(10)), exit);
+    units.add(head);
+    Unit inc = j.newAssignStmt(i, j.newAddExpr(i, IntConstant.v(1)));
+    units.add(inc);
+    units.add(j.newGotoStmt(head));
+    units.add(exit);
+    units.add(j.newReturnStmt(r));
+
+    Constants c = new Constants(body);
+    assertEquals(NOT_CONSTANT, c.getDefinedValue(inc));
+    assertEquals(NOT_CONSTANT, c.getValueAt(i, exit));
+  }
+}
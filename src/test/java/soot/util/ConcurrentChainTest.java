@@ -0,0 +1,108 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ConcurrentChainTest {
+  private static final int SIZE = 200000;
+
+  /**
+   * Iterates the chain while another thread appends to it. An iteration either sees a prefix of the appended elements in
+   * order or fails with a ConcurrentModificationException, even when the chain reallocates its arrays.
+   */
+  @Test
+  public void testIterateWhileGrowing() throws Exception {
+    final ConcurrentChain<Integer> chain = new ConcurrentChain<Integer>();
+    final AtomicBoolean done = new AtomicBoolean(false);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < 3; i++) {
+        readers.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            int completed = 0;
+            while (!done.get()) {
+              int expected = 0;
+              try {
+                for (Iterator<Integer> it = chain.iterator(); it.hasNext();) {
+                  assertEquals(expected++, it.next().intValue());
+                }
+                completed++;
+              } catch (ConcurrentModificationException e) {
+                // The writer appended an element, start over
+              }
+            }
+            return completed;
+          }
+        }));
+      }
+      for (int i = 0; i < SIZE; i++) {
+        chain.add(i);
+      }
+      done.set(true);
+      for (Future<Integer> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(SIZE, chain.size());
+    int expected = 0;
+    for (Integer i : chain) {
+      assertEquals(expected++, i.intValue());
+    }
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    ConcurrentChain<Integer> chain = new ConcurrentChain<Integer>();
+    for (int i = 0; i < 10; i++) {
+      chain.add(i);
+    }
+    for (Iterator<Integer> it = chain.iterator(); it.hasNext();) {
+      if (it.next() % 2 == 0) {
+        it.remove();
+      }
+    }
+    assertEquals(5, chain.size());
+    for (Integer i : chain) {
+      assertTrue(i % 2 == 1);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class IdentityIndexTest {
+  @Test
+  public void testIndexOf() {
+    Object[] objects = new Object[1000];
+    for (int i = 0; i < objects.length; i++) {
+      objects[i] = new Object();
+    }
+    IdentityIndex<Object> index = new IdentityIndex<Object>(objects);
+    for (int i = 0; i < objects.length; i++) {
+      assertEquals(i, index.indexOf(objects[i]));
+    }
+    assertEquals(-1, index.indexOf(new Object()));
+    assertEquals(-1, index.indexOf(null));
+  }
+
+  @Test
+  public void testIdentityAndDuplicates() {
+    String a = new String("a");
+    String b = new String("a");
+    IdentityIndex<String> index = new IdentityIndex<String>(new String[] { a, a, b });
+    // Equal objects are told apart, and an object that occurs twice maps to its first position
+    assertEquals(0, index.indexOf(a));
+    assertEquals(2, index.indexOf(b));
+    assertEquals(-1, index.indexOf("a"));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(-1, new IdentityIndex<Object>(new Object[0]).indexOf(new Object()));
+  }
+}
@@ -0,0 +1,182 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import soot.G;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+
+public class IndexedChainTest {
+
+  @Test
+  public void testInsertAndNavigate() {
+    Chain<String> c = new IndexedChain<String>();
+    c.add("b");
+    c.addFirst("a");
+    c.addLast("d");
+    c.insertBefore("c", "d");
+    c.insertAfter("e", "d");
+
+    assertEquals(Arrays.asList("a", "b", "c", "d", "e"), new ArrayList<String>(c));
+    assertEquals("a", c.getFirst());
+    assertEquals("e", c.getLast());
+    assertEquals("c", c.getSuccOf("b"));
+    assertEquals("b", c.getPredOf("c"));
+    assertNull(c.getSuccOf("e"));
+    assertNull(c.getPredOf("a"));
+    assertTrue(c.follows("d", "b"));
+    assertFalse(c.follows("a", "b"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testDuplicate() {
+    Chain<String> c = new IndexedChain<String>();
+    c.add("a");
+    c.add("a");
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testSuccOfMissing() {
+    Chain<String> c = new IndexedChain<String>();
+    c.add("a");
+    c.getSuccOf("b");
+  }
+
+  @Test
+  public void testRangeIterator() {
+    Chain<Integer> c = new IndexedChain<Integer>();
+    for (int i = 0; i < 10; i++) {
+      c.add(i);
+    }
+    List<Integer> range = new ArrayList<Integer>();
+    c.iterator(3, 6).forEachRemaining(range::add);
+    assertEquals(Arrays.asList(3, 4, 5, 6), range);
+    assertFalse(c.iterator(4, 3).hasNext());
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    Chain<Integer> c = new IndexedChain<Integer>();
+    for (int i = 0; i < 10; i++) {
+      c.add(i);
+    }
+    for (Iterator<Integer> it = c.iterator(); it.hasNext();) {
+      if (it.next() % 2 == 0) {
+        it.remove();
+      }
+    }
+    assertEquals(Arrays.asList(1, 3, 5, 7, 9), new ArrayList<Integer>(c));
+    assertEquals(5, c.size());
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void testFailFast() {
+    Chain<Integer> c = new IndexedChain<Integer>();
+    c.add(1);
+    c.add(2);
+    for (Integer i : c) {
+      c.remove(i);
+    }
+  }
+
+  @Test
+  public void testSameAsHashChain() {
+    // Random edits must leave both chains with the same contents in the same order
+    Random rnd = new Random(42);
+    Chain<Integer> expected = new HashChain<Integer>();
+    Chain<Integer> actual = new IndexedChain<Integer>(2);
+    for (int op = 0; op < 5000; op++) {
+      Integer v = rnd.nextInt(200);
+      if (expected.contains(v)) {
+        assertTrue(actual.remove(v));
+        expected.remove(v);
+      } else if (expected.isEmpty() || rnd.nextBoolean()) {
+        expected.addLast(v);
+        actual.addLast(v);
+      } else {
+        Integer point = expected.getSuccOf(expected.getFirst());
+        if (point == null) {
+          point = expected.getFirst();
+        }
+        expected.insertBefore(v, point);
+        actual.insertBefore(v, point);
+      }
+      assertEquals(expected.size(), actual.size());
+    }
+    assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(actual));
+    for (Integer i : expected) {
+      assertTrue(actual.contains(i));
+      assertEquals(expected.getSuccOf(i), actual.getSuccOf(i));
+      assertEquals(expected.getPredOf(i), actual.getPredOf(i));
+    }
+  }
+
+  @Test
+  public void testConcurrentChain() {
+    Chain<String> c = new ConcurrentChain<String>();
+    c.add("a");
+    c.add("c");
+    c.insertAfter("b", "a");
+    assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(c));
+    assertTrue(c.contains("b"));
+    c.swapWith("b", "x");
+    assertEquals(Arrays.asList("a", "x", "c"), new ArrayList<String>(c.getElementsUnsorted()));
+
+    for (Iterator<String> it = c.iterator(); it.hasNext();) {
+      if (it.next().equals("x")) {
+        it.remove();
+      }
+    }
+    assertEquals(Arrays.asList("a", "c"), new ArrayList<String>(c));
+  }
+
+  @Test
+  public void testBodyChainsFollowOption() {
+    G.reset();
+    JimpleBody b = Jimple.v().newBody();
+    assertTrue(b.getLocals() instanceof HashChain);
+    assertTrue(b.getTraps() instanceof HashChain);
+
+    Options.v().set_indexed_chains(true);
+    b = Jimple.v().newBody();
+    assertTrue(b.getLocals() instanceof IndexedChain);
+    assertTrue(b.getTraps() instanceof IndexedChain);
+    G.reset();
+  }
+}
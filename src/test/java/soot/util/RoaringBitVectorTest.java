@@ -0,0 +1,134 @@
+package soot.util;
+
+/*-
+ * #%L
+ * Soot - a J*va Optimization Framework
+ * %%
+ * Copyright (C) 1997 - 2018 Raja Vallée-Rai and others
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RoaringBitVectorTest {
+
+  @Test
+  public void testSetAndGet() {
+    RoaringBitVector v = new RoaringBitVector();
+    assertTrue(v.isEmpty());
+    assertTrue(v.set(3));
+    assertTrue(v.set(70000));
+    assertFalse(v.set(3));
+    assertTrue(v.get(3));
+    assertTrue(v.get(70000));
+    assertFalse(v.get(4));
+    assertFalse(v.get(-1));
+    assertEquals(2, v.cardinality());
+    assertEquals("{3, 70000}", v.toString());
+  }
+
+  @Test
+  public void testArrayToBitmapConversion() {
+    RoaringBitVector v = new RoaringBitVector();
+    for (int i = 0; i <= RoaringBitVector.ARRAY_MAX; i++) {
+      assertTrue(v.set(i * 3));
+    }
+    assertEquals(RoaringBitVector.ARRAY_MAX + 1, v.cardinality());
+    for (int i = 0; i <= RoaringBitVector.ARRAY_MAX * 3; i++) {
+      assertEquals(i % 3 == 0, v.get(i));
+    }
+    RoaringBitVector.SetBitIterator it = v.iterator();
+    for (int i = 0; i <= RoaringBitVector.ARRAY_MAX; i++) {
+      assertEquals(i * 3, it.next());
+    }
+    assertFalse(it.hasNext());
+  }
+
+  @Test
+  public void testOrAndAndNotSameAsBitVector() {
+    // Mixes sparse and dense chunks so that all combinations of array and bitmap chunks are exercised
+    Random rnd = new Random(42);
+    for (int round = 0; round < 20; round++) {
+      BitSet expected = new BitSet();
+      RoaringBitVector target = new RoaringBitVector();
+      RoaringBitVector orset = new RoaringBitVector();
+      RoaringBitVector andnotset = new RoaringBitVector();
+      BitVector andset = new BitVector();
+      BitSet or = new BitSet();
+      BitSet and = new BitSet();
+      BitSet andnot = new BitSet();
+      fill(rnd, target, null, expected);
+      fill(rnd, orset, null, or);
+      fill(rnd, andnotset, null, andnot);
+      fill(rnd, null, andset, and);
+      boolean useAnd = rnd.nextBoolean();
+      boolean useAndNot = rnd.nextBoolean();
+
+      BitSet delta = (BitSet) or.clone();
+      if (useAnd) {
+        delta.and(and);
+      }
+      if (useAndNot) {
+        delta.andNot(andnot);
+      }
+      BitSet before = (BitSet) expected.clone();
+      expected.or(delta);
+
+      boolean changed = target.orAndAndNot(orset, useAnd ? andset : null, useAndNot ? andnotset : null);
+      assertEquals(!before.equals(expected), changed);
+      assertSame(expected, target);
+      assertFalse(target.orAndAndNot(orset, useAnd ? andset : null, useAndNot ? andnotset : null));
+      assertEquals(target, new RoaringBitVector(target));
+      assertEquals(or.intersects(expected), orset.intersects(target));
+    }
+  }
+
+  private static void fill(Random rnd, RoaringBitVector v, BitVector bv, BitSet expected) {
+    int chunks = rnd.nextInt(4);
+    for (int c = 0; c < chunks; c++) {
+      int base = rnd.nextInt(6) << 16;
+      int n = rnd.nextBoolean() ? rnd.nextInt(100) : rnd.nextInt(20000);
+      for (int i = 0; i < n; i++) {
+        int bit = base + rnd.nextInt(1 << 16);
+        if (v != null) {
+          v.set(bit);
+        }
+        if (bv != null) {
+          bv.set(bit);
+        }
+        expected.set(bit);
+      }
+    }
+  }
+
+  private static void assertSame(BitSet expected, RoaringBitVector actual) {
+    assertEquals(expected.cardinality(), actual.cardinality());
+    int i = expected.nextSetBit(0);
+    for (RoaringBitVector.SetBitIterator it = actual.iterator(); it.hasNext();) {
+      assertEquals(i, it.next());
+      i = expected.nextSetBit(i + 1);
+    }
+    assertEquals(-1, i);
+  }
+}